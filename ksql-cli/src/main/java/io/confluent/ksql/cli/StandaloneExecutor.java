@@ -55,7 +55,7 @@ public class StandaloneExecutor {
     for (QueryMetadata queryMetadata: queryMetadataList) {
       if (queryMetadata instanceof PersistentQueryMetadata) {
         PersistentQueryMetadata persistentQueryMetadata = (PersistentQueryMetadata) queryMetadata;
-        persistentQueryMetadata.getKafkaStreams().start();
+        persistentQueryMetadata.start();
       } else {
         System.err.println("Ignoring statemenst: " + queryMetadata.getStatementString());
         System.err.println("Only CREATE statements can run in KSQL embedded mode.");
@@ -38,6 +38,7 @@ import io.confluent.ksql.rest.entity.ServerInfo;
 import io.confluent.ksql.rest.entity.SourceDescription;
 import io.confluent.ksql.rest.entity.StreamedRow;
 import io.confluent.ksql.rest.entity.StreamsList;
+import io.confluent.ksql.rest.entity.TableRows;
 import io.confluent.ksql.rest.entity.TablesList;
 import io.confluent.ksql.rest.entity.TopicDescription;
 import io.confluent.ksql.util.CliUtils;
@@ -493,6 +494,14 @@ public abstract class Console implements Closeable {
       rowValues = Collections.singletonList(Arrays.asList(
           executionPlan.getExecutionPlan()
       ));
+    } else if (ksqlEntity instanceof TableRows) {
+      TableRows tableRows = (TableRows) ksqlEntity;
+      columnHeaders = tableRows.getColumnNames();
+      rowValues = tableRows.getRows().stream()
+          .map(row -> row.getColumns().stream()
+              .map(Objects::toString)
+              .collect(Collectors.toList())
+          ).collect(Collectors.toList());
     } else {
       throw new RuntimeException(String.format(
           "Unexpected KsqlEntity class: '%s'",
@@ -194,7 +194,7 @@ selectItem
 relation
     : left=relation
       ( CROSS JOIN right=aliasedRelation
-      | joinType JOIN rightRelation=relation joinCriteria
+      | joinType JOIN rightRelation=relation joinWindow? joinCriteria
       | NATURAL joinType JOIN right=aliasedRelation
       )                                           #joinRelation
     | aliasedRelation                             #relationDefault
@@ -207,6 +207,10 @@ joinType
     | FULL OUTER?
     ;
 
+joinWindow
+    : WITHIN number windowUnit
+    ;
+
 joinCriteria
     : ON booleanExpression
     | USING '(' identifier (',' identifier)* ')'
@@ -259,6 +263,7 @@ predicate[ParserRuleContext value]
     | NOT? IN '(' expression (',' expression)* ')'                        #inList
     | NOT? IN '(' query ')'                                               #inSubquery
     | NOT? LIKE pattern=valueExpression (ESCAPE escape=valueExpression)?  #like
+    | NOT? (REGEXP | RLIKE) pattern=valueExpression                      #regexp
     | IS NOT? NULL                                                        #nullPredicate
     | IS NOT? DISTINCT FROM right=valueExpression                         #distinctFrom
     ;
@@ -443,6 +448,8 @@ nonReserved
     | CALL
     | GRANT | REVOKE | PRIVILEGES | PUBLIC | OPTION
     | SUBSTRING
+    | REGEXP | RLIKE
+    | WITHIN
     ;
 
 normalForm
@@ -479,6 +486,8 @@ NO: 'NO';
 EXISTS: 'EXISTS';
 BETWEEN: 'BETWEEN';
 LIKE: 'LIKE';
+REGEXP: 'REGEXP';
+RLIKE: 'RLIKE';
 IS: 'IS';
 NULL: 'NULL';
 TRUE: 'TRUE';
@@ -524,6 +533,7 @@ TUMBLING: 'TUMBLING';
 HOPPING: 'HOPPING';
 SIZE: 'SIZE';
 ADVANCE: 'ADVANCE';
+WITHIN: 'WITHIN';
 CASE: 'CASE';
 WHEN: 'WHEN';
 THEN: 'THEN';
@@ -74,7 +74,7 @@ public class KsqlContext {
     for (QueryMetadata queryMetadata: queryMetadataList) {
       if (queryMetadata instanceof PersistentQueryMetadata) {
         PersistentQueryMetadata persistentQueryMetadata = (PersistentQueryMetadata) queryMetadata;
-        persistentQueryMetadata.getKafkaStreams().start();
+        persistentQueryMetadata.start();
         ksqlEngine.getPersistentQueries()
             .put(persistentQueryMetadata.getId(), persistentQueryMetadata);
       } else {
@@ -96,10 +96,7 @@ public class KsqlContext {
       throw new KsqlException(String.format("Invalid query id. Query id, %d, does not exist.",
                                             queryId));
     }
-    PersistentQueryMetadata persistentQueryMetadata = ksqlEngine
-        .getPersistentQueries().get(queryId);
-    persistentQueryMetadata.getKafkaStreams().close();
-    ksqlEngine.getPersistentQueries().remove(queryId);
+    ksqlEngine.terminateQuery(queryId, true);
   }
 
   public Map<Long, PersistentQueryMetadata> getRunningQueries() {
@@ -57,7 +57,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 public class KsqlEngine implements Closeable {
 
@@ -172,6 +171,12 @@ public class KsqlEngine implements Closeable {
     return runningQueries.get(0);
   }
 
+  /**
+   * Answers a query on a table from the state of the running query writing the table.
+   */
+  public PullQueryExecutor.Result executePullQuery(final Query query) throws Exception {
+    return new PullQueryExecutor(this).execute(query);
+  }
 
   public List<Pair<String, Statement>> parseQueries(final String queriesString,
                                                     final Map<String, Object> overriddenProperties,
@@ -362,8 +367,11 @@ public class KsqlEngine implements Closeable {
     }
     liveQueries.remove(queryMetadata);
     if (closeStreams) {
-      queryMetadata.getKafkaStreams().close(100L, TimeUnit.MILLISECONDS);
-      queryMetadata.getKafkaStreams().cleanUp();
+      queryMetadata.close();
+    } else if (queryMetadata instanceof PersistentQueryMetadata
+               && ((PersistentQueryMetadata) queryMetadata).getSharedRuntime() != null) {
+      // The query never started, but still has to leave the runtime it was registered in.
+      queryMetadata.close();
     }
     return true;
   }
@@ -390,9 +398,10 @@ public class KsqlEngine implements Closeable {
 
   @Override
   public void close() throws IOException {
+    // Closing the shared runtimes first keeps them from being rebuilt for every query that leaves.
+    queryEngine.closeSharedRuntimes();
     for (QueryMetadata queryMetadata : liveQueries) {
-      queryMetadata.getKafkaStreams().close(100L, TimeUnit.MILLISECONDS);
-      queryMetadata.getKafkaStreams().cleanUp();
+      queryMetadata.close();
     }
     kafkaTopicClient.close();
   }
@@ -405,9 +414,7 @@ public class KsqlEngine implements Closeable {
     try {
       for (QueryMetadata queryMetadata: liveQueries) {
         if (queryMetadata instanceof PersistentQueryMetadata) {
-          PersistentQueryMetadata persistentQueryMetadata = (PersistentQueryMetadata) queryMetadata;
-          persistentQueryMetadata.getKafkaStreams().close(100L, TimeUnit.MILLISECONDS);
-          persistentQueryMetadata.getKafkaStreams().cleanUp();
+          queryMetadata.close();
         }
       }
     } catch (Exception e) {
@@ -0,0 +1,486 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql;
+
+import io.confluent.ksql.codegen.ProjectionCompiler;
+import io.confluent.ksql.codegen.RowProjection;
+import io.confluent.ksql.metastore.StructuredDataSource;
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.Query;
+import io.confluent.ksql.parser.tree.StringLiteral;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.planner.plan.FilterNode;
+import io.confluent.ksql.planner.plan.KsqlBareOutputNode;
+import io.confluent.ksql.planner.plan.OutputNode;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
+import io.confluent.ksql.structured.SqlPredicate;
+import io.confluent.ksql.structured.TableMaterialization;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.PersistentQueryMetadata;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.kstream.Predicate;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.UnlimitedWindow;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreType;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlySessionStore;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers a query on a table from the state store of the persistent query writing the table,
+ * through Kafka Streams interactive queries, instead of running a new streaming query over the
+ * topic of the table. Only the partitions of the table assigned to this server are read.
+ *
+ * <p>The query may only project and filter a single table. Conjuncts of its WHERE clause
+ * comparing ROWKEY with a string become a key lookup or a key range scan, and for windowed tables
+ * conjuncts comparing ROWTIME, the start of the window, with a number bound the windows fetched.
+ * The rest of the WHERE clause is evaluated on the rows read. The store does not keep the time of
+ * the rows of a table that is not windowed, so their ROWTIME is null.
+ */
+public class PullQueryExecutor {
+
+  public static class Result {
+    private final Schema schema;
+    private final List<GenericRow> rows;
+
+    Result(final Schema schema, final List<GenericRow> rows) {
+      this.schema = schema;
+      this.rows = rows;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public List<GenericRow> getRows() {
+      return rows;
+    }
+  }
+
+  private final KsqlEngine ksqlEngine;
+
+  public PullQueryExecutor(final KsqlEngine ksqlEngine) {
+    this.ksqlEngine = ksqlEngine;
+  }
+
+  public Result execute(final Query query) throws Exception {
+    PlanNode plan = ksqlEngine.getQueryEngine()
+        .buildQueryLogicalPlan(query, ksqlEngine.getMetaStore().clone());
+    if (!(plan instanceof KsqlBareOutputNode)) {
+      throw new KsqlException("A query on a table can not write its result to a topic.");
+    }
+    OutputNode outputNode = (OutputNode) plan;
+    PlanNode node = outputNode.getSource();
+    if (!(node instanceof ProjectNode)) {
+      throw unsupportedQuery();
+    }
+    ProjectNode projectNode = (ProjectNode) node;
+    node = projectNode.getSource();
+    Expression predicate = null;
+    if (node instanceof FilterNode) {
+      predicate = ((FilterNode) node).getPredicate();
+      node = ((FilterNode) node).getSource();
+    }
+    if (!(node instanceof StructuredDataSourceNode)
+        || ((StructuredDataSourceNode) node).getDataSourceType()
+           != StructuredDataSource.DataSourceType.KTABLE) {
+      throw unsupportedQuery();
+    }
+    StructuredDataSourceNode sourceNode = (StructuredDataSourceNode) node;
+    String tableName = sourceNode.getStructuredDataSource().getName();
+    PersistentQueryMetadata tableQuery = getMaterializingQuery(tableName);
+    TableMaterialization materialization = tableQuery.getMaterialization();
+
+    KeyBounds keyBounds = new KeyBounds();
+    Expression residualPredicate = keyBounds.extract(predicate);
+    if (!materialization.isWindowed() && keyBounds.hasTimeBounds()) {
+      throw new KsqlException(String.format(
+          "Table %s is not windowed; its rows can not be looked up by ROWTIME.", tableName));
+    }
+
+    Schema schema = sourceNode.getSchema();
+    TableScan scan = new TableScan(
+        materialization,
+        keyBounds,
+        residualPredicate == null
+        ? null : new SqlPredicate(residualPredicate, schema, false).getPredicate(),
+        new ProjectionCompiler(schema).compile(projectNode.getProjectNameExpressionPairList()),
+        outputNode.getLimit().orElse(Integer.MAX_VALUE));
+
+    KafkaStreams kafkaStreams = tableQuery.getKafkaStreams();
+    if (kafkaStreams == null) {
+      throw new KsqlException(String.format(
+          "Query %d writing table %s is not running.", tableQuery.getId(), tableName));
+    }
+    try {
+      scan.run(kafkaStreams);
+    } catch (InvalidStateStoreException e) {
+      throw new KsqlException(String.format(
+          "The state of table %s can not be read now, the query writing it may be restarting or "
+          + "rebalancing. Please retry.", tableName), e);
+    }
+    return new Result(scan.projection.getResultSchema(), scan.rows);
+  }
+
+  private PersistentQueryMetadata getMaterializingQuery(final String tableName) {
+    for (PersistentQueryMetadata queryMetadata : ksqlEngine.getPersistentQueries().values()) {
+      if (queryMetadata.getOutputNode().getId().toString().equals(tableName)) {
+        if (queryMetadata.getMaterialization() == null) {
+          break;
+        }
+        return queryMetadata;
+      }
+    }
+    throw new KsqlException(String.format(
+        "Table %s is not kept in the state of a running query; only tables created by a CREATE "
+        + "TABLE AS SELECT with an aggregation or a projection and filter of a table can be "
+        + "queried directly. Use the streaming query endpoint instead.", tableName));
+  }
+
+  private static KsqlException unsupportedQuery() {
+    return new KsqlException("A query on a table can only project and filter a single table.");
+  }
+
+  private static class TableScan {
+    private final TableMaterialization materialization;
+    private final KeyBounds keyBounds;
+    private final Predicate predicate;
+    private final RowProjection projection;
+    private final int limit;
+    private final List<GenericRow> rows = new ArrayList<>();
+
+    TableScan(final TableMaterialization materialization, final KeyBounds keyBounds,
+              final Predicate predicate, final RowProjection projection, final int limit) {
+      this.materialization = materialization;
+      this.keyBounds = keyBounds;
+      this.predicate = predicate;
+      this.projection = projection;
+      this.limit = limit;
+    }
+
+    void run(final KafkaStreams kafkaStreams) {
+      if (keyBounds.isEmpty()) {
+        return;
+      }
+      String storeName = materialization.getStoreName();
+      switch (materialization.getStoreType()) {
+        case KEY_VALUE: {
+          ReadOnlyKeyValueStore<String, GenericRow> store =
+              getStore(kafkaStreams, storeName,
+                       QueryableStoreTypes.<String, GenericRow>keyValueStore());
+          String key = keyBounds.getKey();
+          if (key != null) {
+            add(key, null, store.get(key));
+          } else if (keyBounds.lowerKey != null && keyBounds.upperKey != null) {
+            scanKeyValues(store.range(keyBounds.lowerKey, keyBounds.upperKey));
+          } else {
+            scanKeyValues(store.all());
+          }
+          break;
+        }
+        case WINDOWED_KEY_VALUE: {
+          ReadOnlyKeyValueStore<Windowed<String>, GenericRow> store =
+              getStore(kafkaStreams, storeName,
+                       QueryableStoreTypes.<Windowed<String>, GenericRow>keyValueStore());
+          String key = keyBounds.getKey();
+          if (key != null) {
+            // Windowed keys are stored as the key followed by the window start, so the windows
+            // of one key are a range.
+            scanWindows(store.range(new Windowed<>(key, new UnlimitedWindow(keyBounds.timeFrom)),
+                                    new Windowed<>(key, new UnlimitedWindow(keyBounds.timeTo))));
+          } else {
+            scanWindows(store.all());
+          }
+          break;
+        }
+        case WINDOW: {
+          ReadOnlyWindowStore<String, GenericRow> store =
+              getStore(kafkaStreams, storeName,
+                       QueryableStoreTypes.<String, GenericRow>windowStore());
+          String key = getRequiredKey();
+          try (WindowStoreIterator<GenericRow> iterator =
+                   store.fetch(key, keyBounds.timeFrom, keyBounds.timeTo)) {
+            while (iterator.hasNext() && rows.size() < limit) {
+              KeyValue<Long, GenericRow> window = iterator.next();
+              add(key, window.key, window.value);
+            }
+          }
+          break;
+        }
+        case SESSION: {
+          ReadOnlySessionStore<String, GenericRow> store =
+              getStore(kafkaStreams, storeName,
+                       QueryableStoreTypes.<String, GenericRow>sessionStore());
+          scanWindows(store.fetch(getRequiredKey()));
+          break;
+        }
+        default:
+          throw new KsqlException("Unsupported store type: " + materialization.getStoreType());
+      }
+    }
+
+    private static <T> T getStore(final KafkaStreams kafkaStreams, final String storeName,
+                                  final QueryableStoreType<T> storeType) {
+      try {
+        return kafkaStreams.store(storeName, storeType);
+      } catch (IllegalStateException e) {
+        // The instance is not running, as while a shared runtime is rebuilt.
+        throw new InvalidStateStoreException(e.getMessage(), e);
+      }
+    }
+
+    private String getRequiredKey() {
+      String key = keyBounds.getKey();
+      if (key == null) {
+        throw new KsqlException("A query on a windowed table has to look up a single key with "
+                                + "ROWKEY = '<key>'.");
+      }
+      return key;
+    }
+
+    private void scanKeyValues(final KeyValueIterator<String, GenericRow> iterator) {
+      try {
+        while (iterator.hasNext() && rows.size() < limit) {
+          KeyValue<String, GenericRow> entry = iterator.next();
+          add(entry.key, null, entry.value);
+        }
+      } finally {
+        iterator.close();
+      }
+    }
+
+    private void scanWindows(final KeyValueIterator<Windowed<String>, GenericRow> iterator) {
+      try {
+        while (iterator.hasNext() && rows.size() < limit) {
+          KeyValue<Windowed<String>, GenericRow> entry = iterator.next();
+          add(entry.key.key(), entry.key.window().start(), entry.value);
+        }
+      } finally {
+        iterator.close();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(final String key, final Long windowStart, final GenericRow storedRow) {
+      if (storedRow == null || !keyBounds.matches(key, windowStart)) {
+        return;
+      }
+      GenericRow tableRow = materialization.toTableRow(storedRow);
+      if (tableRow == null) {
+        return;
+      }
+      List<Object> tableColumns = tableRow.getColumns();
+      Object[] values = new Object[tableColumns.size() + 2];
+      values[SchemaUtil.ROWTIME_NAME_INDEX] = windowStart;
+      values[SchemaUtil.ROWKEY_NAME_INDEX] = key;
+      for (int i = 0; i < tableColumns.size(); i++) {
+        values[i + 2] = tableColumns.get(i);
+      }
+      GenericRow row = new GenericRow(values);
+      if (predicate == null || predicate.test(key, row)) {
+        rows.add(projection.project(row));
+      }
+    }
+  }
+
+  /**
+   * The bounds on ROWKEY and ROWTIME set by the top level conjuncts of a WHERE clause.
+   */
+  static class KeyBounds {
+    private String lowerKey;
+    private boolean lowerKeyInclusive;
+    private String upperKey;
+    private boolean upperKeyInclusive;
+    private long timeFrom = 0;
+    private long timeTo = Long.MAX_VALUE;
+    private boolean timeBounds = false;
+
+    /**
+     * Takes the bounds out of the predicate, and returns the conjuncts that are left, or null if
+     * there are none.
+     */
+    Expression extract(final Expression predicate) {
+      if (predicate == null) {
+        return null;
+      }
+      if (predicate instanceof LogicalBinaryExpression
+          && ((LogicalBinaryExpression) predicate).getType() == LogicalBinaryExpression.Type.AND) {
+        LogicalBinaryExpression and = (LogicalBinaryExpression) predicate;
+        Expression left = extract(and.getLeft());
+        Expression right = extract(and.getRight());
+        if (left == null) {
+          return right;
+        } else if (right == null) {
+          return left;
+        }
+        return new LogicalBinaryExpression(LogicalBinaryExpression.Type.AND, left, right);
+      }
+      if (predicate instanceof ComparisonExpression) {
+        ComparisonExpression comparison = (ComparisonExpression) predicate;
+        if (addBound(comparison.getLeft(), comparison.getType(), comparison.getRight())
+            || addBound(comparison.getRight(), comparison.getType().flip(),
+                        comparison.getLeft())) {
+          return null;
+        }
+      }
+      return predicate;
+    }
+
+    private boolean addBound(final Expression column, final ComparisonExpression.Type type,
+                             final Expression literal) {
+      String columnName;
+      if (column instanceof QualifiedNameReference) {
+        columnName = ((QualifiedNameReference) column).getName().getSuffix();
+      } else if (column instanceof DereferenceExpression) {
+        columnName = ((DereferenceExpression) column).getFieldName();
+      } else {
+        return false;
+      }
+      if (SchemaUtil.ROWKEY_NAME.equalsIgnoreCase(columnName)
+          && literal instanceof StringLiteral) {
+        return addKeyBound(type, ((StringLiteral) literal).getValue());
+      } else if (SchemaUtil.ROWTIME_NAME.equalsIgnoreCase(columnName)
+                 && literal instanceof LongLiteral) {
+        return addTimeBound(type, ((LongLiteral) literal).getValue());
+      }
+      return false;
+    }
+
+    private boolean addKeyBound(final ComparisonExpression.Type type, final String key) {
+      switch (type) {
+        case EQUAL:
+          setLowerKey(key, true);
+          setUpperKey(key, true);
+          return true;
+        case GREATER_THAN:
+          setLowerKey(key, false);
+          return true;
+        case GREATER_THAN_OR_EQUAL:
+          setLowerKey(key, true);
+          return true;
+        case LESS_THAN:
+          setUpperKey(key, false);
+          return true;
+        case LESS_THAN_OR_EQUAL:
+          setUpperKey(key, true);
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private void setLowerKey(final String key, final boolean inclusive) {
+      if (lowerKey == null || key.compareTo(lowerKey) > 0
+          || (key.equals(lowerKey) && !inclusive)) {
+        lowerKey = key;
+        lowerKeyInclusive = inclusive;
+      }
+    }
+
+    private void setUpperKey(final String key, final boolean inclusive) {
+      if (upperKey == null || key.compareTo(upperKey) < 0
+          || (key.equals(upperKey) && !inclusive)) {
+        upperKey = key;
+        upperKeyInclusive = inclusive;
+      }
+    }
+
+    private boolean addTimeBound(final ComparisonExpression.Type type, final long time) {
+      switch (type) {
+        case EQUAL:
+          timeFrom = Math.max(timeFrom, time);
+          timeTo = Math.min(timeTo, time);
+          break;
+        case GREATER_THAN:
+          timeFrom = Math.max(timeFrom, time + 1);
+          break;
+        case GREATER_THAN_OR_EQUAL:
+          timeFrom = Math.max(timeFrom, time);
+          break;
+        case LESS_THAN:
+          timeTo = Math.min(timeTo, time - 1);
+          break;
+        case LESS_THAN_OR_EQUAL:
+          timeTo = Math.min(timeTo, time);
+          break;
+        default:
+          return false;
+      }
+      timeBounds = true;
+      return true;
+    }
+
+    boolean hasTimeBounds() {
+      return timeBounds;
+    }
+
+    /**
+     * The single key the bounds allow, or null.
+     */
+    String getKey() {
+      if (lowerKey != null && lowerKey.equals(upperKey)
+          && lowerKeyInclusive && upperKeyInclusive) {
+        return lowerKey;
+      }
+      return null;
+    }
+
+    boolean isEmpty() {
+      if (timeFrom > timeTo) {
+        return true;
+      }
+      if (lowerKey == null || upperKey == null) {
+        return false;
+      }
+      int order = lowerKey.compareTo(upperKey);
+      return order > 0 || (order == 0 && !(lowerKeyInclusive && upperKeyInclusive));
+    }
+
+    boolean matches(final String key, final Long time) {
+      if (lowerKey != null) {
+        int order = key.compareTo(lowerKey);
+        if (order < 0 || (order == 0 && !lowerKeyInclusive)) {
+          return false;
+        }
+      }
+      if (upperKey != null) {
+        int order = key.compareTo(upperKey);
+        if (order > 0 || (order == 0 && !upperKeyInclusive)) {
+          return false;
+        }
+      }
+      return time == null || (time >= timeFrom && time <= timeTo);
+    }
+  }
+}
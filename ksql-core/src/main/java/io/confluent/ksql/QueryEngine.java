@@ -51,21 +51,25 @@ import io.confluent.ksql.parser.tree.SetProperty;
 import io.confluent.ksql.parser.tree.SingleColumn;
 import io.confluent.ksql.parser.tree.Statement;
 import io.confluent.ksql.physical.PhysicalPlanBuilder;
+import io.confluent.ksql.planner.LogicalPlanOptimizer;
 import io.confluent.ksql.planner.LogicalPlanner;
 import io.confluent.ksql.planner.plan.KsqlBareOutputNode;
 import io.confluent.ksql.planner.plan.KsqlStructuredDataOutputNode;
 import io.confluent.ksql.planner.plan.OutputNode;
 import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
 import io.confluent.ksql.structured.QueuedSchemaKStream;
 import io.confluent.ksql.structured.SchemaKStream;
 import io.confluent.ksql.structured.SchemaKTable;
+import io.confluent.ksql.structured.TableMaterialization;
+import io.confluent.ksql.util.BatchedQueryRunner;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.Pair;
 import io.confluent.ksql.util.PersistentQueryMetadata;
 import io.confluent.ksql.util.QueryMetadata;
 import io.confluent.ksql.util.QueuedQueryMetadata;
-import io.confluent.ksql.util.timestamp.KsqlTimestampExtractor;
+import io.confluent.ksql.util.SharedKafkaStreamsRuntime;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
@@ -76,6 +80,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
@@ -84,13 +90,22 @@ import java.util.concurrent.atomic.AtomicLong;
 public class QueryEngine {
 
   private static final Logger log = LoggerFactory.getLogger(QueryEngine.class);
+
+  // Settings of the transient query result queue that a request may override.
+  private static final List<String> TRANSIENT_QUEUE_CONFIGS = Arrays.asList(
+      KsqlConfig.KSQL_TRANSIENT_QUEUE_CAPACITY_CONFIG,
+      KsqlConfig.KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_CONFIG);
+
   private final AtomicLong queryIdCounter;
   private final KsqlEngine ksqlEngine;
+  private final List<SharedKafkaStreamsRuntime> sharedRuntimes;
+  private boolean sharedRuntimeStartsDeferred;
 
 
   public QueryEngine(final KsqlEngine ksqlEngine) {
     this.queryIdCounter = new AtomicLong(1);
     this.ksqlEngine = ksqlEngine;
+    this.sharedRuntimes = new ArrayList<>();
   }
 
 
@@ -160,6 +175,9 @@ public class QueryEngine {
 
     // Build a logical plan
     PlanNode logicalPlan = new LogicalPlanner(analysis, aggregateAnalysis).buildPlan();
+    if (isPlanOptimizerEnabled()) {
+      logicalPlan = LogicalPlanOptimizer.optimize(logicalPlan);
+    }
     if (logicalPlan instanceof KsqlStructuredDataOutputNode) {
       KsqlStructuredDataOutputNode ksqlStructuredDataOutputNode =
           (KsqlStructuredDataOutputNode) logicalPlan;
@@ -214,6 +232,11 @@ public class QueryEngine {
     KStreamBuilder builder = new KStreamBuilder();
 
     KsqlConfig ksqlConfigClone = ksqlEngine.getKsqlConfig().clone();
+    for (String queueConfig : TRANSIENT_QUEUE_CONFIGS) {
+      if (overriddenStreamsProperties.containsKey(queueConfig)) {
+        ksqlConfigClone.put(queueConfig, overriddenStreamsProperties.get(queueConfig));
+      }
+    }
 
     // Build a physical plan, in this case a Kafka Streams DSL
     PhysicalPlanBuilder physicalPlanBuilder =
@@ -246,8 +269,8 @@ public class QueryEngine {
         applicationId = addTimeSuffix(applicationId);
       }
 
-      KafkaStreams streams =
-          buildStreams(builder, applicationId, ksqlConfigClone, overriddenStreamsProperties);
+      KafkaStreams streams = buildStreams(
+          builder, applicationId, getStreamsProperties(ksqlConfigClone, overriddenStreamsProperties));
 
       QueuedSchemaKStream queuedSchemaKStream = (QueuedSchemaKStream) schemaKStream;
       KsqlBareOutputNode ksqlBareOutputNode = (KsqlBareOutputNode) outputNode;
@@ -266,25 +289,77 @@ public class QueryEngine {
 
     } else if (outputNode instanceof KsqlStructuredDataOutputNode) {
       long queryId = getNextQueryId();
-
-      String applicationId =  serviceId + persistanceQueryPrefix +
-                             queryId;
-      if (addUniqueTimeSuffix) {
-        applicationId = addTimeSuffix(applicationId);
-      }
-
-      KafkaStreams streams =
-          buildStreams(builder, applicationId, ksqlConfigClone, overriddenStreamsProperties);
+      Map<String, Object> streamsProperties =
+          getStreamsProperties(ksqlConfigClone, overriddenStreamsProperties);
+      DataSource.DataSourceType dataSourceType = (schemaKStream instanceof SchemaKTable)
+          ? DataSource.DataSourceType.KTABLE : DataSource.DataSourceType.KSTREAM;
+      TableMaterialization materialization = (schemaKStream instanceof SchemaKTable)
+          ? ((SchemaKTable) schemaKStream).getMaterialization() : null;
 
       KsqlStructuredDataOutputNode kafkaTopicOutputNode =
           (KsqlStructuredDataOutputNode) outputNode;
-      physicalPlans.add(
-          new PersistentQueryMetadata(statementPlanPair.getLeft(),
-                                      streams, kafkaTopicOutputNode, schemaKStream
-                                          .getExecutionPlan(""), queryId,
-                                      (schemaKStream instanceof SchemaKTable)? DataSource
-                                          .DataSourceType.KTABLE: DataSource.DataSourceType.KSTREAM)
-      );
+      SharedKafkaStreamsRuntime sharedRuntime = null;
+      Map<String, String> sources = getSources(logicalPlan);
+      boolean batched = isBatchExecutionEnabled(ksqlConfigClone)
+                        && PhysicalPlanBuilder.isBatchable(logicalPlan);
+      if (!batched && isSharedRuntimeEnabled()) {
+        if (physicalPlanBuilder.hasGeneratedStateNames()) {
+          // Its join state would be lost whenever the shared topology is rebuilt.
+          log.info("Query {} runs in its own runtime, its join state can not be shared",
+                   queryId);
+        } else {
+          sharedRuntime = getSharedRuntime(streamsProperties, sources, addUniqueTimeSuffix,
+                                           serviceId + persistanceQueryPrefix);
+        }
+      }
+
+      if (batched) {
+        String applicationId = serviceId + persistanceQueryPrefix + queryId;
+        if (addUniqueTimeSuffix) {
+          applicationId = addTimeSuffix(applicationId);
+        }
+        BatchedQueryRunner batchedRunner =
+            physicalPlanBuilder.buildBatchedQuery(logicalPlan, applicationId, streamsProperties);
+        log.info("Query {} runs in micro-batches", queryId);
+        physicalPlans.add(
+            new PersistentQueryMetadata(statementPlanPair.getLeft(), batchedRunner,
+                                        kafkaTopicOutputNode, schemaKStream.getExecutionPlan(""),
+                                        queryId)
+        );
+      } else if (sharedRuntime != null) {
+        // The query is built again every time the runtime's topology changes, so its aggregate
+        // store keeps the same name to find its state again.
+        String aggregateStoreName = "KSQL_Agg_Query_" + queryId;
+        sharedRuntime.register(queryId, sources, (sharedBuilder, sourceStreams) ->
+            new PhysicalPlanBuilder(sharedBuilder, ksqlConfigClone.clone(),
+                                    ksqlEngine.getKafkaTopicClient(), aggregateStoreName,
+                                    sourceStreams)
+                .buildPhysicalPlan(logicalPlan));
+        log.info("Query {} runs in shared runtime {}", queryId, sharedRuntime.getApplicationId());
+        if (materialization != null && materialization.getStoreName()
+            .equals(physicalPlanBuilder.getAggregateStoreName())) {
+          materialization = materialization.withStoreName(aggregateStoreName);
+        }
+        physicalPlans.add(
+            new PersistentQueryMetadata(statementPlanPair.getLeft(), sharedRuntime,
+                                        kafkaTopicOutputNode, schemaKStream.getExecutionPlan(""),
+                                        queryId, dataSourceType, materialization)
+        );
+      } else {
+        String applicationId =  serviceId + persistanceQueryPrefix +
+                               queryId;
+        if (addUniqueTimeSuffix) {
+          applicationId = addTimeSuffix(applicationId);
+        }
+
+        KafkaStreams streams = buildStreams(builder, applicationId, streamsProperties);
+        physicalPlans.add(
+            new PersistentQueryMetadata(statementPlanPair.getLeft(),
+                                        streams, kafkaTopicOutputNode, schemaKStream
+                                            .getExecutionPlan(""), queryId, dataSourceType,
+                                        materialization)
+        );
+      }
 
       MetaStore metaStore = ksqlEngine.getMetaStore();
       if (metaStore.getTopic(kafkaTopicOutputNode.getKafkaTopicName()) == null) {
@@ -372,15 +447,134 @@ public class QueryEngine {
     return new KsqlStream(name, dataSource.schema(), null, null, ksqlTopic);
   }
 
+  /**
+   * Makes the shared runtimes, including the ones created from now on, only start once
+   * {@link #startDeferredSharedRuntimes()} is called, instead of once per query.
+   */
+  public synchronized void deferSharedRuntimeStarts() {
+    sharedRuntimeStartsDeferred = true;
+    for (SharedKafkaStreamsRuntime sharedRuntime : sharedRuntimes) {
+      sharedRuntime.deferStarts();
+    }
+  }
+
+  public synchronized void startDeferredSharedRuntimes() {
+    sharedRuntimeStartsDeferred = false;
+    for (SharedKafkaStreamsRuntime sharedRuntime : sharedRuntimes) {
+      sharedRuntime.startDeferred();
+    }
+  }
+
+  /**
+   * Closes the shared runtimes; their queries can not be started again afterwards.
+   */
+  public synchronized void closeSharedRuntimes() {
+    for (SharedKafkaStreamsRuntime sharedRuntime : sharedRuntimes) {
+      sharedRuntime.close();
+    }
+    sharedRuntimes.clear();
+  }
+
+  private boolean isBatchExecutionEnabled(KsqlConfig ksqlConfig) {
+    Object enabled = ksqlConfig.get(KsqlConfig.KSQL_BATCH_EXECUTION_ENABLED_CONFIG);
+    return enabled != null && Boolean.parseBoolean(enabled.toString());
+  }
+
+  private boolean isPlanOptimizerEnabled() {
+    Object enabled = ksqlEngine.getKsqlConfig().get(KsqlConfig.KSQL_PLAN_OPTIMIZER_ENABLED_CONFIG);
+    return enabled == null || Boolean.parseBoolean(enabled.toString());
+  }
+
+  private boolean isSharedRuntimeEnabled() {
+    Object enabled = ksqlEngine.getKsqlConfig().get(KsqlConfig.KSQL_SHARED_RUNTIME_ENABLED_CONFIG);
+    return enabled != null && Boolean.parseBoolean(enabled.toString());
+  }
+
+  /**
+   * Picks the compatible shared runtime that already consumes most of the query's sources, so
+   * they are read once for all its queries, and otherwise the least loaded one, creating a new
+   * runtime while the pool is not full. Returns null if the query has to run in its own
+   * KafkaStreams.
+   */
+  private synchronized SharedKafkaStreamsRuntime getSharedRuntime(
+      final Map<String, Object> streamsProperties,
+      final Map<String, String> sources,
+      final boolean addUniqueTimeSuffix,
+      final String applicationIdPrefix) {
+    SharedKafkaStreamsRuntime bestRuntime = null;
+    int bestSharedSources = 0;
+    SharedKafkaStreamsRuntime leastLoaded = null;
+    for (SharedKafkaStreamsRuntime sharedRuntime : sharedRuntimes) {
+      if (!sharedRuntime.canAccept(streamsProperties, sources)) {
+        continue;
+      }
+      int sharedSources = sharedRuntime.getSharedSourceCount(sources);
+      if (sharedSources > bestSharedSources) {
+        bestRuntime = sharedRuntime;
+        bestSharedSources = sharedSources;
+      }
+      if (leastLoaded == null || sharedRuntime.getQueryCount() < leastLoaded.getQueryCount()) {
+        leastLoaded = sharedRuntime;
+      }
+    }
+    if (bestRuntime != null) {
+      return bestRuntime;
+    }
+    if (leastLoaded != null && leastLoaded.getQueryCount() == 0) {
+      return leastLoaded;
+    }
+
+    int poolSize = Integer.parseInt(ksqlEngine.getKsqlConfig()
+                                        .get(KsqlConfig.KSQL_SHARED_RUNTIME_POOL_SIZE_CONFIG)
+                                        .toString());
+    if (sharedRuntimes.size() < poolSize) {
+      String applicationId = applicationIdPrefix + "shared_" + sharedRuntimes.size();
+      if (addUniqueTimeSuffix) {
+        applicationId = addTimeSuffix(applicationId);
+      }
+      SharedKafkaStreamsRuntime sharedRuntime =
+          new SharedKafkaStreamsRuntime(applicationId, streamsProperties);
+      if (sharedRuntimeStartsDeferred) {
+        sharedRuntime.deferStarts();
+      }
+      sharedRuntimes.add(sharedRuntime);
+      return sharedRuntime;
+    }
+    return leastLoaded;
+  }
+
+  // Kafka topic to the name of the data source the plan reads it through
+  private Map<String, String> getSources(final PlanNode planNode) {
+    Map<String, String> sources = new HashMap<>();
+    if (planNode instanceof StructuredDataSourceNode) {
+      StructuredDataSource dataSource =
+          ((StructuredDataSourceNode) planNode).getStructuredDataSource();
+      sources.put(dataSource.getKsqlTopic().getKafkaTopicName(), dataSource.getName());
+    }
+    if (planNode.getSources() != null) {
+      for (PlanNode source : planNode.getSources()) {
+        sources.putAll(getSources(source));
+      }
+    }
+    return sources;
+  }
+
   private KafkaStreams buildStreams(
       final KStreamBuilder builder,
       final String applicationId,
+      final Map<String, Object> streamsProperties
+  ) {
+    Map<String, Object> newStreamsProperties = new HashMap<>(streamsProperties);
+    newStreamsProperties.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+    return new KafkaStreams(builder, new StreamsConfig(newStreamsProperties));
+  }
+
+  private Map<String, Object> getStreamsProperties(
       final KsqlConfig ksqlConfig,
       final Map<String, Object> overriddenProperties
   ) {
-    Map<String, Object> newStreamsProperties = ksqlConfig.getKsqlConfigProps();
+    Map<String, Object> newStreamsProperties = new HashMap<>(ksqlConfig.getKsqlConfigProps());
     newStreamsProperties.putAll(overriddenProperties);
-    newStreamsProperties.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
     newStreamsProperties.put(
         ConsumerConfig.AUTO_OFFSET_RESET_CONFIG,
         ksqlConfig.get(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG));
@@ -390,16 +584,7 @@ public class QueryEngine {
     newStreamsProperties.put(
         StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG,
         ksqlConfig.get(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG));
-    if (ksqlConfig.get(KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX) != null) {
-      newStreamsProperties.put(
-          KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX,
-          ksqlConfig.get(KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX));
-      newStreamsProperties.put(
-          StreamsConfig.TIMESTAMP_EXTRACTOR_CLASS_CONFIG, KsqlTimestampExtractor.class);
-    }
-
-
-    return new KafkaStreams(builder, new StreamsConfig(newStreamsProperties));
+    return newStreamsProperties;
   }
 
   private long getNextQueryId() {
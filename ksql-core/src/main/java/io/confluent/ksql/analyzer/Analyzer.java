@@ -42,6 +42,7 @@ import io.confluent.ksql.parser.tree.SelectItem;
 import io.confluent.ksql.parser.tree.SingleColumn;
 import io.confluent.ksql.parser.tree.Table;
 import io.confluent.ksql.parser.tree.WindowExpression;
+import io.confluent.ksql.parser.tree.WithinExpression;
 import io.confluent.ksql.planner.DefaultTraversalVisitor;
 import io.confluent.ksql.planner.plan.JoinNode;
 import io.confluent.ksql.planner.plan.PlanNodeId;
@@ -53,6 +54,7 @@ import io.confluent.ksql.serde.json.KsqlJsonTopicSerDe;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.Pair;
+import io.confluent.ksql.util.StringUtil;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 
@@ -133,7 +135,11 @@ public class Analyzer extends DefaultTraversalVisitor<Node, AnalysisContext> {
           intoTopicSerde = new KsqlJsonTopicSerDe(null);
           break;
         case DataSource.DELIMITED_SERDE_NAME:
-          intoTopicSerde = new KsqlDelimitedTopicSerDe();
+          Object intoDelimiter = analysis.getIntoProperties()
+              .get(DdlConfig.VALUE_DELIMITER_PROPERTY);
+          intoTopicSerde = intoDelimiter == null
+                           ? new KsqlDelimitedTopicSerDe()
+                           : new KsqlDelimitedTopicSerDe((Character) intoDelimiter);
           break;
         default:
           throw new KsqlException(
@@ -252,7 +258,7 @@ public class Analyzer extends DefaultTraversalVisitor<Node, AnalysisContext> {
     JoinNode joinNode =
         new JoinNode(new PlanNodeId("Join"), joinType, leftSourceKafkaTopicNode,
             rightSourceKafkaTopicNode, leftKeyFieldName, rightKeyFieldName, leftAlias,
-            rightAlias);
+            rightAlias, node.getWithin().map(WithinExpression::getSizeInMillis).orElse(null));
     analysis.setJoin(joinNode);
     return null;
   }
@@ -453,6 +459,13 @@ public class Analyzer extends DefaultTraversalVisitor<Node, AnalysisContext> {
       setIntoTopicName(node);
     }
 
+    if (node.getProperties().get(DdlConfig.VALUE_DELIMITER_PROPERTY) != null) {
+      String intoDelimiter = StringUtil.cleanQuotes(
+          node.getProperties().get(DdlConfig.VALUE_DELIMITER_PROPERTY).toString());
+      analysis.getIntoProperties().put(DdlConfig.VALUE_DELIMITER_PROPERTY,
+                                       KsqlDelimitedTopicSerDe.parseDelimiter(intoDelimiter));
+    }
+
     if (node.getProperties().get(DdlConfig.PARTITION_BY_PROPERTY) != null) {
       String intoPartitionByColumnName = node.getProperties()
           .get(DdlConfig.PARTITION_BY_PROPERTY).toString().toUpperCase();
@@ -551,6 +564,7 @@ public class Analyzer extends DefaultTraversalVisitor<Node, AnalysisContext> {
 
     Set<String> validSet = new HashSet<>();
     validSet.add(DdlConfig.VALUE_FORMAT_PROPERTY.toUpperCase());
+    validSet.add(DdlConfig.VALUE_DELIMITER_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.KAFKA_TOPIC_NAME_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.PARTITION_BY_PROPERTY.toUpperCase());
     validSet.add(KsqlConfig.SINK_TIMESTAMP_COLUMN_NAME.toUpperCase());
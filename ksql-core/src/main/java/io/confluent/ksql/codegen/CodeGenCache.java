@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.IExpressionEvaluator;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Process-wide, bounded cache of the classes Janino compiles for KSQL expressions. Re-planning,
+ * EXPLAIN, command topic replay and repeated transient queries produce the same generated code
+ * over and over, so the cooked evaluators and classes are reused instead of compiled again.
+ *
+ * <p>A cooked {@link IExpressionEvaluator} holds no per-evaluation state and can be shared; for
+ * generated {@link RowProjection}s and {@link ColumnarPredicate}s only the class is cached and
+ * every caller gets its own instance.
+ */
+public class CodeGenCache {
+
+  public static final int MAX_CACHED_EXPRESSIONS = 1000;
+
+  private static final Cache<String, IExpressionEvaluator> expressionEvaluators =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+
+  private static final Cache<String, Class> rowProjectionClasses =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+
+  private static final Cache<String, Class> columnarPredicateClasses =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXPRESSIONS).build();
+
+  private CodeGenCache() {
+  }
+
+  public static IExpressionEvaluator getExpressionEvaluator(final String expressionStr,
+                                                            final String[] parameterNames,
+                                                            final Class[] parameterTypes,
+                                                            final Class expressionType)
+      throws Exception {
+    StringBuilder key = new StringBuilder(expressionType.getName()).append('(');
+    for (int i = 0; i < parameterNames.length; i++) {
+      key.append(parameterNames[i]).append(':').append(parameterTypes[i].getName()).append(',');
+    }
+    key.append(")->").append(expressionStr);
+
+    try {
+      return expressionEvaluators.get(key.toString(), () -> {
+        IExpressionEvaluator ee =
+            CompilerFactoryFactory.getDefaultCompilerFactory().newExpressionEvaluator();
+        ee.setParameters(parameterNames, parameterTypes);
+        ee.setExpressionType(expressionType);
+        ee.cook(expressionStr);
+        return ee;
+      });
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  public static Class getRowProjectionClass(final String classBody) throws Exception {
+    return getClass(rowProjectionClasses, classBody, RowProjection.class);
+  }
+
+  public static Class getColumnarPredicateClass(final String classBody) throws Exception {
+    return getClass(columnarPredicateClasses, classBody, ColumnarPredicate.class);
+  }
+
+  public static void invalidateAll() {
+    expressionEvaluators.invalidateAll();
+    rowProjectionClasses.invalidateAll();
+    columnarPredicateClasses.invalidateAll();
+  }
+
+  private static Class getClass(final Cache<String, Class> classes, final String classBody,
+                                final Class extendedClass) throws Exception {
+    try {
+      return classes.get(classBody, () -> {
+        IClassBodyEvaluator cbe =
+            CompilerFactoryFactory.getDefaultCompilerFactory().newClassBodyEvaluator();
+        cbe.setParentClassLoader(extendedClass.getClassLoader());
+        cbe.setExtendedClass(extendedClass);
+        cbe.cook(classBody);
+        return cbe.getClazz();
+      });
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  private static Exception unwrap(final ExecutionException e) {
+    if (e.getCause() instanceof Exception) {
+      return (Exception) e.getCause();
+    }
+    return e;
+  }
+}
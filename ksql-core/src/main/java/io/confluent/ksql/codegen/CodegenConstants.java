@@ -0,0 +1,86 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The constants the code generated for an expression uses, such as the matchers of its LIKE
+ * patterns and the sets of its IN lists. The generated code refers to each constant by a
+ * parameter name, and the compiler passes the constants in along with the UDF instances, so a
+ * constant lives exactly as long as the compiled expression using it. Equal constants of one
+ * expression share a parameter, and expressions that only differ in their constants generate
+ * the same code.
+ */
+public class CodegenConstants {
+
+  // Not a valid unquoted column name, so it can not clash with the parameter of a column.
+  private static final String PARAMETER_PREFIX = "KSQL_CONSTANT$";
+
+  private final Map<Object, String> parameterNames = new HashMap<>();
+  private final List<Class> types = new ArrayList<>();
+  private final List<Object> values = new ArrayList<>();
+
+  /**
+   * Returns the parameter name of the matcher of the pattern, compiling the pattern unless the
+   * expression used it before.
+   */
+  public String addLikeMatcher(final String pattern, final Character escape) {
+    return add(Arrays.asList(LikeMatcher.class, pattern, escape), LikeMatcher.class,
+               () -> LikeMatcher.compile(pattern, escape));
+  }
+
+  /**
+   * Returns the parameter name of the set, or of an equal set the expression used before.
+   */
+  public String addValueSet(final ValueSet valueSet) {
+    return add(valueSet, ValueSet.class, () -> valueSet);
+  }
+
+  private <T> String add(final Object key, final Class<T> type, final Supplier<T> constant) {
+    String parameterName = parameterNames.get(key);
+    if (parameterName == null) {
+      parameterName = PARAMETER_PREFIX + values.size();
+      parameterNames.put(key, parameterName);
+      types.add(type);
+      values.add(constant.get());
+    }
+    return parameterName;
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public String getParameterName(final int index) {
+    return PARAMETER_PREFIX + index;
+  }
+
+  public Class getType(final int index) {
+    return types.get(index);
+  }
+
+  public Object getValue(final int index) {
+    return values.get(index);
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.GenericRowValueTypeEnforcer;
+import io.confluent.ksql.util.KsqlException;
+import org.apache.kafka.connect.data.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the batch filters generated by {@link ColumnarPredicateCompiler}. The rows of a
+ * batch are first transposed into one primitive vector per referenced column; strings are
+ * replaced by their code in a dictionary built for the batch, so string equality becomes an int
+ * comparison. The generated {@link #filter(int, int[])} is then a single loop over those vectors
+ * that writes the index of every accepted row to a selection vector, without boxing or branching
+ * per column, which leaves the JIT free to unroll and vectorize the comparisons.
+ *
+ * <p>Rows with a null in one of the referenced columns are flagged in a null mask and never
+ * selected by the loop; the caller evaluates them with the row predicate instead, so SQL null
+ * handling stays exactly the same.
+ */
+public abstract class ColumnarPredicate {
+
+  private static final Logger log = LoggerFactory.getLogger(ColumnarPredicate.class);
+
+  enum VectorType {
+    INT, LONG, DOUBLE, BOOLEAN, STRING
+  }
+
+  protected Object[] vectors;
+  protected boolean[] nulls;
+  protected int[] stringLiteralCodes;
+
+  private int[] columnIndexes;
+  private VectorType[] vectorTypes;
+  private String[] stringLiterals;
+  private GenericRowValueTypeEnforcer enforcer;
+  private Map<String, Integer> dictionary;
+  private int capacity;
+
+  final void init(final Schema schema, final int[] columnIndexes, final VectorType[] vectorTypes,
+                  final String[] stringLiterals) {
+    this.columnIndexes = columnIndexes;
+    this.vectorTypes = vectorTypes;
+    this.stringLiterals = stringLiterals;
+    this.stringLiteralCodes = new int[stringLiterals.length];
+    this.enforcer = new GenericRowValueTypeEnforcer(schema);
+    this.dictionary = new HashMap<>();
+    this.vectors = new Object[columnIndexes.length];
+    this.nulls = new boolean[0];
+  }
+
+  /**
+   * Starts a new batch of the given number of rows, which are then loaded with
+   * {@link #load(int, GenericRow)}.
+   */
+  public void reset(final int size) {
+    if (size > capacity) {
+      capacity = Math.max(size, capacity * 2);
+      for (int i = 0; i < vectors.length; i++) {
+        vectors[i] = newVector(vectorTypes[i], capacity);
+      }
+      nulls = new boolean[capacity];
+    }
+    dictionary.clear();
+  }
+
+  public void load(final int index, final GenericRow row) {
+    List<Object> columns = row.getColumns();
+    boolean hasNull = false;
+    for (int i = 0; i < columnIndexes.length; i++) {
+      Object value;
+      try {
+        value = enforcer.enforceFieldType(columnIndexes[i], columns.get(columnIndexes[i]));
+      } catch (KsqlException | NumberFormatException e) {
+        // Left to the row predicate, which reports the invalid value.
+        value = null;
+      }
+      if (value == null) {
+        hasNull = true;
+        continue;
+      }
+      switch (vectorTypes[i]) {
+        case INT:
+          ((int[]) vectors[i])[index] = (Integer) value;
+          break;
+        case LONG:
+          ((long[]) vectors[i])[index] = (Long) value;
+          break;
+        case DOUBLE:
+          ((double[]) vectors[i])[index] = (Double) value;
+          break;
+        case BOOLEAN:
+          ((boolean[]) vectors[i])[index] = (Boolean) value;
+          break;
+        default:
+          ((int[]) vectors[i])[index] = getCode((String) value);
+      }
+    }
+    nulls[index] = hasNull;
+  }
+
+  /**
+   * Whether the loaded row has a null in a referenced column, and so is never selected.
+   */
+  public boolean isNull(final int index) {
+    return nulls[index];
+  }
+
+  /**
+   * Writes the indexes of the loaded rows that pass the filter to the selection vector, in
+   * order, and returns their number, or -1 if the filter failed, for example on an integer
+   * division by zero, and the rows have to be evaluated one by one.
+   */
+  public int select(final int size, final int[] selection) {
+    for (int i = 0; i < stringLiterals.length; i++) {
+      Integer code = dictionary.get(stringLiterals[i]);
+      stringLiteralCodes[i] = code == null ? -1 : code;
+    }
+    try {
+      return filter(size, selection);
+    } catch (RuntimeException e) {
+      log.debug("Columnar filter failed, falling back to row evaluation: " + e.getMessage());
+      return -1;
+    }
+  }
+
+  protected abstract int filter(int size, int[] selection);
+
+  private int getCode(final String value) {
+    Integer code = dictionary.get(value);
+    if (code == null) {
+      code = dictionary.size();
+      dictionary.put(value, code);
+    }
+    return code;
+  }
+
+  private static Object newVector(final VectorType vectorType, final int capacity) {
+    switch (vectorType) {
+      case LONG:
+        return new long[capacity];
+      case DOUBLE:
+        return new double[capacity];
+      case BOOLEAN:
+        return new boolean[capacity];
+      default:
+        return new int[capacity];
+    }
+  }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
+import io.confluent.ksql.parser.tree.ArithmeticUnaryExpression;
+import io.confluent.ksql.parser.tree.AstVisitor;
+import io.confluent.ksql.parser.tree.BooleanLiteral;
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.DoubleLiteral;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.IsNotNullPredicate;
+import io.confluent.ksql.parser.tree.IsNullPredicate;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.Node;
+import io.confluent.ksql.parser.tree.NotExpression;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.StringLiteral;
+import io.confluent.ksql.util.Pair;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiles a WHERE clause into a {@link ColumnarPredicate}. Only comparisons, boolean logic and
+ * arithmetic over INTEGER, BIGINT, DOUBLE and BOOLEAN columns and literals, and equality of
+ * VARCHAR columns and literals are supported; for any other expression no columnar predicate is
+ * built and the rows are filtered one at a time.
+ */
+public class ColumnarPredicateCompiler {
+
+  private static final Logger log = LoggerFactory.getLogger(ColumnarPredicateCompiler.class);
+
+  private final Schema schema;
+  // Input column index to its vector
+  private final Map<Integer, Integer> vectorSlots = new LinkedHashMap<>();
+  private final List<ColumnarPredicate.VectorType> vectorTypes = new ArrayList<>();
+  private final List<String> stringLiterals = new ArrayList<>();
+
+  private ColumnarPredicateCompiler(final Schema schema) {
+    this.schema = schema;
+  }
+
+  public static Optional<ColumnarPredicate> compile(final Expression filterExpression,
+                                                    final Schema schema) {
+    return new ColumnarPredicateCompiler(schema).compile(filterExpression);
+  }
+
+  private Optional<ColumnarPredicate> compile(final Expression filterExpression) {
+    Pair<String, Schema> condition;
+    try {
+      condition = new Formatter().process(filterExpression, null);
+    } catch (UnsupportedOperationException e) {
+      log.debug("No columnar filter for {}: {}", filterExpression, e.getMessage());
+      return Optional.empty();
+    }
+    if (condition.getRight() != Schema.BOOLEAN_SCHEMA) {
+      return Optional.empty();
+    }
+
+    StringBuilder body = new StringBuilder();
+    body.append("protected int filter(final int size, final int[] selection) {\n");
+    for (int slot = 0; slot < vectorTypes.size(); slot++) {
+      String vectorType = vectorTypes.get(slot) == ColumnarPredicate.VectorType.LONG ? "long[]"
+          : vectorTypes.get(slot) == ColumnarPredicate.VectorType.DOUBLE ? "double[]"
+          : vectorTypes.get(slot) == ColumnarPredicate.VectorType.BOOLEAN ? "boolean[]"
+          : "int[]";
+      body.append("  final " + vectorType + " v" + slot + " = (" + vectorType + ") vectors["
+                  + slot + "];\n");
+    }
+    for (int i = 0; i < stringLiterals.size(); i++) {
+      body.append("  final int k" + i + " = stringLiteralCodes[" + i + "];\n");
+    }
+    body.append("  final boolean[] nullMask = nulls;\n");
+    body.append("  int selected = 0;\n");
+    body.append("  for (int i = 0; i < size; i++) {\n");
+    body.append("    selection[selected] = i;\n");
+    body.append("    selected += (!nullMask[i] && " + condition.getLeft() + ") ? 1 : 0;\n");
+    body.append("  }\n");
+    body.append("  return selected;\n");
+    body.append("}\n");
+
+    try {
+      ColumnarPredicate columnarPredicate =
+          (ColumnarPredicate) CodeGenCache.getColumnarPredicateClass(body.toString())
+              .newInstance();
+      int[] columnIndexes = new int[vectorSlots.size()];
+      for (Map.Entry<Integer, Integer> vectorSlot : vectorSlots.entrySet()) {
+        columnIndexes[vectorSlot.getValue()] = vectorSlot.getKey();
+      }
+      columnarPredicate.init(
+          schema, columnIndexes,
+          vectorTypes.toArray(new ColumnarPredicate.VectorType[vectorTypes.size()]),
+          stringLiterals.toArray(new String[stringLiterals.size()]));
+      return Optional.of(columnarPredicate);
+    } catch (Exception e) {
+      // For example a comparison of a number and a boolean, which the row evaluator rejects too.
+      log.debug("Could not compile the columnar filter for {}: {}", filterExpression,
+                e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private String getVector(final Field field) {
+    ColumnarPredicate.VectorType vectorType;
+    if (field.schema() == Schema.INT32_SCHEMA) {
+      vectorType = ColumnarPredicate.VectorType.INT;
+    } else if (field.schema() == Schema.INT64_SCHEMA) {
+      vectorType = ColumnarPredicate.VectorType.LONG;
+    } else if (field.schema() == Schema.FLOAT64_SCHEMA) {
+      vectorType = ColumnarPredicate.VectorType.DOUBLE;
+    } else if (field.schema() == Schema.BOOLEAN_SCHEMA) {
+      vectorType = ColumnarPredicate.VectorType.BOOLEAN;
+    } else if (field.schema() == Schema.STRING_SCHEMA) {
+      vectorType = ColumnarPredicate.VectorType.STRING;
+    } else {
+      throw new UnsupportedOperationException("column type " + field.schema().type());
+    }
+    Integer slot = vectorSlots.get(field.index());
+    if (slot == null) {
+      slot = vectorTypes.size();
+      vectorSlots.put(field.index(), slot);
+      vectorTypes.add(vectorType);
+    }
+    return "v" + slot + "[i]";
+  }
+
+  private static boolean isNumber(final Schema schema) {
+    return schema == Schema.INT32_SCHEMA || schema == Schema.INT64_SCHEMA
+           || schema == Schema.FLOAT64_SCHEMA;
+  }
+
+  private class Formatter extends AstVisitor<Pair<String, Schema>, Void> {
+
+    @Override
+    protected Pair<String, Schema> visitNode(final Node node, final Void context) {
+      throw new UnsupportedOperationException(node.getClass().getSimpleName());
+    }
+
+    @Override
+    protected Pair<String, Schema> visitQualifiedNameReference(final QualifiedNameReference node,
+                                                               final Void context) {
+      return visitColumn(node.getName().getSuffix());
+    }
+
+    @Override
+    protected Pair<String, Schema> visitDereferenceExpression(final DereferenceExpression node,
+                                                              final Void context) {
+      return visitColumn(node.toString());
+    }
+
+    private Pair<String, Schema> visitColumn(final String fieldName) {
+      Optional<Field> field = SchemaUtil.getFieldByName(schema, fieldName);
+      if (!field.isPresent()) {
+        throw new UnsupportedOperationException("unknown column " + fieldName);
+      }
+      return new Pair<>(getVector(field.get()), field.get().schema());
+    }
+
+    @Override
+    protected Pair<String, Schema> visitLongLiteral(final LongLiteral node, final Void context) {
+      return new Pair<>(node.getValue() + "L", Schema.INT64_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitDoubleLiteral(final DoubleLiteral node,
+                                                      final Void context) {
+      return new Pair<>(Double.toString(node.getValue()), Schema.FLOAT64_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitBooleanLiteral(final BooleanLiteral node,
+                                                       final Void context) {
+      return new Pair<>(String.valueOf(node.getValue()), Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitStringLiteral(final StringLiteral node,
+                                                      final Void context) {
+      int index = stringLiterals.indexOf(node.getValue());
+      if (index < 0) {
+        index = stringLiterals.size();
+        stringLiterals.add(node.getValue());
+      }
+      return new Pair<>("k" + index, Schema.STRING_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitComparisonExpression(final ComparisonExpression node,
+                                                             final Void context) {
+      Pair<String, Schema> left = process(node.getLeft(), context);
+      Pair<String, Schema> right = process(node.getRight(), context);
+      String operator;
+      switch (node.getType()) {
+        case EQUAL:
+          operator = "==";
+          break;
+        case NOT_EQUAL:
+          operator = "!=";
+          break;
+        case LESS_THAN:
+        case LESS_THAN_OR_EQUAL:
+        case GREATER_THAN:
+        case GREATER_THAN_OR_EQUAL:
+          operator = node.getType().getValue();
+          break;
+        default:
+          throw new UnsupportedOperationException(node.getType().getValue());
+      }
+      if (left.getRight() == Schema.STRING_SCHEMA || right.getRight() == Schema.STRING_SCHEMA) {
+        // Dictionary codes can only tell whether two strings are equal, and a literal missing
+        // from the dictionary of the batch has the code -1, which only a column can not match.
+        if (left.getRight() != right.getRight() || !("==".equals(operator)
+                                                     || "!=".equals(operator))
+            || (left.getLeft().startsWith("k") && right.getLeft().startsWith("k"))) {
+          throw new UnsupportedOperationException("string comparison " + node);
+        }
+      }
+      return new Pair<>("(" + left.getLeft() + " " + operator + " " + right.getLeft() + ")",
+                        Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitLogicalBinaryExpression(
+        final LogicalBinaryExpression node, final Void context) {
+      String operator = node.getType() == LogicalBinaryExpression.Type.AND ? " && " : " || ";
+      return new Pair<>("(" + process(node.getLeft(), context).getLeft() + operator
+                        + process(node.getRight(), context).getLeft() + ")",
+                        Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitNotExpression(final NotExpression node,
+                                                      final Void context) {
+      return new Pair<>("(!" + process(node.getValue(), context).getLeft() + ")",
+                        Schema.BOOLEAN_SCHEMA);
+    }
+
+    // The selected rows have no nulls in their columns, so the null checks are constants.
+    @Override
+    protected Pair<String, Schema> visitIsNullPredicate(final IsNullPredicate node,
+                                                        final Void context) {
+      process(node.getValue(), context);
+      return new Pair<>("false", Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitIsNotNullPredicate(final IsNotNullPredicate node,
+                                                           final Void context) {
+      process(node.getValue(), context);
+      return new Pair<>("true", Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitArithmeticUnary(final ArithmeticUnaryExpression node,
+                                                        final Void context) {
+      Pair<String, Schema> value = process(node.getValue(), context);
+      if (!isNumber(value.getRight())) {
+        throw new UnsupportedOperationException("sign of " + node.getValue());
+      }
+      String sign = node.getSign() == ArithmeticUnaryExpression.Sign.MINUS ? "-" : "+";
+      return new Pair<>("(" + sign + value.getLeft() + ")", value.getRight());
+    }
+
+    @Override
+    protected Pair<String, Schema> visitArithmeticBinary(final ArithmeticBinaryExpression node,
+                                                         final Void context) {
+      Pair<String, Schema> left = process(node.getLeft(), context);
+      Pair<String, Schema> right = process(node.getRight(), context);
+      if (!isNumber(left.getRight()) || !isNumber(right.getRight())) {
+        throw new UnsupportedOperationException("arithmetic on " + node);
+      }
+      Schema resultType;
+      if (left.getRight() == Schema.FLOAT64_SCHEMA || right.getRight() == Schema.FLOAT64_SCHEMA) {
+        resultType = Schema.FLOAT64_SCHEMA;
+      } else if (left.getRight() == Schema.INT64_SCHEMA
+                 || right.getRight() == Schema.INT64_SCHEMA) {
+        resultType = Schema.INT64_SCHEMA;
+      } else {
+        resultType = Schema.INT32_SCHEMA;
+      }
+      return new Pair<>("(" + left.getLeft() + " " + node.getType().getValue() + " "
+                        + right.getLeft() + ")", resultType);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.physical.GenericRow;
+
+/**
+ * Projection made only of column references and literals, so nothing needs to be compiled.
+ */
+class CopyRowProjection extends RowProjection {
+
+  private final int width;
+
+  CopyRowProjection(final int width) {
+    this.width = width;
+  }
+
+  @Override
+  public GenericRow project(final GenericRow row) {
+    Object[] values = new Object[width];
+    copyColumns(row.getColumns(), values);
+    return newRow(values);
+  }
+}
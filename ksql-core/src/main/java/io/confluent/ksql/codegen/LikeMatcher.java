@@ -0,0 +1,217 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.util.KsqlException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches strings against a constant LIKE pattern. A pattern is compiled once, when the
+ * expression using it is compiled, into the cheapest matcher that handles it: an equality check
+ * for a pattern without wildcards, a chain of indexOf calls over the literal segments of a
+ * pattern with only %, and a wildcard matcher for patterns with _. Generated code receives the
+ * matcher as a parameter, see {@link CodegenConstants}.
+ */
+public abstract class LikeMatcher {
+
+  private static final byte LITERAL = 0;
+  private static final byte ANY_CHARACTER = 1;
+  private static final byte ANY_CHARACTERS = 2;
+
+  public abstract boolean matches(String value);
+
+  /**
+   * @param escape the character that makes the following %, _ or escape character literal, or
+   *               null if the pattern has no escape character
+   */
+  public static LikeMatcher compile(final String pattern, final Character escape) {
+    StringBuilder characters = new StringBuilder();
+    List<Byte> kinds = new ArrayList<>();
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (escape != null && c == escape) {
+        i++;
+        if (i == pattern.length() || (pattern.charAt(i) != '%' && pattern.charAt(i) != '_'
+                                      && pattern.charAt(i) != escape)) {
+          throw new KsqlException("Invalid escape sequence in LIKE pattern: " + pattern);
+        }
+        characters.append(pattern.charAt(i));
+        kinds.add(LITERAL);
+      } else if (c == '%') {
+        // Consecutive % match the same as one.
+        if (kinds.isEmpty() || kinds.get(kinds.size() - 1) != ANY_CHARACTERS) {
+          characters.append(c);
+          kinds.add(ANY_CHARACTERS);
+        }
+      } else if (c == '_') {
+        characters.append(c);
+        kinds.add(ANY_CHARACTER);
+      } else {
+        characters.append(c);
+        kinds.add(LITERAL);
+      }
+    }
+
+    if (kinds.contains(ANY_CHARACTER)) {
+      byte[] kindArray = new byte[kinds.size()];
+      for (int i = 0; i < kindArray.length; i++) {
+        kindArray[i] = kinds.get(i);
+      }
+      return new WildcardMatcher(characters.toString().toCharArray(), kindArray);
+    }
+    if (!kinds.contains(ANY_CHARACTERS)) {
+      return new EqualsMatcher(characters.toString());
+    }
+
+    List<String> segments = new ArrayList<>();
+    StringBuilder segment = new StringBuilder();
+    for (int i = 0; i < kinds.size(); i++) {
+      if (kinds.get(i) == ANY_CHARACTERS) {
+        if (segment.length() > 0) {
+          segments.add(segment.toString());
+          segment.setLength(0);
+        }
+      } else {
+        segment.append(characters.charAt(i));
+      }
+    }
+    if (segment.length() > 0) {
+      segments.add(segment.toString());
+    }
+    return new SegmentMatcher(segments.toArray(new String[segments.size()]),
+                              kinds.get(0) != ANY_CHARACTERS,
+                              kinds.get(kinds.size() - 1) != ANY_CHARACTERS);
+  }
+
+  private static class EqualsMatcher extends LikeMatcher {
+
+    private final String literal;
+
+    EqualsMatcher(final String literal) {
+      this.literal = literal;
+    }
+
+    @Override
+    public boolean matches(final String value) {
+      return value.equals(literal);
+    }
+  }
+
+  /**
+   * Matches a pattern of literal segments separated by %. Taking the first occurrence of each
+   * segment never rules out a match, so no backtracking is needed.
+   */
+  private static class SegmentMatcher extends LikeMatcher {
+
+    private final String[] segments;
+    private final boolean anchoredAtStart;
+    private final boolean anchoredAtEnd;
+    private final int minimumLength;
+
+    SegmentMatcher(final String[] segments, final boolean anchoredAtStart,
+                   final boolean anchoredAtEnd) {
+      this.segments = segments;
+      this.anchoredAtStart = anchoredAtStart;
+      this.anchoredAtEnd = anchoredAtEnd;
+      int length = 0;
+      for (String segment : segments) {
+        length += segment.length();
+      }
+      this.minimumLength = length;
+    }
+
+    @Override
+    public boolean matches(final String value) {
+      if (value.length() < minimumLength) {
+        return false;
+      }
+      int first = 0;
+      int last = segments.length;
+      int start = 0;
+      int end = value.length();
+      if (anchoredAtStart) {
+        if (!value.startsWith(segments[0])) {
+          return false;
+        }
+        start = segments[0].length();
+        first++;
+      }
+      if (anchoredAtEnd) {
+        if (!value.endsWith(segments[last - 1])) {
+          return false;
+        }
+        last--;
+        end -= segments[last].length();
+      }
+      for (int i = first; i < last; i++) {
+        int index = value.indexOf(segments[i], start);
+        if (index < 0 || index + segments[i].length() > end) {
+          return false;
+        }
+        start = index + segments[i].length();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Matches patterns with _ in one pass over the value, going back only to just after the
+   * last % when the characters after it stop matching.
+   */
+  private static class WildcardMatcher extends LikeMatcher {
+
+    private final char[] characters;
+    private final byte[] kinds;
+
+    WildcardMatcher(final char[] characters, final byte[] kinds) {
+      this.characters = characters;
+      this.kinds = kinds;
+    }
+
+    @Override
+    public boolean matches(final String value) {
+      int patternIndex = 0;
+      int valueIndex = 0;
+      int lastAnyIndex = -1;
+      int lastAnyValueIndex = 0;
+      while (valueIndex < value.length()) {
+        if (patternIndex < kinds.length
+            && (kinds[patternIndex] == ANY_CHARACTER
+                || (kinds[patternIndex] == LITERAL
+                    && characters[patternIndex] == value.charAt(valueIndex)))) {
+          patternIndex++;
+          valueIndex++;
+        } else if (patternIndex < kinds.length && kinds[patternIndex] == ANY_CHARACTERS) {
+          lastAnyIndex = patternIndex++;
+          lastAnyValueIndex = valueIndex;
+        } else if (lastAnyIndex >= 0) {
+          patternIndex = lastAnyIndex + 1;
+          valueIndex = ++lastAnyValueIndex;
+        } else {
+          return false;
+        }
+      }
+      while (patternIndex < kinds.length && kinds[patternIndex] == ANY_CHARACTERS) {
+        patternIndex++;
+      }
+      return patternIndex == kinds.length;
+    }
+  }
+}
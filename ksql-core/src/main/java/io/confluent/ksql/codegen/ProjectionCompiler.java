@@ -0,0 +1,303 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.codegen.SubexpressionEliminator.Subexpression;
+import io.confluent.ksql.function.KsqlFunctions;
+import io.confluent.ksql.function.udf.Kudf;
+import io.confluent.ksql.parser.rewrite.ConstantFoldingRewriter;
+import io.confluent.ksql.parser.tree.BooleanLiteral;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.DoubleLiteral;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.StringLiteral;
+import io.confluent.ksql.util.ExpressionTypeManager;
+import io.confluent.ksql.util.ExpressionUtil;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.Pair;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiles all the expressions of a projection into one generated {@link RowProjection} class,
+ * instead of cooking a separate expression evaluator per output column. Column references and
+ * literals are classified up front and never go through code generation. Constant
+ * subexpressions are folded before the code is generated.
+ */
+public class ProjectionCompiler {
+
+  public static final int COMPUTED_COLUMN = -1;
+  public static final int LITERAL_COLUMN = -2;
+
+  private final Schema schema;
+
+  public ProjectionCompiler(final Schema schema) {
+    this.schema = schema;
+  }
+
+  public RowProjection compile(final List<Pair<String, Expression>> expressionPairList)
+      throws Exception {
+    return compile(null, expressionPairList);
+  }
+
+  /**
+   * Compiles a filter and the projection of the rows passing it into one class. Its project
+   * method returns null for the rows the filter drops, and the subexpressions the filter and the
+   * columns have in common are only evaluated once.
+   */
+  public RowProjection compile(final Expression filter,
+                               final List<Pair<String, Expression>> expressionPairList)
+      throws Exception {
+    ExpressionUtil expressionUtil = new ExpressionUtil();
+    ExpressionTypeManager expressionTypeManager = new ExpressionTypeManager(schema);
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
+
+    int width = expressionPairList.size();
+    int[] copyIndexes = new int[width];
+    Object[] literals = new Object[width];
+    List<Integer> computedIndexes = new ArrayList<>();
+    List<Expression> computedExpressions = new ArrayList<>();
+
+    Expression foldedFilter = filter == null ? null : ConstantFoldingRewriter.fold(filter);
+    Map<String, Class> filterParameterMap = foldedFilter == null
+                                            ? new LinkedHashMap<>()
+                                            : expressionUtil.getParameterInfo(foldedFilter,
+                                                                              schema);
+    Map<String, Class> parameterMap = new LinkedHashMap<>(filterParameterMap);
+    List<Schema> expressionTypes = new ArrayList<>();
+    for (int i = 0; i < width; i++) {
+      Expression expression = ConstantFoldingRewriter.fold(expressionPairList.get(i).getRight());
+      Schema expressionType = expressionTypeManager.getExpressionType(expression);
+      schemaBuilder.field(expressionPairList.get(i).getLeft(), expressionType);
+      expressionTypes.add(expressionType);
+
+      Optional<Field> columnField = getReferencedColumn(expression);
+      if (columnField.isPresent()) {
+        copyIndexes[i] = columnField.get().index();
+      } else if (isLiteral(expression)) {
+        copyIndexes[i] = LITERAL_COLUMN;
+        literals[i] = getLiteralValue(expression);
+      } else {
+        copyIndexes[i] = COMPUTED_COLUMN;
+        computedIndexes.add(i);
+        computedExpressions.add(expression);
+        parameterMap.putAll(expressionUtil.getParameterInfo(expression, schema));
+      }
+    }
+
+    if (foldedFilter == null && computedIndexes.isEmpty()) {
+      RowProjection rowProjection = new CopyRowProjection(width);
+      rowProjection.init(schema, schemaBuilder.build(), new Kudf[0], new Object[0], copyIndexes,
+                         literals);
+      return rowProjection;
+    }
+
+    // The common subexpressions are typed and referenced like extra input columns.
+    SubexpressionEliminator eliminator =
+        new SubexpressionEliminator(foldedFilter, computedExpressions);
+    Schema codegenSchema = schema;
+    List<Schema> subexpressionTypes = new ArrayList<>();
+    for (Subexpression subexpression : eliminator.getSubexpressions()) {
+      Schema subexpressionType = new ExpressionTypeManager(codegenSchema)
+          .getExpressionType(subexpression.getExpression());
+      subexpressionTypes.add(subexpressionType);
+      codegenSchema = addField(codegenSchema, subexpression.getName(), subexpressionType);
+    }
+
+    List<Kudf> udfs = new ArrayList<>();
+    CodegenConstants constants = new CodegenConstants();
+    StringBuilder body = new StringBuilder();
+    body.append("public io.confluent.ksql.physical.GenericRow project("
+                + "io.confluent.ksql.physical.GenericRow row) {\n");
+    body.append("  java.util.List columns = row.getColumns();\n");
+    for (Map.Entry<String, Class> parameter : parameterMap.entrySet()) {
+      String parameterName = parameter.getKey();
+      String parameterType = parameter.getValue().getCanonicalName();
+      if (SchemaUtil.getFieldIndexByName(schema, parameterName) < 0) {
+        body.append("  final " + parameterType + " " + parameterName + " = (" + parameterType
+                    + ") udfs[" + udfs.size() + "];\n");
+        udfs.add(KsqlFunctions.getFunction(parameterName).newKudf());
+      } else {
+        body.append("  " + parameterType + " " + parameterName + " = null;\n");
+      }
+    }
+    for (int i = 0; i < subexpressionTypes.size(); i++) {
+      body.append("  " + SchemaUtil.getJavaType(subexpressionTypes.get(i)).getCanonicalName()
+                  + " " + eliminator.getSubexpressions().get(i).getName() + " = null;\n");
+    }
+    // The constants are only known once all the expressions are generated.
+    int constantsPosition = body.length();
+
+    if (foldedFilter != null) {
+      // As with a separate filter, a row is dropped if a column the filter reads can not be
+      // converted or the filter throws.
+      body.append("  try {\n");
+      for (Map.Entry<String, Class> parameter : filterParameterMap.entrySet()) {
+        appendColumnRead(body, parameter.getKey(), parameter.getValue(), "    ");
+      }
+      for (Subexpression subexpression : eliminator.getSubexpressions()) {
+        if (subexpression.isEvaluatedByFilter()) {
+          body.append("    " + subexpression.getName() + " = "
+                      + subexpression.getExpression().getCodegenString(codegenSchema, constants)
+                      + ";\n");
+        }
+      }
+      body.append("    if (!(" + eliminator.getFilter().getCodegenString(codegenSchema, constants)
+                  + ")) {\n");
+      body.append("      return null;\n");
+      body.append("    }\n");
+      body.append("  } catch (Exception e) {\n");
+      body.append("    onFilterError(e);\n");
+      body.append("    return null;\n");
+      body.append("  }\n");
+    }
+
+    for (Map.Entry<String, Class> parameter : parameterMap.entrySet()) {
+      String parameterName = parameter.getKey();
+      int columnIndex = SchemaUtil.getFieldIndexByName(schema, parameterName);
+      if (columnIndex < 0 || filterParameterMap.containsKey(parameterName)) {
+        continue;
+      }
+      body.append("  try {\n");
+      appendColumnRead(body, parameterName, parameter.getValue(), "    ");
+      body.append("  } catch (Exception e) {\n");
+      body.append("    onConversionError(" + columnIndex + ", e);\n");
+      body.append("  }\n");
+    }
+
+    // A subexpression that fails is an error of every column using it, not of the row.
+    for (Subexpression subexpression : eliminator.getSubexpressions()) {
+      if (subexpression.isEvaluatedByFilter()) {
+        continue;
+      }
+      String name = subexpression.getName();
+      body.append("  Exception " + name + "_ERROR = null;\n");
+      for (String dependency : subexpression.getDependencies()) {
+        body.append("  if (" + name + "_ERROR == null) {\n");
+        body.append("    " + name + "_ERROR = " + dependency + "_ERROR;\n");
+        body.append("  }\n");
+      }
+      body.append("  if (" + name + "_ERROR == null) {\n");
+      body.append("    try {\n");
+      body.append("      " + name + " = "
+                  + subexpression.getExpression().getCodegenString(codegenSchema, constants)
+                  + ";\n");
+      body.append("    } catch (Exception e) {\n");
+      body.append("      " + name + "_ERROR = e;\n");
+      body.append("    }\n");
+      body.append("  }\n");
+    }
+
+    body.append("  Object[] values = new Object[" + width + "];\n");
+    body.append("  copyColumns(columns, values);\n");
+    for (int j = 0; j < computedIndexes.size(); j++) {
+      int i = computedIndexes.get(j);
+      Expression expression = eliminator.getColumns().get(j);
+      String expressionType = SchemaUtil.getJavaType(expressionTypes.get(i)).getCanonicalName();
+      body.append("  try {\n");
+      for (String dependency : eliminator.getDependencies(expression)) {
+        body.append("    if (" + dependency + "_ERROR != null) {\n");
+        body.append("      throw " + dependency + "_ERROR;\n");
+        body.append("    }\n");
+      }
+      body.append("    " + expressionType + " value" + i + " = "
+                  + expression.getCodegenString(codegenSchema, constants) + ";\n");
+      body.append("    values[" + i + "] = value" + i + ";\n");
+      body.append("  } catch (Exception e) {\n");
+      body.append("    onColumnError(" + i + ", e);\n");
+      body.append("  }\n");
+    }
+    body.append("  return newRow(values);\n");
+    body.append("}\n");
+
+    StringBuilder constantDeclarations = new StringBuilder();
+    Object[] constantValues = new Object[constants.size()];
+    for (int i = 0; i < constants.size(); i++) {
+      String constantType = constants.getType(i).getCanonicalName();
+      constantDeclarations.append("  final " + constantType + " " + constants.getParameterName(i)
+                                  + " = (" + constantType + ") constants[" + i + "];\n");
+      constantValues[i] = constants.getValue(i);
+    }
+    body.insert(constantsPosition, constantDeclarations);
+
+    RowProjection rowProjection =
+        (RowProjection) CodeGenCache.getRowProjectionClass(body.toString()).newInstance();
+    rowProjection.init(schema, schemaBuilder.build(), udfs.toArray(new Kudf[udfs.size()]),
+                       constantValues, copyIndexes, literals);
+    return rowProjection;
+  }
+
+  private void appendColumnRead(final StringBuilder body, final String parameterName,
+                                final Class parameterClass, final String indent) {
+    String parameterType = parameterClass.getCanonicalName();
+    int columnIndex = SchemaUtil.getFieldIndexByName(schema, parameterName);
+    if (columnIndex < 0) {
+      return;
+    }
+    body.append(indent + parameterName + " = (" + parameterType
+                + ") enforcer.enforceFieldType(" + columnIndex + ", columns.get("
+                + columnIndex + "));\n");
+  }
+
+  private static Schema addField(final Schema schema, final String name, final Schema type) {
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
+    for (Field field : schema.fields()) {
+      schemaBuilder.field(field.name(), field.schema());
+    }
+    return schemaBuilder.field(name, type).build();
+  }
+
+  private Optional<Field> getReferencedColumn(final Expression expression) {
+    if (expression instanceof QualifiedNameReference) {
+      return SchemaUtil.getFieldByName(
+          schema, ((QualifiedNameReference) expression).getName().getSuffix());
+    } else if (expression instanceof DereferenceExpression) {
+      return SchemaUtil.getFieldByName(schema, expression.toString());
+    }
+    return Optional.empty();
+  }
+
+  private boolean isLiteral(final Expression expression) {
+    return expression instanceof StringLiteral
+           || expression instanceof LongLiteral
+           || expression instanceof DoubleLiteral
+           || expression instanceof BooleanLiteral;
+  }
+
+  private Object getLiteralValue(final Expression expression) {
+    if (expression instanceof StringLiteral) {
+      return ((StringLiteral) expression).getValue();
+    } else if (expression instanceof LongLiteral) {
+      return ((LongLiteral) expression).getValue();
+    } else if (expression instanceof DoubleLiteral) {
+      return ((DoubleLiteral) expression).getValue();
+    } else if (expression instanceof BooleanLiteral) {
+      return ((BooleanLiteral) expression).getValue();
+    }
+    throw new KsqlException("Not a literal: " + expression);
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+/**
+ * The range checks BETWEEN predicates compile to. The checked value is an argument, so the
+ * generated code evaluates it once however complex it is.
+ */
+public final class RangeCheck {
+
+  private RangeCheck() {
+  }
+
+  public static boolean isBetween(final long value, final long min, final long max) {
+    return value >= min && value <= max;
+  }
+
+  public static boolean isBetween(final double value, final double min, final double max) {
+    return value >= min && value <= max;
+  }
+
+  public static boolean isBetween(final String value, final String min, final String max) {
+    return value.compareTo(min) >= 0 && value.compareTo(max) <= 0;
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.function.udf.Kudf;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.GenericRowValueTypeEnforcer;
+import org.apache.kafka.connect.data.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Base class of the row mappers generated by {@link ProjectionCompiler}. A generated subclass
+ * reads every referenced input column once and evaluates all the projected expressions of a
+ * SELECT in a single method call. Plain column references and literals are not compiled; they
+ * are filled in by {@link #copyColumns(List, Object[])} as index moves and shared constants.
+ */
+public abstract class RowProjection {
+
+  private static final Logger log = LoggerFactory.getLogger(RowProjection.class);
+
+  protected Kudf[] udfs;
+  protected Object[] constants;
+  protected GenericRowValueTypeEnforcer enforcer;
+
+  private Schema inputSchema;
+  private Schema resultSchema;
+  private int[] copyIndexes;
+  private Object[] literals;
+
+  final void init(final Schema inputSchema, final Schema resultSchema, final Kudf[] udfs,
+                  final Object[] constants, final int[] copyIndexes, final Object[] literals) {
+    this.inputSchema = inputSchema;
+    this.resultSchema = resultSchema;
+    this.udfs = udfs;
+    this.constants = constants;
+    this.enforcer = new GenericRowValueTypeEnforcer(inputSchema);
+    this.copyIndexes = copyIndexes;
+    this.literals = literals;
+  }
+
+  /**
+   * Projects a row, or returns null if the projection was compiled with a filter that drops it.
+   */
+  public abstract GenericRow project(GenericRow row);
+
+  public Schema getInputSchema() {
+    return inputSchema;
+  }
+
+  public Schema getResultSchema() {
+    return resultSchema;
+  }
+
+  /**
+   * Fills in the output columns that are plain input column references or literals. Entries
+   * of copyIndexes are the input column index of a copied column, {@link
+   * ProjectionCompiler#LITERAL_COLUMN} for a literal and {@link ProjectionCompiler#COMPUTED_COLUMN}
+   * for a column the generated code evaluates itself.
+   */
+  protected void copyColumns(final List columns, final Object[] values) {
+    for (int i = 0; i < copyIndexes.length; i++) {
+      int copyIndex = copyIndexes[i];
+      if (copyIndex >= 0) {
+        values[i] = columns.get(copyIndex);
+      } else if (copyIndex == ProjectionCompiler.LITERAL_COLUMN) {
+        values[i] = literals[i];
+      }
+    }
+  }
+
+  protected GenericRow newRow(final Object[] values) {
+    return new GenericRow(values);
+  }
+
+  protected void onConversionError(final int columnIndex, final Exception e) {
+    log.error("Error reading column " + inputSchema.fields().get(columnIndex).name() + " : "
+              + e.getMessage());
+  }
+
+  protected void onFilterError(final Exception e) {
+    log.error("Error evaluating the filter, dropping the row : " + e.getMessage());
+  }
+
+  protected void onColumnError(final int index, final Exception e) {
+    log.error("Error calculating column with index " + index + " : "
+              + resultSchema.fields().get(index).name());
+  }
+}
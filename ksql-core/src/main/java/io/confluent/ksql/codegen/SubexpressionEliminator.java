@@ -0,0 +1,314 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.function.KsqlFunction;
+import io.confluent.ksql.function.KsqlFunctions;
+import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
+import io.confluent.ksql.parser.tree.ArithmeticUnaryExpression;
+import io.confluent.ksql.parser.tree.Cast;
+import io.confluent.ksql.parser.tree.DefaultExpressionTraversalVisitor;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.ExpressionRewriter;
+import io.confluent.ksql.parser.tree.ExpressionTreeRewriter;
+import io.confluent.ksql.parser.tree.FunctionCall;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.QualifiedName;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.SubscriptExpression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the subexpressions that a filter and the computed columns of a projection evaluate more
+ * than once for the same row, so that the generated code evaluates each of them once into a
+ * local. Only UDF calls, casts and subscripts, and arithmetic over them, are worth a local;
+ * subexpressions calling a non-deterministic function are left alone.
+ *
+ * <p>An occurrence is only replaced where the subexpression is evaluated whatever the values of
+ * the row are: not on the right side of an AND or OR, which may never be evaluated, unless the
+ * filter evaluates it unconditionally before any column. The replaced occurrences become
+ * references to {@link #SUBEXPRESSION_PREFIX} names, which are listed inner subexpressions first.
+ */
+public class SubexpressionEliminator {
+
+  public static final String SUBEXPRESSION_PREFIX = "KSQL_SUBEXPRESSION_";
+
+  public static class Subexpression {
+
+    private final String name;
+    private final Expression expression;
+    private final boolean evaluatedByFilter;
+    private final Set<String> dependencies;
+
+    Subexpression(final String name, final Expression expression,
+                  final boolean evaluatedByFilter, final Set<String> dependencies) {
+      this.name = name;
+      this.expression = expression;
+      this.evaluatedByFilter = evaluatedByFilter;
+      this.dependencies = dependencies;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * The subexpression, with references to the subexpressions listed before it.
+     */
+    public Expression getExpression() {
+      return expression;
+    }
+
+    /**
+     * Whether the filter evaluates the subexpression for every row, so it can be evaluated
+     * before the filter and a failure drops the row.
+     */
+    public boolean isEvaluatedByFilter() {
+      return evaluatedByFilter;
+    }
+
+    /**
+     * The subexpressions not evaluated by the filter that this one references.
+     */
+    public Set<String> getDependencies() {
+      return dependencies;
+    }
+  }
+
+  private final Expression filter;
+  private final List<Expression> columns;
+  private final List<Subexpression> subexpressions;
+  private final Map<String, Subexpression> subexpressionsByName;
+
+  public SubexpressionEliminator(final Expression filter, final List<Expression> columns) {
+    Occurrences filterOccurrences = new Occurrences(filter);
+    List<Occurrences> columnOccurrences = new ArrayList<>();
+    for (Expression column : columns) {
+      columnOccurrences.add(new Occurrences(column));
+    }
+
+    // Candidates in post-order, so every subexpression comes after the ones it contains.
+    Set<Expression> candidates = new LinkedHashSet<>(filterOccurrences.counts.keySet());
+    for (Occurrences occurrences : columnOccurrences) {
+      candidates.addAll(occurrences.counts.keySet());
+    }
+
+    Map<Expression, String> names = new LinkedHashMap<>();
+    for (Expression candidate : candidates) {
+      int uses = 0;
+      if (filterOccurrences.unconditional.contains(candidate)) {
+        uses += filterOccurrences.counts.get(candidate);
+      }
+      for (Occurrences occurrences : columnOccurrences) {
+        if (occurrences.counts.containsKey(candidate)
+            && (occurrences.unconditional.contains(candidate)
+                || filterOccurrences.unconditional.contains(candidate))) {
+          uses += occurrences.counts.get(candidate);
+        }
+      }
+      if (uses > 1) {
+        names.put(candidate, SUBEXPRESSION_PREFIX + names.size());
+      }
+    }
+
+    this.subexpressions = new ArrayList<>();
+    this.subexpressionsByName = new HashMap<>();
+    for (Map.Entry<Expression, String> entry : names.entrySet()) {
+      Expression candidate = entry.getKey();
+      Set<Expression> available = new HashSet<>(new Occurrences(candidate).unconditional);
+      available.addAll(filterOccurrences.unconditional);
+      available.remove(candidate);
+      Expression expression = replace(candidate, available, names);
+      boolean evaluatedByFilter = filterOccurrences.unconditional.contains(candidate);
+      Subexpression subexpression = new Subexpression(entry.getValue(), expression,
+                                                      evaluatedByFilter,
+                                                      getDependencies(expression));
+      subexpressions.add(subexpression);
+      subexpressionsByName.put(subexpression.getName(), subexpression);
+    }
+
+    this.filter = filter == null
+                  ? null : replace(filter, filterOccurrences.unconditional, names);
+    this.columns = new ArrayList<>();
+    for (int i = 0; i < columns.size(); i++) {
+      Set<Expression> available = new HashSet<>(columnOccurrences.get(i).unconditional);
+      available.addAll(filterOccurrences.unconditional);
+      this.columns.add(replace(columns.get(i), available, names));
+    }
+  }
+
+  /**
+   * The filter with its common subexpressions replaced, or null if there is no filter.
+   */
+  public Expression getFilter() {
+    return filter;
+  }
+
+  public List<Expression> getColumns() {
+    return columns;
+  }
+
+  public List<Subexpression> getSubexpressions() {
+    return subexpressions;
+  }
+
+  /**
+   * The subexpressions not evaluated by the filter that the given expression references.
+   */
+  public Set<String> getDependencies(final Expression expression) {
+    Set<String> dependencies = new LinkedHashSet<>();
+    new DefaultExpressionTraversalVisitor<Void, Void>() {
+      @Override
+      protected Void visitQualifiedNameReference(QualifiedNameReference node, Void context) {
+        Subexpression subexpression = subexpressionsByName.get(node.getName().getSuffix());
+        if (subexpression != null && !subexpression.isEvaluatedByFilter()) {
+          dependencies.add(subexpression.getName());
+        }
+        return null;
+      }
+    }.process(expression, null);
+    return dependencies;
+  }
+
+  public static boolean isSubexpressionName(final String name) {
+    return name.startsWith(SUBEXPRESSION_PREFIX);
+  }
+
+  private static Expression replace(final Expression expression,
+                                    final Set<Expression> available,
+                                    final Map<Expression, String> names) {
+    return ExpressionTreeRewriter.rewriteWith(new ExpressionRewriter<Void>() {
+      @Override
+      public Expression rewriteExpression(Expression node, Void context,
+                                          ExpressionTreeRewriter<Void> treeRewriter) {
+        String name = names.get(node);
+        if (name == null || !available.contains(node)) {
+          return null;
+        }
+        return new QualifiedNameReference(QualifiedName.of(name));
+      }
+    }, expression);
+  }
+
+  private static boolean isCandidate(final Expression expression) {
+    return isWorthALocal(expression) && isDeterministic(expression);
+  }
+
+  private static boolean isWorthALocal(final Expression expression) {
+    if (expression instanceof FunctionCall
+        || expression instanceof Cast
+        || expression instanceof SubscriptExpression) {
+      return true;
+    } else if (expression instanceof ArithmeticBinaryExpression) {
+      return isWorthALocal(((ArithmeticBinaryExpression) expression).getLeft())
+             || isWorthALocal(((ArithmeticBinaryExpression) expression).getRight());
+    } else if (expression instanceof ArithmeticUnaryExpression) {
+      return isWorthALocal(((ArithmeticUnaryExpression) expression).getValue());
+    }
+    return false;
+  }
+
+  private static boolean isDeterministic(final Expression expression) {
+    boolean[] deterministic = {true};
+    new DefaultExpressionTraversalVisitor<Void, Void>() {
+      @Override
+      protected Void visitFunctionCall(FunctionCall node, Void context) {
+        KsqlFunction function = KsqlFunctions.getFunction(node.getName().getSuffix());
+        if (function == null || !function.isDeterministic()) {
+          deterministic[0] = false;
+        }
+        return super.visitFunctionCall(node, context);
+      }
+    }.process(expression, null);
+    return deterministic[0];
+  }
+
+  /**
+   * Counts the candidate subexpressions of an expression, in post-order, and remembers the ones
+   * evaluated whatever the values of the row are.
+   */
+  private static class Occurrences
+      extends DefaultExpressionTraversalVisitor<Void, Boolean> {
+
+    final Map<Expression, Integer> counts = new LinkedHashMap<>();
+    final Set<Expression> unconditional = new HashSet<>();
+
+    Occurrences(final Expression expression) {
+      if (expression != null) {
+        process(expression, false);
+      }
+    }
+
+    @Override
+    protected Void visitLogicalBinaryExpression(LogicalBinaryExpression node,
+                                                Boolean conditional) {
+      process(node.getLeft(), conditional);
+      // && and || skip the right side depending on the left one.
+      process(node.getRight(), true);
+      return null;
+    }
+
+    @Override
+    protected Void visitFunctionCall(FunctionCall node, Boolean conditional) {
+      super.visitFunctionCall(node, conditional);
+      return record(node, conditional);
+    }
+
+    @Override
+    protected Void visitCast(Cast node, Boolean conditional) {
+      super.visitCast(node, conditional);
+      return record(node, conditional);
+    }
+
+    @Override
+    protected Void visitSubscriptExpression(SubscriptExpression node, Boolean conditional) {
+      super.visitSubscriptExpression(node, conditional);
+      return record(node, conditional);
+    }
+
+    @Override
+    protected Void visitArithmeticBinary(ArithmeticBinaryExpression node, Boolean conditional) {
+      super.visitArithmeticBinary(node, conditional);
+      return record(node, conditional);
+    }
+
+    @Override
+    protected Void visitArithmeticUnary(ArithmeticUnaryExpression node, Boolean conditional) {
+      super.visitArithmeticUnary(node, conditional);
+      return record(node, conditional);
+    }
+
+    private Void record(final Expression node, final boolean conditional) {
+      if (isCandidate(node)) {
+        counts.merge(node, 1, Integer::sum);
+        if (!conditional) {
+          unconditional.add(node);
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.codegen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The constant values of an IN list, built once when the expression is compiled so that the
+ * generated code checks a value with one hash lookup instead of a comparison per value. Integer
+ * values are kept in an open addressing table of primitive longs. Generated code receives the set
+ * as a parameter, see {@link CodegenConstants}.
+ *
+ * <p>As with =, a null value is neither in nor outside a set: the check fails and, in a WHERE
+ * clause, the row is dropped.
+ */
+public abstract class ValueSet {
+
+  public abstract boolean contains(long value);
+
+  public abstract boolean contains(double value);
+
+  public abstract boolean contains(String value);
+
+  public static ValueSet ofLongs(final List<Long> values) {
+    return new LongValueSet(values);
+  }
+
+  public static ValueSet ofDoubles(final List<Double> values) {
+    return new DoubleValueSet(values);
+  }
+
+  public static ValueSet ofStrings(final List<String> values) {
+    return new StringValueSet(values);
+  }
+
+  private static class LongValueSet extends ValueSet {
+
+    private final long[] keys;
+    private final boolean[] occupied;
+    private final int mask;
+    private final Set<Long> values;
+
+    LongValueSet(final List<Long> values) {
+      this.values = new HashSet<>(values);
+      int capacity = Integer.highestOneBit(Math.max(this.values.size(), 1) * 4 - 1) * 2;
+      this.keys = new long[capacity];
+      this.occupied = new boolean[capacity];
+      this.mask = capacity - 1;
+      for (long value : this.values) {
+        int slot = slot(value);
+        while (occupied[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        occupied[slot] = true;
+      }
+    }
+
+    private int slot(final long value) {
+      long hash = value * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    @Override
+    public boolean contains(final long value) {
+      for (int slot = slot(value); occupied[slot]; slot = (slot + 1) & mask) {
+        if (keys[slot] == value) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean contains(final double value) {
+      return (double) (long) value == value && contains((long) value);
+    }
+
+    @Override
+    public boolean contains(final String value) {
+      return false;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof LongValueSet && values.equals(((LongValueSet) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return values.hashCode();
+    }
+  }
+
+  /**
+   * Keeps the bits of the values in a {@link LongValueSet}. Adding 0.0 turns -0.0, which is
+   * equal to 0.0 with =, into 0.0.
+   */
+  private static class DoubleValueSet extends ValueSet {
+
+    private final LongValueSet bits;
+
+    DoubleValueSet(final List<Double> values) {
+      List<Long> valueBits = new ArrayList<>();
+      for (double value : values) {
+        valueBits.add(Double.doubleToLongBits(value + 0.0));
+      }
+      this.bits = new LongValueSet(valueBits);
+    }
+
+    @Override
+    public boolean contains(final long value) {
+      return contains((double) value);
+    }
+
+    @Override
+    public boolean contains(final double value) {
+      return bits.contains(Double.doubleToLongBits(value + 0.0));
+    }
+
+    @Override
+    public boolean contains(final String value) {
+      return false;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof DoubleValueSet && bits.equals(((DoubleValueSet) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode();
+    }
+  }
+
+  private static class StringValueSet extends ValueSet {
+
+    private final Set<String> values;
+
+    StringValueSet(final List<String> values) {
+      this.values = new HashSet<>(values);
+    }
+
+    @Override
+    public boolean contains(final long value) {
+      return false;
+    }
+
+    @Override
+    public boolean contains(final double value) {
+      return false;
+    }
+
+    @Override
+    public boolean contains(final String value) {
+      if (value == null) {
+        throw new NullPointerException("IN list value is null.");
+      }
+      return values.contains(value);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof StringValueSet && values.equals(((StringValueSet) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return values.hashCode();
+    }
+  }
+}
@@ -19,6 +19,7 @@ package io.confluent.ksql.ddl;
 public class DdlConfig {
 
   public static final String VALUE_FORMAT_PROPERTY = "VALUE_FORMAT";
+  public static final String VALUE_DELIMITER_PROPERTY = "VALUE_DELIMITER";
   public static final String AVRO_SCHEMA_FILE = "AVROSCHEMAFILE";
   public static final String AVRO_SCHEMA = "AVROSCHEMA";
   public static final String KAFKA_TOPIC_NAME_PROPERTY = "KAFKA_TOPIC";
@@ -27,6 +28,7 @@ public class DdlConfig {
   public static final String KEY_NAME_PROPERTY = "KEY";
   public static final String IS_WINDOWED_PROPERTY = "WINDOWED";
   public static final String TIMESTAMP_NAME_PROPERTY = "TIMESTAMP";
+  public static final String TIMESTAMP_FORMAT_PROPERTY = "TIMESTAMP_FORMAT";
   public static final String PARTITION_BY_PROPERTY = "PARTITION_BY";
   public static final String SCHEMA_FILE_CONTENT_PROPERTY = "ksql.schema.file.content";
 }
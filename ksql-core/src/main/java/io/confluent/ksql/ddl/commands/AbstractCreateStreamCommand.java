@@ -20,6 +20,7 @@ import io.confluent.ksql.ddl.DdlConfig;
 import io.confluent.ksql.metastore.MetaStore;
 import io.confluent.ksql.parser.tree.AbstractStreamCreateStatement;
 import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.StringLiteral;
 import io.confluent.ksql.parser.tree.TableElement;
 import io.confluent.ksql.util.KafkaTopicClient;
 import io.confluent.ksql.util.KsqlConfig;
@@ -27,6 +28,7 @@ import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.KsqlPreconditions;
 import io.confluent.ksql.util.SchemaUtil;
 import io.confluent.ksql.util.StringUtil;
+import io.confluent.ksql.util.timestamp.StringToTimestampParser;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 
@@ -46,6 +48,7 @@ public abstract class AbstractCreateStreamCommand implements DDLCommand {
   Schema schema;
   String keyColumnName;
   String timestampColumnName;
+  String timestampFormat;
   boolean isWindowed;
   RegisterTopicCommand registerTopicCommand;
   KafkaTopicClient kafkaTopicClient;
@@ -89,12 +92,25 @@ public abstract class AbstractCreateStreamCommand implements DDLCommand {
       timestampColumnName = properties.get(DdlConfig.TIMESTAMP_NAME_PROPERTY)
           .toString().toUpperCase();
       timestampColumnName = StringUtil.cleanQuotes(timestampColumnName);
-      if (SchemaUtil.getFieldByName(schema, timestampColumnName)
-          .get().schema().type() != Schema
-          .Type.INT64) {
+      Schema.Type timestampType = SchemaUtil.getFieldByName(schema, timestampColumnName)
+          .get().schema().type();
+      if (properties.containsKey(DdlConfig.TIMESTAMP_FORMAT_PROPERTY)) {
+        // The pattern is case sensitive and may hold quotes, so it is taken as written.
+        Expression formatExpression = properties.get(DdlConfig.TIMESTAMP_FORMAT_PROPERTY);
+        timestampFormat = formatExpression instanceof StringLiteral
+                          ? ((StringLiteral) formatExpression).getValue()
+                          : StringUtil.cleanQuotes(formatExpression.toString());
+        new StringToTimestampParser(timestampFormat);
+        if (timestampType != Schema.Type.STRING) {
+          throw new KsqlException("Timestamp column, " + timestampColumnName + ", should be "
+              + "STRING when a timestamp format is set.");
+        }
+      } else if (timestampType != Schema.Type.INT64) {
         throw new KsqlException("Timestamp column, " + timestampColumnName + ", should be LONG"
             + "(INT64).");
       }
+    } else if (properties.containsKey(DdlConfig.TIMESTAMP_FORMAT_PROPERTY)) {
+      throw new KsqlException("Timestamp format is set without a timestamp column.");
     }
 
 
@@ -214,10 +230,12 @@ public abstract class AbstractCreateStreamCommand implements DDLCommand {
 
     Set<String> validSet = new HashSet<>();
     validSet.add(DdlConfig.VALUE_FORMAT_PROPERTY.toUpperCase());
+    validSet.add(DdlConfig.VALUE_DELIMITER_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.KAFKA_TOPIC_NAME_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.KEY_NAME_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.IS_WINDOWED_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.TIMESTAMP_NAME_PROPERTY.toUpperCase());
+    validSet.add(DdlConfig.TIMESTAMP_FORMAT_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.STATE_STORE_NAME_PROPERTY.toUpperCase());
     validSet.add(DdlConfig.TOPIC_NAME_PROPERTY.toUpperCase());
 
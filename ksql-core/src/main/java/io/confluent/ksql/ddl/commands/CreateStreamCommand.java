@@ -41,6 +41,7 @@ public class CreateStreamCommand extends AbstractCreateStreamCommand {
             schema.field(keyColumnName),
         (timestampColumnName.length() == 0) ? null :
             schema.field(timestampColumnName),
+        timestampFormat,
         metaStore.getTopic(topicName));
 
     // TODO: Need to check if the topic exists.
@@ -57,6 +57,7 @@ public class CreateTableCommand extends AbstractCreateStreamCommand {
             schema.field(keyColumnName),
         (timestampColumnName.length() == 0) ? null :
             schema.field(timestampColumnName),
+        timestampFormat,
         metaStore.getTopic(topicName),
         stateStoreName, isWindowed);
 
@@ -62,11 +62,13 @@ public class RegisterTopicCommand implements DDLCommand {
         properties.get(DdlConfig.KAFKA_TOPIC_NAME_PROPERTY).toString());
     final String serde = StringUtil.cleanQuotes(
         properties.get(DdlConfig.VALUE_FORMAT_PROPERTY).toString());
-    this.topicSerDe = extractTopicSerDe(overriddenProperties, serde);
+    this.topicSerDe = extractTopicSerDe(properties, overriddenProperties, serde);
     this.notExists = notExist;
   }
 
-  private KsqlTopicSerDe extractTopicSerDe(Map<String, Object> overriddenProperties, String serde) {
+  private KsqlTopicSerDe extractTopicSerDe(Map<String, Expression> properties,
+                                           Map<String, Object> overriddenProperties,
+                                           String serde) {
     // TODO: Find a way to avoid calling toUpperCase() here;
     // if the property can be an unquoted identifier, then capitalization will have already happened
     switch (serde.toUpperCase()) {
@@ -79,6 +81,11 @@ public class RegisterTopicCommand implements DDLCommand {
       case DataSource.JSON_SERDE_NAME:
         return new KsqlJsonTopicSerDe(null);
       case DataSource.DELIMITED_SERDE_NAME:
+        if (properties.containsKey(DdlConfig.VALUE_DELIMITER_PROPERTY)) {
+          return new KsqlDelimitedTopicSerDe(KsqlDelimitedTopicSerDe.parseDelimiter(
+              StringUtil.cleanQuotes(
+                  properties.get(DdlConfig.VALUE_DELIMITER_PROPERTY).toString())));
+        }
         return new KsqlDelimitedTopicSerDe();
       default:
         throw new KsqlException("The specified topic serde is not supported.");
@@ -16,9 +16,15 @@
 
 package io.confluent.ksql.function;
 
+import io.confluent.ksql.function.udf.Kudf;
 import org.apache.kafka.connect.data.Schema;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public class KsqlFunction {
 
@@ -26,13 +32,35 @@ public class KsqlFunction {
   final List<Schema> arguments;
   final String functionName;
   final Class kudfClass;
+  final boolean deterministic;
+  final Constructor kudfConstructor;
+  final List<Method> typedEvaluateMethods;
 
   public KsqlFunction(Schema returnType, List<Schema> arguments, String functionName,
                       Class kudfClass) {
+    this(returnType, arguments, functionName, kudfClass, true);
+  }
+
+  public KsqlFunction(Schema returnType, List<Schema> arguments, String functionName,
+                      Class kudfClass, boolean deterministic) {
     this.returnType = returnType;
     this.arguments = arguments;
     this.functionName = functionName;
     this.kudfClass = kudfClass;
+    this.deterministic = deterministic;
+    try {
+      this.kudfConstructor = kudfClass.getConstructor();
+    } catch (NoSuchMethodException e) {
+      throw new KsqlFunctionException("UDF " + functionName + " has no public no-argument "
+                                      + "constructor.", e);
+    }
+    this.typedEvaluateMethods = new ArrayList<>();
+    for (Method method : kudfClass.getMethods()) {
+      if (method.getName().equals("evaluate") && !method.isVarArgs()
+          && !Modifier.isStatic(method.getModifiers())) {
+        typedEvaluateMethods.add(method);
+      }
+    }
   }
 
   public Schema getReturnType() {
@@ -51,4 +79,61 @@ public class KsqlFunction {
   public Class getKudfClass() {
     return kudfClass;
   }
+
+  /**
+   * Whether calls with the same arguments always return the same value, so that repeated calls
+   * can be evaluated once.
+   */
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  /**
+   * Creates the UDF instance of one compiled expression.
+   */
+  public Kudf newKudf() {
+    try {
+      return (Kudf) kudfConstructor.newInstance();
+    } catch (Exception e) {
+      throw new KsqlFunctionException("Could not create UDF " + functionName + ".", e);
+    }
+  }
+
+  /**
+   * The evaluate overload of the UDF that takes arguments of the given Java types, declared
+   * besides the varargs evaluate of {@link Kudf}. Generated code calls it directly, without
+   * boxing the arguments into an array or casting the result.
+   */
+  public Optional<Method> getTypedEvaluateMethod(final List<Class> argumentTypes) {
+    for (Method method : typedEvaluateMethods) {
+      Class[] parameterTypes = method.getParameterTypes();
+      if (parameterTypes.length != argumentTypes.size()) {
+        continue;
+      }
+      boolean applicable = true;
+      for (int i = 0; i < parameterTypes.length; i++) {
+        applicable &= isConvertible(argumentTypes.get(i), parameterTypes[i]);
+      }
+      if (applicable) {
+        return Optional.of(method);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static boolean isConvertible(final Class argumentType, final Class parameterType) {
+    if (parameterType.isAssignableFrom(argumentType)) {
+      return true;
+    } else if (parameterType == double.class) {
+      return argumentType == Double.class || argumentType == Long.class
+             || argumentType == Integer.class;
+    } else if (parameterType == long.class) {
+      return argumentType == Long.class || argumentType == Integer.class;
+    } else if (parameterType == int.class) {
+      return argumentType == Integer.class;
+    } else if (parameterType == boolean.class) {
+      return argumentType == Boolean.class;
+    }
+    return false;
+  }
 }
@@ -32,6 +32,8 @@ import io.confluent.ksql.function.udf.string.ConcatKudf;
 import io.confluent.ksql.function.udf.string.IfNullKudf;
 import io.confluent.ksql.function.udf.string.LCaseKudf;
 import io.confluent.ksql.function.udf.string.LenKudf;
+import io.confluent.ksql.function.udf.string.RegexpExtractKudf;
+import io.confluent.ksql.function.udf.string.RegexpLikeKudf;
 import io.confluent.ksql.function.udf.string.SubstringKudf;
 import io.confluent.ksql.function.udf.string.TrimKudf;
 import io.confluent.ksql.function.udf.string.UCaseKudf;
@@ -93,6 +95,19 @@ public class KsqlFunctions {
                                       "LEN", LenKudf.class);
     addFunction(len);
 
+    KsqlFunction regexpLike = new KsqlFunction(Schema.BOOLEAN_SCHEMA,
+                                               Arrays.asList(Schema.STRING_SCHEMA,
+                                                             Schema.STRING_SCHEMA),
+                                               "REGEXP_LIKE", RegexpLikeKudf.class);
+    addFunction(regexpLike);
+
+    KsqlFunction regexpExtract = new KsqlFunction(Schema.STRING_SCHEMA,
+                                                  Arrays.asList(Schema.STRING_SCHEMA,
+                                                                Schema.STRING_SCHEMA,
+                                                                Schema.INT64_SCHEMA),
+                                                  "REGEXP_EXTRACT", RegexpExtractKudf.class);
+    addFunction(regexpExtract);
+
     /***************************************
      * Math functions                      *
      ***************************************/
@@ -118,7 +133,7 @@ public class KsqlFunctions {
     addFunction(round);
 
     KsqlFunction random = new KsqlFunction(Schema.FLOAT64_SCHEMA, new ArrayList<>(),
-                                           "RANDOM", RandomKudf.class);
+                                           "RANDOM", RandomKudf.class, false);
     addFunction(random);
 
 
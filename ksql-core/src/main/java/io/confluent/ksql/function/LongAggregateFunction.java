@@ -0,0 +1,26 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.function;
+
+/**
+ * Implemented by aggregate functions whose argument and aggregate are both longs, so that
+ * {@link io.confluent.ksql.function.udaf.KudafAggregator} can update them on unboxed values.
+ */
+public interface LongAggregateFunction {
+
+  long aggregateLong(long currentVal, long currentAggVal);
+}
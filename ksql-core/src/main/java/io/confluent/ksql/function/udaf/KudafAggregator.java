@@ -16,78 +16,146 @@
 
 package io.confluent.ksql.function.udaf;
 
+import io.confluent.ksql.function.DoubleAggregateFunction;
 import io.confluent.ksql.function.KsqlAggregateFunction;
+import io.confluent.ksql.function.LongAggregateFunction;
+import io.confluent.ksql.function.udaf.count.CountKudaf;
 import io.confluent.ksql.physical.GenericRow;
 import org.apache.kafka.streams.kstream.Aggregator;
 import org.apache.kafka.streams.kstream.Merger;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
+/**
+ * Updates an aggregate row with a value row. The column mappings are flattened into arrays when
+ * the aggregator is built, and COUNT and the long and double SUM/MIN/MAX functions are applied on
+ * unboxed values; other functions go through {@link KsqlAggregateFunction#aggregate}.
+ */
 public class KudafAggregator implements Aggregator<String, GenericRow, GenericRow> {
 
-  Map<Integer, KsqlAggregateFunction> aggValToAggFunctionMap;
-  Map<Integer, Integer> aggValToValColumnMap;
+  private static final int GENERIC_AGGREGATE = 0;
+  private static final int COUNT_AGGREGATE = 1;
+  private static final int LONG_AGGREGATE = 2;
+  private static final int DOUBLE_AGGREGATE = 3;
+
+  // Non aggregate columns, copied from the value row.
+  private final int[] nonAggColumnIndexes;
+  private final int[] nonAggValueIndexes;
+
+  // One entry per aggregate function.
+  private final int[] aggColumnIndexes;
+  private final int[] aggArgIndexes;
+  private final int[] aggKinds;
+  private final KsqlAggregateFunction[] aggFunctions;
+  private final LongAggregateFunction[] longAggFunctions;
+  private final DoubleAggregateFunction[] doubleAggFunctions;
+  private final Merger[] aggMergers;
 
   public KudafAggregator(Map<Integer, KsqlAggregateFunction> aggValToAggFunctionMap, Map<Integer,
       Integer> aggValToValColumnMap) {
-    this.aggValToAggFunctionMap = aggValToAggFunctionMap;
-    this.aggValToValColumnMap = aggValToValColumnMap;
+    int nonAggCount = aggValToValColumnMap.size();
+    this.nonAggColumnIndexes = new int[nonAggCount];
+    this.nonAggValueIndexes = new int[nonAggCount];
+    int index = 0;
+    for (Map.Entry<Integer, Integer> entry : aggValToValColumnMap.entrySet()) {
+      nonAggColumnIndexes[index] = entry.getKey();
+      nonAggValueIndexes[index] = entry.getValue();
+      index++;
+    }
+
+    int aggCount = aggValToAggFunctionMap.size();
+    this.aggColumnIndexes = new int[aggCount];
+    this.aggArgIndexes = new int[aggCount];
+    this.aggKinds = new int[aggCount];
+    this.aggFunctions = new KsqlAggregateFunction[aggCount];
+    this.longAggFunctions = new LongAggregateFunction[aggCount];
+    this.doubleAggFunctions = new DoubleAggregateFunction[aggCount];
+    this.aggMergers = new Merger[aggCount];
+    index = 0;
+    for (Map.Entry<Integer, KsqlAggregateFunction> entry : aggValToAggFunctionMap.entrySet()) {
+      KsqlAggregateFunction aggFunction = entry.getValue();
+      aggColumnIndexes[index] = entry.getKey();
+      aggArgIndexes[index] = aggFunction.getArgIndexInValue();
+      aggFunctions[index] = aggFunction;
+      aggMergers[index] = aggFunction.getMerger();
+      if (aggFunction instanceof CountKudaf) {
+        aggKinds[index] = COUNT_AGGREGATE;
+      } else if (aggFunction instanceof LongAggregateFunction) {
+        aggKinds[index] = LONG_AGGREGATE;
+        longAggFunctions[index] = (LongAggregateFunction) aggFunction;
+      } else if (aggFunction instanceof DoubleAggregateFunction) {
+        aggKinds[index] = DOUBLE_AGGREGATE;
+        doubleAggFunctions[index] = (DoubleAggregateFunction) aggFunction;
+      } else {
+        aggKinds[index] = GENERIC_AGGREGATE;
+      }
+      index++;
+    }
   }
 
   @Override
   public GenericRow apply(String s, GenericRow rowValue, GenericRow aggRowValue) {
+    List<Object> values = rowValue.getColumns();
+    List<Object> aggValues = aggRowValue.getColumns();
 
-    for (int aggValColIndex: aggValToValColumnMap.keySet()) {
-      aggRowValue.getColumns().set(aggValColIndex, rowValue.getColumns()
-          .get(aggValToValColumnMap.get(aggValColIndex)));
+    for (int i = 0; i < nonAggColumnIndexes.length; i++) {
+      aggValues.set(nonAggColumnIndexes[i], values.get(nonAggValueIndexes[i]));
     }
 
-    for (int aggFunctionIndex: aggValToAggFunctionMap.keySet()) {
-      KsqlAggregateFunction ksqlAggregateFunction = aggValToAggFunctionMap.get(aggFunctionIndex);
-      aggRowValue.getColumns().set(aggFunctionIndex, ksqlAggregateFunction.aggregate(
-          rowValue.getColumns().get(ksqlAggregateFunction.getArgIndexInValue()),
-          aggRowValue.getColumns().get(aggFunctionIndex))
-      );
+    for (int i = 0; i < aggColumnIndexes.length; i++) {
+      int aggColumnIndex = aggColumnIndexes[i];
+      Object value = values.get(aggArgIndexes[i]);
+      switch (aggKinds[i]) {
+        case COUNT_AGGREGATE:
+          aggValues.set(aggColumnIndex, ((Number) aggValues.get(aggColumnIndex)).longValue() + 1);
+          break;
+        case LONG_AGGREGATE:
+          // Null values do not contribute to SUM, MIN and MAX.
+          if (value != null) {
+            aggValues.set(aggColumnIndex, longAggFunctions[i].aggregateLong(
+                ((Number) value).longValue(),
+                ((Number) aggValues.get(aggColumnIndex)).longValue()));
+          }
+          break;
+        case DOUBLE_AGGREGATE:
+          if (value != null) {
+            aggValues.set(aggColumnIndex, doubleAggFunctions[i].aggregateDouble(
+                ((Number) value).doubleValue(),
+                ((Number) aggValues.get(aggColumnIndex)).doubleValue()));
+          }
+          break;
+        default:
+          aggValues.set(aggColumnIndex,
+                        aggFunctions[i].aggregate(value, aggValues.get(aggColumnIndex)));
+      }
     }
     return aggRowValue;
   }
 
-  public Merger getMerger() {
+  public Merger<String, GenericRow> getMerger() {
     return new Merger<String, GenericRow>() {
       @Override
       public GenericRow apply(String key, GenericRow aggRowOne, GenericRow aggRowTwo) {
+        List<Object> columnsOne = aggRowOne.getColumns();
+        List<Object> columnsTwo = aggRowTwo.getColumns();
+        Object[] mergedColumns = new Object[columnsOne.size()];
 
-        List columns = Stream.generate(String::new).limit(aggRowOne.getColumns().size())
-            .collect(Collectors.toList());
-        GenericRow mergedRow = new GenericRow(columns);
-
-        for (int aggValColIndex: aggValToValColumnMap.keySet()) {
-          if (aggRowOne.getColumns()
-              .get(aggValToValColumnMap.get(aggValColIndex)).toString().length() > 0) {
-            mergedRow.getColumns().set(aggValColIndex, aggRowOne.getColumns()
-                .get(aggValToValColumnMap.get(aggValColIndex)));
-          } else {
-            mergedRow.getColumns().set(aggValColIndex, aggRowTwo.getColumns()
-                .get(aggValToValColumnMap.get(aggValColIndex)));
+        for (int aggColumnIndex : nonAggColumnIndexes) {
+          Object value = columnsOne.get(aggColumnIndex);
+          if (value == null || value.toString().isEmpty()) {
+            value = columnsTwo.get(aggColumnIndex);
           }
-
+          mergedColumns[aggColumnIndex] = value;
         }
 
-        for (int aggFunctionIndex: aggValToAggFunctionMap.keySet()) {
-          KsqlAggregateFunction ksqlAggregateFunction = aggValToAggFunctionMap
-              .get(aggFunctionIndex);
-          mergedRow.getColumns().set(aggFunctionIndex, ksqlAggregateFunction.getMerger()
-              .apply(key,
-                     aggRowOne.getColumns().get(aggFunctionIndex),
-                     aggRowTwo.getColumns().get(aggFunctionIndex))
-          );
+        for (int i = 0; i < aggColumnIndexes.length; i++) {
+          int aggColumnIndex = aggColumnIndexes[i];
+          mergedColumns[aggColumnIndex] = aggMergers[i].apply(key,
+                                                              columnsOne.get(aggColumnIndex),
+                                                              columnsTwo.get(aggColumnIndex));
         }
-        return mergedRow;
+        return new GenericRow(mergedColumns);
       }
     };
   }
@@ -19,7 +19,6 @@ package io.confluent.ksql.function.udaf;
 import io.confluent.ksql.physical.GenericRow;
 import org.apache.kafka.streams.kstream.Initializer;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class KudafInitializer implements Initializer<GenericRow> {
@@ -32,11 +31,7 @@ public class KudafInitializer implements Initializer<GenericRow> {
 
   @Override
   public GenericRow apply() {
-    List rowColumns = new ArrayList();
-    for (Object obj: initialGenericRowColumns) {
-      rowColumns.add(obj);
-    }
-    return new GenericRow(rowColumns);
+    return new GenericRow(initialGenericRowColumns.toArray());
   }
 
 }
@@ -21,9 +21,11 @@ import org.apache.kafka.streams.kstream.Merger;
 
 import java.util.Arrays;
 
+import io.confluent.ksql.function.DoubleAggregateFunction;
 import io.confluent.ksql.function.KsqlAggregateFunction;
 
-public class DoubleMaxKudaf extends KsqlAggregateFunction<Double, Double> {
+public class DoubleMaxKudaf extends KsqlAggregateFunction<Double, Double>
+    implements DoubleAggregateFunction {
 
   public DoubleMaxKudaf(Integer argIndexInValue) {
     super(argIndexInValue, Double.MIN_VALUE, Schema.FLOAT64_SCHEMA,
@@ -33,6 +35,11 @@ public class DoubleMaxKudaf extends KsqlAggregateFunction<Double, Double> {
 
   @Override
   public Double aggregate(Double currentVal, Double currentAggVal) {
+    return aggregateDouble(currentVal, currentAggVal);
+  }
+
+  @Override
+  public double aggregateDouble(double currentVal, double currentAggVal) {
     if (currentVal > currentAggVal) {
       return currentVal;
     }
@@ -22,8 +22,10 @@ import org.apache.kafka.streams.kstream.Merger;
 import java.util.Arrays;
 
 import io.confluent.ksql.function.KsqlAggregateFunction;
+import io.confluent.ksql.function.LongAggregateFunction;
 
-public class LongMaxKudaf extends KsqlAggregateFunction<Long, Long> {
+public class LongMaxKudaf extends KsqlAggregateFunction<Long, Long>
+    implements LongAggregateFunction {
 
   public LongMaxKudaf(Integer argIndexInValue) {
     super(argIndexInValue, Long.MIN_VALUE, Schema.INT64_SCHEMA,
@@ -33,6 +35,11 @@ public class LongMaxKudaf extends KsqlAggregateFunction<Long, Long> {
 
   @Override
   public Long aggregate(Long currentVal, Long currentAggVal) {
+    return aggregateLong(currentVal, currentAggVal);
+  }
+
+  @Override
+  public long aggregateLong(long currentVal, long currentAggVal) {
     if (currentVal > currentAggVal) {
       return currentVal;
     }
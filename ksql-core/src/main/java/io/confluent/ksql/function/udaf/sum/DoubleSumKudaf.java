@@ -16,13 +16,15 @@
 
 package io.confluent.ksql.function.udaf.sum;
 
+import io.confluent.ksql.function.DoubleAggregateFunction;
 import io.confluent.ksql.function.KsqlAggregateFunction;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.streams.kstream.Merger;
 
 import java.util.Arrays;
 
-public class DoubleSumKudaf extends KsqlAggregateFunction<Double, Double> {
+public class DoubleSumKudaf extends KsqlAggregateFunction<Double, Double>
+    implements DoubleAggregateFunction {
 
   public DoubleSumKudaf(Integer argIndexInValue) {
     super(argIndexInValue, 0.0, Schema.FLOAT64_SCHEMA,
@@ -32,6 +34,11 @@ public class DoubleSumKudaf extends KsqlAggregateFunction<Double, Double> {
 
   @Override
   public Double aggregate(Double currentVal, Double currentAggVal) {
+    return aggregateDouble(currentVal, currentAggVal);
+  }
+
+  @Override
+  public double aggregateDouble(double currentVal, double currentAggVal) {
     return currentVal + currentAggVal;
   }
 
@@ -17,12 +17,14 @@
 package io.confluent.ksql.function.udaf.sum;
 
 import io.confluent.ksql.function.KsqlAggregateFunction;
+import io.confluent.ksql.function.LongAggregateFunction;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.streams.kstream.Merger;
 
 import java.util.Arrays;
 
-public class LongSumKudaf extends KsqlAggregateFunction<Long, Long> {
+public class LongSumKudaf extends KsqlAggregateFunction<Long, Long>
+    implements LongAggregateFunction {
 
   public LongSumKudaf(Integer argIndexInValue) {
     super(argIndexInValue, 0L, Schema.INT64_SCHEMA,
@@ -31,6 +33,11 @@ public class LongSumKudaf extends KsqlAggregateFunction<Long, Long> {
 
   @Override
   public Long aggregate(Long currentVal, Long currentAggVal) {
+    return aggregateLong(currentVal, currentAggVal);
+  }
+
+  @Override
+  public long aggregateLong(long currentVal, long currentAggVal) {
     return currentVal + currentAggVal;
   }
 
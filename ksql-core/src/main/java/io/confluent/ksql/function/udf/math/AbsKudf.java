@@ -30,6 +30,10 @@ public class AbsKudf implements Kudf {
     if (args.length != 1) {
       throw new KsqlFunctionException("Abs udf should have one input argument.");
     }
-    return Math.abs((Double) args[0]);
+    return evaluate((Double) args[0]);
+  }
+
+  public double evaluate(double value) {
+    return Math.abs(value);
   }
 }
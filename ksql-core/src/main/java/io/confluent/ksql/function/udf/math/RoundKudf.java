@@ -30,6 +30,10 @@ public class RoundKudf implements Kudf {
     if (args.length != 1) {
       throw new KsqlFunctionException("Len udf should have one input argument.");
     }
-    return Math.round((Double) args[0]);
+    return evaluate((Double) args[0]);
+  }
+
+  public long evaluate(double value) {
+    return Math.round(value);
   }
 }
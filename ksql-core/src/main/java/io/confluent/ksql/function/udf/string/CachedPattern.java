@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.function.udf.string;
+
+import java.util.regex.Pattern;
+
+/**
+ * The last regular expression a regex UDF instance was called with, compiled. The expression is
+ * nearly always a literal, so it is compiled once per query rather than once per row. Instances
+ * are immutable, so one UDF instance can be called from several stream threads.
+ */
+final class CachedPattern {
+
+  private final String regex;
+  private final Pattern pattern;
+
+  private CachedPattern(final String regex) {
+    this.regex = regex;
+    this.pattern = Pattern.compile(regex);
+  }
+
+  Pattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * The given cached pattern if it was compiled from the same expression, a newly compiled one
+   * otherwise.
+   */
+  static CachedPattern of(final CachedPattern cached, final String regex) {
+    if (cached != null && (cached.regex == regex || cached.regex.equals(regex))) {
+      return cached;
+    }
+    return new CachedPattern(regex);
+  }
+}
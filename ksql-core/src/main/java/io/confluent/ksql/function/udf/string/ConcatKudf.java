@@ -31,7 +31,10 @@ public class ConcatKudf implements Kudf {
     if (args.length != 2) {
       throw new KsqlFunctionException("Concat udf should have two input argument.");
     }
-    String string = args[0].toString();
-    return args[0].toString() + args[1].toString();
+    return evaluate(args[0].toString(), args[1].toString());
+  }
+
+  public String evaluate(String first, String second) {
+    return first.concat(second);
   }
 }
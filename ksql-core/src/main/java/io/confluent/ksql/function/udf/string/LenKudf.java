@@ -33,4 +33,8 @@ public class LenKudf implements Kudf {
     }
     return args[0].toString().length();
   }
+
+  public int evaluate(String string) {
+    return string.length();
+  }
 }
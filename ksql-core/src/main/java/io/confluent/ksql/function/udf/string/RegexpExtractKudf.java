@@ -0,0 +1,63 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.function.udf.string;
+
+import io.confluent.ksql.function.KsqlFunctionException;
+import io.confluent.ksql.function.udf.Kudf;
+
+import java.util.regex.Matcher;
+
+/**
+ * The first part of the string matching the regular expression, or the given group of it. Null
+ * if no part of the string matches.
+ */
+public class RegexpExtractKudf implements Kudf {
+
+  private volatile CachedPattern cachedPattern;
+
+  @Override
+  public void init() {
+
+  }
+
+  @Override
+  public Object evaluate(Object... args) {
+    if ((args.length < 2) || (args.length > 3)) {
+      throw new KsqlFunctionException("Regexp_extract udf should have two or three input "
+                                      + "argument.");
+    }
+    if (args.length == 2) {
+      return evaluate(args[0].toString(), args[1].toString());
+    } else {
+      return evaluate(args[0].toString(), args[1].toString(), (Long) args[2]);
+    }
+  }
+
+  public String evaluate(String string, String regex) {
+    return evaluate(string, regex, 0);
+  }
+
+  public String evaluate(String string, String regex, long group) {
+    CachedPattern pattern = CachedPattern.of(cachedPattern, regex);
+    if (pattern != cachedPattern) {
+      cachedPattern = pattern;
+    }
+    Matcher matcher = pattern.getPattern().matcher(string);
+    return matcher.find() ? matcher.group((int) group) : null;
+  }
+}
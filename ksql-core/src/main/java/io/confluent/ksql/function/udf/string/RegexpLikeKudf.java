@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.function.udf.string;
+
+import io.confluent.ksql.function.KsqlFunctionException;
+import io.confluent.ksql.function.udf.Kudf;
+
+/**
+ * Whether a part of the string matches the regular expression. REGEXP and RLIKE predicates are
+ * calls of this function.
+ */
+public class RegexpLikeKudf implements Kudf {
+
+  private volatile CachedPattern cachedPattern;
+
+  @Override
+  public void init() {
+
+  }
+
+  @Override
+  public Object evaluate(Object... args) {
+    if (args.length != 2) {
+      throw new KsqlFunctionException("Regexp_like udf should have two input argument.");
+    }
+    return evaluate(args[0].toString(), args[1].toString());
+  }
+
+  public boolean evaluate(String string, String regex) {
+    CachedPattern pattern = CachedPattern.of(cachedPattern, regex);
+    if (pattern != cachedPattern) {
+      cachedPattern = pattern;
+    }
+    return pattern.getPattern().matcher(string).find();
+  }
+}
@@ -32,12 +32,18 @@ public class SubstringKudf implements Kudf {
       throw new KsqlFunctionException("Substring udf should have two or three input argument.");
     }
     String string = args[0].toString();
-    long start = (Long) args[1];
     if (args.length == 2) {
-      return string.substring((int) start);
+      return evaluate(string, (Long) args[1]);
     } else {
-      long end = (Long) args[2];
-      return string.substring((int) start, (int) end);
+      return evaluate(string, (Long) args[1], (Long) args[2]);
     }
   }
+
+  public String evaluate(String string, long start) {
+    return string.substring((int) start);
+  }
+
+  public String evaluate(String string, long start, long end) {
+    return string.substring((int) start, (int) end);
+  }
 }
@@ -28,13 +28,21 @@ public class KsqlStream extends StructuredDataSource {
   public KsqlStream(final String datasourceName, final Schema schema, final Field keyField,
                     final Field timestampField,
                     final KsqlTopic ksqlTopic) {
-    super(datasourceName, schema, keyField, timestampField, DataSourceType.KSTREAM, ksqlTopic);
+    this(datasourceName, schema, keyField, timestampField, null, ksqlTopic);
+  }
+
+  public KsqlStream(final String datasourceName, final Schema schema, final Field keyField,
+                    final Field timestampField, final String timestampFormat,
+                    final KsqlTopic ksqlTopic) {
+    super(datasourceName, schema, keyField, timestampField, timestampFormat,
+          DataSourceType.KSTREAM, ksqlTopic);
   }
 
   @Override
   public StructuredDataSource cloneWithTimeKeyColumns() {
     Schema newSchema = SchemaUtil.addImplicitRowTimeRowKeyToSchema(schema);
-    return new KsqlStream(dataSourceName, newSchema, keyField, timestampField, ksqlTopic);
+    return new KsqlStream(dataSourceName, newSchema, keyField, timestampField, timestampFormat,
+                          ksqlTopic);
   }
 
   @Override
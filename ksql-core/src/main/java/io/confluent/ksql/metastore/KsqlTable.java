@@ -31,7 +31,15 @@ public class KsqlTable extends StructuredDataSource {
   public KsqlTable(final String datasourceName, final Schema schema, final Field keyField,
                    final Field timestampField,
                    final KsqlTopic ksqlTopic, final String stateStoreName, boolean isWindowed) {
-    super(datasourceName, schema, keyField, timestampField, DataSourceType.KTABLE, ksqlTopic);
+    this(datasourceName, schema, keyField, timestampField, null, ksqlTopic, stateStoreName,
+         isWindowed);
+  }
+
+  public KsqlTable(final String datasourceName, final Schema schema, final Field keyField,
+                   final Field timestampField, final String timestampFormat,
+                   final KsqlTopic ksqlTopic, final String stateStoreName, boolean isWindowed) {
+    super(datasourceName, schema, keyField, timestampField, timestampFormat,
+          DataSourceType.KTABLE, ksqlTopic);
     this.stateStoreName = stateStoreName;
     this.isWindowed = isWindowed;
   }
@@ -47,8 +55,8 @@ public class KsqlTable extends StructuredDataSource {
   @Override
   public StructuredDataSource cloneWithTimeKeyColumns() {
     Schema newSchema = SchemaUtil.addImplicitRowTimeRowKeyToSchema(schema);
-    return new KsqlTable(dataSourceName, newSchema, keyField, timestampField, ksqlTopic,
-                         stateStoreName, isWindowed);
+    return new KsqlTable(dataSourceName, newSchema, keyField, timestampField, timestampFormat,
+                         ksqlTopic, stateStoreName, isWindowed);
   }
 
   @Override
@@ -122,7 +122,11 @@ public class MetastoreUtil {
     } else if ("JSON".equals(serde)) {
       topicSerDe = new KsqlJsonTopicSerDe(null);
     } else if ("DELIMITED".equals(serde)) {
-      topicSerDe = new KsqlDelimitedTopicSerDe();
+      JsonNode delimiter = node.get(DdlConfig.VALUE_DELIMITER_PROPERTY.toLowerCase());
+      topicSerDe = delimiter == null
+                   ? new KsqlDelimitedTopicSerDe()
+                   : new KsqlDelimitedTopicSerDe(
+                       KsqlDelimitedTopicSerDe.parseDelimiter(delimiter.asText()));
     } else {
       throw new KsqlException("Topic serde is not supported.");
     }
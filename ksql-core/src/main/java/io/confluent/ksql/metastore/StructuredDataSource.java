@@ -27,6 +27,7 @@ public abstract class StructuredDataSource implements DataSource {
   final Schema schema;
   final Field keyField;
   final Field timestampField;
+  final String timestampFormat;
 
   final KsqlTopic ksqlTopic;
 
@@ -35,10 +36,22 @@ public abstract class StructuredDataSource implements DataSource {
                               final Field keyField,
                               final Field timestampField,
                               final DataSourceType dataSourceType, final KsqlTopic ksqlTopic) {
+    this(datasourceName, schema, keyField, timestampField, null, dataSourceType, ksqlTopic);
+  }
+
+  /**
+   * The timestamp format is the pattern of a STRING timestamp column, null for LONG ones.
+   */
+  public StructuredDataSource(final String datasourceName, final Schema schema,
+                              final Field keyField,
+                              final Field timestampField,
+                              final String timestampFormat,
+                              final DataSourceType dataSourceType, final KsqlTopic ksqlTopic) {
     this.dataSourceName = datasourceName;
     this.schema = schema;
     this.keyField = keyField;
     this.timestampField = timestampField;
+    this.timestampFormat = timestampFormat;
     this.dataSourceType = dataSourceType;
     this.ksqlTopic = ksqlTopic;
   }
@@ -80,6 +93,10 @@ public abstract class StructuredDataSource implements DataSource {
     return timestampField;
   }
 
+  public String getTimestampFormat() {
+    return timestampFormat;
+  }
+
   public abstract StructuredDataSource cloneWithTimeKeyColumns();
 
   public abstract StructuredDataSource cloneWithTimeField(String timestampfieldName);
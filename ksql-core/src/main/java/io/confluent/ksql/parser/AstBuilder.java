@@ -705,7 +705,23 @@ public class AstBuilder
       joinType = Join.Type.INNER;
     }
 
-    return new Join(getLocation(context), joinType, left, right, Optional.of(criteria));
+    Optional<WithinExpression> within = Optional.empty();
+    if (context.joinWindow() != null) {
+      within = Optional.of((WithinExpression) visitJoinWindow(context.joinWindow()));
+    }
+
+    return new Join(getLocation(context), joinType, left, right, Optional.of(criteria), within);
+  }
+
+  @Override
+  public Node visitJoinWindow(SqlBaseParser.JoinWindowContext ctx) {
+    String sizeStr = ctx.number().getText();
+    String sizeUnit = ctx.windowUnit().getText();
+    return new WithinExpression(
+        getLocation(ctx),
+        Long.parseLong(sizeStr),
+        WindowExpression.getWindowUnit(sizeUnit.toUpperCase())
+    );
   }
 
   @Override
@@ -828,6 +844,22 @@ public class AstBuilder
     return result;
   }
 
+  /**
+   * A REGEXP or RLIKE predicate is a call of the REGEXP_LIKE function.
+   */
+  @Override
+  public Node visitRegexp(SqlBaseParser.RegexpContext context) {
+    Expression result = new FunctionCall(
+        getLocation(context), QualifiedName.of("REGEXP_LIKE"),
+        ImmutableList.of((Expression) visit(context.value), (Expression) visit(context.pattern)));
+
+    if (context.NOT() != null) {
+      result = new NotExpression(getLocation(context), result);
+    }
+
+    return result;
+  }
+
   @Override
   public Node visitInList(SqlBaseParser.InListContext context) {
     Expression result = new InPredicate(
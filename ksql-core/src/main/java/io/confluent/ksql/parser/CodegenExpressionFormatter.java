@@ -17,9 +17,13 @@
 package io.confluent.ksql.parser;
 
 import com.google.common.base.Joiner;
+import io.confluent.ksql.codegen.CodegenConstants;
+import io.confluent.ksql.codegen.RangeCheck;
+import io.confluent.ksql.codegen.ValueSet;
 import io.confluent.ksql.function.KsqlFunction;
 import io.confluent.ksql.function.KsqlFunctionException;
 import io.confluent.ksql.function.KsqlFunctions;
+import io.confluent.ksql.parser.rewrite.ConstantFoldingRewriter;
 import io.confluent.ksql.parser.tree.AllColumns;
 import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
 import io.confluent.ksql.parser.tree.ArithmeticUnaryExpression;
@@ -36,6 +40,8 @@ import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.parser.tree.FieldReference;
 import io.confluent.ksql.parser.tree.FunctionCall;
 import io.confluent.ksql.parser.tree.GenericLiteral;
+import io.confluent.ksql.parser.tree.InListExpression;
+import io.confluent.ksql.parser.tree.InPredicate;
 import io.confluent.ksql.parser.tree.IsNotNullPredicate;
 import io.confluent.ksql.parser.tree.IsNullPredicate;
 import io.confluent.ksql.parser.tree.LikePredicate;
@@ -55,9 +61,13 @@ import io.confluent.ksql.util.SchemaUtil;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static java.lang.String.format;
 
@@ -69,15 +79,16 @@ public class CodegenExpressionFormatter {
   static Schema schema;
 
 
-  public static String formatExpression(final Expression expression, final Schema schema) {
+  /**
+   * @param constants collects the constants the generated code uses, which the caller has to
+   *                  declare as parameters of the compiled expression
+   */
+  public static String formatExpression(final Expression expression, final Schema schema,
+                                        final CodegenConstants constants) {
     CodegenExpressionFormatter.schema = schema;
-    return formatExpression(expression, true);
-  }
-
-  public static String formatExpression(final Expression expression, final boolean unmangleNames) {
     Pair<String, Schema>
         expressionFormatterResult =
-        new CodegenExpressionFormatter.Formatter().process(expression, unmangleNames);
+        new CodegenExpressionFormatter.Formatter(constants).process(expression, true);
     return expressionFormatterResult.getLeft();
   }
 
@@ -85,6 +96,12 @@ public class CodegenExpressionFormatter {
   public static class Formatter
       extends AstVisitor<Pair<String, Schema>, Boolean> {
 
+    private final CodegenConstants constants;
+
+    Formatter(final CodegenConstants constants) {
+      this.constants = constants;
+    }
+
     @Override
     protected Pair<String, Schema> visitNode(final Node node, Boolean unmangleNames) {
       throw new UnsupportedOperationException();
@@ -107,7 +124,7 @@ public class CodegenExpressionFormatter {
     @Override
     protected Pair<String, Schema> visitStringLiteral(final StringLiteral node,
                                                            final Boolean unmangleNames) {
-      return new Pair<>("\"" + node.getValue() + "\"", Schema.STRING_SCHEMA);
+      return new Pair<>(formatJavaString(node.getValue()), Schema.STRING_SCHEMA);
     }
 
     @Override
@@ -198,11 +215,22 @@ public class CodegenExpressionFormatter {
       StringBuilder builder = new StringBuilder("(");
       String name = node.getName().getSuffix();
       KsqlFunction ksqlFunction = KsqlFunctions.getFunction(name);
-      String javaReturnType = SchemaUtil.getJavaType(ksqlFunction.getReturnType()).getSimpleName();
-      builder.append("(" + javaReturnType + ") " + name + ".evaluate(");
-      boolean addComma = false;
+      checkRegexLiteral(name, node.getArguments());
+      List<Pair<String, Schema>> processedArgs = new ArrayList<>();
       for (Expression argExpr:node.getArguments()) {
-        Pair<String, Schema> processedArg = process(argExpr, unmangleNames);
+        processedArgs.add(process(argExpr, unmangleNames));
+      }
+      // A typed evaluate overload is called with the arguments as they are and returns the
+      // right type; otherwise the arguments go through the varargs evaluate.
+      if (getTypedEvaluateMethod(ksqlFunction, processedArgs).isPresent()) {
+        builder.append(name + ".evaluate(");
+      } else {
+        String javaReturnType =
+            SchemaUtil.getJavaType(ksqlFunction.getReturnType()).getSimpleName();
+        builder.append("(" + javaReturnType + ") " + name + ".evaluate(");
+      }
+      boolean addComma = false;
+      for (Pair<String, Schema> processedArg : processedArgs) {
         if (addComma) {
           builder.append(" , ");
         } else {
@@ -215,6 +243,66 @@ public class CodegenExpressionFormatter {
       return new Pair<>(builder.toString(), ksqlFunction.getReturnType());
     }
 
+    /**
+     * Compiles the literal pattern of a REGEXP_LIKE (REGEXP, RLIKE) or REGEXP_EXTRACT call, so an
+     * invalid one fails the statement rather than every row.
+     */
+    private void checkRegexLiteral(String name, List<Expression> arguments) {
+      if (!(name.equalsIgnoreCase("REGEXP_LIKE") || name.equalsIgnoreCase("REGEXP_EXTRACT"))
+          || arguments.size() < 2 || !(arguments.get(1) instanceof StringLiteral)) {
+        return;
+      }
+      String regex = ((StringLiteral) arguments.get(1)).getValue();
+      try {
+        Pattern.compile(regex);
+      } catch (PatternSyntaxException e) {
+        throw new KsqlException("Invalid regular expression in " + name.toUpperCase() + ": "
+                                + e.getMessage(), e);
+      }
+    }
+
+    private Optional<Method> getTypedEvaluateMethod(KsqlFunction ksqlFunction,
+                                                    List<Pair<String, Schema>> processedArgs) {
+      List<Class> argumentTypes = new ArrayList<>();
+      for (Pair<String, Schema> processedArg : processedArgs) {
+        switch (processedArg.getRight().type()) {
+          case STRING:
+          case BOOLEAN:
+          case INT32:
+          case INT64:
+          case FLOAT64:
+            argumentTypes.add(SchemaUtil.getJavaType(processedArg.getRight()));
+            break;
+          default:
+            return Optional.empty();
+        }
+      }
+      return ksqlFunction.getTypedEvaluateMethod(argumentTypes);
+    }
+
+    /**
+     * Formats a value compared with null, boxing the result of a typed UDF call that returns a
+     * primitive.
+     */
+    private String formatNullableValue(Expression value, Boolean unmangleNames) {
+      Pair<String, Schema> processedValue = process(value, unmangleNames);
+      if (value instanceof FunctionCall) {
+        FunctionCall functionCall = (FunctionCall) value;
+        List<Pair<String, Schema>> processedArgs = new ArrayList<>();
+        for (Expression argExpr : functionCall.getArguments()) {
+          processedArgs.add(process(argExpr, unmangleNames));
+        }
+        Optional<Method> typedEvaluateMethod = getTypedEvaluateMethod(
+            KsqlFunctions.getFunction(functionCall.getName().getSuffix()), processedArgs);
+        if (typedEvaluateMethod.isPresent()
+            && typedEvaluateMethod.get().getReturnType().isPrimitive()) {
+          return SchemaUtil.getJavaType(processedValue.getRight()).getSimpleName() + ".valueOf("
+                 + processedValue.getLeft() + ")";
+        }
+      }
+      return processedValue.getLeft();
+    }
+
     @Override
     protected Pair<String, Schema> visitLogicalBinaryExpression(LogicalBinaryExpression node,
                                                                      Boolean unmangleNames) {
@@ -305,15 +393,15 @@ public class CodegenExpressionFormatter {
     @Override
     protected Pair<String, Schema> visitIsNullPredicate(IsNullPredicate node,
                                                              Boolean unmangleNames) {
-      Pair<String, Schema> value = process(node.getValue(), unmangleNames);
-      return new Pair<>("((" + value.getLeft() + ") == null )", Schema.BOOLEAN_SCHEMA);
+      String value = formatNullableValue(node.getValue(), unmangleNames);
+      return new Pair<>("((" + value + ") == null )", Schema.BOOLEAN_SCHEMA);
     }
 
     @Override
     protected Pair<String, Schema> visitIsNotNullPredicate(IsNotNullPredicate node,
                                                                 Boolean unmangleNames) {
-      Pair<String, Schema> value = process(node.getValue(), unmangleNames);
-      return new Pair<>("((" + value.getLeft() + ") != null )", Schema.BOOLEAN_SCHEMA);
+      String value = formatNullableValue(node.getValue(), unmangleNames);
+      return new Pair<>("((" + value + ") != null )", Schema.BOOLEAN_SCHEMA);
     }
 
     @Override
@@ -346,34 +434,22 @@ public class CodegenExpressionFormatter {
     @Override
     protected Pair<String, Schema> visitLikePredicate(LikePredicate node,
                                                            Boolean unmangleNames) {
-
-      // For now we just support simple prefix/suffix cases only.
-      String paternString = process(node.getPattern(), true).getLeft().substring(1);
-      paternString = paternString.substring(0, paternString.length() - 1);
-      String valueString = process(node.getValue(), true).getLeft();
-
-      if (paternString.startsWith("%")) {
-        if (paternString.endsWith("%")) {
-          return new Pair<>("(" + valueString + ").contains(\""
-                            + paternString.substring(1, paternString.length() - 1)
-                            + "\")",
-                            Schema
-              .STRING_SCHEMA);
-        } else {
-          return new Pair<>("(" + valueString + ").endsWith(\"" + paternString.substring(1)
-                            + "\")", Schema.STRING_SCHEMA);
-        }
+      // The pattern is compiled here, once; the generated code receives its matcher.
+      if (!(node.getPattern() instanceof StringLiteral)) {
+        throw new KsqlException("LIKE pattern must be a string literal: " + node.getPattern());
       }
-
-      if (paternString.endsWith("%")) {
-        return new Pair<>("(" + valueString + ")"
-                          + ".startsWith(\""
-                          + paternString.substring(0, paternString.length() - 1) + "\")",
-                          Schema
-            .STRING_SCHEMA);
+      Character escape = null;
+      if (node.getEscape() != null) {
+        if (!(node.getEscape() instanceof StringLiteral)
+            || ((StringLiteral) node.getEscape()).getValue().length() != 1) {
+          throw new KsqlException("LIKE escape must be a single character: " + node.getEscape());
+        }
+        escape = ((StringLiteral) node.getEscape()).getValue().charAt(0);
       }
-
-      throw new UnsupportedOperationException();
+      String matcher =
+          constants.addLikeMatcher(((StringLiteral) node.getPattern()).getValue(), escape);
+      String valueString = process(node.getValue(), unmangleNames).getLeft();
+      return new Pair<>(matcher + ".matches(" + valueString + ")", Schema.BOOLEAN_SCHEMA);
     }
 
     @Override
@@ -404,7 +480,101 @@ public class CodegenExpressionFormatter {
     @Override
     protected Pair<String, Schema> visitBetweenPredicate(BetweenPredicate node,
                                                               Boolean unmangleNames) {
-      throw new UnsupportedOperationException();
+      // One call, so that the value is evaluated once for both bounds.
+      Pair<String, Schema> value = process(node.getValue(), unmangleNames);
+      Pair<String, Schema> min = process(node.getMin(), unmangleNames);
+      Pair<String, Schema> max = process(node.getMax(), unmangleNames);
+      boolean isString = value.getRight().type() == Schema.Type.STRING;
+      for (Pair<String, Schema> operand : Arrays.asList(value, min, max)) {
+        Schema.Type type = operand.getRight().type();
+        if (isString ? type != Schema.Type.STRING : !isNumeric(type)) {
+          throw new KsqlException("Invalid operands for BETWEEN: " + node);
+        }
+      }
+      return new Pair<>(RangeCheck.class.getCanonicalName() + ".isBetween(" + value.getLeft()
+                        + ", " + min.getLeft() + ", " + max.getLeft() + ")",
+                        Schema.BOOLEAN_SCHEMA);
+    }
+
+    @Override
+    protected Pair<String, Schema> visitInPredicate(InPredicate node, Boolean unmangleNames) {
+      if (!(node.getValueList() instanceof InListExpression)) {
+        throw new KsqlException("IN is only supported with a list of values: " + node);
+      }
+      List<Expression> values = ((InListExpression) node.getValueList()).getValues();
+      Pair<String, Schema> value = process(node.getValue(), unmangleNames);
+      Optional<ValueSet> valueSet = buildValueSet(value.getRight(), values);
+      if (valueSet.isPresent()) {
+        return new Pair<>(constants.addValueSet(valueSet.get()) + ".contains(" + value.getLeft()
+                          + ")", Schema.BOOLEAN_SCHEMA);
+      }
+      // Lists that are not all constants are compared one value at a time.
+      Expression disjunction = null;
+      for (Expression listValue : values) {
+        Expression equality =
+            new ComparisonExpression(ComparisonExpression.Type.EQUAL, node.getValue(), listValue);
+        disjunction =
+            disjunction == null ? equality : LogicalBinaryExpression.or(disjunction, equality);
+      }
+      return process(disjunction, unmangleNames);
+    }
+
+    /**
+     * The set of the list values, if they are all literals of a type the value can be compared
+     * with.
+     */
+    private Optional<ValueSet> buildValueSet(Schema valueSchema, List<Expression> values) {
+      List<Expression> literals = new ArrayList<>();
+      for (Expression value : values) {
+        literals.add(ConstantFoldingRewriter.fold(value));
+      }
+      switch (valueSchema.type()) {
+        case INT32:
+        case INT64:
+          List<Long> longs = new ArrayList<>();
+          for (Expression literal : literals) {
+            if (literal instanceof LongLiteral) {
+              longs.add(((LongLiteral) literal).getValue());
+            } else if (literal instanceof DoubleLiteral) {
+              // A fractional value can not be equal to an integer one.
+              double doubleValue = ((DoubleLiteral) literal).getValue();
+              if (doubleValue == (long) doubleValue) {
+                longs.add((long) doubleValue);
+              }
+            } else {
+              return Optional.empty();
+            }
+          }
+          return Optional.of(ValueSet.ofLongs(longs));
+        case FLOAT64:
+          List<Double> doubles = new ArrayList<>();
+          for (Expression literal : literals) {
+            if (literal instanceof LongLiteral) {
+              doubles.add((double) ((LongLiteral) literal).getValue());
+            } else if (literal instanceof DoubleLiteral) {
+              doubles.add(((DoubleLiteral) literal).getValue());
+            } else {
+              return Optional.empty();
+            }
+          }
+          return Optional.of(ValueSet.ofDoubles(doubles));
+        case STRING:
+          List<String> strings = new ArrayList<>();
+          for (Expression literal : literals) {
+            if (!(literal instanceof StringLiteral)) {
+              return Optional.empty();
+            }
+            strings.add(((StringLiteral) literal).getValue());
+          }
+          return Optional.of(ValueSet.ofStrings(strings));
+        default:
+          return Optional.empty();
+      }
+    }
+
+    private boolean isNumeric(Schema.Type type) {
+      return type == Schema.Type.INT32 || type == Schema.Type.INT64
+             || type == Schema.Type.FLOAT64;
     }
 
     private String formatBinaryExpression(String operator, Expression left, Expression right,
@@ -479,4 +649,20 @@ public class CodegenExpressionFormatter {
       }
     }
   }
+
+  private static String formatJavaString(final String value) {
+    StringBuilder builder = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < ' ') {
+        // Octal, as unicode escapes are translated before string literals are read.
+        builder.append(String.format("\\%03o", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
 }
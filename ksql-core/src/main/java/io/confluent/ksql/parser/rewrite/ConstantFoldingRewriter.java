@@ -0,0 +1,218 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.parser.rewrite;
+
+import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
+import io.confluent.ksql.parser.tree.ArithmeticUnaryExpression;
+import io.confluent.ksql.parser.tree.BooleanLiteral;
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.DoubleLiteral;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.ExpressionRewriter;
+import io.confluent.ksql.parser.tree.ExpressionTreeRewriter;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.NotExpression;
+import io.confluent.ksql.parser.tree.StringLiteral;
+
+/**
+ * Replaces the subexpressions that only combine literals with their value, so that for example
+ * {@code 1000 * 60 * 60} is computed once at plan time instead of for every record, and
+ * simplifies boolean logic with a literal operand. Folded values have the type the expression
+ * would have had at run time; expressions that would fail at run time, like an integer division
+ * by zero, are left as they are.
+ */
+public class ConstantFoldingRewriter extends ExpressionRewriter<Void> {
+
+  public static Expression fold(final Expression expression) {
+    return ExpressionTreeRewriter.rewriteWith(new ConstantFoldingRewriter(), expression);
+  }
+
+  @Override
+  public Expression rewriteArithmeticUnary(ArithmeticUnaryExpression node, Void context,
+                                           ExpressionTreeRewriter<Void> treeRewriter) {
+    Expression value = treeRewriter.rewrite(node.getValue(), context);
+    boolean negate = node.getSign() == ArithmeticUnaryExpression.Sign.MINUS;
+    if (value instanceof LongLiteral) {
+      long longValue = ((LongLiteral) value).getValue();
+      return new LongLiteral(String.valueOf(negate ? -longValue : longValue));
+    } else if (value instanceof DoubleLiteral) {
+      double doubleValue = ((DoubleLiteral) value).getValue();
+      return new DoubleLiteral(String.valueOf(negate ? -doubleValue : doubleValue));
+    }
+    return value == node.getValue() ? node : new ArithmeticUnaryExpression(node.getSign(), value);
+  }
+
+  @Override
+  public Expression rewriteArithmeticBinary(ArithmeticBinaryExpression node, Void context,
+                                            ExpressionTreeRewriter<Void> treeRewriter) {
+    Expression left = treeRewriter.rewrite(node.getLeft(), context);
+    Expression right = treeRewriter.rewrite(node.getRight(), context);
+    if (left instanceof LongLiteral && right instanceof LongLiteral) {
+      long leftValue = ((LongLiteral) left).getValue();
+      long rightValue = ((LongLiteral) right).getValue();
+      Long result = null;
+      switch (node.getType()) {
+        case ADD:
+          result = leftValue + rightValue;
+          break;
+        case SUBTRACT:
+          result = leftValue - rightValue;
+          break;
+        case MULTIPLY:
+          result = leftValue * rightValue;
+          break;
+        case DIVIDE:
+          result = rightValue == 0 ? null : leftValue / rightValue;
+          break;
+        case MODULUS:
+          result = rightValue == 0 ? null : leftValue % rightValue;
+          break;
+        default:
+          break;
+      }
+      if (result != null) {
+        return new LongLiteral(String.valueOf(result));
+      }
+    } else if (isNumber(left) && isNumber(right)) {
+      double leftValue = getDouble(left);
+      double rightValue = getDouble(right);
+      double result;
+      switch (node.getType()) {
+        case ADD:
+          result = leftValue + rightValue;
+          break;
+        case SUBTRACT:
+          result = leftValue - rightValue;
+          break;
+        case MULTIPLY:
+          result = leftValue * rightValue;
+          break;
+        case DIVIDE:
+          result = leftValue / rightValue;
+          break;
+        default:
+          result = leftValue % rightValue;
+      }
+      // Generated code can not spell NaN or the infinities as literals.
+      if (!Double.isNaN(result) && !Double.isInfinite(result)) {
+        return new DoubleLiteral(String.valueOf(result));
+      }
+    }
+    if (left == node.getLeft() && right == node.getRight()) {
+      return node;
+    }
+    return new ArithmeticBinaryExpression(node.getType(), left, right);
+  }
+
+  @Override
+  public Expression rewriteComparisonExpression(ComparisonExpression node, Void context,
+                                                ExpressionTreeRewriter<Void> treeRewriter) {
+    Expression left = treeRewriter.rewrite(node.getLeft(), context);
+    Expression right = treeRewriter.rewrite(node.getRight(), context);
+    Boolean result = null;
+    if (node.getType() == ComparisonExpression.Type.IS_DISTINCT_FROM) {
+      result = null;
+    } else if (left instanceof LongLiteral && right instanceof LongLiteral) {
+      result = compare(node.getType(), Long.compare(((LongLiteral) left).getValue(),
+                                                    ((LongLiteral) right).getValue()));
+    } else if (isNumber(left) && isNumber(right)) {
+      double leftValue = getDouble(left);
+      double rightValue = getDouble(right);
+      if (!Double.isNaN(leftValue) && !Double.isNaN(rightValue)) {
+        result = compare(node.getType(), leftValue < rightValue ? -1
+                                         : leftValue > rightValue ? 1 : 0);
+      }
+    } else if ((left instanceof StringLiteral && right instanceof StringLiteral)
+               || (left instanceof BooleanLiteral && right instanceof BooleanLiteral)) {
+      // Strings and booleans are only compared for equality.
+      if (node.getType() == ComparisonExpression.Type.EQUAL
+          || node.getType() == ComparisonExpression.Type.NOT_EQUAL) {
+        result = compare(node.getType(), left.equals(right) ? 0 : 1);
+      }
+    }
+    if (result != null) {
+      return result ? BooleanLiteral.TRUE_LITERAL : BooleanLiteral.FALSE_LITERAL;
+    }
+    if (left == node.getLeft() && right == node.getRight()) {
+      return node;
+    }
+    return new ComparisonExpression(node.getType(), left, right);
+  }
+
+  @Override
+  public Expression rewriteLogicalBinaryExpression(LogicalBinaryExpression node, Void context,
+                                                   ExpressionTreeRewriter<Void> treeRewriter) {
+    Expression left = treeRewriter.rewrite(node.getLeft(), context);
+    Expression right = treeRewriter.rewrite(node.getRight(), context);
+    boolean isAnd = node.getType() == LogicalBinaryExpression.Type.AND;
+    // The generated code short-circuits, so only a literal on the left may drop the right side.
+    if (left instanceof BooleanLiteral) {
+      if (((BooleanLiteral) left).getValue() == isAnd) {
+        return right;
+      }
+      return left;
+    }
+    if (right instanceof BooleanLiteral && ((BooleanLiteral) right).getValue() == isAnd) {
+      return left;
+    }
+    if (left == node.getLeft() && right == node.getRight()) {
+      return node;
+    }
+    return new LogicalBinaryExpression(node.getType(), left, right);
+  }
+
+  @Override
+  public Expression rewriteNotExpression(NotExpression node, Void context,
+                                         ExpressionTreeRewriter<Void> treeRewriter) {
+    Expression value = treeRewriter.rewrite(node.getValue(), context);
+    if (value instanceof BooleanLiteral) {
+      return ((BooleanLiteral) value).getValue()
+             ? BooleanLiteral.FALSE_LITERAL : BooleanLiteral.TRUE_LITERAL;
+    }
+    return value == node.getValue() ? node : new NotExpression(value);
+  }
+
+  private static boolean compare(final ComparisonExpression.Type type, final int comparison) {
+    switch (type) {
+      case EQUAL:
+        return comparison == 0;
+      case NOT_EQUAL:
+        return comparison != 0;
+      case LESS_THAN:
+        return comparison < 0;
+      case LESS_THAN_OR_EQUAL:
+        return comparison <= 0;
+      case GREATER_THAN:
+        return comparison > 0;
+      default:
+        // GREATER_THAN_OR_EQUAL; IS DISTINCT FROM is never folded.
+        return comparison >= 0;
+    }
+  }
+
+  private static boolean isNumber(final Expression expression) {
+    return expression instanceof LongLiteral || expression instanceof DoubleLiteral;
+  }
+
+  private static double getDouble(final Expression expression) {
+    if (expression instanceof LongLiteral) {
+      return ((LongLiteral) expression).getValue();
+    }
+    return ((DoubleLiteral) expression).getValue();
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.parser.rewrite;
+
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.DoubleLiteral;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.ExpressionRewriter;
+import io.confluent.ksql.parser.tree.ExpressionTreeRewriter;
+import io.confluent.ksql.parser.tree.InListExpression;
+import io.confluent.ksql.parser.tree.InPredicate;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.StringLiteral;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces a disjunction of equalities between a column and literals, like
+ * {@code a = 1 OR a = 2 OR a = 3}, with {@code a IN (1, 2, 3)}, which is compiled into one
+ * lookup in a prebuilt set instead of a comparison per value. Columns compared with fewer than
+ * {@link #MIN_IN_LIST_SIZE} values are left as they are.
+ */
+public class InListRewriter extends ExpressionRewriter<Void> {
+
+  static final int MIN_IN_LIST_SIZE = 3;
+
+  public static Expression rewrite(final Expression expression) {
+    return ExpressionTreeRewriter.rewriteWith(new InListRewriter(), expression);
+  }
+
+  @Override
+  public Expression rewriteLogicalBinaryExpression(LogicalBinaryExpression node, Void context,
+                                                   ExpressionTreeRewriter<Void> treeRewriter) {
+    if (node.getType() != LogicalBinaryExpression.Type.OR) {
+      return null;
+    }
+    List<Expression> terms = new ArrayList<>();
+    collectDisjuncts(node, terms);
+
+    Map<Expression, List<Expression>> columnValues = new LinkedHashMap<>();
+    for (Expression term : terms) {
+      Expression column = getColumn(term);
+      if (column != null) {
+        columnValues.computeIfAbsent(column, c -> new ArrayList<>()).addAll(getValues(term));
+      }
+    }
+
+    // Each IN list takes the place of the first term it replaces.
+    List<Expression> rewrittenTerms = new ArrayList<>();
+    Set<Expression> rewrittenColumns = new HashSet<>();
+    for (Expression term : terms) {
+      Expression column = getColumn(term);
+      if (column != null && columnValues.get(column).size() >= MIN_IN_LIST_SIZE) {
+        if (rewrittenColumns.add(column)) {
+          rewrittenTerms.add(
+              new InPredicate(column, new InListExpression(columnValues.get(column))));
+        }
+      } else {
+        rewrittenTerms.add(treeRewriter.rewrite(term, context));
+      }
+    }
+
+    Expression result = rewrittenTerms.get(0);
+    for (Expression term : rewrittenTerms.subList(1, rewrittenTerms.size())) {
+      result = LogicalBinaryExpression.or(result, term);
+    }
+    return result;
+  }
+
+  private static void collectDisjuncts(Expression expression, List<Expression> terms) {
+    if (expression instanceof LogicalBinaryExpression
+        && ((LogicalBinaryExpression) expression).getType() == LogicalBinaryExpression.Type.OR) {
+      collectDisjuncts(((LogicalBinaryExpression) expression).getLeft(), terms);
+      collectDisjuncts(((LogicalBinaryExpression) expression).getRight(), terms);
+    } else {
+      terms.add(expression);
+    }
+  }
+
+  /**
+   * The column the term compares with literals, or null if it is not such a term.
+   */
+  private static Expression getColumn(Expression term) {
+    if (term instanceof ComparisonExpression) {
+      ComparisonExpression comparison = (ComparisonExpression) term;
+      if (comparison.getType() != ComparisonExpression.Type.EQUAL) {
+        return null;
+      }
+      if (isColumn(comparison.getLeft()) && isLiteral(comparison.getRight())) {
+        return comparison.getLeft();
+      } else if (isLiteral(comparison.getLeft()) && isColumn(comparison.getRight())) {
+        return comparison.getRight();
+      }
+    } else if (term instanceof InPredicate) {
+      InPredicate inPredicate = (InPredicate) term;
+      if (isColumn(inPredicate.getValue())
+          && inPredicate.getValueList() instanceof InListExpression
+          && ((InListExpression) inPredicate.getValueList()).getValues().stream()
+              .allMatch(InListRewriter::isLiteral)) {
+        return inPredicate.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static List<Expression> getValues(Expression term) {
+    List<Expression> values = new ArrayList<>();
+    if (term instanceof ComparisonExpression) {
+      ComparisonExpression comparison = (ComparisonExpression) term;
+      values.add(isLiteral(comparison.getRight()) ? comparison.getRight() : comparison.getLeft());
+    } else {
+      values.addAll(((InListExpression) ((InPredicate) term).getValueList()).getValues());
+    }
+    return values;
+  }
+
+  private static boolean isColumn(Expression expression) {
+    return expression instanceof QualifiedNameReference
+           || expression instanceof DereferenceExpression;
+  }
+
+  private static boolean isLiteral(Expression expression) {
+    return expression instanceof StringLiteral
+           || expression instanceof LongLiteral
+           || expression instanceof DoubleLiteral;
+  }
+}
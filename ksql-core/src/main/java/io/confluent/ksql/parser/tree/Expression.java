@@ -16,6 +16,7 @@
 
 package io.confluent.ksql.parser.tree;
 
+import io.confluent.ksql.codegen.CodegenConstants;
 import io.confluent.ksql.parser.CodegenExpressionFormatter;
 import io.confluent.ksql.parser.ExpressionFormatter;
 import io.confluent.ksql.util.KsqlException;
@@ -44,9 +45,9 @@ public abstract class Expression
     return ExpressionFormatter.formatExpression(this);
   }
 
-  public final String getCodegenString(Schema schema) {
+  public final String getCodegenString(Schema schema, CodegenConstants constants) {
     try {
-      return CodegenExpressionFormatter.formatExpression(this, schema);
+      return CodegenExpressionFormatter.formatExpression(this, schema, constants);
     } catch (Exception e) {
       throw new KsqlException(e.getMessage(), e);
     }
@@ -395,6 +395,15 @@ public final class ExpressionTreeRewriter<C> {
 
       Optional<Window> rewrittenWindow = node.getWindow();
 
+      ImmutableList.Builder<Expression> arguments = ImmutableList.builder();
+      for (Expression expression : node.getArguments()) {
+        arguments.add(rewrite(expression, context.get()));
+      }
+
+      if (!sameElements(node.getArguments(), arguments.build())) {
+        return new FunctionCall(node.getName(), rewrittenWindow, node.isDistinct(),
+                                arguments.build());
+      }
       return node;
     }
 
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.parser.tree;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The WITHIN clause of a stream-stream join: how far apart in time two records can be and
+ * still join.
+ */
+public class WithinExpression extends Node {
+
+  private final long size;
+  private final WindowExpression.WindowUnit sizeUnit;
+
+  public WithinExpression(long size, WindowExpression.WindowUnit sizeUnit) {
+    this(Optional.empty(), size, sizeUnit);
+  }
+
+  public WithinExpression(NodeLocation location, long size,
+                          WindowExpression.WindowUnit sizeUnit) {
+    this(Optional.of(location), size, sizeUnit);
+  }
+
+  private WithinExpression(Optional<NodeLocation> location, long size,
+                           WindowExpression.WindowUnit sizeUnit) {
+    super(location);
+    this.size = size;
+    this.sizeUnit = sizeUnit;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public WindowExpression.WindowUnit getSizeUnit() {
+    return sizeUnit;
+  }
+
+  public long getSizeInMillis() {
+    switch (sizeUnit) {
+      case DAY:
+        return size * 24 * 60 * 60 * 1000;
+      case HOUR:
+        return size * 60 * 60 * 1000;
+      case MINUTE:
+        return size * 60 * 1000;
+      case SECOND:
+        return size * 1000;
+      default:
+        return size;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return " WITHIN " + size + " " + sizeUnit + " ";
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(size, sizeUnit);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    WithinExpression withinExpression = (WithinExpression) o;
+    return withinExpression.size == size && withinExpression.sizeUnit == sizeUnit;
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.physical;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The columns of a {@link GenericRow}, kept in a single Object array. Free slots may be kept in
+ * front of the first column, so that the ROWTIME and ROWKEY columns prepended once a row is
+ * read from its topic take one of them instead of shifting every column.
+ */
+public final class ColumnArray extends AbstractList<Object> implements RandomAccess {
+
+  private static final Object[] EMPTY = new Object[0];
+
+  private Object[] values;
+  private int start;
+  private int size;
+
+  public ColumnArray() {
+    this(0, 0);
+  }
+
+  public ColumnArray(int capacity) {
+    this(capacity, 0);
+  }
+
+  /**
+   * The headroom is the number of columns that can be added at index 0 without moving the
+   * others.
+   */
+  public ColumnArray(int capacity, int headroom) {
+    int length = capacity + headroom;
+    this.values = length == 0 ? EMPTY : new Object[length];
+    this.start = headroom;
+    this.size = 0;
+  }
+
+  private ColumnArray(Object[] values) {
+    this.values = values;
+    this.start = 0;
+    this.size = values.length;
+  }
+
+  /**
+   * The returned columns are backed by the given array, which is not copied.
+   */
+  public static ColumnArray wrap(Object[] values) {
+    return new ColumnArray(values);
+  }
+
+  public static ColumnArray copyOf(List<Object> columns) {
+    return wrap(columns.toArray());
+  }
+
+  @Override
+  public Object get(int index) {
+    checkIndex(index);
+    return values[start + index];
+  }
+
+  @Override
+  public Object set(int index, Object value) {
+    checkIndex(index);
+    Object previous = values[start + index];
+    values[start + index] = value;
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean add(Object value) {
+    if (start + size == values.length) {
+      grow();
+    }
+    values[start + size] = value;
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void add(int index, Object value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    if (index == 0 && start > 0) {
+      values[--start] = value;
+    } else {
+      if (start + size == values.length) {
+        grow();
+      }
+      int position = start + index;
+      System.arraycopy(values, position, values, position + 1, size - index);
+      values[position] = value;
+    }
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public Object remove(int index) {
+    checkIndex(index);
+    int position = start + index;
+    Object removed = values[position];
+    if (index == 0) {
+      values[start++] = null;
+    } else {
+      System.arraycopy(values, position + 1, values, position, size - index - 1);
+      values[start + size - 1] = null;
+    }
+    size--;
+    modCount++;
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, start, start + size, null);
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOfRange(values, start, start + size);
+  }
+
+  private void grow() {
+    Object[] grown = new Object[start + Math.max(size * 2, size + 4)];
+    System.arraycopy(values, start, grown, start, size);
+    values = grown;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.physical;
+
+import io.confluent.ksql.metastore.StructuredDataSource;
+import io.confluent.ksql.parser.tree.BooleanLiteral;
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.DefaultExpressionTraversalVisitor;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.DoubleLiteral;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.StringLiteral;
+import io.confluent.ksql.planner.plan.AggregateNode;
+import io.confluent.ksql.planner.plan.FilterNode;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
+import io.confluent.ksql.serde.ColumnPushdown;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds the value columns of its source a single source stream query reads, from the filters
+ * and the projection or aggregation right above the source, and the conjuncts of those filters
+ * that compare a column with a literal.
+ */
+class ColumnPushdownAnalyzer {
+
+  private final StructuredDataSourceNode sourceNode;
+  private final Map<String, Integer> valueColumns = new HashMap<>();
+  private final boolean[] requiredColumns;
+  private final List<ColumnPushdown.ColumnPredicate> predicates = new ArrayList<>();
+  private boolean unresolvedColumns = false;
+
+  private ColumnPushdownAnalyzer(final StructuredDataSourceNode sourceNode) {
+    this.sourceNode = sourceNode;
+    List<Field> fields =
+        SchemaUtil.removeImplicitRowTimeRowKeyFromSchema(sourceNode.getSchema()).fields();
+    for (int i = 0; i < fields.size(); i++) {
+      valueColumns.put(fields.get(i).name(), i);
+    }
+    this.requiredColumns = new boolean[fields.size()];
+  }
+
+  /**
+   * Returns empty if the whole row has to be decoded: for tables, whose rows are kept in state
+   * stores, for joins, and whenever a column reference can not be resolved.
+   */
+  static Optional<ColumnPushdown> analyze(final PlanNode planRoot) {
+    List<PlanNode> path = new ArrayList<>();
+    PlanNode node = planRoot;
+    while (node.getSources() != null && node.getSources().size() == 1) {
+      path.add(node);
+      node = node.getSources().get(0);
+    }
+    if (!(node instanceof StructuredDataSourceNode)) {
+      return Optional.empty();
+    }
+    StructuredDataSourceNode sourceNode = (StructuredDataSourceNode) node;
+    if (sourceNode.getDataSourceType() != StructuredDataSource.DataSourceType.KSTREAM) {
+      return Optional.empty();
+    }
+
+    ColumnPushdownAnalyzer analyzer = new ColumnPushdownAnalyzer(sourceNode);
+    analyzer.require(sourceNode.getKeyField());
+    analyzer.require(sourceNode.getTimestampField());
+    for (int i = path.size() - 1; i >= 0; i--) {
+      PlanNode parent = path.get(i);
+      if (parent instanceof FilterNode) {
+        Expression predicate = ((FilterNode) parent).getPredicate();
+        analyzer.require(predicate);
+        analyzer.addPredicates(predicate);
+      } else if (parent instanceof ProjectNode) {
+        for (Expression expression : ((ProjectNode) parent).getProjectExpressions()) {
+          analyzer.require(expression);
+        }
+        return analyzer.build();
+      } else if (parent instanceof AggregateNode) {
+        AggregateNode aggregateNode = (AggregateNode) parent;
+        List<Expression> expressions = new ArrayList<>(aggregateNode.getGroupByExpressions());
+        expressions.addAll(aggregateNode.getRequiredColumnList());
+        expressions.addAll(aggregateNode.getAggregateFunctionArguments());
+        for (Expression expression : expressions) {
+          analyzer.require(expression);
+        }
+        return analyzer.build();
+      } else {
+        return Optional.empty();
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<ColumnPushdown> build() {
+    if (unresolvedColumns) {
+      return Optional.empty();
+    }
+    boolean allRequired = true;
+    for (boolean required : requiredColumns) {
+      allRequired &= required;
+    }
+    if (allRequired && predicates.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(new ColumnPushdown(requiredColumns, predicates));
+  }
+
+  private void require(final Field field) {
+    if (field != null) {
+      requireColumn(field.name());
+    }
+  }
+
+  private void require(final Expression expression) {
+    new DefaultExpressionTraversalVisitor<Object, Object>() {
+      @Override
+      protected Object visitDereferenceExpression(DereferenceExpression node, Object context) {
+        requireColumn(node.toString());
+        return null;
+      }
+
+      @Override
+      protected Object visitQualifiedNameReference(QualifiedNameReference node, Object context) {
+        requireColumn(node.getName().getSuffix());
+        return null;
+      }
+    }.process(expression, null);
+  }
+
+  private void requireColumn(final String name) {
+    Optional<Field> field = SchemaUtil.getFieldByName(sourceNode.getSchema(), name);
+    if (!field.isPresent()) {
+      unresolvedColumns = true;
+      return;
+    }
+    Optional<Integer> column = getValueColumn(field.get().name());
+    if (column.isPresent()) {
+      requiredColumns[column.get()] = true;
+    }
+  }
+
+  /**
+   * Adds the conjuncts of the predicate comparing a column with a literal of the same type.
+   */
+  private void addPredicates(final Expression predicate) {
+    if (predicate instanceof LogicalBinaryExpression) {
+      LogicalBinaryExpression logicalExpression = (LogicalBinaryExpression) predicate;
+      if (logicalExpression.getType() == LogicalBinaryExpression.Type.AND) {
+        addPredicates(logicalExpression.getLeft());
+        addPredicates(logicalExpression.getRight());
+      }
+    } else if (predicate instanceof ComparisonExpression) {
+      ComparisonExpression comparison = (ComparisonExpression) predicate;
+      if (isLiteral(comparison.getRight())) {
+        addPredicate(comparison.getLeft(), comparison.getType(), comparison.getRight());
+      } else if (isLiteral(comparison.getLeft())) {
+        addPredicate(comparison.getRight(), comparison.getType().flip(), comparison.getLeft());
+      }
+    }
+  }
+
+  private void addPredicate(final Expression columnExpression,
+                            final ComparisonExpression.Type type,
+                            final Expression literal) {
+    String name;
+    if (columnExpression instanceof QualifiedNameReference) {
+      name = ((QualifiedNameReference) columnExpression).getName().getSuffix();
+    } else if (columnExpression instanceof DereferenceExpression) {
+      name = columnExpression.toString();
+    } else {
+      return;
+    }
+    Optional<Field> field = SchemaUtil.getFieldByName(sourceNode.getSchema(), name);
+    if (!field.isPresent()) {
+      return;
+    }
+    Optional<Integer> column = getValueColumn(field.get().name());
+    if (!column.isPresent()) {
+      return;
+    }
+
+    Schema.Type columnType = field.get().schema().type();
+    boolean numericColumn = columnType == Schema.Type.INT32
+                            || columnType == Schema.Type.INT64
+                            || columnType == Schema.Type.FLOAT64;
+    Object value;
+    if (literal instanceof LongLiteral && numericColumn) {
+      value = ((LongLiteral) literal).getValue();
+    } else if (literal instanceof DoubleLiteral && numericColumn) {
+      value = ((DoubleLiteral) literal).getValue();
+    } else if (literal instanceof StringLiteral && columnType == Schema.Type.STRING) {
+      value = ((StringLiteral) literal).getValue();
+    } else if (literal instanceof BooleanLiteral && columnType == Schema.Type.BOOLEAN) {
+      value = ((BooleanLiteral) literal).getValue();
+    } else {
+      return;
+    }
+
+    ColumnPushdown.Comparison comparison = getComparison(type);
+    if (comparison == null || (!numericColumn && comparison != ColumnPushdown.Comparison.EQUAL
+                               && comparison != ColumnPushdown.Comparison.NOT_EQUAL)) {
+      return;
+    }
+    predicates.add(new ColumnPushdown.ColumnPredicate(column.get(), comparison, value));
+  }
+
+  private Optional<Integer> getValueColumn(final String fieldName) {
+    return Optional.ofNullable(valueColumns.get(fieldName));
+  }
+
+  private static boolean isLiteral(final Expression expression) {
+    return expression instanceof LongLiteral
+           || expression instanceof DoubleLiteral
+           || expression instanceof StringLiteral
+           || expression instanceof BooleanLiteral;
+  }
+
+  private static ColumnPushdown.Comparison getComparison(final ComparisonExpression.Type type) {
+    switch (type) {
+      case EQUAL:
+        return ColumnPushdown.Comparison.EQUAL;
+      case NOT_EQUAL:
+        return ColumnPushdown.Comparison.NOT_EQUAL;
+      case LESS_THAN:
+        return ColumnPushdown.Comparison.LESS_THAN;
+      case LESS_THAN_OR_EQUAL:
+        return ColumnPushdown.Comparison.LESS_THAN_OR_EQUAL;
+      case GREATER_THAN:
+        return ColumnPushdown.Comparison.GREATER_THAN;
+      case GREATER_THAN_OR_EQUAL:
+        return ColumnPushdown.Comparison.GREATER_THAN_OR_EQUAL;
+      default:
+        return null;
+    }
+  }
+}
@@ -16,17 +16,19 @@
 
 package io.confluent.ksql.physical;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 public class GenericRow {
 
+  // ROWTIME and ROWKEY, added in front of the value columns once a row is read from its topic.
+  public static final int IMPLICIT_COLUMN_COUNT = 2;
+
   private final List<Object> columns;
 
   public GenericRow() {
-    columns = new ArrayList<>();
+    columns = new ColumnArray();
   }
 
   public GenericRow(List<Object> columns) {
@@ -34,6 +36,21 @@ public class GenericRow {
     this.columns = columns;
   }
 
+  /**
+   * The row is backed by the given array, which is not copied.
+   */
+  public GenericRow(Object[] columns) {
+    this(ColumnArray.wrap(columns));
+  }
+
+  /**
+   * Empty columns for a row read from a topic, with room for its value columns and free slots in
+   * front of them for the implicit columns.
+   */
+  public static ColumnArray newSourceColumns(int valueColumnCount) {
+    return new ColumnArray(valueColumnCount, IMPLICIT_COLUMN_COUNT);
+  }
+
   @Override
   public String toString() {
     StringBuilder stringBuilder = new StringBuilder("[ ");
@@ -67,13 +84,46 @@ public class GenericRow {
 
     if (columns.size() != that.columns.size()) return false;
 
-    // For now string matching is used to compare the rows as double comparision will cause issues
-    return this.toString().equals(that.toString());
+    for (int i = 0; i < columns.size(); i++) {
+      if (!columnEquals(columns.get(i), that.columns.get(i))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(columns);
+    int hash = 1;
+    for (int i = 0; i < columns.size(); i++) {
+      hash = 31 * hash + columnHashCode(columns.get(i));
+    }
+    return hash;
+  }
+
+  // Integral values are equal whatever their boxed type, as INT and BIGINT literals and columns
+  // are mixed freely.
+  private static boolean columnEquals(Object value, Object other) {
+    if (isIntegral(value) && isIntegral(other)) {
+      return ((Number) value).longValue() == ((Number) other).longValue();
+    }
+    return Objects.deepEquals(value, other);
+  }
+
+  private static int columnHashCode(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (isIntegral(value)) {
+      return Long.hashCode(((Number) value).longValue());
+    } else if (value instanceof Object[]) {
+      return Arrays.deepHashCode((Object[]) value);
+    }
+    return value.hashCode();
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer
+           || value instanceof Short || value instanceof Byte;
   }
 
   public List<Object> getColumns() {
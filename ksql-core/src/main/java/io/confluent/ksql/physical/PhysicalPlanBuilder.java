@@ -16,6 +16,9 @@
 
 package io.confluent.ksql.physical;
 
+import io.confluent.ksql.codegen.ColumnarPredicate;
+import io.confluent.ksql.codegen.ColumnarPredicateCompiler;
+import io.confluent.ksql.codegen.ProjectionCompiler;
 import io.confluent.ksql.ddl.DdlConfig;
 import io.confluent.ksql.function.KsqlAggregateFunction;
 import io.confluent.ksql.function.KsqlFunctions;
@@ -39,11 +42,17 @@ import io.confluent.ksql.planner.plan.PlanNode;
 import io.confluent.ksql.planner.plan.ProjectNode;
 import io.confluent.ksql.planner.plan.SourceNode;
 import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
+import io.confluent.ksql.serde.ColumnPushdown;
 import io.confluent.ksql.serde.KsqlTopicSerDe;
 import io.confluent.ksql.serde.avro.KsqlAvroTopicSerDe;
+import io.confluent.ksql.structured.RowBatchProcessor;
 import io.confluent.ksql.structured.SchemaKGroupedStream;
 import io.confluent.ksql.structured.SchemaKStream;
 import io.confluent.ksql.structured.SchemaKTable;
+import io.confluent.ksql.structured.SqlPredicate;
+import io.confluent.ksql.structured.TableMaterialization;
+import io.confluent.ksql.util.BatchedQueryRunner;
+import io.confluent.ksql.util.BoundedRowQueue;
 import io.confluent.ksql.util.KafkaTopicClient;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.KsqlException;
@@ -51,6 +60,9 @@ import io.confluent.ksql.util.Pair;
 import io.confluent.ksql.util.SchemaUtil;
 import io.confluent.ksql.util.SerDeUtil;
 import io.confluent.ksql.util.WindowedSerde;
+import io.confluent.ksql.util.timestamp.KsqlTimestampExtractor;
+import io.confluent.ksql.util.timestamp.StringToTimestampParser;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.connect.data.Field;
@@ -58,6 +70,7 @@ import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.JoinWindows;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KStreamBuilder;
 import org.apache.kafka.streams.kstream.KTable;
@@ -67,6 +80,7 @@ import org.apache.kafka.streams.kstream.ValueTransformer;
 import org.apache.kafka.streams.kstream.ValueTransformerSupplier;
 import org.apache.kafka.streams.kstream.Windowed;
 import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.TimestampExtractor;
 import org.apache.kafka.streams.processor.TopologyBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +89,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -87,19 +102,160 @@ public class PhysicalPlanBuilder {
   private final KStreamBuilder builder;
   private final KsqlConfig ksqlConfig;
   private final KafkaTopicClient kafkaTopicClient;
+  private final String aggregateStoreName;
+  private final SourceStreams sourceStreams;
+  private final boolean pushdownEnabled;
 
   private OutputNode planSink = null;
+  private Optional<ColumnPushdown> sourcePushdown = Optional.empty();
+  private boolean generatedStateNames = false;
 
   public PhysicalPlanBuilder(final KStreamBuilder builder, final KsqlConfig ksqlConfig, KafkaTopicClient kafkaTopicClient) {
+    this(builder, ksqlConfig, kafkaTopicClient, "KSQL_Agg_Query_" + System.currentTimeMillis(),
+         new SourceStreams(), true);
+  }
+
+  /**
+   * The aggregate store name is passed in when the plan may be built again later and has to
+   * find the state of the previous build. Plans built into the same builder pass the same
+   * {@link SourceStreams} to share their sources, which are then decoded in full since other
+   * queries read them too.
+   */
+  public PhysicalPlanBuilder(final KStreamBuilder builder, final KsqlConfig ksqlConfig,
+                             KafkaTopicClient kafkaTopicClient, final String aggregateStoreName,
+                             final SourceStreams sourceStreams) {
+    this(builder, ksqlConfig, kafkaTopicClient, aggregateStoreName, sourceStreams, false);
+  }
+
+  private PhysicalPlanBuilder(final KStreamBuilder builder, final KsqlConfig ksqlConfig,
+                              KafkaTopicClient kafkaTopicClient, final String aggregateStoreName,
+                              final SourceStreams sourceStreams, final boolean pushdownEnabled) {
     this.builder = builder;
     this.ksqlConfig = ksqlConfig;
     this.kafkaTopicClient = kafkaTopicClient;
+    this.aggregateStoreName = aggregateStoreName;
+    this.sourceStreams = sourceStreams;
+    this.pushdownEnabled = pushdownEnabled;
+  }
+
+  public String getAggregateStoreName() {
+    return aggregateStoreName;
+  }
+
+  /**
+   * Whether the built plan has state stores or repartition topics that Kafka Streams names by
+   * the order in which they are added to the builder: the window stores of stream-stream joins
+   * and the repartition topics of joins. Those names change when the plan is built into one
+   * builder together with other plans, so the plan can not find its state again.
+   */
+  public boolean hasGeneratedStateNames() {
+    return generatedStateNames;
   }
 
   public SchemaKStream buildPhysicalPlan(final PlanNode logicalPlanRoot) throws Exception {
+    if (pushdownEnabled) {
+      // The filter is still applied after the source; the pushdown only skips decoding unused
+      // columns and drops rows that can not pass it early.
+      sourcePushdown = ColumnPushdownAnalyzer.analyze(logicalPlanRoot);
+      if (sourcePushdown.isPresent()) {
+        log.debug("Pushing {} down into the source deserializer", sourcePushdown.get());
+      }
+    }
     return kafkaStreamsDsl(logicalPlanRoot);
   }
 
+  /**
+   * Whether the query reads a stream and writes a stream without a PARTITION BY, with only an
+   * optional WHERE clause and a SELECT in between, so it can run in micro-batches.
+   */
+  public static boolean isBatchable(final PlanNode logicalPlanRoot) {
+    if (!(logicalPlanRoot instanceof KsqlStructuredDataOutputNode)
+        || ((KsqlStructuredDataOutputNode) logicalPlanRoot).getOutputProperties()
+            .containsKey(DdlConfig.PARTITION_BY_PROPERTY)) {
+      return false;
+    }
+    PlanNode node = ((OutputNode) logicalPlanRoot).getSource();
+    if (!(node instanceof ProjectNode)) {
+      return false;
+    }
+    node = ((ProjectNode) node).getSource();
+    if (node instanceof FilterNode) {
+      node = ((FilterNode) node).getSource();
+    }
+    return node instanceof StructuredDataSourceNode
+           && ((StructuredDataSourceNode) node).getDataSourceType()
+              == StructuredDataSource.DataSourceType.KSTREAM;
+  }
+
+  /**
+   * Builds the micro-batched runner of a query accepted by {@link #isBatchable(PlanNode)}. Has to
+   * be called after {@link #buildPhysicalPlan(PlanNode)}, which creates the sink topic.
+   */
+  public BatchedQueryRunner buildBatchedQuery(final PlanNode logicalPlanRoot,
+                                              final String applicationId,
+                                              final Map<String, Object> properties)
+      throws Exception {
+    if (!isBatchable(logicalPlanRoot) || !(planSink instanceof KsqlStructuredDataOutputNode)) {
+      throw new KsqlException("Query can not run in micro-batches: " + logicalPlanRoot.getId());
+    }
+    ProjectNode projectNode = (ProjectNode) ((OutputNode) logicalPlanRoot).getSource();
+    SqlPredicate predicate = null;
+    ColumnarPredicate columnarPredicate = null;
+    // Without a columnar filter the WHERE clause is compiled into the projection.
+    Expression projectionFilter = null;
+    PlanNode sourceNode = projectNode.getSource();
+    if (sourceNode instanceof FilterNode) {
+      FilterNode filterNode = (FilterNode) sourceNode;
+      if (Boolean.parseBoolean(
+          ksqlConfig.get(KsqlConfig.KSQL_BATCH_COLUMNAR_ENABLED_CONFIG).toString())) {
+        columnarPredicate = ColumnarPredicateCompiler.compile(
+            filterNode.getPredicate(), filterNode.getSource().getSchema()).orElse(null);
+      }
+      if (columnarPredicate != null) {
+        predicate = new SqlPredicate(filterNode.getPredicate(),
+                                     filterNode.getSource().getSchema(), false);
+      } else {
+        projectionFilter = filterNode.getPredicate();
+      }
+      sourceNode = filterNode.getSource();
+    }
+    RowBatchProcessor processor = new RowBatchProcessor(
+        predicate,
+        columnarPredicate,
+        new ProjectionCompiler(projectNode.getSource().getSchema())
+            .compile(projectionFilter, projectNode.getProjectNameExpressionPairList()),
+        SchemaUtil.getRowTimeRowKeyIndexes(logicalPlanRoot.getSchema()));
+
+    StructuredDataSourceNode structuredDataSourceNode = (StructuredDataSourceNode) sourceNode;
+    TimestampExtractor timestampExtractor = null;
+    if (structuredDataSourceNode.getTimestampField() != null) {
+      String timestampFormat =
+          structuredDataSourceNode.getStructuredDataSource().getTimestampFormat();
+      timestampExtractor = new KsqlTimestampExtractor(
+          getTimeStampColumnIndex(structuredDataSourceNode.getSchema(),
+                                  structuredDataSourceNode.getTimestampField()),
+          timestampFormat == null ? null : new StringToTimestampParser(timestampFormat));
+    }
+    Serde<GenericRow> sourceSerde =
+        SerDeUtil.getRowSerDe(structuredDataSourceNode.getStructuredDataSource()
+                                  .getKsqlTopic().getKsqlTopicSerDe(),
+                              SchemaUtil.removeImplicitRowTimeRowKeyFromSchema(
+                                  structuredDataSourceNode.getSchema()));
+
+    KsqlStructuredDataOutputNode sinkNode = (KsqlStructuredDataOutputNode) planSink;
+    Serde<GenericRow> sinkSerde =
+        SerDeUtil.getRowSerDe(sinkNode.getKsqlTopic().getKsqlTopicSerDe(),
+                              SchemaUtil.removeImplicitRowTimeRowKeyFromSchema(
+                                  sinkNode.getSchema()));
+
+    return new BatchedQueryRunner(
+        applicationId, properties,
+        structuredDataSourceNode.getStructuredDataSource().getKsqlTopic().getKafkaTopicName(),
+        sourceSerde.deserializer(), timestampExtractor, processor,
+        sinkNode.getKafkaTopicName(), sinkSerde.serializer(),
+        Integer.parseInt(ksqlConfig.get(KsqlConfig.KSQL_BATCH_MAX_RECORDS_CONFIG).toString()));
+  }
+
   private SchemaKStream kafkaStreamsDsl(final PlanNode planNode) throws Exception {
     return kafkaStreamsDsl(planNode, new HashMap<>());
   }
@@ -231,7 +387,14 @@ public class PhysicalPlanBuilder {
       this.planSink = ksqlStructuredDataOutputNodeWithRowkey;
       return resultSchemaStream;
     } else if (outputNode instanceof KsqlBareOutputNode) {
-      SchemaKStream resultSchemaStream = schemaKStream.toQueue(outputNode.getLimit());
+      BoundedRowQueue rowQueue = new BoundedRowQueue(
+          Integer.parseInt(
+              ksqlConfig.get(KsqlConfig.KSQL_TRANSIENT_QUEUE_CAPACITY_CONFIG).toString()),
+          BoundedRowQueue.OverflowPolicy.valueOf(
+              ksqlConfig.get(KsqlConfig.KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_CONFIG).toString()
+                  .toUpperCase()),
+          outputNode.getLimit());
+      SchemaKStream resultSchemaStream = schemaKStream.toQueue(rowQueue);
       KsqlBareOutputNode ksqlBareOutputNode = (KsqlBareOutputNode) outputNode;
       this.planSink = ksqlBareOutputNode;
       return resultSchemaStream;
@@ -286,7 +449,7 @@ public class PhysicalPlanBuilder {
       int index = getIndexInSchema(exprStr, aggregateArgExpanded.getSchema());
       aggValToValColumnMap.put(nonAggColumnIndex, index);
       nonAggColumnIndex++;
-      resultColumns.add("");
+      resultColumns.add(null);
       Field field = aggregateArgExpanded.getSchema().fields().get(index);
       aggregateSchema.field(field.name(), field.schema());
     }
@@ -308,17 +471,18 @@ public class PhysicalPlanBuilder {
                             + udafIndexInAggSchema, aggregateFunction.getReturnType());
     }
 
-    Serde<GenericRow> aggValueGenericRowSerde = SerDeUtil.getRowSerDe(streamSourceNode
-            .getStructuredDataSource()
-            .getKsqlTopic()
-            .getKsqlTopicSerDe(),
-        aggregateSchema);
+    // The aggregate state store is internal, so it uses the binary format whatever the
+    // format of the source topic is. Stores restored from a changelog written before may still
+    // hold rows in the format of the source topic.
+    Serde<GenericRow> aggValueGenericRowSerde = SerDeUtil.getGenericRowBinarySerde(
+        aggregateSchema, streamSourceNode.getStructuredDataSource().getKsqlTopic()
+            .getKsqlTopicSerDe());
 
     SchemaKTable schemaKTable = schemaKGroupedStream.aggregate(
         new KudafInitializer(resultColumns),
         new KudafAggregator(aggValToAggFunctionMap,
                             aggValToValColumnMap), aggregateNode.getWindowExpression(),
-        aggValueGenericRowSerde, "KSQL_Agg_Query_" + System.currentTimeMillis());
+        aggValueGenericRowSerde, aggregateStoreName);
 
     // Post aggregate computations
     SchemaBuilder schemaBuilder = SchemaBuilder.struct();
@@ -346,7 +510,8 @@ public class PhysicalPlanBuilder {
                                                       schemaKTable.getKeyField(),
                                                       schemaKTable.getSourceSchemaKStreams(),
                                                       schemaKTable.isWindowed(),
-                                                      SchemaKStream.Type.AGGREGATE);
+                                                      SchemaKStream.Type.AGGREGATE,
+                                                      schemaKTable.getMaterialization());
 
     if (aggregateNode.getHavingExpressions() != null) {
       finalSchemaKTable = finalSchemaKTable.filter(aggregateNode.getHavingExpressions());
@@ -359,8 +524,15 @@ public class PhysicalPlanBuilder {
 
   private SchemaKStream buildProject(final ProjectNode projectNode, Map<String, Object> propsMap)
       throws Exception {
+    if (projectNode.getSource() instanceof FilterNode) {
+      // The filter and the projection are compiled together.
+      FilterNode filterNode = (FilterNode) projectNode.getSource();
+      return kafkaStreamsDsl(filterNode.getSource(), propsMap)
+          .select(filterNode.getPredicate(), projectNode.getProjectNameExpressionPairList());
+    }
     SchemaKStream projectedSchemaStream =
-        kafkaStreamsDsl(projectNode.getSource()).select(projectNode.getProjectNameExpressionPairList());
+        kafkaStreamsDsl(projectNode.getSource(), propsMap)
+            .select(projectNode.getProjectNameExpressionPairList());
     return projectedSchemaStream;
   }
 
@@ -369,7 +541,7 @@ public class PhysicalPlanBuilder {
       throws Exception {
     SchemaKStream
         filteredSchemaKStream =
-        kafkaStreamsDsl(filterNode.getSource()).filter(filterNode.getPredicate());
+        kafkaStreamsDsl(filterNode.getSource(), propsMap).filter(filterNode.getPredicate());
     return filteredSchemaKStream;
   }
 
@@ -390,12 +562,18 @@ public class PhysicalPlanBuilder {
     if (sourceNode instanceof StructuredDataSourceNode) {
       StructuredDataSourceNode structuredDataSourceNode = (StructuredDataSourceNode) sourceNode;
 
+      // Sources without a timestamp column use the timestamp extractor of the streams config.
+      TimestampExtractor timestampExtractor = null;
       if (structuredDataSourceNode.getTimestampField() != null) {
         int timestampColumnIndex = getTimeStampColumnIndex(structuredDataSourceNode
                                                                       .getSchema(),
                                                                   structuredDataSourceNode
                                                                       .getTimestampField());
-        ksqlConfig.put(KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX, timestampColumnIndex);
+        String timestampFormat =
+            structuredDataSourceNode.getStructuredDataSource().getTimestampFormat();
+        timestampExtractor = new KsqlTimestampExtractor(
+            timestampColumnIndex,
+            timestampFormat == null ? null : new StringToTimestampParser(timestampFormat));
       }
 
       Serde<GenericRow>
@@ -403,7 +581,8 @@ public class PhysicalPlanBuilder {
           SerDeUtil.getRowSerDe(structuredDataSourceNode.getStructuredDataSource()
                                     .getKsqlTopic().getKsqlTopicSerDe(),
                                 SchemaUtil.removeImplicitRowTimeRowKeyFromSchema(
-                                    structuredDataSourceNode.getSchema()));
+                                    structuredDataSourceNode.getSchema()),
+                                sourcePushdown.orElse(null));
 
       Serde<GenericRow> genericRowSerdeAfterRead =
           SerDeUtil.getRowSerDe(structuredDataSourceNode.getStructuredDataSource()
@@ -414,73 +593,88 @@ public class PhysicalPlanBuilder {
           == StructuredDataSource.DataSourceType.KTABLE) {
 
         KsqlTable ksqlTable = (KsqlTable) structuredDataSourceNode.getStructuredDataSource();
-        KTable ktable;
-        if (ksqlTable.isWindowed()) {
-          KStream
-              kstream =
-              builder
-                  .stream(autoOffsetReset, new WindowedSerde(), genericRowSerde,
-                      ksqlTable.getKsqlTopic().getKafkaTopicName())
-                  .map(new KeyValueMapper<Windowed<String>, GenericRow, KeyValue<Windowed<String>,
-                      GenericRow>>() {
-                    @Override
-                    public KeyValue<Windowed<String>, GenericRow> apply(
-                        Windowed<String> key, GenericRow row) {
+        KTable ktable = sourceStreams.getTable(ksqlTable.getName());
+        if (ktable == null) {
+          if (ksqlTable.isWindowed()) {
+            KStream
+                kstream =
+                builder
+                    .stream(autoOffsetReset, timestampExtractor, new WindowedSerde(),
+                        genericRowSerde, ksqlTable.getKsqlTopic().getKafkaTopicName())
+                    .map(new KeyValueMapper<Windowed<String>, GenericRow, KeyValue<Windowed<String>,
+                        GenericRow>>() {
+                      @Override
+                      public KeyValue<Windowed<String>, GenericRow> apply(
+                          Windowed<String> key, GenericRow row) {
+                        if (row != null) {
+                          row.getColumns().add(0,
+                                               String.format("%s : Window{start=%d end=-}", key
+                                                   .key(), key.window().start()));
+
+                        }
+                        return new KeyValue<>(key, row);
+                      }
+                    });
+            kstream = addTimestampColumn(kstream);
+            ktable = kstream
+                .groupByKey(new WindowedSerde(), genericRowSerdeAfterRead)
+                .reduce(new Reducer<GenericRow>() {
+                  @Override
+                  public GenericRow apply(GenericRow aggValue, GenericRow newValue) {
+                    return newValue;
+                  }
+                }, ksqlTable.getStateStoreName());
+          } else {
+            KStream
+                kstream =
+                builder
+                    .stream(autoOffsetReset, timestampExtractor, Serdes.String(),
+                        genericRowSerde, ksqlTable.getKsqlTopic().getKafkaTopicName())
+                    .map((KeyValueMapper<String, GenericRow, KeyValue<String, GenericRow>>) (key, row) -> {
                       if (row != null) {
-                        row.getColumns().add(0,
-                                             String.format("%s : Window{start=%d end=-}", key
-                                                 .key(), key.window().start()));
+                        row.getColumns().add(0, key);
 
                       }
                       return new KeyValue<>(key, row);
-                    }
-                  });
-          kstream = addTimestampColumn(kstream);
-          ktable = kstream
-              .groupByKey(new WindowedSerde(), genericRowSerdeAfterRead)
-              .reduce(new Reducer<GenericRow>() {
-                @Override
-                public GenericRow apply(GenericRow aggValue, GenericRow newValue) {
-                  return newValue;
-                }
-              }, ksqlTable.getStateStoreName());
-        } else {
-          KStream
-              kstream =
-              builder
-                  .stream(autoOffsetReset, Serdes.String(), genericRowSerde,
-                      ksqlTable.getKsqlTopic().getKafkaTopicName())
-                  .map((KeyValueMapper<String, GenericRow, KeyValue<String, GenericRow>>) (key, row) -> {
-                    if (row != null) {
-                      row.getColumns().add(0, key);
-
-                    }
-                    return new KeyValue<>(key, row);
-                  });
-          kstream = addTimestampColumn(kstream);
-          ktable = kstream.groupByKey(Serdes.String(), genericRowSerdeAfterRead)
-                  .reduce((Reducer<GenericRow>) (aggValue, newValue) -> newValue, ksqlTable.getStateStoreName());
+                    });
+            kstream = addTimestampColumn(kstream);
+            ktable = kstream.groupByKey(Serdes.String(), genericRowSerdeAfterRead)
+                    .reduce((Reducer<GenericRow>) (aggValue, newValue) -> newValue, ksqlTable.getStateStoreName());
+          }
+          sourceStreams.putTable(ksqlTable.getName(), ktable);
         }
 
         return new SchemaKTable(sourceNode.getSchema(), ktable,
                                 sourceNode.getKeyField(), new ArrayList<>(),
                                 ksqlTable.isWindowed(),
-                                SchemaKStream.Type.SOURCE);
+                                SchemaKStream.Type.SOURCE,
+                                new TableMaterialization(
+                                    ksqlTable.getStateStoreName(),
+                                    ksqlTable.isWindowed()
+                                    ? TableMaterialization.StoreType.WINDOWED_KEY_VALUE
+                                    : TableMaterialization.StoreType.KEY_VALUE));
       }
       KsqlStream ksqlStream = (KsqlStream) structuredDataSourceNode.getStructuredDataSource();
-      KStream
-          kstream =
-          builder
-              .stream(Serdes.String(), genericRowSerde,
-                  ksqlStream.getKsqlTopic().getKafkaTopicName())
-              .map((KeyValueMapper<String, GenericRow, KeyValue<String, GenericRow>>) (key, row) -> {
-                if (row != null) {
-                  row.getColumns().add(0, key);
-
-                }
-                return new KeyValue<>(key, row);
-              });
-      kstream = addTimestampColumn(kstream);
+      KStream kstream = sourceStreams.getStream(ksqlStream.getName());
+      if (kstream == null) {
+        kstream =
+            builder
+                .stream(timestampExtractor, Serdes.String(), genericRowSerde,
+                    ksqlStream.getKsqlTopic().getKafkaTopicName())
+                .map((KeyValueMapper<String, GenericRow, KeyValue<String, GenericRow>>) (key, row) -> {
+                  if (row != null) {
+                    row.getColumns().add(0, key);
+
+                  }
+                  return new KeyValue<>(key, row);
+                });
+        if (sourcePushdown.isPresent() && sourcePushdown.get().hasPredicates()) {
+          // Rows rejected by the pushed down predicates are deserialized to null.
+          kstream = kstream.filter((key, row) -> row != null);
+        }
+        kstream = addTimestampColumn(kstream);
+        sourceStreams.putStream(ksqlStream.getName(), kstream);
+      }
       return new SchemaKStream(sourceNode.getSchema(), kstream,
                                sourceNode.getKeyField(), new ArrayList<>(),
                                SchemaKStream.Type.SOURCE);
@@ -495,34 +689,186 @@ public class PhysicalPlanBuilder {
     propsMap.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG,
               TopologyBuilder.AutoOffsetReset.EARLIEST.toString());
     SchemaKStream rightSchemaKStream = kafkaStreamsDsl(joinNode.getRight(), propsMap);
+
+    if (leftSchemaKStream instanceof SchemaKTable) {
+      if (!(rightSchemaKStream instanceof SchemaKTable)) {
+        throw new KsqlException("A table can only be joined with another table. Use the stream "
+                                + "as the left side to join it with a table.");
+      }
+      return buildTableJoin(joinNode, (SchemaKTable) leftSchemaKStream,
+                            (SchemaKTable) rightSchemaKStream);
+    }
+
+    boolean leftRekeyed = !leftSchemaKStream.isKeyedBy(joinNode.getLeftKeyFieldName());
+    if (leftRekeyed) {
+      leftSchemaKStream =
+          leftSchemaKStream.selectKey(SchemaUtil.getFieldByName(leftSchemaKStream.getSchema(),
+              joinNode.getLeftKeyFieldName()).get());
+    }
+    KsqlTopicSerDe joinSerDe = getResultTopicSerde(joinNode);
+    Field joinKey = leftSchemaKStream.getKeyField() == null
+                    ? null
+                    : joinNode.getSchema().field(
+                        joinNode.getLeftAlias() + "." + leftSchemaKStream.getKeyField().name());
+
     if (rightSchemaKStream instanceof SchemaKTable) {
       SchemaKTable rightSchemaKTable = (SchemaKTable) rightSchemaKStream;
-
-      if (
-          leftSchemaKStream.getKeyField() == null ||
-          !leftSchemaKStream.getKeyField().name().equals(joinNode.getLeftKeyFieldName())) {
-        leftSchemaKStream =
-            leftSchemaKStream.selectKey(SchemaUtil.getFieldByName(leftSchemaKStream.getSchema(),
-                joinNode.getLeftKeyFieldName()).get());
+      if (joinNode.getWithinMillis() != null) {
+        throw new KsqlException("WITHIN is only supported in joins between two streams.");
+      }
+      if (!leftRekeyed && !isCoPartitioned(getPartitionCounts(joinNode))) {
+        // Keyed right, but partitioned differently from the table.
+        leftSchemaKStream = leftSchemaKStream.repartition();
+        generatedStateNames = true;
+      } else if (leftRekeyed) {
+        generatedStateNames = true;
       }
-      SchemaKStream joinSchemaKStream;
       switch (joinNode.getType()) {
+        case INNER:
+          return leftSchemaKStream.join(rightSchemaKTable, joinNode.getSchema(), joinKey,
+                                        joinSerDe);
         case LEFT:
-          KsqlTopicSerDe joinSerDe = getResultTopicSerde(joinNode);
-          String joinKeyFieldName = (joinNode.getLeftAlias() + "." + leftSchemaKStream
-              .getKeyField().name());
-          joinSchemaKStream =
-              leftSchemaKStream.leftJoin(rightSchemaKTable, joinNode.getSchema(),
-                  joinNode.getSchema().field(joinKeyFieldName), joinSerDe);
-          break;
+          return leftSchemaKStream.leftJoin(rightSchemaKTable, joinNode.getSchema(), joinKey,
+                                            joinSerDe);
         default:
           throw new KsqlException("Join type is not supportd yet: " + joinNode.getType());
       }
-      return joinSchemaKStream;
     }
 
-    throw new KsqlException("Unsupported join logical node: Left: "
-                            + joinNode.getLeft() + " , Right: " + joinNode.getRight());
+    if (joinNode.getWithinMillis() == null) {
+      throw new KsqlException("A join between two streams needs a WITHIN clause, for example: "
+                              + "JOIN ... WITHIN 10 SECONDS ON ...");
+    }
+    generatedStateNames = true;
+    boolean rightRekeyed = !rightSchemaKStream.isKeyedBy(joinNode.getRightKeyFieldName());
+    if (rightRekeyed) {
+      rightSchemaKStream =
+          rightSchemaKStream.selectKey(SchemaUtil.getFieldByName(rightSchemaKStream.getSchema(),
+              joinNode.getRightKeyFieldName()).get());
+    }
+    if (!leftRekeyed && !rightRekeyed) {
+      int[] partitionCounts = getPartitionCounts(joinNode);
+      if (!isCoPartitioned(partitionCounts)) {
+        // Neither side is repartitioned, so the side with fewer partitions is, to the partition
+        // count of the other side.
+        if (partitionCounts[0] < partitionCounts[1]) {
+          leftSchemaKStream = leftSchemaKStream.repartition();
+        } else {
+          rightSchemaKStream = rightSchemaKStream.repartition();
+        }
+      }
+    }
+    JoinWindows joinWindows = getJoinWindows(joinNode.getWithinMillis());
+    switch (joinNode.getType()) {
+      case INNER:
+        return leftSchemaKStream.join(rightSchemaKStream, joinNode.getSchema(), joinKey,
+                                      joinWindows, joinSerDe);
+      case LEFT:
+        return leftSchemaKStream.leftJoin(rightSchemaKStream, joinNode.getSchema(), joinKey,
+                                          joinWindows, joinSerDe);
+      case FULL:
+        return leftSchemaKStream.outerJoin(rightSchemaKStream, joinNode.getSchema(), joinKey,
+                                           joinWindows, joinSerDe);
+      default:
+        throw new KsqlException("Join type is not supportd yet: " + joinNode.getType());
+    }
+  }
+
+  JoinWindows getJoinWindows(final long windowMs) {
+    long retentionMs = Long.parseLong(
+        ksqlConfig.get(KsqlConfig.KSQL_JOIN_WINDOW_RETENTION_MS_CONFIG).toString());
+    // The window stores have to keep records on both sides of the window.
+    return JoinWindows.of(windowMs).until(Math.max(retentionMs, 2 * windowMs));
+  }
+
+  /**
+   * Tables can not be rekeyed, so both of them have to be keyed by their join column already.
+   */
+  private SchemaKStream buildTableJoin(final JoinNode joinNode, final SchemaKTable leftSchemaKTable,
+                                       final SchemaKTable rightSchemaKTable) {
+    if (joinNode.getWithinMillis() != null) {
+      throw new KsqlException("WITHIN is only supported in joins between two streams.");
+    }
+    checkTableJoinKey(leftSchemaKTable, joinNode.getLeftKeyFieldName());
+    checkTableJoinKey(rightSchemaKTable, joinNode.getRightKeyFieldName());
+    int[] partitionCounts = getPartitionCounts(joinNode);
+    if (!isCoPartitioned(partitionCounts)) {
+      throw new KsqlException(String.format(
+          "Tables can only be joined if their topics have the same number of partitions: %s has "
+          + "%d and %s has %d.", joinNode.getLeftAlias(), partitionCounts[0],
+          joinNode.getRightAlias(), partitionCounts[1]));
+    }
+
+    Field joinKey = leftSchemaKTable.getKeyField() == null
+                    ? null
+                    : joinNode.getSchema().field(
+                        joinNode.getLeftAlias() + "." + leftSchemaKTable.getKeyField().name());
+    switch (joinNode.getType()) {
+      case INNER:
+        return leftSchemaKTable.join(rightSchemaKTable, joinNode.getSchema(), joinKey);
+      case LEFT:
+        return leftSchemaKTable.leftJoin(rightSchemaKTable, joinNode.getSchema(), joinKey);
+      case FULL:
+        return leftSchemaKTable.outerJoin(rightSchemaKTable, joinNode.getSchema(), joinKey);
+      default:
+        throw new KsqlException("Join type is not supportd yet: " + joinNode.getType());
+    }
+  }
+
+  private void checkTableJoinKey(final SchemaKTable schemaKTable, final String joinFieldName) {
+    if (!schemaKTable.isKeyedBy(joinFieldName)) {
+      throw new KsqlException(String.format(
+          "Tables can only be joined on their key. %s is not the key of the table.",
+          joinFieldName));
+    }
+  }
+
+  /**
+   * Kafka Streams only joins records from topics with the same number of partitions. Join sides
+   * that are not read from a topic, through filters and projections only, are taken to be
+   * co-partitioned.
+   */
+  private static boolean isCoPartitioned(final int[] partitionCounts) {
+    return partitionCounts[0] < 0 || partitionCounts[1] < 0
+           || partitionCounts[0] == partitionCounts[1];
+  }
+
+  /**
+   * The partition counts of the topics of the left and right side of the join, or -1 for a side
+   * that is not read from a topic. Both topics are described with a single request.
+   */
+  private int[] getPartitionCounts(final JoinNode joinNode) {
+    String leftTopicName = getTopicName(joinNode.getLeft());
+    String rightTopicName = getTopicName(joinNode.getRight());
+    Set<String> topicNames = new HashSet<>();
+    if (leftTopicName != null) {
+      topicNames.add(leftTopicName);
+    }
+    if (rightTopicName != null) {
+      topicNames.add(rightTopicName);
+    }
+    Map<String, TopicDescription> topicDescriptions = topicNames.isEmpty()
+        ? Collections.emptyMap() : kafkaTopicClient.describeTopics(topicNames);
+    return new int[]{getPartitionCount(topicDescriptions, leftTopicName),
+                     getPartitionCount(topicDescriptions, rightTopicName)};
+  }
+
+  private static int getPartitionCount(final Map<String, TopicDescription> topicDescriptions,
+                                       final String topicName) {
+    TopicDescription topicDescription =
+        topicName == null ? null : topicDescriptions.get(topicName);
+    return topicDescription == null ? -1 : topicDescription.partitions().size();
+  }
+
+  private String getTopicName(PlanNode planNode) {
+    while (planNode instanceof FilterNode || planNode instanceof ProjectNode) {
+      planNode = planNode.getSources().get(0);
+    }
+    if (!(planNode instanceof StructuredDataSourceNode)) {
+      return null;
+    }
+    return ((StructuredDataSourceNode) planNode).getStructuredDataSource()
+        .getKsqlTopic().getKafkaTopicName();
   }
 
   private KsqlTopicSerDe getResultTopicSerde(final PlanNode node) {
@@ -573,6 +919,13 @@ public class PhysicalPlanBuilder {
 
   private SchemaKStream aggregateReKey(final AggregateNode aggregateNode,
                                        final SchemaKStream sourceSchemaKStream) {
+    // Grouping by the column the stream is keyed by needs no repartition.
+    if (aggregateNode.getGroupByExpressions().size() == 1
+        && sourceSchemaKStream.isKeyedBy(
+            aggregateNode.getGroupByExpressions().get(0).toString())) {
+      return sourceSchemaKStream;
+    }
+
     String aggregateKeyName = "";
     List<Integer> newKeyIndexes = new ArrayList<>();
     boolean addSeparator = false;
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.physical;
+
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.KTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The decoded source streams and tables already added to a topology, by data source name.
+ * Queries built into the same topology consume and deserialize each source once, and its rows
+ * fan out to the processors of every query reading it.
+ */
+public class SourceStreams {
+
+  private final Map<String, KStream> streams = new HashMap<>();
+  private final Map<String, KTable> tables = new HashMap<>();
+
+  KStream getStream(String sourceName) {
+    return streams.get(sourceName);
+  }
+
+  void putStream(String sourceName, KStream stream) {
+    streams.put(sourceName, stream);
+  }
+
+  KTable getTable(String sourceName) {
+    return tables.get(sourceName);
+  }
+
+  void putTable(String sourceName, KTable table) {
+    tables.put(sourceName, table);
+  }
+}
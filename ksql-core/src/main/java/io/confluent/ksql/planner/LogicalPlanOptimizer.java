@@ -0,0 +1,494 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.planner;
+
+import io.confluent.ksql.parser.rewrite.ConstantFoldingRewriter;
+import io.confluent.ksql.parser.rewrite.InListRewriter;
+import io.confluent.ksql.parser.tree.BooleanLiteral;
+import io.confluent.ksql.parser.tree.DefaultExpressionTraversalVisitor;
+import io.confluent.ksql.parser.tree.DereferenceExpression;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.ExpressionRewriter;
+import io.confluent.ksql.parser.tree.ExpressionTreeRewriter;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.QualifiedName;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.planner.plan.AggregateNode;
+import io.confluent.ksql.planner.plan.FilterNode;
+import io.confluent.ksql.planner.plan.JoinNode;
+import io.confluent.ksql.planner.plan.KsqlBareOutputNode;
+import io.confluent.ksql.planner.plan.KsqlStructuredDataOutputNode;
+import io.confluent.ksql.planner.plan.OutputNode;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.PlanNodeId;
+import io.confluent.ksql.planner.plan.PlanVisitor;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.Pair;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rewrites the plan built by {@link LogicalPlanner} before it is turned into a topology. Each
+ * rule is a pass over the plan that keeps the schema of the output node:
+ * <ul>
+ *   <li>expressions of filters and projections that only combine literals are folded, and
+ *   chains of equalities between a column and literals in filters become IN lists,</li>
+ *   <li>the conjuncts of a filter over a join that only read one side of the join are moved
+ *   below the join, onto that side,</li>
+ *   <li>the join sides only pass on the columns read above the join, so the rows that are
+ *   repartitioned and kept in the join stores are narrower,</li>
+ *   <li>adjacent projections are merged into one.</li>
+ * </ul>
+ */
+public class LogicalPlanOptimizer {
+
+  public static PlanNode optimize(final PlanNode planRoot) {
+    PlanNode plan = planRoot.accept(new ConstantFolder(), null);
+    plan = plan.accept(new FilterPushdown(), null);
+    plan = plan.accept(new JoinColumnPruner(), null);
+    return plan.accept(new ProjectMerger(), null);
+  }
+
+  /**
+   * Rebuilds the nodes whose sources were rewritten; the rules override the nodes they change.
+   */
+  private static class PlanRewriter<C> extends PlanVisitor<C, PlanNode> {
+
+    @Override
+    protected PlanNode visitPlan(PlanNode node, C context) {
+      return node;
+    }
+
+    @Override
+    public PlanNode visitFilter(FilterNode node, C context) {
+      return withSource(node, node.getSource().accept(this, context));
+    }
+
+    @Override
+    public PlanNode visitProject(ProjectNode node, C context) {
+      return withSource(node, node.getSource().accept(this, context));
+    }
+
+    @Override
+    public PlanNode visitJoin(JoinNode node, C context) {
+      return withSources(node, node.getLeft().accept(this, context),
+                         node.getRight().accept(this, context));
+    }
+
+    @Override
+    public PlanNode visitAggregate(AggregateNode node, C context) {
+      return withSource(node, node.getSource().accept(this, context));
+    }
+
+    @Override
+    public PlanNode visitOutput(OutputNode node, C context) {
+      return withSource(node, node.getSource().accept(this, context));
+    }
+  }
+
+  private static class ConstantFolder extends PlanRewriter<Void> {
+
+    @Override
+    public PlanNode visitFilter(FilterNode node, Void context) {
+      PlanNode source = node.getSource().accept(this, context);
+      Expression predicate = ConstantFoldingRewriter.fold(node.getPredicate());
+      if (BooleanLiteral.TRUE_LITERAL.equals(predicate)) {
+        return source;
+      }
+      predicate = InListRewriter.rewrite(predicate);
+      return new FilterNode(node.getId(), source, predicate);
+    }
+
+    @Override
+    public PlanNode visitProject(ProjectNode node, Void context) {
+      PlanNode source = node.getSource().accept(this, context);
+      List<Expression> expressions = new ArrayList<>();
+      for (Expression expression : node.getProjectExpressions()) {
+        expressions.add(ConstantFoldingRewriter.fold(expression));
+      }
+      return new ProjectNode(node.getId(), source, node.getSchema(), expressions);
+    }
+  }
+
+  private static class FilterPushdown extends PlanRewriter<Void> {
+
+    @Override
+    public PlanNode visitFilter(FilterNode node, Void context) {
+      PlanNode source = node.getSource().accept(this, context);
+      Expression predicate = node.getPredicate();
+      if (source instanceof FilterNode) {
+        FilterNode sourceFilter = (FilterNode) source;
+        predicate = LogicalBinaryExpression.and(sourceFilter.getPredicate(), predicate);
+        source = sourceFilter.getSource();
+      }
+      if (source instanceof JoinNode) {
+        return pushDown(node.getId(), (JoinNode) source, predicate);
+      }
+      return new FilterNode(node.getId(), source, predicate);
+    }
+
+    private PlanNode pushDown(final PlanNodeId id, final JoinNode joinNode,
+                              final Expression predicate) {
+      List<Expression> conjuncts = new ArrayList<>();
+      addConjuncts(predicate, conjuncts);
+
+      // Rows of the other side are null-extended in a left join, so only conjuncts on the left
+      // side can be evaluated before it.
+      boolean pushLeft = joinNode.getType() == JoinNode.Type.INNER
+                         || joinNode.getType() == JoinNode.Type.LEFT;
+      boolean pushRight = joinNode.getType() == JoinNode.Type.INNER;
+      List<Expression> leftConjuncts = new ArrayList<>();
+      List<Expression> rightConjuncts = new ArrayList<>();
+      List<Expression> remainingConjuncts = new ArrayList<>();
+      for (Expression conjunct : conjuncts) {
+        Set<String> columns = getColumns(conjunct, joinNode.getSchema());
+        if (pushLeft && isOnSide(columns, joinNode.getLeftAlias())) {
+          leftConjuncts.add(conjunct);
+        } else if (pushRight && isOnSide(columns, joinNode.getRightAlias())) {
+          rightConjuncts.add(conjunct);
+        } else {
+          remainingConjuncts.add(conjunct);
+        }
+      }
+      if (leftConjuncts.isEmpty() && rightConjuncts.isEmpty()) {
+        return new FilterNode(id, joinNode, predicate);
+      }
+
+      PlanNode left = joinNode.getLeft();
+      if (!leftConjuncts.isEmpty()) {
+        left = new FilterNode(new PlanNodeId("LeftFilter"), left,
+                              toSide(combine(leftConjuncts), joinNode.getSchema()));
+      }
+      PlanNode right = joinNode.getRight();
+      if (!rightConjuncts.isEmpty()) {
+        right = new FilterNode(new PlanNodeId("RightFilter"), right,
+                               toSide(combine(rightConjuncts), joinNode.getSchema()));
+      }
+      PlanNode join = withSources(joinNode, left, right);
+      if (remainingConjuncts.isEmpty()) {
+        return join;
+      }
+      return new FilterNode(id, join, combine(remainingConjuncts));
+    }
+
+    private void addConjuncts(final Expression expression, final List<Expression> conjuncts) {
+      if (expression instanceof LogicalBinaryExpression
+          && ((LogicalBinaryExpression) expression).getType()
+             == LogicalBinaryExpression.Type.AND) {
+        addConjuncts(((LogicalBinaryExpression) expression).getLeft(), conjuncts);
+        addConjuncts(((LogicalBinaryExpression) expression).getRight(), conjuncts);
+      } else {
+        conjuncts.add(expression);
+      }
+    }
+
+    private Expression combine(final List<Expression> conjuncts) {
+      Expression expression = conjuncts.get(0);
+      for (int i = 1; i < conjuncts.size(); i++) {
+        expression = LogicalBinaryExpression.and(expression, conjuncts.get(i));
+      }
+      return expression;
+    }
+
+    private boolean isOnSide(final Set<String> columns, final String alias) {
+      if (columns == null || columns.isEmpty()) {
+        return false;
+      }
+      for (String column : columns) {
+        if (!column.startsWith(alias + ".")) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Rewrites the column references of a conjunct over the join schema to the columns of the
+     * join side, which are not prefixed with the alias of the side.
+     */
+    private Expression toSide(final Expression expression, final Schema joinSchema) {
+      return ExpressionTreeRewriter.rewriteWith(new ExpressionRewriter<Void>() {
+        @Override
+        public Expression rewriteQualifiedNameReference(QualifiedNameReference node, Void context,
+                                                        ExpressionTreeRewriter<Void> rewriter) {
+          return toSideColumn(node);
+        }
+
+        @Override
+        public Expression rewriteDereferenceExpression(DereferenceExpression node, Void context,
+                                                       ExpressionTreeRewriter<Void> rewriter) {
+          return toSideColumn(node);
+        }
+
+        private Expression toSideColumn(final Expression column) {
+          String fieldName = resolveColumn(column, joinSchema).get().name();
+          return new QualifiedNameReference(
+              QualifiedName.of(fieldName.substring(fieldName.indexOf(".") + 1)));
+        }
+      }, expression);
+    }
+  }
+
+  /**
+   * Adds a projection under each side of a join that drops the columns of the side nothing
+   * above the join reads. The context is the set of columns of the node's output its parent
+   * reads, or null if it reads all of them.
+   */
+  private static class JoinColumnPruner extends PlanRewriter<Set<String>> {
+
+    @Override
+    public PlanNode visitFilter(FilterNode node, Set<String> requiredColumns) {
+      Set<String> sourceColumns = null;
+      if (requiredColumns != null) {
+        Set<String> predicateColumns =
+            getColumns(node.getPredicate(), node.getSource().getSchema());
+        if (predicateColumns != null) {
+          sourceColumns = new HashSet<>(requiredColumns);
+          sourceColumns.addAll(predicateColumns);
+        }
+      }
+      return withSource(node, node.getSource().accept(this, sourceColumns));
+    }
+
+    @Override
+    public PlanNode visitProject(ProjectNode node, Set<String> requiredColumns) {
+      Set<String> sourceColumns =
+          getColumns(node.getProjectExpressions(), node.getSource().getSchema());
+      return withSource(node, node.getSource().accept(this, sourceColumns));
+    }
+
+    @Override
+    public PlanNode visitAggregate(AggregateNode node, Set<String> requiredColumns) {
+      List<Expression> expressions = new ArrayList<>(node.getProjectExpressions());
+      expressions.addAll(node.getGroupByExpressions());
+      expressions.addAll(node.getRequiredColumnList());
+      expressions.addAll(node.getAggregateFunctionArguments());
+      expressions.addAll(node.getNonAggResultColumns());
+      Set<String> sourceColumns = getColumns(expressions, node.getSource().getSchema());
+      return withSource(node, node.getSource().accept(this, sourceColumns));
+    }
+
+    @Override
+    public PlanNode visitOutput(OutputNode node, Set<String> requiredColumns) {
+      return withSource(node, node.getSource().accept(this, null));
+    }
+
+    @Override
+    public PlanNode visitJoin(JoinNode node, Set<String> requiredColumns) {
+      PlanNode left = node.getLeft().accept(this, null);
+      PlanNode right = node.getRight().accept(this, null);
+      if (requiredColumns != null) {
+        left = prune(left, node.getLeftAlias(), node.getLeftKeyFieldName(), requiredColumns);
+        right = prune(right, node.getRightAlias(), node.getRightKeyFieldName(),
+                      requiredColumns);
+      }
+      return withSources(node, left, right);
+    }
+
+    private PlanNode prune(final PlanNode side, final String alias, final String joinFieldName,
+                           final Set<String> requiredColumns) {
+      Set<String> keptColumns = new HashSet<>();
+      keptColumns.add(SchemaUtil.ROWTIME_NAME);
+      keptColumns.add(SchemaUtil.ROWKEY_NAME);
+      keptColumns.add(getColumnName(joinFieldName));
+      if (side.getKeyField() != null) {
+        keptColumns.add(getColumnName(side.getKeyField().name()));
+      }
+      for (String column : requiredColumns) {
+        if (column.startsWith(alias + ".")) {
+          keptColumns.add(column.substring(alias.length() + 1));
+        }
+      }
+
+      SchemaBuilder schemaBuilder = SchemaBuilder.struct();
+      List<Expression> expressions = new ArrayList<>();
+      for (Field field : side.getSchema().fields()) {
+        if (keptColumns.contains(field.name())) {
+          schemaBuilder.field(field.name(), field.schema());
+          expressions.add(new QualifiedNameReference(QualifiedName.of(field.name())));
+        }
+      }
+      if (expressions.size() == side.getSchema().fields().size()) {
+        return side;
+      }
+      return new ProjectNode(new PlanNodeId(alias + "_Prune"), side, schemaBuilder.build(),
+                             expressions);
+    }
+
+    private String getColumnName(final String fieldName) {
+      return fieldName.substring(fieldName.indexOf(".") + 1);
+    }
+  }
+
+  /**
+   * Replaces the column references of a projection over another projection by the expressions
+   * of the inner one.
+   */
+  private static class ProjectMerger extends PlanRewriter<Void> {
+
+    @Override
+    public PlanNode visitProject(ProjectNode node, Void context) {
+      PlanNode source = node.getSource().accept(this, context);
+      if (!(source instanceof ProjectNode)) {
+        return withSource(node, source);
+      }
+      ProjectNode sourceProject = (ProjectNode) source;
+      Schema innerSchema = sourceProject.getSchema();
+      List<Expression> innerExpressions = sourceProject.getProjectExpressions();
+      if (getColumns(node.getProjectExpressions(), innerSchema) == null) {
+        return withSource(node, source);
+      }
+
+      ExpressionRewriter<Void> substitution = new ExpressionRewriter<Void>() {
+        @Override
+        public Expression rewriteQualifiedNameReference(QualifiedNameReference node, Void context,
+                                                        ExpressionTreeRewriter<Void> rewriter) {
+          return getInnerExpression(node);
+        }
+
+        @Override
+        public Expression rewriteDereferenceExpression(DereferenceExpression node, Void context,
+                                                       ExpressionTreeRewriter<Void> rewriter) {
+          return getInnerExpression(node);
+        }
+
+        private Expression getInnerExpression(final Expression column) {
+          return innerExpressions.get(resolveColumn(column, innerSchema).get().index());
+        }
+      };
+      List<Expression> expressions = new ArrayList<>();
+      for (Expression expression : node.getProjectExpressions()) {
+        expressions.add(ExpressionTreeRewriter.rewriteWith(substitution, expression));
+      }
+      return new ProjectNode(node.getId(), sourceProject.getSource(), node.getSchema(),
+                             expressions);
+    }
+  }
+
+  private static PlanNode withSource(final PlanNode node, final PlanNode source) {
+    if (node.getSources().get(0) == source) {
+      return node;
+    }
+    if (node instanceof FilterNode) {
+      return new FilterNode(node.getId(), source, ((FilterNode) node).getPredicate());
+    } else if (node instanceof ProjectNode) {
+      return new ProjectNode(node.getId(), source, node.getSchema(),
+                             ((ProjectNode) node).getProjectExpressions());
+    } else if (node instanceof AggregateNode) {
+      AggregateNode aggregateNode = (AggregateNode) node;
+      List<Expression> finalSelectExpressions = new ArrayList<>();
+      for (Pair<String, Expression> finalSelect : aggregateNode.getFinalSelectExpressions()) {
+        finalSelectExpressions.add(finalSelect.getRight());
+      }
+      return new AggregateNode(node.getId(), source, node.getSchema(),
+                               aggregateNode.getProjectExpressions(),
+                               aggregateNode.getGroupByExpressions(),
+                               aggregateNode.getWindowExpression(),
+                               aggregateNode.getAggregateFunctionArguments(),
+                               aggregateNode.getFunctionList(),
+                               aggregateNode.getRequiredColumnList(),
+                               aggregateNode.getNonAggResultColumns(),
+                               finalSelectExpressions,
+                               aggregateNode.getHavingExpressions());
+    } else if (node instanceof KsqlStructuredDataOutputNode) {
+      KsqlStructuredDataOutputNode outputNode = (KsqlStructuredDataOutputNode) node;
+      return new KsqlStructuredDataOutputNode(node.getId(), source, node.getSchema(),
+                                              outputNode.getTimestampField(),
+                                              outputNode.getKeyField(),
+                                              outputNode.getKsqlTopic(),
+                                              outputNode.getKafkaTopicName(),
+                                              outputNode.getOutputProperties(),
+                                              outputNode.getLimit());
+    } else if (node instanceof KsqlBareOutputNode) {
+      return new KsqlBareOutputNode(node.getId(), source, node.getSchema(),
+                                    ((KsqlBareOutputNode) node).getLimit());
+    }
+    throw new KsqlException("Unsupported logical node: " + node.getClass().getName());
+  }
+
+  private static PlanNode withSources(final JoinNode node, final PlanNode left,
+                                      final PlanNode right) {
+    if (node.getLeft() == left && node.getRight() == right) {
+      return node;
+    }
+    return new JoinNode(node.getId(), node.getType(), left, right, node.getLeftKeyFieldName(),
+                        node.getRightKeyFieldName(), node.getLeftAlias(), node.getRightAlias(),
+                        node.getWithinMillis());
+  }
+
+  /**
+   * The names of the fields of the schema the expressions read, or null if one of their column
+   * references can not be resolved.
+   */
+  private static Set<String> getColumns(final List<Expression> expressions,
+                                        final Schema schema) {
+    Set<String> columns = new HashSet<>();
+    for (Expression expression : expressions) {
+      Set<String> expressionColumns = getColumns(expression, schema);
+      if (expressionColumns == null) {
+        return null;
+      }
+      columns.addAll(expressionColumns);
+    }
+    return columns;
+  }
+
+  private static Set<String> getColumns(final Expression expression, final Schema schema) {
+    Set<String> columns = new HashSet<>();
+    boolean[] unresolved = {false};
+    new DefaultExpressionTraversalVisitor<Object, Object>() {
+      @Override
+      protected Object visitDereferenceExpression(DereferenceExpression node, Object context) {
+        addColumn(node);
+        return null;
+      }
+
+      @Override
+      protected Object visitQualifiedNameReference(QualifiedNameReference node, Object context) {
+        addColumn(node);
+        return null;
+      }
+
+      private void addColumn(final Expression column) {
+        Optional<Field> field = resolveColumn(column, schema);
+        if (field.isPresent()) {
+          columns.add(field.get().name());
+        } else {
+          unresolved[0] = true;
+        }
+      }
+    }.process(expression, null);
+    return unresolved[0] ? null : columns;
+  }
+
+  private static Optional<Field> resolveColumn(final Expression column, final Schema schema) {
+    if (column instanceof QualifiedNameReference) {
+      return SchemaUtil.getFieldByName(
+          schema, ((QualifiedNameReference) column).getName().getSuffix());
+    }
+    return SchemaUtil.getFieldByName(schema, column.toString());
+  }
+}
@@ -39,6 +39,8 @@ public class JoinNode extends PlanNode {
 
   private final String leftAlias;
   private final String rightAlias;
+  // How far apart two stream records can be and still join; null when there is no WITHIN.
+  private final Long withinMillis;
   private final Field keyField;
 
   public JoinNode(@JsonProperty("id") final PlanNodeId id,
@@ -48,7 +50,8 @@ public class JoinNode extends PlanNode {
                   @JsonProperty("leftKeyFieldName") final String leftKeyFieldName,
                   @JsonProperty("rightKeyFieldName") final String rightKeyFieldName,
                   @JsonProperty("leftAlias") final String leftAlias,
-                  @JsonProperty("rightAlias") final String rightAlias) {
+                  @JsonProperty("rightAlias") final String rightAlias,
+                  @JsonProperty("withinMillis") final Long withinMillis) {
 
     // TODO: Type should be derived.
     super(id);
@@ -59,6 +62,7 @@ public class JoinNode extends PlanNode {
     this.rightKeyFieldName = rightKeyFieldName;
     this.leftAlias = leftAlias;
     this.rightAlias = rightAlias;
+    this.withinMillis = withinMillis;
     this.schema = buildSchema(left, right);
     this.keyField = this.schema.field((leftAlias + "." + leftKeyFieldName));
   }
@@ -124,4 +128,13 @@ public class JoinNode extends PlanNode {
   public Type getType() {
     return type;
   }
+
+  public Long getWithinMillis() {
+    return withinMillis;
+  }
+
+  @Override
+  public <C, R> R accept(PlanVisitor<C, R> visitor, C context) {
+    return visitor.visitJoin(this, context);
+  }
 }
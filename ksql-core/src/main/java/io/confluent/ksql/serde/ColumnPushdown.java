@@ -0,0 +1,189 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.serde;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The part of a query that can be applied while its source rows are deserialized: the value
+ * columns the query reads, and simple comparisons of a column with a literal that every row
+ * passing the query's filter satisfies. Columns the query does not read are left null, so the
+ * row keeps the layout of the source schema, and rows failing a comparison deserialize to null.
+ */
+public class ColumnPushdown {
+
+  public enum Comparison {
+    EQUAL, NOT_EQUAL, LESS_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL
+  }
+
+  /**
+   * A column compared with a String, Boolean, Long or Double literal. Strings and booleans are
+   * only compared for (in)equality. As in the generated filter code, a null column never
+   * matches.
+   */
+  public static class ColumnPredicate {
+
+    private final int column;
+    private final Comparison comparison;
+    private final Object literal;
+
+    public ColumnPredicate(int column, Comparison comparison, Object literal) {
+      this.column = column;
+      this.comparison = comparison;
+      this.literal = literal;
+    }
+
+    public int getColumn() {
+      return column;
+    }
+
+    public boolean test(Object value) {
+      if (value == null) {
+        return false;
+      }
+      if (!(literal instanceof Number)) {
+        boolean equal = literal.equals(value);
+        return comparison == Comparison.NOT_EQUAL ? !equal : equal;
+      }
+      if (isIntegral(value) && isIntegral(literal)) {
+        long left = ((Number) value).longValue();
+        long right = ((Number) literal).longValue();
+        switch (comparison) {
+          case EQUAL:
+            return left == right;
+          case NOT_EQUAL:
+            return left != right;
+          case LESS_THAN:
+            return left < right;
+          case LESS_THAN_OR_EQUAL:
+            return left <= right;
+          case GREATER_THAN:
+            return left > right;
+          default:
+            return left >= right;
+        }
+      }
+      double left = ((Number) value).doubleValue();
+      double right = ((Number) literal).doubleValue();
+      switch (comparison) {
+        case EQUAL:
+          return left == right;
+        case NOT_EQUAL:
+          return left != right;
+        case LESS_THAN:
+          return left < right;
+        case LESS_THAN_OR_EQUAL:
+          return left <= right;
+        case GREATER_THAN:
+          return left > right;
+        default:
+          return left >= right;
+      }
+    }
+
+    private static boolean isIntegral(Object value) {
+      return value instanceof Integer || value instanceof Long;
+    }
+
+    @Override
+    public String toString() {
+      return "$" + column + " " + comparison + " " + literal;
+    }
+  }
+
+  private final boolean[] requiredColumns;
+  private final List<ColumnPredicate>[] columnPredicates;
+  private final boolean hasPredicates;
+
+  @SuppressWarnings("unchecked")
+  public ColumnPushdown(boolean[] requiredColumns, List<ColumnPredicate> predicates) {
+    this.requiredColumns = Arrays.copyOf(requiredColumns, requiredColumns.length);
+    this.columnPredicates = new List[requiredColumns.length];
+    for (ColumnPredicate predicate : predicates) {
+      int column = predicate.getColumn();
+      if (columnPredicates[column] == null) {
+        columnPredicates[column] = new ArrayList<>();
+      }
+      columnPredicates[column].add(predicate);
+      this.requiredColumns[column] = true;
+    }
+    this.hasPredicates = !predicates.isEmpty();
+  }
+
+  public static ColumnPushdown allColumns(int columnCount) {
+    boolean[] requiredColumns = new boolean[columnCount];
+    Arrays.fill(requiredColumns, true);
+    return new ColumnPushdown(requiredColumns, Collections.emptyList());
+  }
+
+  public int getColumnCount() {
+    return requiredColumns.length;
+  }
+
+  public boolean isRequired(int column) {
+    return requiredColumns[column];
+  }
+
+  public boolean hasPredicates() {
+    return hasPredicates;
+  }
+
+  /**
+   * Whether the value decoded for the column satisfies the comparisons on it, if any.
+   */
+  public boolean accept(int column, Object value) {
+    if (columnPredicates[column] == null) {
+      return true;
+    }
+    for (ColumnPredicate predicate : columnPredicates[column]) {
+      if (!predicate.test(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean accept(List<Object> columns) {
+    if (!hasPredicates) {
+      return true;
+    }
+    for (int i = 0; i < columnPredicates.length; i++) {
+      if (!accept(i, columns.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    List<Integer> columns = new ArrayList<>();
+    List<ColumnPredicate> predicates = new ArrayList<>();
+    for (int i = 0; i < requiredColumns.length; i++) {
+      if (requiredColumns[i]) {
+        columns.add(i);
+      }
+      if (columnPredicates[i] != null) {
+        predicates.addAll(columnPredicates[i]);
+      }
+    }
+    return "ColumnPushdown{columns=" + columns + ", predicates=" + predicates + "}";
+  }
+}
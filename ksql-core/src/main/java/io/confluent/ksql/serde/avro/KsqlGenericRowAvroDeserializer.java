@@ -17,12 +17,13 @@
 package io.confluent.ksql.serde.avro;
 
 import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
 import io.confluent.ksql.util.KsqlException;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.Decoder;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -34,15 +35,38 @@ import java.util.Map;
 
 public class KsqlGenericRowAvroDeserializer implements Deserializer<GenericRow> {
 
+  // Confluent schema registry framing: one magic byte followed by a four byte schema id.
+  private static final byte SCHEMA_REGISTRY_MAGIC_BYTE = 0;
+  private static final int SCHEMA_REGISTRY_HEADER_SIZE = 5;
+
   private final org.apache.kafka.connect.data.Schema schema;
+  private final ColumnPushdown pushdown;
 
   String rowSchema;
   Schema.Parser parser;
   Schema avroSchema;
   GenericDatumReader<GenericRecord> reader;
 
+  private int[] fieldPositions;
+  private Schema[] fieldSchemas;
+
+  // The deserializer is shared by all the stream threads, so the reused decoder and record are
+  // kept per thread.
+  private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+  private final ThreadLocal<GenericRecord> records = new ThreadLocal<>();
+
   public KsqlGenericRowAvroDeserializer(org.apache.kafka.connect.data.Schema schema) {
+    this(schema, null);
+  }
+
+  /**
+   * The columns the pushdown does not require are left out of the reader schema, so the decoder
+   * skips over their values instead of building them.
+   */
+  public KsqlGenericRowAvroDeserializer(org.apache.kafka.connect.data.Schema schema,
+                                        ColumnPushdown pushdown) {
     this.schema = schema;
+    this.pushdown = pushdown;
   }
 
   @Override
@@ -53,7 +77,30 @@ public class KsqlGenericRowAvroDeserializer implements Deserializer<GenericRow>
     }
     parser = new Schema.Parser();
     avroSchema = parser.parse(rowSchema);
-    reader = new GenericDatumReader<>(avroSchema);
+
+    List<Schema.Field> fields = avroSchema.getFields();
+    Schema readerSchema = avroSchema;
+    if (pushdown != null) {
+      List<Schema.Field> readerFields = new ArrayList<>();
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = fields.get(i);
+        if (pushdown.isRequired(i)) {
+          readerFields.add(new Schema.Field(field.name(), field.schema(), field.doc(),
+                                            field.defaultVal()));
+        }
+      }
+      readerSchema = Schema.createRecord(avroSchema.getName(), avroSchema.getDoc(),
+                                         avroSchema.getNamespace(), false, readerFields);
+    }
+    reader = new GenericDatumReader<>(avroSchema, readerSchema);
+
+    fieldPositions = new int[fields.size()];
+    fieldSchemas = new Schema[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field readerField = readerSchema.getField(fields.get(i).name());
+      fieldPositions[i] = readerField == null ? -1 : readerField.pos();
+      fieldSchemas[i] = fields.get(i).schema();
+    }
   }
 
   @Override
@@ -63,42 +110,57 @@ public class KsqlGenericRowAvroDeserializer implements Deserializer<GenericRow>
     }
 
     GenericRow genericRow = null;
-    GenericRecord genericRecord = null;
     try {
-      Decoder decoder = DecoderFactory.get().binaryDecoder((bytes[0] == 0)?
-                                                           removeSchemaRegistryMetaBytes(bytes):
-                                                           bytes, null);
-      genericRecord = reader.read(genericRecord, decoder);
-      List<Schema.Field> fields = genericRecord.getSchema().getFields();
-      List columns = new ArrayList();
-      for (Schema.Field field : fields) {
-        columns.add(enforceFieldType(field.schema(), genericRecord.get(field.name())));
+      int offset = hasSchemaRegistryHeader(bytes) ? SCHEMA_REGISTRY_HEADER_SIZE : 0;
+      BinaryDecoder decoder = DecoderFactory.get()
+          .binaryDecoder(bytes, offset, bytes.length - offset, decoders.get());
+      decoders.set(decoder);
+      GenericRecord genericRecord = reader.read(records.get(), decoder);
+      records.set(genericRecord);
+
+      List<Object> columns = GenericRow.newSourceColumns(fieldPositions.length);
+      for (int i = 0; i < fieldPositions.length; i++) {
+        columns.add(fieldPositions[i] < 0
+                    ? null
+                    : enforceFieldType(fieldSchemas[i], genericRecord.get(fieldPositions[i])));
+      }
+      if (pushdown == null || pushdown.accept(columns)) {
+        genericRow = new GenericRow(columns);
       }
-      genericRow = new GenericRow(columns);
     } catch (Exception e) {
       throw new SerializationException(e);
     }
     return genericRow;
   }
 
-  private byte[] removeSchemaRegistryMetaBytes(final byte[] data) {
-    byte[] avroBytes = new byte[data.length - 5];
-    for (int i = 5; i < data.length; i++) {
-      avroBytes[i-5] = data[i];
-    }
-    return avroBytes;
+  private boolean hasSchemaRegistryHeader(final byte[] data) {
+    return data.length >= SCHEMA_REGISTRY_HEADER_SIZE && data[0] == SCHEMA_REGISTRY_MAGIC_BYTE;
   }
 
+  /**
+   * The decoded record is reused for the next message, so every value that the reader may
+   * recycle (strings, arrays and maps) is copied out of it here.
+   */
   private Object enforceFieldType(Schema fieldSchema, Object value) {
+    if (value == null) {
+      return null;
+    }
 
     switch (fieldSchema.getType()) {
       case BOOLEAN:
       case INT:
       case LONG:
       case DOUBLE:
+        return value;
       case STRING:
+        return value.toString();
       case MAP:
-        return value;
+        Map<String, Object> mapField = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          mapField.put(entry.getKey().toString(),
+                       enforceFieldType(fieldSchema.getValueType(), entry.getValue()));
+        }
+        return mapField;
       case ARRAY:
         GenericData.Array genericArray = (GenericData.Array) value;
         Class elementClass = getJavaTypeForAvroType(fieldSchema.getElementType());
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.serde.binary;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.connect.data.Schema;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the rows written by {@link KsqlBinarySerializer}. Aggregate stores used to keep their
+ * rows in the format of the source topic, and queries restored with the same application id
+ * still find such rows in their changelog; rows without the binary header, or that do not
+ * decode as binary rows, are read with the legacy deserializer, if there is one. They are
+ * written back in the binary format when they are next updated.
+ */
+public class KsqlBinaryDeserializer implements Deserializer<GenericRow> {
+
+  private final Schema[] fieldSchemas;
+  private final Deserializer<GenericRow> legacyDeserializer;
+
+  public KsqlBinaryDeserializer(Schema schema) {
+    this(schema, null);
+  }
+
+  public KsqlBinaryDeserializer(Schema schema, Deserializer<GenericRow> legacyDeserializer) {
+    this.legacyDeserializer = legacyDeserializer;
+    this.fieldSchemas = new Schema[schema.fields().size()];
+    for (int i = 0; i < fieldSchemas.length; i++) {
+      fieldSchemas[i] = schema.fields().get(i).schema();
+    }
+  }
+
+  @Override
+  public void configure(Map<String, ?> map, boolean b) {
+
+  }
+
+  @Override
+  public GenericRow deserialize(final String topic, final byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    if (!hasBinaryHeader(bytes)) {
+      if (legacyDeserializer == null) {
+        throw new KsqlException("Row of " + bytes.length + " bytes is not a binary row.");
+      }
+      return legacyDeserializer.deserialize(topic, bytes);
+    }
+    try {
+      return deserializeBinary(bytes);
+    } catch (RuntimeException e) {
+      // An Avro row may start with the same two bytes by chance.
+      if (legacyDeserializer == null) {
+        throw e;
+      }
+      return legacyDeserializer.deserialize(topic, bytes);
+    }
+  }
+
+  private static boolean hasBinaryHeader(final byte[] bytes) {
+    return bytes.length >= 2
+           && bytes[0] == KsqlBinarySerializer.MAGIC_BYTE
+           && bytes[1] == KsqlBinarySerializer.FORMAT_VERSION;
+  }
+
+  private GenericRow deserializeBinary(final byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+    try {
+      Object[] columns = new Object[fieldSchemas.length];
+      for (int i = 0; i < fieldSchemas.length; i++) {
+        columns[i] = readValue(buffer, fieldSchemas[i]);
+      }
+      if (buffer.hasRemaining()) {
+        throw new KsqlException("Extra bytes after the last column of the binary row.");
+      }
+      return new GenericRow(columns);
+    } catch (BufferUnderflowException e) {
+      throw new KsqlException("Truncated binary row of " + bytes.length + " bytes.", e);
+    }
+  }
+
+  private static Object readValue(final ByteBuffer buffer, final Schema schema) {
+    if (buffer.get() == KsqlBinarySerializer.NULL_VALUE) {
+      return null;
+    }
+    switch (schema.type()) {
+      case BOOLEAN:
+        return buffer.get() != 0;
+      case INT32:
+        return buffer.getInt();
+      case INT64:
+        return buffer.getLong();
+      case FLOAT64:
+        return buffer.getDouble();
+      case STRING:
+        return readString(buffer);
+      case ARRAY:
+        int length = buffer.getInt();
+        Object[] array = (Object[]) java.lang.reflect.Array.newInstance(
+            SchemaUtil.getJavaType(schema.valueSchema()), length);
+        for (int i = 0; i < length; i++) {
+          array[i] = readValue(buffer, schema.valueSchema());
+        }
+        return array;
+      case MAP:
+        int size = buffer.getInt();
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+          String key = readString(buffer);
+          map.put(key, readValue(buffer, schema.valueSchema()));
+        }
+        return map;
+      default:
+        throw new KsqlException("Type is not supported: " + schema.type());
+    }
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                              StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  @Override
+  public void close() {
+    if (legacyDeserializer != null) {
+      legacyDeserializer.close();
+    }
+  }
+}
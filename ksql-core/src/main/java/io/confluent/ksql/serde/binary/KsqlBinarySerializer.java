@@ -0,0 +1,163 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.serde.binary;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.KsqlException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.connect.data.Schema;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, schema-driven binary encoding of a row. It is used for the values of the state stores
+ * KSQL creates itself, whatever the format of the source topic is. A row starts with a magic
+ * byte and a format version, so that rows written by earlier versions in the format of the
+ * source topic can still be told apart. Every value is preceded by a presence byte; numbers are
+ * fixed width, strings are a length followed by their UTF-8 bytes, and arrays and maps are an
+ * element count followed by their elements.
+ */
+public class KsqlBinarySerializer implements Serializer<GenericRow> {
+
+  // Not the first byte of any UTF-8 text, so JSON and delimited rows never start with it.
+  static final byte MAGIC_BYTE = (byte) 0xB1;
+  static final byte FORMAT_VERSION = 1;
+
+  static final byte NULL_VALUE = 0;
+  static final byte PRESENT_VALUE = 1;
+
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private static final ThreadLocal<ByteBuffer> rowBuffer =
+      new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+          return ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+      };
+
+  private final Schema[] fieldSchemas;
+
+  public KsqlBinarySerializer(Schema schema) {
+    this.fieldSchemas = new Schema[schema.fields().size()];
+    for (int i = 0; i < fieldSchemas.length; i++) {
+      fieldSchemas[i] = schema.fields().get(i).schema();
+    }
+  }
+
+  @Override
+  public void configure(Map<String, ?> map, boolean b) {
+
+  }
+
+  @Override
+  public byte[] serialize(final String topic, final GenericRow genericRow) {
+    if (genericRow == null) {
+      return null;
+    }
+    List<Object> columns = genericRow.getColumns();
+    if (columns.size() != fieldSchemas.length) {
+      throw new KsqlException("Row has " + columns.size() + " columns, the schema has "
+                              + fieldSchemas.length + ": " + genericRow);
+    }
+
+    ByteBuffer buffer = rowBuffer.get();
+    while (true) {
+      buffer.clear();
+      try {
+        buffer.put(MAGIC_BYTE);
+        buffer.put(FORMAT_VERSION);
+        for (int i = 0; i < fieldSchemas.length; i++) {
+          writeValue(buffer, fieldSchemas[i], columns.get(i));
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+      } catch (BufferOverflowException e) {
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        rowBuffer.set(buffer);
+      } catch (ClassCastException e) {
+        throw new KsqlException("Row does not match its schema: " + genericRow, e);
+      }
+    }
+  }
+
+  private static void writeValue(final ByteBuffer buffer, final Schema schema,
+                                 final Object value) {
+    if (value == null) {
+      buffer.put(NULL_VALUE);
+      return;
+    }
+    buffer.put(PRESENT_VALUE);
+    switch (schema.type()) {
+      case BOOLEAN:
+        buffer.put((Boolean) value ? (byte) 1 : (byte) 0);
+        break;
+      case INT32:
+        buffer.putInt(((Number) value).intValue());
+        break;
+      case INT64:
+        buffer.putLong(((Number) value).longValue());
+        break;
+      case FLOAT64:
+        buffer.putDouble(((Number) value).doubleValue());
+        break;
+      case STRING:
+        writeString(buffer, value.toString());
+        break;
+      case ARRAY:
+        if (value instanceof List) {
+          List list = (List) value;
+          buffer.putInt(list.size());
+          for (Object element : list) {
+            writeValue(buffer, schema.valueSchema(), element);
+          }
+        } else {
+          Object[] array = (Object[]) value;
+          buffer.putInt(array.length);
+          for (Object element : array) {
+            writeValue(buffer, schema.valueSchema(), element);
+          }
+        }
+        break;
+      case MAP:
+        Map<?, ?> map = (Map<?, ?>) value;
+        buffer.putInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeString(buffer, entry.getKey().toString());
+          writeValue(buffer, schema.valueSchema(), entry.getValue());
+        }
+        break;
+      default:
+        throw new KsqlException("Type is not supported: " + schema.type());
+    }
+  }
+
+  private static void writeString(final ByteBuffer buffer, final String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  @Override
+  public void close() {
+
+  }
+}
@@ -16,32 +16,59 @@
 
 package io.confluent.ksql.serde.delimited;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-
 import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
 import io.confluent.ksql.util.KsqlException;
-import io.confluent.ksql.util.SchemaUtil;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.connect.data.Schema;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Reads a single delimited line straight from its UTF-8 bytes. Fields may be enclosed in double
+ * quotes, with a doubled quote standing for a literal one. An empty unquoted field is null, while
+ * "" is an empty string. Unquoted numeric and boolean fields
+ * are parsed from the bytes without going through a String. Fields the pushdown does not require
+ * are only scanned for the next delimiter, and the line is given up as soon as a field fails a
+ * pushed down comparison.
+ */
 public class KsqlDelimitedDeserializer implements Deserializer<GenericRow> {
 
-  private final Schema schema;
+  private static final byte QUOTE = '"';
+
+  // Values with at most this many digits cannot overflow a long (or, for doubles, lose precision
+  // in the mantissa), so they are accumulated directly.
+  private static final int MAX_SAFE_LONG_DIGITS = 18;
+  private static final int MAX_SAFE_INT_DIGITS = 9;
+  private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+  };
+
+  private final byte delimiter;
+  private final Schema.Type[] fieldTypes;
+  private final ColumnPushdown pushdown;
 
   public KsqlDelimitedDeserializer(Schema schema) {
-    this.schema = schema;
+    this(schema, KsqlDelimitedTopicSerDe.DEFAULT_DELIMITER);
+  }
+
+  public KsqlDelimitedDeserializer(Schema schema, char delimiter) {
+    this(schema, delimiter, null);
+  }
+
+  public KsqlDelimitedDeserializer(Schema schema, char delimiter, ColumnPushdown pushdown) {
+    this.delimiter = (byte) KsqlDelimitedTopicSerDe.checkDelimiter(delimiter);
+    int fieldCount = schema == null ? 0 : schema.fields().size();
+    this.fieldTypes = new Schema.Type[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      fieldTypes[i] = schema.fields().get(i).schema().type();
+    }
+    this.pushdown = pushdown == null ? ColumnPushdown.allColumns(fieldCount) : pushdown;
   }
 
   @Override
@@ -54,51 +81,194 @@ public class KsqlDelimitedDeserializer implements Deserializer<GenericRow> {
     if (bytes == null) {
       return null;
     }
-    String recordCsvString = new String(bytes);
     try {
-      List<CSVRecord> csvRecords = CSVParser.parse(recordCsvString, CSVFormat.DEFAULT)
-          .getRecords();
-      if (csvRecords == null || csvRecords.isEmpty()) {
-        throw new KsqlException("Deserialization error in the delimited line: " + recordCsvString);
+      List<Object> columns = readLine(bytes);
+      return columns == null ? null : new GenericRow(columns);
+    } catch (Exception e) {
+      throw new KsqlException("Exception in deserializing the delimited row: "
+                              + new String(bytes, StandardCharsets.UTF_8), e);
+    }
+  }
+
+  private List<Object> readLine(final byte[] bytes) {
+    int end = bytes.length;
+    while (end > 0 && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r')) {
+      end--;
+    }
+
+    List<Object> columns = GenericRow.newSourceColumns(fieldTypes.length);
+    int pos = 0;
+    while (true) {
+      if (columns.size() == fieldTypes.length) {
+        throw new KsqlException("Missing/Extra fields in the delimited line.");
       }
-      CSVRecord csvRecord = csvRecords.get(0);
-      if (csvRecord == null || csvRecord.size() == 0) {
-        throw new KsqlException("Deserialization error in the delimited line: " + recordCsvString);
+      int column = columns.size();
+      if (pos < end && bytes[pos] == QUOTE) {
+        pos = readQuotedField(bytes, pos + 1, end, column, columns);
+      } else {
+        int fieldEnd = pos;
+        while (fieldEnd < end && bytes[fieldEnd] != delimiter) {
+          fieldEnd++;
+        }
+        columns.add(pushdown.isRequired(column) && fieldEnd > pos
+                    ? readField(fieldTypes[column], bytes, pos, fieldEnd)
+                    : null);
+        pos = fieldEnd;
       }
-      List<Object> columns = new ArrayList();
-      if (csvRecord.size() != schema.fields().size()) {
-        throw new KsqlException("Missing/Extra fields in the delimited line: " + recordCsvString);
+      if (!pushdown.accept(column, columns.get(column))) {
+        return null;
       }
-      for (int i = 0; i < csvRecord.size(); i++) {
-        columns.add(enforceFieldType(schema.fields().get(i).schema(), csvRecord.get(i)));
+
+      if (pos == end) {
+        break;
       }
-      return new GenericRow(columns);
-    } catch (IOException e) {
-      throw new KsqlException("Could not parse the DELIMITED record: " + recordCsvString, e);
-    } catch (Exception e) {
-      throw new KsqlException("Exception in deserializing the delimited row: " + recordCsvString,
-                              e);
+      if (bytes[pos] != delimiter) {
+        throw new KsqlException("Deserialization error in the delimited line at position " + pos);
+      }
+      pos++;
     }
+
+    if (columns.size() != fieldTypes.length) {
+      throw new KsqlException("Missing/Extra fields in the delimited line.");
+    }
+    return columns;
   }
 
-  private Object enforceFieldType(Schema fieldSchema, String delimitedField) {
+  /**
+   * Reads a quoted field whose content starts at start and returns the position right after the
+   * closing quote.
+   */
+  private int readQuotedField(final byte[] bytes, final int start, final int end,
+                              final int column, final List<Object> columns) {
+    int escapedQuotes = 0;
+    int pos = start;
+    while (true) {
+      if (pos == end) {
+        throw new KsqlException("Unterminated quoted field in the delimited line.");
+      }
+      if (bytes[pos] == QUOTE) {
+        if (pos + 1 < end && bytes[pos + 1] == QUOTE) {
+          escapedQuotes++;
+          pos += 2;
+          continue;
+        }
+        break;
+      }
+      pos++;
+    }
+
+    if (!pushdown.isRequired(column)) {
+      columns.add(null);
+    } else if (escapedQuotes == 0) {
+      columns.add(readField(fieldTypes[column], bytes, start, pos));
+    } else {
+      byte[] unescaped = new byte[pos - start - escapedQuotes];
+      int length = 0;
+      for (int i = start; i < pos; i++) {
+        unescaped[length++] = bytes[i];
+        if (bytes[i] == QUOTE) {
+          i++;
+        }
+      }
+      columns.add(readField(fieldTypes[column], unescaped, 0, length));
+    }
+    return pos + 1;
+  }
 
-    switch (fieldSchema.type()) {
+  private Object readField(final Schema.Type fieldType, final byte[] bytes, final int start,
+                           final int end) {
+    switch (fieldType) {
       case BOOLEAN:
-        return Boolean.parseBoolean(delimitedField);
+        return readBoolean(bytes, start, end);
       case INT32:
-        return Integer.parseInt(delimitedField);
+        if (end - start > MAX_SAFE_INT_DIGITS) {
+          return Integer.parseInt(decode(bytes, start, end));
+        }
+        return (int) readLong(bytes, start, end);
       case INT64:
-        return Long.parseLong(delimitedField);
+        if (end - start > MAX_SAFE_LONG_DIGITS) {
+          return Long.parseLong(decode(bytes, start, end));
+        }
+        return readLong(bytes, start, end);
       case FLOAT64:
-        return Double.parseDouble(delimitedField);
+        return readDouble(bytes, start, end);
       case STRING:
-        return delimitedField;
+        return decode(bytes, start, end);
       case ARRAY:
       case MAP:
       default:
-        throw new KsqlException("Type is not supported: " + fieldSchema.type());
+        throw new KsqlException("Type is not supported: " + fieldType);
+    }
+  }
+
+  // Same semantics as Boolean.parseBoolean: "true" in any case, anything else is false.
+  private static boolean readBoolean(final byte[] bytes, final int start, final int end) {
+    return end - start == 4
+           && (bytes[start] | 0x20) == 't'
+           && (bytes[start + 1] | 0x20) == 'r'
+           && (bytes[start + 2] | 0x20) == 'u'
+           && (bytes[start + 3] | 0x20) == 'e';
+  }
+
+  private static long readLong(final byte[] bytes, final int start, final int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+      negative = bytes[pos] == '-';
+      pos++;
     }
+    if (pos == end) {
+      throw new NumberFormatException("For input string: \"" + decode(bytes, start, end) + "\"");
+    }
+    long value = 0;
+    for (; pos < end; pos++) {
+      int digit = bytes[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("For input string: \"" + decode(bytes, start, end) + "\"");
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Plain decimals with at most 15 digits are exact as a long mantissa, and a single division by
+   * an exact power of ten is correctly rounded, so they need no String. Anything else (exponents,
+   * NaN, long mantissas) goes through Double.parseDouble.
+   */
+  private static double readDouble(final byte[] bytes, final int start, final int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+      negative = bytes[pos] == '-';
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; pos < end; pos++) {
+      byte b = bytes[pos];
+      if (b >= '0' && b <= '9') {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (fractionDigits >= 0) {
+          fractionDigits++;
+        }
+      } else if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+      } else {
+        break;
+      }
+    }
+    if (pos != end || digits == 0 || digits > MAX_EXACT_DOUBLE_DIGITS) {
+      return Double.parseDouble(decode(bytes, start, end));
+    }
+    double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private static String decode(final byte[] bytes, final int start, final int end) {
+    return new String(bytes, start, end - start, StandardCharsets.UTF_8);
   }
 
   @Override
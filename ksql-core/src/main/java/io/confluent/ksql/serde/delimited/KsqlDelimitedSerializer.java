@@ -21,11 +21,38 @@ import io.confluent.ksql.util.KsqlException;
 
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
-
+/**
+ * Writes a row as a single UTF-8 delimited line. Strings holding the delimiter, a quote or a line
+ * break are quoted the way {@link KsqlDelimitedDeserializer} reads them back. Null columns are
+ * written as empty fields, and empty strings are quoted to keep them apart from null. The line
+ * is assembled in a per-thread buffer that is reused across records, since the serializer is
+ * shared by all the stream threads.
+ */
 public class KsqlDelimitedSerializer implements Serializer<GenericRow> {
 
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private static final ThreadLocal<LineBuffer> lineBuffer =
+      new ThreadLocal<LineBuffer>() {
+        @Override
+        protected LineBuffer initialValue() {
+          return new LineBuffer();
+        }
+      };
+
+  private final char delimiter;
+
+  public KsqlDelimitedSerializer() {
+    this(KsqlDelimitedTopicSerDe.DEFAULT_DELIMITER);
+  }
+
+  public KsqlDelimitedSerializer(char delimiter) {
+    this.delimiter = KsqlDelimitedTopicSerDe.checkDelimiter(delimiter);
+  }
 
   @Override
   public void configure(Map<String, ?> map, boolean b) {
@@ -39,23 +66,149 @@ public class KsqlDelimitedSerializer implements Serializer<GenericRow> {
     }
 
     try {
-      StringBuilder recordString = new StringBuilder();
-      for (int i = 0; i < genericRow.getColumns().size(); i++) {
+      LineBuffer line = lineBuffer.get();
+      line.reset();
+      List<Object> columns = genericRow.getColumns();
+      for (int i = 0; i < columns.size(); i++) {
         if (i != 0) {
-          recordString.append(",");
+          line.writeAscii(delimiter);
         }
-        recordString.append(genericRow.getColumns().get(i).toString());
+        writeColumn(line, columns.get(i));
       }
-      return recordString.toString().getBytes();
+      return line.toByteArray();
     } catch (Exception e) {
       throw new KsqlException(e.getMessage(), e);
     }
+  }
 
+  private void writeColumn(final LineBuffer line, final Object column) {
+    if (column == null) {
+      return;
+    }
+    if (column instanceof Long || column instanceof Integer) {
+      line.writeLong(((Number) column).longValue());
+    } else if (column instanceof Boolean) {
+      line.writeString((Boolean) column ? "true" : "false");
+    } else if (column instanceof Double) {
+      line.writeString(Double.toString((Double) column));
+    } else {
+      String value = column.toString();
+      if (needsQuoting(value)) {
+        line.writeQuoted(value);
+      } else {
+        line.writeString(value);
+      }
+    }
+  }
 
+  private boolean needsQuoting(final String value) {
+    if (value.isEmpty() || value.charAt(0) == '"') {
+      return true;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
   public void close() {
 
   }
+
+  private static final class LineBuffer {
+
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    void reset() {
+      length = 0;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+
+    void writeAscii(final char c) {
+      ensureCapacity(1);
+      bytes[length++] = (byte) c;
+    }
+
+    void writeLong(final long value) {
+      if (value == Long.MIN_VALUE) {
+        writeString(Long.toString(value));
+        return;
+      }
+      ensureCapacity(20);
+      long remaining = value;
+      if (remaining < 0) {
+        bytes[length++] = '-';
+        remaining = -remaining;
+      }
+      int digitsStart = length;
+      do {
+        bytes[length++] = (byte) ('0' + remaining % 10);
+        remaining /= 10;
+      } while (remaining != 0);
+      // Digits were written least significant first.
+      for (int i = digitsStart, j = length - 1; i < j; i++, j--) {
+        byte tmp = bytes[i];
+        bytes[i] = bytes[j];
+        bytes[j] = tmp;
+      }
+    }
+
+    void writeQuoted(final String value) {
+      writeAscii('"');
+      int from = 0;
+      int quote;
+      while ((quote = value.indexOf('"', from)) >= 0) {
+        writeString(value, from, quote + 1);
+        writeAscii('"');
+        from = quote + 1;
+      }
+      writeString(value, from, value.length());
+      writeAscii('"');
+    }
+
+    void writeString(final String value) {
+      writeString(value, 0, value.length());
+    }
+
+    // Encodes the chars as UTF-8 straight into the buffer.
+    void writeString(final String value, final int start, final int end) {
+      ensureCapacity((end - start) * 3);
+      for (int i = start; i < end; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          bytes[length++] = (byte) c;
+        } else if (c < 0x800) {
+          bytes[length++] = (byte) (0xC0 | (c >> 6));
+          bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < end
+                   && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          bytes[length++] = '?';
+        } else {
+          bytes[length++] = (byte) (0xE0 | (c >> 12));
+          bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+    }
+
+    private void ensureCapacity(final int extra) {
+      if (length + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+      }
+    }
+  }
 }
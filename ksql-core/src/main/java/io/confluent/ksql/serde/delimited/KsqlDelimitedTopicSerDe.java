@@ -18,11 +18,51 @@ package io.confluent.ksql.serde.delimited;
 
 import io.confluent.ksql.metastore.StructuredDataSource;
 import io.confluent.ksql.serde.KsqlTopicSerDe;
+import io.confluent.ksql.util.KsqlException;
 
 
 public class KsqlDelimitedTopicSerDe extends KsqlTopicSerDe {
 
+  public static final char DEFAULT_DELIMITER = ',';
+
+  private final char delimiter;
+
   public KsqlDelimitedTopicSerDe() {
+    this(DEFAULT_DELIMITER);
+  }
+
+  public KsqlDelimitedTopicSerDe(char delimiter) {
     super(StructuredDataSource.DataSourceSerDe.DELIMITED);
+    this.delimiter = checkDelimiter(delimiter);
+  }
+
+  public char getDelimiter() {
+    return delimiter;
+  }
+
+  /**
+   * Parses the value of the VALUE_DELIMITER property: a single character, or TAB or SPACE.
+   */
+  public static char parseDelimiter(String delimiter) {
+    if (delimiter.length() == 1) {
+      return checkDelimiter(delimiter.charAt(0));
+    }
+    switch (delimiter.toUpperCase()) {
+      case "TAB":
+        return '\t';
+      case "SPACE":
+        return ' ';
+      default:
+        throw new KsqlException("Invalid delimiter, it should be a single character, TAB or "
+                                + "SPACE: " + delimiter);
+    }
+  }
+
+  // The delimiter is matched against the raw UTF-8 bytes, so it has to be a single byte.
+  static char checkDelimiter(char delimiter) {
+    if (delimiter >= 0x80 || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+      throw new KsqlException("Unsupported delimiter: '" + delimiter + "'");
+    }
+    return delimiter;
   }
 }
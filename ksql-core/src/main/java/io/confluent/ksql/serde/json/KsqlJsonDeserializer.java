@@ -16,38 +16,62 @@
 
 package io.confluent.ksql.serde.json;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
 import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.SchemaUtil;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
-import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class KsqlJsonDeserializer implements Deserializer<GenericRow> {
 
+  // Bounds the cache of JSON key spellings seen on the topic, in case keys are dynamic.
+  private static final int MAX_CACHED_FIELD_NAMES = 1024;
+  private static final int UNKNOWN_FIELD = -1;
 
-  //TODO: Possibily use Streaming API instead of ObjectMapper for better performance
-  private ObjectMapper objectMapper = new ObjectMapper();
+  private final ObjectMapper objectMapper = new ObjectMapper();
 
   private final Schema schema;
-  private final Map<String, String> caseSensitiveKeyMap = new HashMap<>();
+  private final int columnCount;
+  private final Map<String, Integer> fieldIndexes = new HashMap<>();
+  private final Map<String, Integer> jsonFieldIndexes = new ConcurrentHashMap<>();
+  private final ColumnPushdown pushdown;
 
   /**
    * Default constructor needed by Kafka
    */
   public KsqlJsonDeserializer(Schema schema) {
+    this(schema, null);
+  }
+
+  /**
+   * Only the columns the pushdown requires are decoded; the values of the others are skipped.
+   */
+  public KsqlJsonDeserializer(Schema schema, ColumnPushdown pushdown) {
     this.schema = schema;
+    this.columnCount = schema == null ? 0 : schema.fields().size();
+    this.pushdown = pushdown == null ? ColumnPushdown.allColumns(columnCount) : pushdown;
+    for (int i = 0; i < columnCount; i++) {
+      if (!this.pushdown.isRequired(i)) {
+        continue;
+      }
+      String fieldName = schema.fields().get(i).name();
+      fieldIndexes.putIfAbsent(fieldName.substring(fieldName.indexOf(".") + 1), i);
+    }
   }
 
   @Override
@@ -71,23 +95,80 @@ public class KsqlJsonDeserializer implements Deserializer<GenericRow> {
   }
 
   private GenericRow getGenericRow(byte[] rowJsonBytes) throws IOException {
-    JsonNode jsonNode = objectMapper.readTree(rowJsonBytes);
-    CaseInsensitiveJsonNode caseInsensitiveJsonNode = new CaseInsensitiveJsonNode(jsonNode);
-    Map<String, String> keyMap = caseInsensitiveJsonNode.keyMap;
-    List columns = new ArrayList();
-    for (Field field: schema.fields()) {
-      String jsonFieldName = field.name().substring(field.name().indexOf(".") + 1);
-      JsonNode fieldJsonNode = jsonNode.get(keyMap.get(jsonFieldName));
-      if (fieldJsonNode == null) {
-        columns.add(null);
-      } else {
-        columns.add(enforceFieldType(field.schema(), fieldJsonNode));
-      }
+    List<Object> columns = GenericRow.newSourceColumns(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      columns.add(null);
+    }
 
+    try (JsonParser parser = objectMapper.getFactory().createParser(rowJsonBytes)) {
+      boolean isObject = parser.nextToken() == JsonToken.START_OBJECT;
+      while (isObject && parser.nextToken() == JsonToken.FIELD_NAME) {
+        int index = getFieldIndex(parser.getCurrentName());
+        JsonToken valueToken = parser.nextToken();
+        if (index == UNKNOWN_FIELD) {
+          parser.skipChildren();
+        } else {
+          columns.set(index, readField(schema.fields().get(index).schema(), parser, valueToken));
+        }
+      }
+    }
+    if (!pushdown.accept(columns)) {
+      return null;
     }
     return new GenericRow(columns);
   }
 
+  private int getFieldIndex(final String jsonFieldName) {
+    Integer index = jsonFieldIndexes.get(jsonFieldName);
+    if (index == null) {
+      index = fieldIndexes.getOrDefault(jsonFieldName.toUpperCase(), UNKNOWN_FIELD);
+      if (jsonFieldIndexes.size() < MAX_CACHED_FIELD_NAMES) {
+        jsonFieldIndexes.put(jsonFieldName, index);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Reads primitive values straight off the parser. Anything else, including JSON nulls,
+   * nested values and complex types, is read as a tree and converted exactly as before.
+   */
+  private Object readField(final Schema fieldSchema, final JsonParser parser,
+                           final JsonToken valueToken) throws IOException {
+    boolean isScalar = valueToken.isScalarValue() && valueToken != JsonToken.VALUE_NULL;
+    if (isScalar) {
+      switch (fieldSchema.type()) {
+        case BOOLEAN:
+          return parser.getValueAsBoolean();
+        case INT32:
+          if (valueToken == JsonToken.VALUE_NUMBER_INT
+              || valueToken == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getNumberValue().intValue();
+          }
+          return parser.getValueAsInt();
+        case INT64:
+          if (valueToken == JsonToken.VALUE_NUMBER_INT
+              || valueToken == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getNumberValue().longValue();
+          }
+          return parser.getValueAsLong();
+        case FLOAT64:
+          return parser.getValueAsDouble();
+        case STRING:
+          if (valueToken == JsonToken.VALUE_STRING) {
+            return parser.getText();
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    JsonNode fieldJsonNode = valueToken == JsonToken.VALUE_NULL
+                             ? NullNode.getInstance()
+                             : objectMapper.readTree(parser);
+    return enforceFieldType(fieldSchema, fieldJsonNode);
+  }
+
   private Object enforceFieldType(Schema fieldSchema, JsonNode fieldJsonNode) {
 
     switch (fieldSchema.type()) {
@@ -130,21 +211,6 @@ public class KsqlJsonDeserializer implements Deserializer<GenericRow> {
 
   }
 
-  class CaseInsensitiveJsonNode {
-    JsonNode jsonNode;
-    Map<String, String> keyMap = new HashMap<>();
-
-    CaseInsensitiveJsonNode(JsonNode jsonNode) {
-      this.jsonNode = jsonNode;
-      Iterator<String> fieldNames = jsonNode.fieldNames();
-      while (fieldNames.hasNext()) {
-        String fieldName = fieldNames.next();
-        keyMap.put(fieldName.toUpperCase(), fieldName);
-      }
-    }
-
-  }
-
   @Override
   public void close() {
 
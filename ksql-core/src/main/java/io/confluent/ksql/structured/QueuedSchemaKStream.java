@@ -19,6 +19,7 @@ package io.confluent.ksql.structured;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.serde.KsqlTopicSerDe;
+import io.confluent.ksql.util.BoundedRowQueue;
 import io.confluent.ksql.util.KafkaTopicClient;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.Pair;
@@ -26,27 +27,25 @@ import io.confluent.ksql.util.Pair;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.kstream.KStream;
 
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.SynchronousQueue;
 
 public class QueuedSchemaKStream extends SchemaKStream {
 
-  private final SynchronousQueue<KeyValue<String, GenericRow>> rowQueue;
+  private final BoundedRowQueue rowQueue;
 
   public QueuedSchemaKStream(final Schema schema, final KStream kstream, final Field keyField,
                              final List<SchemaKStream> sourceSchemaKStreams,
-                             SynchronousQueue<KeyValue<String, GenericRow>> rowQueue,
+                             BoundedRowQueue rowQueue,
                              Type type) {
     super(schema, kstream, keyField, sourceSchemaKStreams, type);
     this.rowQueue = rowQueue;
   }
 
   public QueuedSchemaKStream(SchemaKStream schemaKStream,
-                             SynchronousQueue<KeyValue<String, GenericRow>> rowQueue,
+                             BoundedRowQueue rowQueue,
                              Type type) {
     this(
         schemaKStream.schema,
@@ -58,7 +57,7 @@ public class QueuedSchemaKStream extends SchemaKStream {
     );
   }
 
-  public SynchronousQueue<KeyValue<String, GenericRow>> getQueue() {
+  public BoundedRowQueue getQueue() {
     return rowQueue;
   }
 
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.structured;
+
+import io.confluent.ksql.physical.GenericRow;
+
+import java.util.Arrays;
+
+/**
+ * The records of one consumer poll, as parallel arrays of keys, timestamps and rows that are
+ * reused from batch to batch.
+ */
+public class RowBatch {
+
+  private String[] keys;
+  private long[] timestamps;
+  private GenericRow[] rows;
+  private int size;
+
+  public RowBatch(final int capacity) {
+    this.keys = new String[capacity];
+    this.timestamps = new long[capacity];
+    this.rows = new GenericRow[capacity];
+  }
+
+  public void add(final String key, final long timestamp, final GenericRow row) {
+    if (size == rows.length) {
+      int capacity = Math.max(1, size * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      rows = Arrays.copyOf(rows, capacity);
+    }
+    keys[size] = key;
+    timestamps[size] = timestamp;
+    rows[size] = row;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getKey(final int index) {
+    return keys[index];
+  }
+
+  public long getTimestamp(final int index) {
+    return timestamps[index];
+  }
+
+  public GenericRow getRow(final int index) {
+    return rows[index];
+  }
+
+  public void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(rows, 0, size, null);
+    size = 0;
+  }
+
+  void setRow(final int index, final GenericRow row) {
+    rows[index] = row;
+  }
+
+  void move(final int from, final int to) {
+    keys[to] = keys[from];
+    timestamps[to] = timestamps[from];
+    rows[to] = rows[from];
+  }
+
+  void truncate(final int newSize) {
+    Arrays.fill(keys, newSize, size, null);
+    Arrays.fill(rows, newSize, size, null);
+    size = newSize;
+  }
+}
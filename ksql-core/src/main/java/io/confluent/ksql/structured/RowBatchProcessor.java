@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.structured;
+
+import io.confluent.ksql.codegen.ColumnarPredicate;
+import io.confluent.ksql.codegen.RowProjection;
+import io.confluent.ksql.physical.GenericRow;
+
+import java.util.Set;
+
+/**
+ * Runs the WHERE clause and the SELECT of a stateless query over a whole batch of rows, one
+ * tight loop per stage, and leaves the rows to write to the sink topic in the batch.
+ */
+public class RowBatchProcessor {
+
+  private final SqlPredicate predicate;
+  private final ColumnarPredicate columnarPredicate;
+  private final RowProjection projection;
+  private final Set<Integer> rowkeyIndexes;
+  private final Object[] predicateArguments;
+  private int[] selection;
+
+  public RowBatchProcessor(final SqlPredicate predicate, final RowProjection projection,
+                           final Set<Integer> rowkeyIndexes) {
+    this(predicate, null, projection, rowkeyIndexes);
+  }
+
+  /**
+   * @param predicate the WHERE clause, or null if the query has none or the projection
+   *                  evaluates it
+   * @param columnarPredicate the WHERE clause compiled to run over column vectors, or null to
+   *                          evaluate it row by row
+   * @param rowkeyIndexes the implicit columns of the projection not written to the sink
+   */
+  public RowBatchProcessor(final SqlPredicate predicate,
+                           final ColumnarPredicate columnarPredicate,
+                           final RowProjection projection, final Set<Integer> rowkeyIndexes) {
+    this.predicate = predicate;
+    this.columnarPredicate = predicate == null ? null : columnarPredicate;
+    this.projection = projection;
+    this.rowkeyIndexes = rowkeyIndexes;
+    this.predicateArguments = predicate == null ? null : predicate.newArgumentBuffer();
+    this.selection = new int[0];
+  }
+
+  public void process(final RowBatch batch) {
+    if (columnarPredicate != null) {
+      filterColumnar(batch);
+    } else if (predicate != null) {
+      filterRows(batch);
+    }
+
+    // A projection compiled with the WHERE clause returns null for the rows it drops.
+    int kept = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      GenericRow projected = projection.project(batch.getRow(i));
+      if (projected != null) {
+        batch.setRow(i, SchemaKStream.removeColumns(projected, rowkeyIndexes));
+        batch.move(i, kept++);
+      }
+    }
+    batch.truncate(kept);
+  }
+
+  private void filterRows(final RowBatch batch) {
+    int kept = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      if (predicate.test(batch.getRow(i), predicateArguments)) {
+        batch.move(i, kept++);
+      }
+    }
+    batch.truncate(kept);
+  }
+
+  private void filterColumnar(final RowBatch batch) {
+    int size = batch.size();
+    if (selection.length < size) {
+      selection = new int[Math.max(size, selection.length * 2)];
+    }
+    columnarPredicate.reset(size);
+    for (int i = 0; i < size; i++) {
+      columnarPredicate.load(i, batch.getRow(i));
+    }
+    int selected = columnarPredicate.select(size, selection);
+    if (selected < 0) {
+      filterRows(batch);
+      return;
+    }
+
+    // Rows with nulls in the filtered columns were skipped by the columnar filter.
+    int kept = 0;
+    int next = 0;
+    for (int i = 0; i < size; i++) {
+      boolean keep;
+      if (next < selected && selection[next] == i) {
+        keep = true;
+        next++;
+      } else {
+        keep = columnarPredicate.isNull(i)
+               && predicate.test(batch.getRow(i), predicateArguments);
+      }
+      if (keep) {
+        batch.move(i, kept++);
+      }
+    }
+    batch.truncate(kept);
+  }
+}
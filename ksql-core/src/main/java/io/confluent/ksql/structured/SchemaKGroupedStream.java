@@ -62,9 +62,11 @@ public class SchemaKGroupedStream {
                                 final Serde<GenericRow> topicValueSerDe,
                                 final String storeName) {
     boolean isWindowed = false;
+    TableMaterialization.StoreType storeType = TableMaterialization.StoreType.KEY_VALUE;
     KTable<Windowed<String>, GenericRow> aggKtable;
     if (windowExpression != null) {
       isWindowed = true;
+      storeType = TableMaterialization.StoreType.WINDOW;
       if (windowExpression.getKsqlWindowExpression() instanceof TumblingWindowExpression) {
         TumblingWindowExpression tumblingWindowExpression =
             (TumblingWindowExpression) windowExpression.getKsqlWindowExpression();
@@ -94,6 +96,7 @@ public class SchemaKGroupedStream {
       } else if (windowExpression.getKsqlWindowExpression() instanceof SessionWindowExpression) {
         SessionWindowExpression sessionWindowExpression =
             (SessionWindowExpression) windowExpression.getKsqlWindowExpression();
+        storeType = TableMaterialization.StoreType.SESSION;
         aggKtable =
             kgroupedStream
                 .aggregate(initializer, aggregator,
@@ -113,7 +116,8 @@ public class SchemaKGroupedStream {
           kgroupedStream.aggregate(initializer, aggregator, topicValueSerDe, storeName);
     }
     return new SchemaKTable(schema, aggKtable, keyField, sourceSchemaKStreams, isWindowed,
-                            SchemaKStream.Type.AGGREGATE);
+                            SchemaKStream.Type.AGGREGATE,
+                            new TableMaterialization(storeName, storeType));
   }
 
   private long getWindowUnitInMillisecond(long value, WindowExpression.WindowUnit windowUnit) {
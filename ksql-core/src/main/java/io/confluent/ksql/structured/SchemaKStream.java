@@ -16,12 +16,12 @@
 
 package io.confluent.ksql.structured;
 
-import io.confluent.ksql.function.udf.Kudf;
+import io.confluent.ksql.codegen.ProjectionCompiler;
+import io.confluent.ksql.codegen.RowProjection;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.serde.KsqlTopicSerDe;
-import io.confluent.ksql.util.ExpressionMetadata;
-import io.confluent.ksql.util.ExpressionUtil;
+import io.confluent.ksql.util.BoundedRowQueue;
 import io.confluent.ksql.util.GenericRowValueTypeEnforcer;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.KsqlException;
@@ -34,12 +34,13 @@ import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.kstream.ForeachAction;
+import org.apache.kafka.streams.kstream.JoinWindows;
 import org.apache.kafka.streams.kstream.KGroupedStream;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KeyValueMapper;
+import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.ValueJoiner;
 import org.apache.kafka.streams.kstream.ValueMapper;
 import org.apache.kafka.streams.kstream.Windowed;
@@ -47,13 +48,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.SynchronousQueue;
 
 public class SchemaKStream {
   
@@ -78,9 +76,8 @@ public class SchemaKStream {
     this.type = type;
   }
 
-  public QueuedSchemaKStream toQueue(Optional<Integer> limit) {
-    SynchronousQueue<KeyValue<String, GenericRow>> rowQueue = new SynchronousQueue<>();
-    kstream.foreach(new QueuePopulator(rowQueue, limit));
+  public QueuedSchemaKStream toQueue(final BoundedRowQueue rowQueue) {
+    kstream.foreach(new QueuePopulator(rowQueue));
     return new QueuedSchemaKStream(this, rowQueue, Type.SINK);
   }
 
@@ -96,18 +93,34 @@ public class SchemaKStream {
             if (row == null) {
               return new KeyValue<>(key, null);
             }
-            List columns = new ArrayList();
-            for (int i = 0; i < row.getColumns().size(); i++) {
-              if (!rowkeyIndexes.contains(i)) {
-                columns.add(row.getColumns().get(i));
-              }
-            }
-            return new KeyValue<>(key, new GenericRow(columns));
+            return new KeyValue<>(key, removeColumns(row, rowkeyIndexes));
           }
         }).to(Serdes.String(), topicValueSerDe, kafkaTopicName);
     return this;
   }
 
+  /**
+   * Copies the row without the columns at the given indexes, which are usually the implicit
+   * ROWTIME and ROWKEY columns.
+   */
+  protected static GenericRow removeColumns(final GenericRow row, final Set<Integer> indexes) {
+    List<Object> columns = row.getColumns();
+    int removed = 0;
+    for (int index : indexes) {
+      if (index < columns.size()) {
+        removed++;
+      }
+    }
+    Object[] values = new Object[columns.size() - removed];
+    int next = 0;
+    for (int i = 0; i < columns.size(); i++) {
+      if (!indexes.contains(i)) {
+        values[next++] = columns.get(i);
+      }
+    }
+    return new GenericRow(values);
+  }
+
   public SchemaKStream filter(final Expression filterExpression) throws Exception {
     SqlPredicate predicate = new SqlPredicate(filterExpression, schema, false);
     KStream filteredKStream = kstream.filter(predicate.getPredicate());
@@ -116,16 +129,20 @@ public class SchemaKStream {
   }
 
   public SchemaKStream select(final Schema selectSchema) {
+    final int[] columnIndexes = new int[selectSchema.fields().size()];
+    for (int i = 0; i < columnIndexes.length; i++) {
+      columnIndexes[i] =
+          SchemaUtil.getFieldIndexByName(schema, selectSchema.fields().get(i).name());
+    }
 
     KStream
         projectedKStream =
         kstream.map(new KeyValueMapper<String, GenericRow, KeyValue<String, GenericRow>>() {
           @Override
           public KeyValue<String, GenericRow> apply(String key, GenericRow row) {
-            List<Object> newColumns = new ArrayList();
-            for (Field schemaField : selectSchema.fields()) {
-              newColumns.add(
-                  row.getColumns().get(SchemaUtil.getFieldIndexByName(schema, schemaField.name())));
+            Object[] newColumns = new Object[columnIndexes.length];
+            for (int i = 0; i < columnIndexes.length; i++) {
+              newColumns[i] = row.getColumns().get(columnIndexes[i]);
             }
             GenericRow newRow = new GenericRow(newColumns);
             return new KeyValue<String, GenericRow>(key, newRow);
@@ -138,52 +155,14 @@ public class SchemaKStream {
 
   public SchemaKStream select(final List<Pair<String, Expression>> expressionPairList)
       throws Exception {
-    ExpressionUtil expressionUtil = new ExpressionUtil();
-    // TODO: Optimize to remove the code gen for constants and single columns references
-    // TODO: and use them directly.
-    // TODO: Only use code get when we have real expression.
-    List<ExpressionMetadata> expressionEvaluators = new ArrayList<>();
-    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
-    for (Pair<String, Expression> expressionPair : expressionPairList) {
-      ExpressionMetadata
-          expressionEvaluator =
-          expressionUtil.getExpressionEvaluator(expressionPair.getRight(), schema);
-      schemaBuilder.field(expressionPair.getLeft(), expressionEvaluator.getExpressionType());
-      expressionEvaluators.add(expressionEvaluator);
-    }
+    RowProjection rowProjection = new ProjectionCompiler(schema).compile(expressionPairList);
     KStream
         projectedKStream =
         kstream.mapValues(new ValueMapper<GenericRow, GenericRow>() {
           @Override
           public GenericRow apply(GenericRow row) {
             try {
-              List<Object> newColumns = new ArrayList();
-              for (int i = 0; i < expressionPairList.size(); i++) {
-                try {
-                  int[] parameterIndexes = expressionEvaluators.get(i).getIndexes();
-                  Kudf[] kudfs = expressionEvaluators.get(i).getUdfs();
-                  Object[] parameterObjects = new Object[parameterIndexes.length];
-                  for (int j = 0; j < parameterIndexes.length; j++) {
-                    if (parameterIndexes[j] < 0) {
-                      parameterObjects[j] = kudfs[j];
-                    } else {
-                      parameterObjects[j] = genericRowValueTypeEnforcer
-                          .enforceFieldType(parameterIndexes[j],
-                                            row.getColumns().get(parameterIndexes[j]));
-                    }
-                  }
-                  Object columnValue = null;
-                  columnValue = expressionEvaluators
-                      .get(i).getExpressionEvaluator().evaluate(parameterObjects);
-                  newColumns.add(columnValue);
-                } catch (Exception ex) {
-                  log.error("Error calculating column with index " + i + " : " +
-                            expressionPairList.get(i).getLeft());
-                  newColumns.add(null);
-                }
-              }
-              GenericRow newRow = new GenericRow(newColumns);
-              return newRow;
+              return rowProjection.project(row);
             } catch (Exception e) {
               log.error("Projection exception for row: " + row.toString());
               log.error(e.getMessage(), e);
@@ -192,43 +171,120 @@ public class SchemaKStream {
           }
         });
 
-    return new SchemaKStream(schemaBuilder.build(),
+    return new SchemaKStream(rowProjection.getResultSchema(),
                              projectedKStream, keyField, Arrays.asList(this),
                              Type.PROJECT);
   }
 
+  /**
+   * Filters the stream and projects the rows passing the filter in one generated mapper, so the
+   * subexpressions the WHERE and the SELECT have in common are evaluated once per row. The
+   * filter is still described as its own node of the execution plan.
+   */
+  public SchemaKStream select(final Expression filterExpression,
+                              final List<Pair<String, Expression>> expressionPairList)
+      throws Exception {
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(filterExpression, expressionPairList);
+    KStream
+        projectedKStream =
+        kstream.mapValues(new ValueMapper<GenericRow, GenericRow>() {
+          @Override
+          public GenericRow apply(GenericRow row) {
+            try {
+              return rowProjection.project(row);
+            } catch (Exception e) {
+              log.error("Projection exception for row: " + row.toString());
+              log.error(e.getMessage(), e);
+              throw new KsqlException("Error in SELECT clause: " + e.getMessage(), e);
+            }
+          }
+        }).filter(new Predicate<String, GenericRow>() {
+          @Override
+          public boolean test(String key, GenericRow row) {
+            return row != null;
+          }
+        });
+
+    SchemaKStream filteredSchemaKStream =
+        new SchemaKStream(schema, kstream, keyField, Arrays.asList(this), Type.FILTER);
+    return new SchemaKStream(rowProjection.getResultSchema(),
+                             projectedKStream, keyField, Arrays.asList(filteredSchemaKStream),
+                             Type.PROJECT);
+  }
+
   public SchemaKStream leftJoin(final SchemaKTable schemaKTable, final Schema joinSchema,
                                 final Field joinKey,
                                 KsqlTopicSerDe joinSerDe) {
 
     KStream joinedKStream =
         kstream.leftJoin(
-            schemaKTable.getKtable(), new ValueJoiner<GenericRow, GenericRow, GenericRow>() {
-              @Override
-              public GenericRow apply(GenericRow leftGenericRow, GenericRow rightGenericRow) {
-                List<Object> columns = new ArrayList<>();
-                columns.addAll(leftGenericRow.getColumns());
-                if (rightGenericRow == null) {
-                  for (int i = leftGenericRow.getColumns().size();
-                       i < joinSchema.fields().size(); i++) {
-                    columns.add(null);
-                  }
-                } else {
-                  columns.addAll(rightGenericRow.getColumns());
-                }
-
-                GenericRow joinGenericRow = new GenericRow(columns);
-                return joinGenericRow;
-              }
-            }, Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()));
+            schemaKTable.getKtable(), new RowJoiner(schema, schemaKTable.getSchema()),
+            Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()));
 
     return new SchemaKStream(joinSchema, joinedKStream, joinKey,
                              Arrays.asList(this, schemaKTable), Type.JOIN);
   }
 
+  public SchemaKStream join(final SchemaKTable schemaKTable, final Schema joinSchema,
+                            final Field joinKey,
+                            KsqlTopicSerDe joinSerDe) {
+
+    KStream joinedKStream =
+        kstream.join(
+            schemaKTable.getKtable(), new RowJoiner(schema, schemaKTable.getSchema()),
+            Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()));
+
+    return new SchemaKStream(joinSchema, joinedKStream, joinKey,
+                             Arrays.asList(this, schemaKTable), Type.JOIN);
+  }
+
+  /**
+   * Joins the records of the two streams with the same key that are no further apart in time
+   * than the join window. The window stores of both sides are kept for the retention of the
+   * window.
+   */
+  public SchemaKStream join(final SchemaKStream otherSchemaKStream, final Schema joinSchema,
+                            final Field joinKey, final JoinWindows joinWindows,
+                            KsqlTopicSerDe joinSerDe) {
+    KStream joinedKStream =
+        kstream.join(
+            otherSchemaKStream.getKstream(), new RowJoiner(schema, otherSchemaKStream.getSchema()),
+            joinWindows, Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()),
+            SerDeUtil.getRowSerDe(joinSerDe, otherSchemaKStream.getSchema()));
+
+    return new SchemaKStream(joinSchema, joinedKStream, joinKey,
+                             Arrays.asList(this, otherSchemaKStream), Type.JOIN);
+  }
+
+  public SchemaKStream leftJoin(final SchemaKStream otherSchemaKStream, final Schema joinSchema,
+                                final Field joinKey, final JoinWindows joinWindows,
+                                KsqlTopicSerDe joinSerDe) {
+    KStream joinedKStream =
+        kstream.leftJoin(
+            otherSchemaKStream.getKstream(), new RowJoiner(schema, otherSchemaKStream.getSchema()),
+            joinWindows, Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()),
+            SerDeUtil.getRowSerDe(joinSerDe, otherSchemaKStream.getSchema()));
+
+    return new SchemaKStream(joinSchema, joinedKStream, joinKey,
+                             Arrays.asList(this, otherSchemaKStream), Type.JOIN);
+  }
+
+  public SchemaKStream outerJoin(final SchemaKStream otherSchemaKStream, final Schema joinSchema,
+                                 final Field joinKey, final JoinWindows joinWindows,
+                                 KsqlTopicSerDe joinSerDe) {
+    KStream joinedKStream =
+        kstream.outerJoin(
+            otherSchemaKStream.getKstream(), new RowJoiner(schema, otherSchemaKStream.getSchema()),
+            joinWindows, Serdes.String(), SerDeUtil.getRowSerDe(joinSerDe, this.getSchema()),
+            SerDeUtil.getRowSerDe(joinSerDe, otherSchemaKStream.getSchema()));
+
+    return new SchemaKStream(joinSchema, joinedKStream, joinKey,
+                             Arrays.asList(this, otherSchemaKStream), Type.JOIN);
+  }
+
   public SchemaKStream selectKey(final Field newKeyField) {
-    if (keyField != null &&
-        keyField.name().equals(newKeyField.name())) {
+    if (isKeyedBy(newKeyField.name())) {
       return this;
     }
 
@@ -246,8 +302,11 @@ public class SchemaKStream {
         GenericRow>>() {
       @Override
       public KeyValue<String, GenericRow> apply(String key, GenericRow row) {
-        row.getColumns().set(SchemaUtil.ROWKEY_NAME_INDEX, key);
-        return new KeyValue<>(key, row);
+        // The row may be fanned out to other queries reading the same source, so it is copied
+        // rather than updated in place.
+        GenericRow keyedRow = new GenericRow(row.getColumns().toArray());
+        keyedRow.getColumns().set(SchemaUtil.ROWKEY_NAME_INDEX, key);
+        return new KeyValue<>(key, keyedRow);
       }
     });
 
@@ -255,6 +314,35 @@ public class SchemaKStream {
                              Type.REKEY);
   }
 
+  /**
+   * Forces the records through a repartition topic without changing their keys. Kafka Streams
+   * sizes the topic after the topics the stream is joined with.
+   */
+  public SchemaKStream repartition() {
+    KStream repartitionedKStream =
+        kstream.selectKey(new KeyValueMapper<String, GenericRow, String>() {
+          @Override
+          public String apply(String key, GenericRow row) {
+            return key;
+          }
+        });
+    return new SchemaKStream(schema, repartitionedKStream, keyField, Arrays.asList(this),
+                             Type.REKEY);
+  }
+
+  /**
+   * Whether the records are keyed, and so partitioned, by the given column already. The column
+   * name may be qualified with the alias of its source.
+   */
+  public boolean isKeyedBy(final String fieldName) {
+    String columnName = fieldName.substring(fieldName.indexOf(".") + 1);
+    if (columnName.equals(SchemaUtil.ROWKEY_NAME)) {
+      return true;
+    }
+    return keyField != null
+           && keyField.name().substring(keyField.name().indexOf(".") + 1).equals(columnName);
+  }
+
   public SchemaKGroupedStream groupByKey() {
     KGroupedStream kgroupedStream = kstream.groupByKey();
     return new SchemaKGroupedStream(schema, kgroupedStream, keyField, Arrays.asList(this));
@@ -282,29 +370,53 @@ public class SchemaKStream {
     return sourceSchemaKStreams;
   }
 
+  /**
+   * Builds a joined row from the columns of the left row followed by the columns of the right
+   * row. The columns of a side without a matching row are left null.
+   */
+  static class RowJoiner implements ValueJoiner<GenericRow, GenericRow, GenericRow> {
+    private final int leftWidth;
+    private final int rightWidth;
+
+    RowJoiner(final Schema leftSchema, final Schema rightSchema) {
+      this.leftWidth = leftSchema.fields().size();
+      this.rightWidth = rightSchema.fields().size();
+    }
+
+    @Override
+    public GenericRow apply(GenericRow leftGenericRow, GenericRow rightGenericRow) {
+      Object[] columns = new Object[leftWidth + rightWidth];
+      if (leftGenericRow != null) {
+        copyColumns(leftGenericRow.getColumns(), columns, 0, leftWidth);
+      }
+      if (rightGenericRow != null) {
+        copyColumns(rightGenericRow.getColumns(), columns, leftWidth, rightWidth);
+      }
+      return new GenericRow(columns);
+    }
+
+    private static void copyColumns(List<Object> from, Object[] to, int offset, int width) {
+      int count = Math.min(from.size(), width);
+      for (int i = 0; i < count; i++) {
+        to[offset + i] = from.get(i);
+      }
+    }
+  }
+
   protected static class QueuePopulator<K> implements ForeachAction<K, GenericRow> {
-    private final SynchronousQueue<KeyValue<String, GenericRow>> queue;
-    private final Optional<Integer> limit;
-    private int counter = 0;
+    private final BoundedRowQueue queue;
 
-    public QueuePopulator(SynchronousQueue<KeyValue<String, GenericRow>> queue,
-                          Optional<Integer> limit) {
+    public QueuePopulator(BoundedRowQueue queue) {
       this.queue = queue;
-      this.limit = limit;
     }
 
     @Override
     public void apply(K key, GenericRow row) {
       try {
-        if (row == null) {
+        // Past LIMIT the query is finishing; the rest of its input is skipped until it is closed.
+        if (row == null || queue.isLimitReached()) {
           return;
         }
-        if (limit.isPresent()) {
-          counter ++;
-          if (counter > limit.get()) {
-            throw new KsqlException("LIMIT reached for the partition.");
-          }
-        }
         String keyString;
         if (key instanceof Windowed) {
           Windowed windowedKey = (Windowed) key;
@@ -312,7 +424,7 @@ public class SchemaKStream {
         } else {
           keyString = Objects.toString(key);
         }
-        queue.put(new KeyValue<>(keyString, row));
+        queue.offer(new KeyValue<>(keyString, row));
       } catch (InterruptedException exception) {
         log.error(" Exception while enqueuing the row: " + key + " : " + row);
         log.error(" Exception: " + exception.getMessage());
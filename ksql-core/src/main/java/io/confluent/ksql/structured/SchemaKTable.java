@@ -16,11 +16,11 @@
 
 package io.confluent.ksql.structured;
 
-import io.confluent.ksql.function.udf.Kudf;
+import io.confluent.ksql.codegen.ProjectionCompiler;
+import io.confluent.ksql.codegen.RowProjection;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.physical.GenericRow;
-import io.confluent.ksql.util.ExpressionMetadata;
-import io.confluent.ksql.util.ExpressionUtil;
+import io.confluent.ksql.util.BoundedRowQueue;
 import io.confluent.ksql.util.KafkaTopicClient;
 import io.confluent.ksql.util.KsqlConfig;
 import io.confluent.ksql.util.KsqlException;
@@ -30,23 +30,20 @@ import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.KeyValueMapper;
+import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.ValueMapper;
 import org.apache.kafka.streams.kstream.Windowed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.SynchronousQueue;
 
 public class SchemaKTable extends SchemaKStream {
 
@@ -54,13 +51,24 @@ public class SchemaKTable extends SchemaKStream {
 
   private final KTable ktable;
   private final boolean isWindowed;
+  private final TableMaterialization materialization;
 
   public SchemaKTable(final Schema schema, final KTable ktable, final Field keyField,
                       final List<SchemaKStream> sourceSchemaKStreams, boolean isWindowed,
                       Type type) {
+    this(schema, ktable, keyField, sourceSchemaKStreams, isWindowed, type, null);
+  }
+
+  /**
+   * The materialization, if any, is the state store the rows of the table can be read from.
+   */
+  public SchemaKTable(final Schema schema, final KTable ktable, final Field keyField,
+                      final List<SchemaKStream> sourceSchemaKStreams, boolean isWindowed,
+                      Type type, final TableMaterialization materialization) {
     super(schema, null, keyField, sourceSchemaKStreams, type);
     this.ktable = ktable;
     this.isWindowed = isWindowed;
+    this.materialization = materialization;
   }
 
   @Override
@@ -79,13 +87,7 @@ public class SchemaKTable extends SchemaKStream {
               if (row == null) {
                 return new KeyValue<>(key, null);
               }
-              List columns = new ArrayList();
-              for (int i = 0; i < row.getColumns().size(); i++) {
-                if (!rowkeyIndexes.contains(i)) {
-                  columns.add(row.getColumns().get(i));
-                }
-              }
-              return new KeyValue<>(key, new GenericRow(columns));
+              return new KeyValue<>(key, removeColumns(row, rowkeyIndexes));
             }
           }).to(new WindowedSerde(), topicValueSerDe, kafkaTopicName);
     } else {
@@ -96,94 +98,106 @@ public class SchemaKTable extends SchemaKStream {
               if (row == null) {
                 return new KeyValue<>(key, null);
               }
-              List columns = new ArrayList();
-              for (int i = 0; i < row.getColumns().size(); i++) {
-                if (!rowkeyIndexes.contains(i)) {
-                  columns.add(row.getColumns().get(i));
-                }
-              }
-              return new KeyValue<>(key, new GenericRow(columns));
+              return new KeyValue<>(key, removeColumns(row, rowkeyIndexes));
             }
           }).to(Serdes.String(), topicValueSerDe, kafkaTopicName);
     }
 
-    return this;
+    if (materialization == null) {
+      return this;
+    }
+    return new SchemaKTable(schema, ktable, keyField, sourceSchemaKStreams, isWindowed, type,
+                            materialization.map(row -> removeColumns(row, rowkeyIndexes)));
   }
 
   @Override
-  public QueuedSchemaKStream toQueue(Optional<Integer> limit) {
-    SynchronousQueue<KeyValue<String, GenericRow>> rowQueue = new SynchronousQueue<>();
-    ktable.toStream().foreach(new QueuePopulator(rowQueue, limit));
+  public QueuedSchemaKStream toQueue(final BoundedRowQueue rowQueue) {
+    ktable.toStream().foreach(new QueuePopulator(rowQueue));
     return new QueuedSchemaKStream(this, rowQueue, Type.SINK);
   }
 
   @Override
   public SchemaKTable filter(final Expression filterExpression) throws Exception {
-    SqlPredicate predicate = new SqlPredicate(filterExpression, schema, isWindowed);
-    KTable filteredKTable = ktable.filter(predicate.getPredicate());
+    SqlPredicate sqlPredicate = new SqlPredicate(filterExpression, schema, isWindowed);
+    Predicate predicate = sqlPredicate.getPredicate();
+    KTable filteredKTable = ktable.filter(predicate);
     return new SchemaKTable(schema, filteredKTable, keyField, Arrays.asList(this), isWindowed,
-                            Type.FILTER);
+                            Type.FILTER,
+                            materialization == null ? null : materialization.filter(predicate));
+  }
+
+  /**
+   * Tables keep the filter as a separate step: a KTable filter turns the rows it drops into
+   * deletes of their keys, which a projection returning null could not do.
+   */
+  @Override
+  public SchemaKTable select(final Expression filterExpression,
+                             final List<Pair<String, Expression>> expressionPairList)
+      throws Exception {
+    return filter(filterExpression).select(expressionPairList);
   }
 
   @Override
   public SchemaKTable select(final List<Pair<String, Expression>> expressionPairList)
       throws Exception {
-    ExpressionUtil expressionUtil = new ExpressionUtil();
-    // TODO: Optimize to remove the code gen for constants and single
-    // TODO: columns references and use them directly.
-    // TODO: Only use code get when we have real expression.
-    List<ExpressionMetadata> expressionEvaluators = new ArrayList<>();
-    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
-    for (Pair<String, Expression> expressionPair : expressionPairList) {
-      ExpressionMetadata
-          expressionEvaluator =
-          expressionUtil.getExpressionEvaluator(expressionPair.getRight(), schema);
-      schemaBuilder.field(expressionPair.getLeft(), expressionEvaluator.getExpressionType());
-      expressionEvaluators.add(expressionEvaluator);
-    }
+    RowProjection rowProjection = new ProjectionCompiler(schema).compile(expressionPairList);
 
-    KTable projectedKTable = ktable.mapValues(new ValueMapper<GenericRow, GenericRow>() {
+    ValueMapper<GenericRow, GenericRow> mapper = new ValueMapper<GenericRow, GenericRow>() {
       @Override
       public GenericRow apply(GenericRow row) {
         try {
-          List<Object> newColumns = new ArrayList();
-          for (int i = 0; i < expressionPairList.size(); i++) {
-            try {
-              int[] parameterIndexes = expressionEvaluators.get(i).getIndexes();
-              Kudf[] kudfs = expressionEvaluators.get(i).getUdfs();
-              Object[] parameterObjects = new Object[parameterIndexes.length];
-              for (int j = 0; j < parameterIndexes.length; j++) {
-                if (parameterIndexes[j] < 0) {
-                  parameterObjects[j] = kudfs[j];
-                } else {
-                  parameterObjects[j] =
-                      genericRowValueTypeEnforcer.enforceFieldType(parameterIndexes[j],
-                                                                   row.getColumns()
-                                                                       .get(parameterIndexes[j]));
-                }
-              }
-              Object columnValue = null;
-              columnValue = expressionEvaluators.get(i).getExpressionEvaluator()
-                  .evaluate(parameterObjects);
-              newColumns.add(columnValue);
-            } catch (Exception e) {
-              log.error("Error calculating column with index " + i + " : " +
-                        expressionPairList.get(i).getLeft());
-              newColumns.add(null);
-            }
-          }
-          GenericRow newRow = new GenericRow(newColumns);
-          return newRow;
+          return rowProjection.project(row);
         } catch (Exception e) {
           log.error("Projection exception for row: " + row.toString());
           log.error(e.getMessage(), e);
           throw new KsqlException("Error in SELECT clause: " + e.getMessage(), e);
         }
       }
-    });
+    };
+    KTable projectedKTable = ktable.mapValues(mapper);
+
+    return new SchemaKTable(rowProjection.getResultSchema(), projectedKTable, keyField,
+                            Arrays.asList(this), isWindowed, Type.PROJECT,
+                            materialization == null ? null : materialization.map(mapper));
+  }
+
+  /**
+   * Joins two tables on their keys. Both tables are expected to be keyed, and partitioned, by
+   * the join column.
+   */
+  public SchemaKTable join(final SchemaKTable schemaKTable, final Schema joinSchema,
+                           final Field joinKey) {
+    checkJoinable(schemaKTable);
+    KTable joinedKTable =
+        ktable.join(schemaKTable.getKtable(), new RowJoiner(schema, schemaKTable.getSchema()));
+    return new SchemaKTable(joinSchema, joinedKTable, joinKey,
+                            Arrays.asList(this, schemaKTable), isWindowed, Type.JOIN);
+  }
+
+  public SchemaKTable leftJoin(final SchemaKTable schemaKTable, final Schema joinSchema,
+                               final Field joinKey) {
+    checkJoinable(schemaKTable);
+    KTable joinedKTable =
+        ktable.leftJoin(schemaKTable.getKtable(), new RowJoiner(schema, schemaKTable.getSchema()));
+    return new SchemaKTable(joinSchema, joinedKTable, joinKey,
+                            Arrays.asList(this, schemaKTable), isWindowed, Type.JOIN);
+  }
+
+  public SchemaKTable outerJoin(final SchemaKTable schemaKTable, final Schema joinSchema,
+                                final Field joinKey) {
+    checkJoinable(schemaKTable);
+    KTable joinedKTable =
+        ktable.outerJoin(schemaKTable.getKtable(),
+                         new RowJoiner(schema, schemaKTable.getSchema()));
+    return new SchemaKTable(joinSchema, joinedKTable, joinKey,
+                            Arrays.asList(this, schemaKTable), isWindowed, Type.JOIN);
+  }
 
-    return new SchemaKTable(schemaBuilder.build(), projectedKTable, keyField,
-                            Arrays.asList(this), isWindowed, Type.PROJECT);
+  private void checkJoinable(final SchemaKTable schemaKTable) {
+    if (isWindowed != schemaKTable.isWindowed()) {
+      throw new KsqlException("A windowed table can only be joined with another windowed "
+                              + "table.");
+    }
   }
 
   @Override
@@ -203,4 +217,8 @@ public class SchemaKTable extends SchemaKStream {
   public boolean isWindowed() {
     return isWindowed;
   }
+
+  public TableMaterialization getMaterialization() {
+    return materialization;
+  }
 }
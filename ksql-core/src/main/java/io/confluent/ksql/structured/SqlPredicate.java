@@ -22,23 +22,19 @@ import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.util.ExpressionMetadata;
 import io.confluent.ksql.util.ExpressionUtil;
 import io.confluent.ksql.util.GenericRowValueTypeEnforcer;
-import io.confluent.ksql.util.SchemaUtil;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.Windowed;
-import org.codehaus.commons.compiler.CompilerFactoryFactory;
-import org.codehaus.commons.compiler.IExpressionEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.Map;
 
 public class SqlPredicate {
 
   private Expression filterExpression;
   private final Schema schema;
-  private IExpressionEvaluator ee;
+  private final ExpressionMetadata expressionMetadata;
   private int[] columnIndexes;
   private boolean isWindowedKey;
 
@@ -53,32 +49,8 @@ public class SqlPredicate {
     this.isWindowedKey = isWindowedKey;
 
     ExpressionUtil expressionUtil = new ExpressionUtil();
-    Map<String, Class> parameterMap = expressionUtil.getParameterInfo(filterExpression, schema);
-
-    String[] parameterNames = new String[parameterMap.size()];
-    Class[] parameterTypes = new Class[parameterMap.size()];
-    columnIndexes = new int[parameterMap.size()];
-
-    int index = 0;
-    for (String parameterName : parameterMap.keySet()) {
-      parameterNames[index] = parameterName;
-      parameterTypes[index] = parameterMap.get(parameterName);
-      columnIndexes[index] = SchemaUtil.getFieldIndexByName(schema, parameterName);
-      index++;
-    }
-
-    ee = CompilerFactoryFactory.getDefaultCompilerFactory().newExpressionEvaluator();
-
-    // The expression will have two "int" parameters: "a" and "b".
-    ee.setParameters(parameterNames, parameterTypes);
-
-    // And the expression (i.e. "result") type is also "int".
-    ee.setExpressionType(boolean.class);
-
-    String expressionStr = filterExpression.getCodegenString(schema);
-
-    // And now we "cook" (scan, parse, compile and load) the fabulous expression.
-    ee.cook(expressionStr);
+    this.expressionMetadata = expressionUtil.getPredicateEvaluator(filterExpression, schema);
+    this.columnIndexes = expressionMetadata.getIndexes();
   }
 
   public Predicate getPredicate() throws Exception {
@@ -90,26 +62,11 @@ public class SqlPredicate {
   }
 
   private Predicate getStringKeyPredicate() throws Exception {
-    ExpressionUtil expressionUtil = new ExpressionUtil();
-    ExpressionMetadata
-        expressionEvaluator =
-        expressionUtil.getExpressionEvaluator(filterExpression, schema);
     return new Predicate<String, GenericRow>() {
       @Override
       public boolean test(String key, GenericRow row) {
         try {
-          Kudf[] kudfs = expressionEvaluator.getUdfs();
-          Object[] values = new Object[columnIndexes.length];
-          for (int i = 0; i < values.length; i++) {
-            if (columnIndexes[i] < 0) {
-              values[i] = kudfs[i];
-            } else {
-              values[i] = genericRowValueTypeEnforcer.enforceFieldType(columnIndexes[i], row
-                  .getColumns().get(columnIndexes[i]));
-            }
-          }
-          boolean result = (Boolean) ee.evaluate(values);
-          return result;
+          return evaluate(row);
         } catch (Exception e) {
           log.error(e.getMessage(), e);
         }
@@ -120,26 +77,11 @@ public class SqlPredicate {
   }
 
   private Predicate getWindowedKeyPredicate() throws Exception {
-    ExpressionUtil expressionUtil = new ExpressionUtil();
-    ExpressionMetadata
-        expressionEvaluator =
-        expressionUtil.getExpressionEvaluator(filterExpression, schema);
     return new Predicate<Windowed<String>, GenericRow>() {
       @Override
       public boolean test(Windowed<String> key, GenericRow row) {
         try {
-          Kudf[] kudfs = expressionEvaluator.getUdfs();
-          Object[] values = new Object[columnIndexes.length];
-          for (int i = 0; i < values.length; i++) {
-            if (columnIndexes[i] < 0) {
-              values[i] = kudfs[i];
-            } else {
-              values[i] = genericRowValueTypeEnforcer.enforceFieldType(columnIndexes[i], row
-                  .getColumns().get(columnIndexes[i]));
-            }
-          }
-          boolean result = (Boolean) ee.evaluate(values);
-          return result;
+          return evaluate(row);
         } catch (Exception e) {
           log.error(e.getMessage(), e);
         }
@@ -149,6 +91,43 @@ public class SqlPredicate {
     };
   }
 
+  /**
+   * Evaluates the predicate with a caller owned buffer, from {@link #newArgumentBuffer()}, for
+   * the arguments of the evaluator, so a batch of rows is filtered without allocating per row.
+   */
+  public boolean test(final GenericRow row, final Object[] values) {
+    try {
+      return evaluate(row, values);
+    } catch (Exception e) {
+      log.error(e.getMessage(), e);
+    }
+    log.error("Invalid format: " + row);
+    return false;
+  }
+
+  public Object[] newArgumentBuffer() {
+    return new Object[columnIndexes.length];
+  }
+
+  private boolean evaluate(final GenericRow row) throws InvocationTargetException {
+    return evaluate(row, new Object[columnIndexes.length]);
+  }
+
+  private boolean evaluate(final GenericRow row, final Object[] values)
+      throws InvocationTargetException {
+    Kudf[] kudfs = expressionMetadata.getUdfs();
+    Object[] constants = expressionMetadata.getConstants();
+    for (int i = 0; i < values.length; i++) {
+      if (columnIndexes[i] < 0) {
+        values[i] = kudfs[i] != null ? kudfs[i] : constants[i];
+      } else {
+        values[i] = genericRowValueTypeEnforcer.enforceFieldType(columnIndexes[i], row
+            .getColumns().get(columnIndexes[i]));
+      }
+    }
+    return (Boolean) expressionMetadata.getExpressionEvaluator().evaluate(values);
+  }
+
   public Expression getFilterExpression() {
     return filterExpression;
   }
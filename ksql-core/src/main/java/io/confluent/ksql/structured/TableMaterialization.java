@@ -0,0 +1,116 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.structured;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.streams.kstream.Predicate;
+import org.apache.kafka.streams.kstream.ValueMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state store holding the rows of a table in the query that builds it, and the steps that
+ * turn a stored row into a row of the table. The store of an aggregation holds the aggregate
+ * values, so its rows still go through the HAVING and SELECT of the query when they are read.
+ */
+public class TableMaterialization {
+
+  public enum StoreType {
+    // String keys in a key value store
+    KEY_VALUE,
+    // Windowed keys in a key value store, as kept for windowed source tables
+    WINDOWED_KEY_VALUE,
+    // Time windowed aggregates
+    WINDOW,
+    // Session windowed aggregates
+    SESSION
+  }
+
+  private interface Step {
+    GenericRow apply(GenericRow row);
+  }
+
+  private final String storeName;
+  private final StoreType storeType;
+  private final List<Step> steps;
+
+  public TableMaterialization(final String storeName, final StoreType storeType) {
+    this(storeName, storeType, Collections.emptyList());
+  }
+
+  private TableMaterialization(final String storeName, final StoreType storeType,
+                               final List<Step> steps) {
+    this.storeName = storeName;
+    this.storeType = storeType;
+    this.steps = steps;
+  }
+
+  public String getStoreName() {
+    return storeName;
+  }
+
+  public StoreType getStoreType() {
+    return storeType;
+  }
+
+  public boolean isWindowed() {
+    return storeType != StoreType.KEY_VALUE;
+  }
+
+  /**
+   * The same materialization in a store of another name, for a query built again with a
+   * different aggregate store name.
+   */
+  public TableMaterialization withStoreName(final String storeName) {
+    return new TableMaterialization(storeName, storeType, steps);
+  }
+
+  // The filters of a query only look at the key to log the rows they fail on.
+  @SuppressWarnings("unchecked")
+  TableMaterialization filter(final Predicate predicate) {
+    return withStep(row -> predicate.test(null, row) ? row : null);
+  }
+
+  TableMaterialization map(final ValueMapper<GenericRow, GenericRow> mapper) {
+    return withStep(mapper::apply);
+  }
+
+  /**
+   * Returns the stored row as a row of the table, without the implicit columns, or null if the
+   * table does not have a row for it.
+   */
+  public GenericRow toTableRow(final GenericRow storedRow) {
+    GenericRow row = storedRow;
+    for (int i = 0; i < steps.size() && row != null; i++) {
+      row = steps.get(i).apply(row);
+    }
+    return row;
+  }
+
+  private TableMaterialization withStep(final Step step) {
+    List<Step> withStep = new ArrayList<>(steps);
+    withStep.add(step);
+    return new TableMaterialization(storeName, storeType, withStep);
+  }
+
+  @Override
+  public String toString() {
+    return storeName + " (" + storeType + ", " + steps.size() + " steps)";
+  }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.structured.RowBatch;
+import io.confluent.ksql.structured.RowBatchProcessor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a stateless query, a stream source with an optional WHERE clause and a SELECT written to
+ * a stream, on a plain consumer and producer instead of Kafka Streams. The records of each poll
+ * are filtered and projected as one batch, written in one go, and their offsets committed once
+ * the producer has acknowledged all of them, so the query processes every record at least once.
+ * A poll returns what has arrived up to the batch size, so batches are small when the input is
+ * slow and full when it is not.
+ */
+public class BatchedQueryRunner {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchedQueryRunner.class);
+
+  private static final String METRIC_GROUP = "ksql-batched-query-metrics";
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final String applicationId;
+  private final Map<String, Object> properties;
+  private final String sourceTopic;
+  private final Deserializer<GenericRow> rowDeserializer;
+  private final TimestampExtractor timestampExtractor;
+  private final RowBatchProcessor processor;
+  private final String sinkTopic;
+  private final Serializer<GenericRow> rowSerializer;
+  private final int maxBatchRecords;
+
+  private Thread thread;
+  private KafkaConsumer<String, GenericRow> consumer;
+  private volatile boolean closed;
+  private volatile Exception failure;
+  private Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+
+  /**
+   * @param timestampExtractor extracts the timestamp of the source rows, or null to use the
+   *                           timestamps of the records
+   */
+  public BatchedQueryRunner(String applicationId, Map<String, Object> properties,
+                            String sourceTopic, Deserializer<GenericRow> rowDeserializer,
+                            TimestampExtractor timestampExtractor, RowBatchProcessor processor,
+                            String sinkTopic, Serializer<GenericRow> rowSerializer,
+                            int maxBatchRecords) {
+    this.applicationId = applicationId;
+    this.properties = new HashMap<>(properties);
+    this.sourceTopic = sourceTopic;
+    this.rowDeserializer = rowDeserializer;
+    this.timestampExtractor = timestampExtractor;
+    this.processor = processor;
+    this.sinkTopic = sinkTopic;
+    this.rowSerializer = rowSerializer;
+    this.maxBatchRecords = maxBatchRecords;
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  /**
+   * Called with the exception the query stopped on, like the handler of a KafkaStreams instance.
+   */
+  public synchronized void setUncaughtExceptionHandler(
+      final Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+    this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+  }
+
+  /**
+   * The exception the query stopped on, or null if it is running or was closed.
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+
+  public synchronized void start() {
+    if (thread != null || closed) {
+      return;
+    }
+    Map<String, Object> consumerProperties = new HashMap<>(properties);
+    consumerProperties.put(ConsumerConfig.GROUP_ID_CONFIG, applicationId);
+    consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxBatchRecords);
+    consumer = new KafkaConsumer<>(consumerProperties, new StringDeserializer(), rowDeserializer);
+
+    thread = new Thread(this::run, applicationId + "-batch-thread");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void close() {
+    Thread runningThread;
+    synchronized (this) {
+      closed = true;
+      runningThread = thread;
+      if (consumer != null) {
+        consumer.wakeup();
+      }
+    }
+    if (runningThread != null) {
+      try {
+        runningThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    Metrics metrics = new Metrics();
+    metrics.addReporter(new JmxReporter("io.confluent.ksql"));
+    Map<String, String> tags = Collections.singletonMap("query-id", applicationId);
+    Sensor batchSize = metrics.sensor(applicationId + "-batch-size");
+    batchSize.add(metrics.metricName("batch-size-avg", METRIC_GROUP,
+                                     "Records read per batch", tags), new Avg());
+    batchSize.add(metrics.metricName("batch-size-max", METRIC_GROUP,
+                                     "Most records read in a batch", tags), new Max());
+    batchSize.add(metrics.metricName("records-consumed-rate", METRIC_GROUP,
+                                     "Records read per second", tags), new Rate());
+    Sensor producedRecords = metrics.sensor(applicationId + "-produced-records");
+    producedRecords.add(metrics.metricName("records-produced-rate", METRIC_GROUP,
+                                           "Records written per second", tags), new Rate());
+    Sensor batchLatency = metrics.sensor(applicationId + "-batch-latency");
+    batchLatency.add(metrics.metricName("batch-latency-avg", METRIC_GROUP,
+                                        "Milliseconds to process and write a batch", tags),
+                     new Avg());
+    batchLatency.add(metrics.metricName("batch-latency-max", METRIC_GROUP,
+                                        "Most milliseconds to process and write a batch", tags),
+                     new Max());
+
+    Map<String, Object> producerProperties = new HashMap<>(properties);
+    producerProperties.put(ProducerConfig.CLIENT_ID_CONFIG, applicationId + "-producer");
+    KafkaProducer<String, GenericRow> producer =
+        new KafkaProducer<>(producerProperties, new StringSerializer(), rowSerializer);
+    RowBatch batch = new RowBatch(maxBatchRecords);
+    AtomicReference<Exception> sendException = new AtomicReference<>();
+    try {
+      consumer.subscribe(Collections.singletonList(sourceTopic));
+      while (!closed) {
+        ConsumerRecords<String, GenericRow> records = consumer.poll(POLL_TIMEOUT_MS);
+        if (records.isEmpty()) {
+          continue;
+        }
+        long batchStart = System.currentTimeMillis();
+        for (ConsumerRecord<String, GenericRow> record : records) {
+          GenericRow row = record.value();
+          if (row == null) {
+            continue;
+          }
+          long timestamp = timestampExtractor == null
+                           ? record.timestamp()
+                           : timestampExtractor.extract((ConsumerRecord) record, -1L);
+          row.getColumns().add(0, record.key());
+          row.getColumns().add(0, timestamp);
+          batch.add(record.key(), timestamp, row);
+        }
+
+        processor.process(batch);
+        for (int i = 0; i < batch.size(); i++) {
+          producer.send(new ProducerRecord<>(sinkTopic, null, batch.getTimestamp(i),
+                                             batch.getKey(i), batch.getRow(i)),
+                        (metadata, exception) -> {
+                          if (exception != null) {
+                            sendException.compareAndSet(null, exception);
+                          }
+                        });
+        }
+        producer.flush();
+        if (sendException.get() != null) {
+          throw new KsqlException("Could not write to " + sinkTopic, sendException.get());
+        }
+        consumer.commitSync();
+
+        batchSize.record(records.count());
+        producedRecords.record(batch.size());
+        batchLatency.record(System.currentTimeMillis() - batchStart);
+        batch.clear();
+      }
+    } catch (WakeupException e) {
+      // Thrown by poll or commitSync once the query is closed.
+      if (!closed) {
+        fail(e);
+      }
+    } catch (Exception e) {
+      fail(e);
+    } finally {
+      producer.close();
+      consumer.close();
+      metrics.close();
+    }
+  }
+
+  private void fail(final Exception e) {
+    log.error("Batched query {} failed", applicationId, e);
+    failure = e;
+    Thread.UncaughtExceptionHandler handler;
+    synchronized (this) {
+      handler = uncaughtExceptionHandler;
+    }
+    if (handler != null) {
+      handler.uncaughtException(Thread.currentThread(), e);
+    }
+  }
+}
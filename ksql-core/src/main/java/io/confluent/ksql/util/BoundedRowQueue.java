@@ -0,0 +1,219 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.streams.KeyValue;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer between the stream threads of a transient query and the thread writing its
+ * results to the client. Stream threads only wait on a slow client when the buffer is full and
+ * the overflow policy is {@link OverflowPolicy#BLOCK}; the reader drains rows in batches.
+ *
+ * <p>Once LIMIT rows have been drained or are buffered the queue stops taking rows, and after
+ * those rows are drained {@link #isComplete()} tells the reader that the query has produced all
+ * its results. Rows the overflow policy discards do not count toward LIMIT.
+ */
+public class BoundedRowQueue {
+
+  public enum OverflowPolicy {
+    /** Wait for the reader to make room. */
+    BLOCK,
+    /** Overwrite the oldest buffered row. */
+    DROP_OLDEST,
+    /**
+     * Keep a uniform sample of the rows that arrive while the buffer is full, by replacing a
+     * random buffered row (reservoir sampling). Rows may then be read out of order.
+     */
+    SAMPLE
+  }
+
+  private final KeyValue<String, GenericRow>[] rows;
+  private final OverflowPolicy overflowPolicy;
+  private final Optional<Integer> limit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Random random = new Random();
+
+  private int head;
+  private int size;
+  // Rows drained or buffered. Only written under the lock, volatile for isLimitReached().
+  private volatile long acceptedRows;
+  private long droppedRows;
+  private long overflowRows;
+  private boolean closed;
+
+  @SuppressWarnings("unchecked")
+  public BoundedRowQueue(final int capacity, final OverflowPolicy overflowPolicy,
+                         final Optional<Integer> limit) {
+    if (capacity <= 0) {
+      throw new KsqlException("The result queue capacity should be positive: " + capacity);
+    }
+    this.rows = new KeyValue[capacity];
+    this.overflowPolicy = overflowPolicy;
+    this.limit = limit;
+  }
+
+  /**
+   * Adds a row, applying the overflow policy if the buffer is full.
+   *
+   * @return false if the row was not queued because the queue is closed, the limit has been
+   *     reached or the row was dropped.
+   */
+  public boolean offer(final KeyValue<String, GenericRow> row) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      if (!isAcceptingRows()) {
+        return false;
+      }
+      if (size == rows.length) {
+        switch (overflowPolicy) {
+          case BLOCK:
+            while (size == rows.length && isAcceptingRows()) {
+              notFull.await();
+            }
+            if (!isAcceptingRows()) {
+              return false;
+            }
+            break;
+          case DROP_OLDEST:
+            rows[head] = null;
+            head = (head + 1) % rows.length;
+            size--;
+            acceptedRows--;
+            droppedRows++;
+            break;
+          case SAMPLE:
+            overflowRows++;
+            long slot = (long) (random.nextDouble() * (overflowRows + rows.length));
+            droppedRows++;
+            if (slot >= rows.length) {
+              return false;
+            }
+            // Replaces a buffered row, so the number of accepted rows stays the same.
+            rows[(head + (int) slot) % rows.length] = row;
+            return true;
+          default:
+            throw new KsqlException("Unknown overflow policy: " + overflowPolicy);
+        }
+      }
+      rows[(head + size) % rows.length] = row;
+      size++;
+      countAccepted();
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Moves up to maxRows rows into the given collection, waiting up to the timeout for the first
+   * one.
+   *
+   * @return the number of rows drained.
+   */
+  public int drainTo(final Collection<? super KeyValue<String, GenericRow>> collection,
+                     final int maxRows, final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    long remainingNanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (size == 0 && isAcceptingRows() && remainingNanos > 0) {
+        remainingNanos = notEmpty.awaitNanos(remainingNanos);
+      }
+      int drained = 0;
+      while (size > 0 && drained < maxRows) {
+        collection.add(rows[head]);
+        rows[head] = null;
+        head = (head + 1) % rows.length;
+        size--;
+        drained++;
+      }
+      if (size == 0) {
+        overflowRows = 0;
+      }
+      if (drained > 0) {
+        notFull.signalAll();
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * True once the queue takes no more rows, because of LIMIT or {@link #close()}, and every
+   * buffered row has been drained.
+   */
+  public boolean isComplete() {
+    lock.lock();
+    try {
+      return size == 0 && !isAcceptingRows();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Cheap check for producers, so rows past LIMIT are discarded without taking the lock.
+   */
+  public boolean isLimitReached() {
+    return limit.isPresent() && acceptedRows >= limit.get();
+  }
+
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getDroppedRows() {
+    lock.lock();
+    try {
+      return droppedRows;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void countAccepted() {
+    acceptedRows++;
+    if (!isAcceptingRows()) {
+      // Wake the reader waiting for rows that will never come, and blocked producers.
+      notEmpty.signalAll();
+      notFull.signalAll();
+    }
+  }
+
+  private boolean isAcceptingRows() {
+    return !closed && !(limit.isPresent() && acceptedRows >= limit.get());
+  }
+}
@@ -25,13 +25,15 @@ public class ExpressionMetadata {
   private final IExpressionEvaluator expressionEvaluator;
   private final int[] indexes;
   private final Kudf[] udfs;
+  private final Object[] constants;
   private final Schema expressionType;
 
   public ExpressionMetadata(IExpressionEvaluator expressionEvaluator, int[] indexes, Kudf[] udfs,
-                            Schema expressionType) {
+                            Object[] constants, Schema expressionType) {
     this.expressionEvaluator = expressionEvaluator;
     this.indexes = indexes;
     this.udfs = udfs;
+    this.constants = constants;
     this.expressionType = expressionType;
   }
 
@@ -47,6 +49,14 @@ public class ExpressionMetadata {
     return udfs;
   }
 
+  /**
+   * The constants of the expression, such as LIKE matchers, at the positions of their
+   * parameters; null at the positions of columns and UDFs.
+   */
+  public Object[] getConstants() {
+    return constants;
+  }
+
   public Schema getExpressionType() {
     return expressionType;
   }
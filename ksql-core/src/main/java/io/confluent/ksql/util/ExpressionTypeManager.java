@@ -21,6 +21,7 @@ import io.confluent.ksql.function.KsqlFunctions;
 import io.confluent.ksql.function.KsqlAggregateFunction;
 import io.confluent.ksql.function.KsqlFunction;
 import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
+import io.confluent.ksql.parser.tree.BetweenPredicate;
 import io.confluent.ksql.parser.tree.BooleanLiteral;
 import io.confluent.ksql.parser.tree.Cast;
 import io.confluent.ksql.parser.tree.ComparisonExpression;
@@ -29,6 +30,7 @@ import io.confluent.ksql.parser.tree.DereferenceExpression;
 import io.confluent.ksql.parser.tree.DoubleLiteral;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.parser.tree.FunctionCall;
+import io.confluent.ksql.parser.tree.InPredicate;
 import io.confluent.ksql.parser.tree.IsNotNullPredicate;
 import io.confluent.ksql.parser.tree.IsNullPredicate;
 import io.confluent.ksql.parser.tree.LikePredicate;
@@ -149,6 +151,18 @@ public class ExpressionTypeManager
     return null;
   }
 
+  protected Expression visitInPredicate(InPredicate node,
+                                        ExpressionTypeContext expressionTypeContext) {
+    expressionTypeContext.setSchema(Schema.BOOLEAN_SCHEMA);
+    return null;
+  }
+
+  protected Expression visitBetweenPredicate(BetweenPredicate node,
+                                             ExpressionTypeContext expressionTypeContext) {
+    expressionTypeContext.setSchema(Schema.BOOLEAN_SCHEMA);
+    return null;
+  }
+
   protected Expression visitIsNotNullPredicate(IsNotNullPredicate node,
                                                ExpressionTypeContext expressionTypeContext) {
     expressionTypeContext.setSchema(Schema.BOOLEAN_SCHEMA);
@@ -16,16 +16,22 @@
 
 package io.confluent.ksql.util;
 
+import io.confluent.ksql.codegen.CodeGenCache;
+import io.confluent.ksql.codegen.CodegenConstants;
 import io.confluent.ksql.function.KsqlFunction;
 import io.confluent.ksql.function.KsqlFunctions;
 import io.confluent.ksql.function.udf.Kudf;
+import io.confluent.ksql.parser.rewrite.ConstantFoldingRewriter;
 import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
 import io.confluent.ksql.parser.tree.AstVisitor;
+import io.confluent.ksql.parser.tree.BetweenPredicate;
 import io.confluent.ksql.parser.tree.Cast;
 import io.confluent.ksql.parser.tree.ComparisonExpression;
 import io.confluent.ksql.parser.tree.DereferenceExpression;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.parser.tree.FunctionCall;
+import io.confluent.ksql.parser.tree.InListExpression;
+import io.confluent.ksql.parser.tree.InPredicate;
 import io.confluent.ksql.parser.tree.IsNotNullPredicate;
 import io.confluent.ksql.parser.tree.IsNullPredicate;
 import io.confluent.ksql.parser.tree.LikePredicate;
@@ -35,7 +41,6 @@ import io.confluent.ksql.parser.tree.QualifiedNameReference;
 import io.confluent.ksql.parser.tree.SubscriptExpression;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
-import org.codehaus.commons.compiler.CompilerFactoryFactory;
 import org.codehaus.commons.compiler.IExpressionEvaluator;
 
 import java.util.HashMap;
@@ -53,13 +58,36 @@ public class ExpressionUtil {
   public ExpressionMetadata getExpressionEvaluator(
       final Expression expression,
       final Schema schema) throws Exception {
+    ExpressionTypeManager expressionTypeManager = new ExpressionTypeManager(schema);
+    Schema expressionType = expressionTypeManager.getExpressionType(expression);
+    return getExpressionEvaluator(expression, schema, expressionType,
+                                  SchemaUtil.getJavaType(expressionType));
+  }
+
+  public ExpressionMetadata getPredicateEvaluator(
+      final Expression expression,
+      final Schema schema) throws Exception {
+    return getExpressionEvaluator(expression, schema, Schema.BOOLEAN_SCHEMA, boolean.class);
+  }
+
+  private ExpressionMetadata getExpressionEvaluator(
+      final Expression unfoldedExpression,
+      final Schema schema,
+      final Schema expressionType,
+      final Class expressionJavaType) throws Exception {
+    Expression expression = ConstantFoldingRewriter.fold(unfoldedExpression);
     ExpressionUtil expressionUtil = new ExpressionUtil();
     Map<String, Class> parameterMap = expressionUtil.getParameterInfo(expression, schema);
 
-    String[] parameterNames = new String[parameterMap.size()];
-    Class[] parameterTypes = new Class[parameterMap.size()];
-    int[] columnIndexes = new int[parameterMap.size()];
-    Kudf[] kudfObjects = new Kudf[parameterMap.size()];
+    CodegenConstants constants = new CodegenConstants();
+    String expressionStr = expression.getCodegenString(schema, constants);
+
+    int parameterCount = parameterMap.size() + constants.size();
+    String[] parameterNames = new String[parameterCount];
+    Class[] parameterTypes = new Class[parameterCount];
+    int[] columnIndexes = new int[parameterCount];
+    Kudf[] kudfObjects = new Kudf[parameterCount];
+    Object[] constantObjects = new Object[parameterCount];
 
     int index = 0;
     for (String parameterName : parameterMap.keySet()) {
@@ -67,31 +95,27 @@ public class ExpressionUtil {
       parameterTypes[index] = parameterMap.get(parameterName);
       columnIndexes[index] = SchemaUtil.getFieldIndexByName(schema, parameterName);
       if (columnIndexes[index] < 0) {
-        kudfObjects[index] = (Kudf) parameterMap.get(parameterName).newInstance();
+        kudfObjects[index] = KsqlFunctions.getFunction(parameterName).newKudf();
       } else {
         kudfObjects[index] = null;
       }
       index++;
     }
+    for (int i = 0; i < constants.size(); i++) {
+      parameterNames[index] = constants.getParameterName(i);
+      parameterTypes[index] = constants.getType(i);
+      columnIndexes[index] = -1;
+      constantObjects[index] = constants.getValue(i);
+      index++;
+    }
 
-    String expressionStr = expression.getCodegenString(schema);
-    IExpressionEvaluator
-        ee =
-        CompilerFactoryFactory.getDefaultCompilerFactory().newExpressionEvaluator();
-
-    // The expression will have two "int" parameters: "a" and "b".
-    ee.setParameters(parameterNames, parameterTypes);
-
-    // And the expression (i.e. "result") type is also "int".
-    ExpressionTypeManager expressionTypeManager = new ExpressionTypeManager(schema);
-    Schema expressionType = expressionTypeManager.getExpressionType(expression);
-
-    ee.setExpressionType(SchemaUtil.getJavaType(expressionType));
-
-    // And now we "cook" (scan, parse, compile and load) the fabulous expression.
-    ee.cook(expressionStr);
+    // Identical expressions over the same parameters share one cooked evaluator.
+    IExpressionEvaluator ee =
+        CodeGenCache.getExpressionEvaluator(expressionStr, parameterNames, parameterTypes,
+                                            expressionJavaType);
 
-    return new ExpressionMetadata(ee, columnIndexes, kudfObjects, expressionType);
+    return new ExpressionMetadata(ee, columnIndexes, kudfObjects, constantObjects,
+                                  expressionType);
   }
 
   private class Visitor
@@ -110,6 +134,23 @@ public class ExpressionUtil {
       return null;
     }
 
+    protected Object visitInPredicate(InPredicate node, Object context) {
+      process(node.getValue(), null);
+      if (node.getValueList() instanceof InListExpression) {
+        for (Expression value : ((InListExpression) node.getValueList()).getValues()) {
+          process(value, null);
+        }
+      }
+      return null;
+    }
+
+    protected Object visitBetweenPredicate(BetweenPredicate node, Object context) {
+      process(node.getValue(), null);
+      process(node.getMin(), null);
+      process(node.getMax(), null);
+      return null;
+    }
+
     protected Object visitFunctionCall(FunctionCall node, Object context) {
       String functionName = node.getName().getSuffix();
       KsqlFunction ksqlFunction = KsqlFunctions.getFunction(functionName);
@@ -56,9 +56,8 @@ public class KafkaTopicClientImpl implements KafkaTopicClient {
       return;
     }
     NewTopic newTopic = new NewTopic(topic, numPartitions, replicatonFactor);
-    try {
-      AdminClient.create(ksqlConfig.getKsqlConfigProps())
-          .createTopics(Collections.singleton(newTopic)).all().get();
+    try (AdminClient adminClient = AdminClient.create(ksqlConfig.getKsqlConfigProps())) {
+      adminClient.createTopics(Collections.singleton(newTopic)).all().get();
     } catch (InterruptedException | ExecutionException e) {
       throw new KafkaResponseGetFailedException("Failed to guarantee existence of topic " +
                                                 topic, e);
@@ -71,18 +70,16 @@ public class KafkaTopicClientImpl implements KafkaTopicClient {
   }
 
   public Set<String> listTopicNames() {
-    try {
-      return AdminClient.create(ksqlConfig.getKsqlConfigProps())
-          .listTopics().names().get();
+    try (AdminClient adminClient = AdminClient.create(ksqlConfig.getKsqlConfigProps())) {
+      return adminClient.listTopics().names().get();
     } catch (InterruptedException | ExecutionException e) {
       throw new KafkaResponseGetFailedException("Failed to retrieve kafka topic names", e);
     }
   }
 
   public Map<String, TopicDescription> describeTopics(Collection<String> topicNames) {
-    try {
-      return AdminClient.create(ksqlConfig.getKsqlConfigProps())
-          .describeTopics(topicNames).all().get();
+    try (AdminClient adminClient = AdminClient.create(ksqlConfig.getKsqlConfigProps())) {
+      return adminClient.describeTopics(topicNames).all().get();
     } catch (InterruptedException | ExecutionException e) {
       throw new KafkaResponseGetFailedException("Failed to describe kafka topics", e);
     }
@@ -28,7 +28,6 @@ import java.util.Set;
 
 public class KsqlConfig extends AbstractConfig {
 
-  public static final String KSQL_TIMESTAMP_COLUMN_INDEX = "ksq.timestamp.column.index";
   public static final String SINK_TIMESTAMP_COLUMN_NAME = "TIMESTAMP";
 
   public static final String SINK_NUMBER_OF_PARTITIONS = "PARTITIONS";
@@ -91,6 +90,52 @@ public class KsqlConfig extends AbstractConfig {
       KSQL_TABLE_STATESTORE_NAME_SUFFIX_DOC =
       "Suffix for state store names in Tables.";
 
+  public static final String
+      KSQL_TRANSIENT_QUEUE_CAPACITY_CONFIG = "ksql.transient.queue.capacity";
+  public static final int
+      KSQL_TRANSIENT_QUEUE_CAPACITY_DEFAULT = 1000;
+
+  public static final String
+      KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_CONFIG = "ksql.transient.queue.overflow.policy";
+  public static final String
+      KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_DEFAULT = "BLOCK";
+
+  public static final String
+      KSQL_SHARED_RUNTIME_ENABLED_CONFIG = "ksql.shared.runtime.enabled";
+  public static final boolean
+      KSQL_SHARED_RUNTIME_ENABLED_DEFAULT = false;
+
+  public static final String
+      KSQL_SHARED_RUNTIME_POOL_SIZE_CONFIG = "ksql.shared.runtime.pool.size";
+  public static final int
+      KSQL_SHARED_RUNTIME_POOL_SIZE_DEFAULT = 4;
+
+  // How long the window stores of stream-stream joins keep records; never less than the window.
+  public static final String
+      KSQL_JOIN_WINDOW_RETENTION_MS_CONFIG = "ksql.join.window.retention.ms";
+  public static final long
+      KSQL_JOIN_WINDOW_RETENTION_MS_DEFAULT = 24 * 60 * 60 * 1000L;
+
+  public static final String
+      KSQL_BATCH_EXECUTION_ENABLED_CONFIG = "ksql.batch.execution.enabled";
+  public static final boolean
+      KSQL_BATCH_EXECUTION_ENABLED_DEFAULT = false;
+
+  public static final String
+      KSQL_BATCH_MAX_RECORDS_CONFIG = "ksql.batch.max.records";
+  public static final int
+      KSQL_BATCH_MAX_RECORDS_DEFAULT = 500;
+
+  public static final String
+      KSQL_BATCH_COLUMNAR_ENABLED_CONFIG = "ksql.batch.columnar.enabled";
+  public static final boolean
+      KSQL_BATCH_COLUMNAR_ENABLED_DEFAULT = false;
+
+  public static final String
+      KSQL_PLAN_OPTIMIZER_ENABLED_CONFIG = "ksql.plan.optimizer.enabled";
+  public static final boolean
+      KSQL_PLAN_OPTIMIZER_ENABLED_DEFAULT = true;
+
   public int defaultSinkNumberOfPartitions = 4;
   public short defaultSinkNumberOfReplications = 1;
   // TODO: Find out the best default value.
@@ -113,6 +158,19 @@ public class KsqlConfig extends AbstractConfig {
     ksqlConfigProps.put(KSQL_PERSISTENT_QUERY_NAME_PREFIX_CONFIG, KSQL_PERSISTENT_QUERY_NAME_PREFIX_DEFAULT);
     ksqlConfigProps.put(KSQL_TRANSIENT_QUERY_NAME_PREFIX_CONFIG, KSQL_TRANSIENT_QUERY_NAME_PREFIX_DEFAULT);
     ksqlConfigProps.put(KSQL_TABLE_STATESTORE_NAME_SUFFIX_CONFIG, KSQL_TABLE_STATESTORE_NAME_SUFFIX_DEFAULT);
+    ksqlConfigProps.put(KSQL_TRANSIENT_QUEUE_CAPACITY_CONFIG, KSQL_TRANSIENT_QUEUE_CAPACITY_DEFAULT);
+    ksqlConfigProps.put(KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_CONFIG,
+                        KSQL_TRANSIENT_QUEUE_OVERFLOW_POLICY_DEFAULT);
+    ksqlConfigProps.put(KSQL_SHARED_RUNTIME_ENABLED_CONFIG, KSQL_SHARED_RUNTIME_ENABLED_DEFAULT);
+    ksqlConfigProps.put(KSQL_SHARED_RUNTIME_POOL_SIZE_CONFIG,
+                        KSQL_SHARED_RUNTIME_POOL_SIZE_DEFAULT);
+    ksqlConfigProps.put(KSQL_JOIN_WINDOW_RETENTION_MS_CONFIG,
+                        KSQL_JOIN_WINDOW_RETENTION_MS_DEFAULT);
+    ksqlConfigProps.put(KSQL_BATCH_EXECUTION_ENABLED_CONFIG,
+                        KSQL_BATCH_EXECUTION_ENABLED_DEFAULT);
+    ksqlConfigProps.put(KSQL_BATCH_MAX_RECORDS_CONFIG, KSQL_BATCH_MAX_RECORDS_DEFAULT);
+    ksqlConfigProps.put(KSQL_BATCH_COLUMNAR_ENABLED_CONFIG, KSQL_BATCH_COLUMNAR_ENABLED_DEFAULT);
+    ksqlConfigProps.put(KSQL_PLAN_OPTIMIZER_ENABLED_CONFIG, KSQL_PLAN_OPTIMIZER_ENABLED_DEFAULT);
 
     if (props.containsKey(DEFAULT_SINK_NUMBER_OF_PARTITIONS)) {
       ksqlConfigProps.put(SINK_NUMBER_OF_PARTITIONS,
@@ -18,6 +18,7 @@ package io.confluent.ksql.util;
 
 import io.confluent.ksql.metastore.DataSource;
 import io.confluent.ksql.planner.plan.OutputNode;
+import io.confluent.ksql.structured.TableMaterialization;
 import org.apache.kafka.streams.KafkaStreams;
 
 import java.util.Objects;
@@ -25,20 +26,109 @@ import java.util.Objects;
 public class PersistentQueryMetadata extends QueryMetadata {
 
   private final long id;
-
+  private final SharedKafkaStreamsRuntime sharedRuntime;
+  private final BatchedQueryRunner batchedRunner;
+  private final TableMaterialization materialization;
 
   public PersistentQueryMetadata(String statementString, KafkaStreams kafkaStreams,
                                  OutputNode outputNode, String executionPlan, long id,
-                                 DataSource.DataSourceType dataSourceType) {
+                                 DataSource.DataSourceType dataSourceType,
+                                 TableMaterialization materialization) {
     super(statementString, kafkaStreams, outputNode, executionPlan, dataSourceType);
     this.id = id;
+    this.sharedRuntime = null;
+    this.batchedRunner = null;
+    this.materialization = materialization;
+  }
 
+  /**
+   * A query registered in a shared runtime; starting and closing it adds it to and removes it
+   * from the runtime's topology.
+   */
+  public PersistentQueryMetadata(String statementString, SharedKafkaStreamsRuntime sharedRuntime,
+                                 OutputNode outputNode, String executionPlan, long id,
+                                 DataSource.DataSourceType dataSourceType,
+                                 TableMaterialization materialization) {
+    super(statementString, null, outputNode, executionPlan, dataSourceType);
+    this.id = id;
+    this.sharedRuntime = sharedRuntime;
+    this.batchedRunner = null;
+    this.materialization = materialization;
+  }
+
+  /**
+   * A stateless stream query run in micro-batches on its own consumer and producer, without a
+   * KafkaStreams instance.
+   */
+  public PersistentQueryMetadata(String statementString, BatchedQueryRunner batchedRunner,
+                                 OutputNode outputNode, String executionPlan, long id) {
+    super(statementString, null, outputNode, executionPlan,
+          DataSource.DataSourceType.KSTREAM);
+    this.id = id;
+    this.sharedRuntime = null;
+    this.batchedRunner = batchedRunner;
+    this.materialization = null;
   }
 
   public long getId() {
     return id;
   }
 
+  public SharedKafkaStreamsRuntime getSharedRuntime() {
+    return sharedRuntime;
+  }
+
+  public BatchedQueryRunner getBatchedRunner() {
+    return batchedRunner;
+  }
+
+  /**
+   * The state store the table written by the query can be read from, or null if the query
+   * writes a stream or a table that is not materialized in a store.
+   */
+  public TableMaterialization getMaterialization() {
+    return materialization;
+  }
+
+  /**
+   * The exception a query run in micro-batches stopped on, or null. Queries run by Kafka Streams
+   * report theirs to the uncaught exception handler of their KafkaStreams instance.
+   */
+  public Exception getBatchFailure() {
+    return batchedRunner == null ? null : batchedRunner.getFailure();
+  }
+
+  @Override
+  public KafkaStreams getKafkaStreams() {
+    if (sharedRuntime != null) {
+      return sharedRuntime.getKafkaStreams();
+    }
+    return super.getKafkaStreams();
+  }
+
+  @Override
+  public void start() {
+    if (sharedRuntime != null) {
+      sharedRuntime.start(id);
+    } else if (batchedRunner != null) {
+      batchedRunner.start();
+    } else {
+      super.start();
+    }
+  }
+
+  @Override
+  public void close() {
+    // The local state of a shared runtime belongs to all its queries, so it is never cleaned up.
+    if (sharedRuntime != null) {
+      sharedRuntime.stop(id);
+    } else if (batchedRunner != null) {
+      batchedRunner.close();
+    } else {
+      super.close();
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof PersistentQueryMetadata)) {
@@ -21,6 +21,7 @@ import io.confluent.ksql.planner.plan.OutputNode;
 import org.apache.kafka.streams.KafkaStreams;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class QueryMetadata {
   private final String statementString;
@@ -47,6 +48,15 @@ public class QueryMetadata {
     return kafkaStreams;
   }
 
+  public void start() {
+    kafkaStreams.start();
+  }
+
+  public void close() {
+    kafkaStreams.close(100L, TimeUnit.MILLISECONDS);
+    kafkaStreams.cleanUp();
+  }
+
   public OutputNode getOutputNode() {
     return outputNode;
   }
@@ -17,31 +17,28 @@
 package io.confluent.ksql.util;
 
 import io.confluent.ksql.metastore.DataSource;
-import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.planner.plan.OutputNode;
 import org.apache.kafka.streams.KafkaStreams;
-import org.apache.kafka.streams.KeyValue;
 
 import java.util.Objects;
-import java.util.concurrent.SynchronousQueue;
 
 public class QueuedQueryMetadata extends QueryMetadata {
 
-  private final SynchronousQueue<KeyValue<String, GenericRow>> rowQueue;
+  private final BoundedRowQueue rowQueue;
 
   public QueuedQueryMetadata(
       String statementString,
       KafkaStreams kafkaStreams,
       OutputNode outputNode,
       String executionPlan,
-      SynchronousQueue<KeyValue<String, GenericRow>> rowQueue,
+      BoundedRowQueue rowQueue,
       DataSource.DataSourceType dataSourceType
   ) {
     super(statementString, kafkaStreams, outputNode, executionPlan, dataSourceType);
     this.rowQueue = rowQueue;
   }
 
-  public SynchronousQueue<KeyValue<String, GenericRow>> getRowQueue() {
+  public BoundedRowQueue getRowQueue() {
     return rowQueue;
   }
 
@@ -19,10 +19,13 @@ package io.confluent.ksql.util;
 import io.confluent.ksql.ddl.DdlConfig;
 import io.confluent.ksql.metastore.MetastoreUtil;
 import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
 import io.confluent.ksql.serde.KsqlTopicSerDe;
 import io.confluent.ksql.serde.avro.KsqlAvroTopicSerDe;
 import io.confluent.ksql.serde.avro.KsqlGenericRowAvroDeserializer;
 import io.confluent.ksql.serde.avro.KsqlGenericRowAvroSerializer;
+import io.confluent.ksql.serde.binary.KsqlBinaryDeserializer;
+import io.confluent.ksql.serde.binary.KsqlBinarySerializer;
 import io.confluent.ksql.serde.delimited.KsqlDelimitedDeserializer;
 import io.confluent.ksql.serde.delimited.KsqlDelimitedSerializer;
 import io.confluent.ksql.serde.delimited.KsqlDelimitedTopicSerDe;
@@ -42,32 +45,45 @@ import java.util.Map;
 public class SerDeUtil {
 
   public static Serde<GenericRow> getGenericRowJsonSerde(Schema schema) {
+    return getGenericRowJsonSerde(schema, null);
+  }
+
+  private static Serde<GenericRow> getGenericRowJsonSerde(final Schema schema,
+                                                          final ColumnPushdown pushdown) {
     Map<String, Object> serdeProps = new HashMap<>();
     serdeProps.put("JsonPOJOClass", GenericRow.class);
 
     final Serializer<GenericRow> genericRowSerializer = new KsqlJsonSerializer(schema);
     genericRowSerializer.configure(serdeProps, false);
 
-    final Deserializer<GenericRow> genericRowDeserializer = new KsqlJsonDeserializer(schema);
+    final Deserializer<GenericRow> genericRowDeserializer = new KsqlJsonDeserializer(schema, pushdown);
     genericRowDeserializer.configure(serdeProps, false);
 
     return Serdes.serdeFrom(genericRowSerializer, genericRowDeserializer);
 
   }
 
-  private static Serde<GenericRow> getGenericRowDelimitedSerde(final Schema schema) {
+  private static Serde<GenericRow> getGenericRowDelimitedSerde(final Schema schema,
+                                                               final char delimiter,
+                                                               final ColumnPushdown pushdown) {
     Map<String, Object> serdeProps = new HashMap<>();
 
-    final Serializer<GenericRow> genericRowSerializer = new KsqlDelimitedSerializer();
+    final Serializer<GenericRow> genericRowSerializer = new KsqlDelimitedSerializer(delimiter);
     genericRowSerializer.configure(serdeProps, false);
 
-    final Deserializer<GenericRow> genericRowDeserializer = new KsqlDelimitedDeserializer(schema);
+    final Deserializer<GenericRow> genericRowDeserializer =
+        new KsqlDelimitedDeserializer(schema, delimiter, pushdown);
     genericRowDeserializer.configure(serdeProps, false);
 
     return Serdes.serdeFrom(genericRowSerializer, genericRowDeserializer);
   }
 
   public static Serde<GenericRow> getGenericRowAvroSerde(final Schema schema) {
+    return getGenericRowAvroSerde(schema, null);
+  }
+
+  private static Serde<GenericRow> getGenericRowAvroSerde(final Schema schema,
+                                                          final ColumnPushdown pushdown) {
     Map<String, Object> serdeProps = new HashMap<>();
     String avroSchemaString = new MetastoreUtil().buildAvroSchema(schema, DdlConfig.AVRO_SCHEMA);
     serdeProps.put(KsqlGenericRowAvroSerializer.AVRO_SERDE_SCHEMA_CONFIG, avroSchemaString);
@@ -76,20 +92,55 @@ public class SerDeUtil {
     genericRowSerializer.configure(serdeProps, false);
 
     final Deserializer<GenericRow> genericRowDeserializer =
-        new KsqlGenericRowAvroDeserializer(schema);
+        new KsqlGenericRowAvroDeserializer(schema, pushdown);
+    genericRowDeserializer.configure(serdeProps, false);
+
+    return Serdes.serdeFrom(genericRowSerializer, genericRowDeserializer);
+  }
+
+  /**
+   * Serde for the values of the state stores KSQL maintains itself, independent of the format of
+   * the source and sink topics.
+   */
+  public static Serde<GenericRow> getGenericRowBinarySerde(final Schema schema) {
+    return getGenericRowBinarySerde(schema, null);
+  }
+
+  /**
+   * Rows the store kept in the format of the legacy topic serde, before it used the binary
+   * format, are still read with that serde. The legacy serde may be null.
+   */
+  public static Serde<GenericRow> getGenericRowBinarySerde(final Schema schema,
+                                                           final KsqlTopicSerDe legacySerDe) {
+    Map<String, Object> serdeProps = new HashMap<>();
+
+    final Serializer<GenericRow> genericRowSerializer = new KsqlBinarySerializer(schema);
+    genericRowSerializer.configure(serdeProps, false);
+
+    final Deserializer<GenericRow> genericRowDeserializer = new KsqlBinaryDeserializer(
+        schema, legacySerDe == null ? null : getRowSerDe(legacySerDe, schema).deserializer());
     genericRowDeserializer.configure(serdeProps, false);
 
     return Serdes.serdeFrom(genericRowSerializer, genericRowDeserializer);
   }
 
   public static Serde<GenericRow> getRowSerDe(final KsqlTopicSerDe topicSerDe, Schema schema) {
+    return getRowSerDe(topicSerDe, schema, null);
+  }
+
+  /**
+   * The deserializer of the returned serde only decodes the columns the pushdown requires and
+   * returns null for rows failing its comparisons. The pushdown may be null.
+   */
+  public static Serde<GenericRow> getRowSerDe(final KsqlTopicSerDe topicSerDe, Schema schema,
+                                              final ColumnPushdown pushdown) {
     if (topicSerDe instanceof KsqlAvroTopicSerDe) {
-      KsqlAvroTopicSerDe avroTopicSerDe = (KsqlAvroTopicSerDe) topicSerDe;
-      return SerDeUtil.getGenericRowAvroSerde(schema);
+      return SerDeUtil.getGenericRowAvroSerde(schema, pushdown);
     } else if (topicSerDe instanceof KsqlJsonTopicSerDe) {
-      return SerDeUtil.getGenericRowJsonSerde(schema);
+      return SerDeUtil.getGenericRowJsonSerde(schema, pushdown);
     } else if (topicSerDe instanceof KsqlDelimitedTopicSerDe) {
-      return SerDeUtil.getGenericRowDelimitedSerde(schema);
+      return SerDeUtil.getGenericRowDelimitedSerde(
+          schema, ((KsqlDelimitedTopicSerDe) topicSerDe).getDelimiter(), pushdown);
     } else {
       throw new KsqlException("Unknown topic serde.");
     }
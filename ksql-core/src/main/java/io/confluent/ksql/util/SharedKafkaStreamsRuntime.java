@@ -0,0 +1,295 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util;
+
+import io.confluent.ksql.physical.SourceStreams;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.KStreamBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One KafkaStreams instance running the topologies of several persistent queries, so that the
+ * number of stream threads, clients and RocksDB instances does not grow with the number of
+ * queries. Kafka Streams can not change the topology of a running instance, so starting or
+ * stopping a query replaces the instance with one built from the topologies of the running
+ * queries: every query of the runtime stops and restarts whenever one of them starts or stops.
+ * The new instance is built before the running one is closed, and a query that can not be
+ * started is left out again, so it does not take the other queries of the runtime down with it.
+ * While starts are deferred, as when the server replays its commands, queries are only marked
+ * as running and the runtime is started once for all of them.
+ *
+ * <p>The application id, and with it the consumer group, stays the same across those rebuilds.
+ * State stores and repartition topics only keep their changelogs and data if their names do
+ * not depend on the other queries of the runtime, so the queries added to a runtime may only
+ * have stores and internal topics named after the query id or after a data source: aggregate
+ * stores, table source stores and the repartition topics derived from them. Queries with join
+ * window stores or join repartition topics, which Kafka Streams numbers in the order they are
+ * added to the builder, run in their own KafkaStreams instance. Task ids are numbered in the
+ * same order, so after a rebuild a store may belong to a task with another id; it is then
+ * restored from its changelog rather than from the local state directory.
+ *
+ * <p>Queries reading the same data source share one consumer of its topic and decode each
+ * record once; the decoded rows fan out to all of them. A topic can only be read by one node of
+ * a topology though, so a query is not accepted if one of its topics is read through a
+ * different data source by a query already in the runtime.
+ */
+public class SharedKafkaStreamsRuntime {
+
+  private static final Logger log = LoggerFactory.getLogger(SharedKafkaStreamsRuntime.class);
+
+  /**
+   * Adds the processors of one query to the topology of the runtime, reusing the sources
+   * other queries have already added.
+   */
+  public interface QueryTopology {
+    void build(KStreamBuilder builder, SourceStreams sourceStreams) throws Exception;
+  }
+
+  private final String applicationId;
+  private final Map<String, Object> queryProperties;
+  private final Map<String, Object> streamsProperties;
+  private final Map<Long, QueryTopology> queryTopologies;
+  // Source topic to the name of the data source read from it, per query
+  private final Map<Long, Map<String, String>> querySources;
+  private final Set<Long> runningQueries;
+
+  private KafkaStreams kafkaStreams;
+  private boolean startsDeferred;
+  private boolean closed;
+
+  public SharedKafkaStreamsRuntime(String applicationId, Map<String, Object> queryProperties) {
+    this.applicationId = applicationId;
+    this.queryProperties = new HashMap<>(queryProperties);
+    this.streamsProperties = new HashMap<>(queryProperties);
+    this.streamsProperties.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+    this.queryTopologies = new LinkedHashMap<>();
+    this.querySources = new HashMap<>();
+    this.runningQueries = new LinkedHashSet<>();
+  }
+
+  public String getApplicationId() {
+    return applicationId;
+  }
+
+  /**
+   * Whether a query built with the given streams properties and reading the given sources, by
+   * topic, can run in this runtime.
+   */
+  public synchronized boolean canAccept(Map<String, Object> properties,
+                                        Map<String, String> sources) {
+    if (closed || !queryProperties.equals(properties)) {
+      return false;
+    }
+    for (Map<String, String> runtimeSources : querySources.values()) {
+      for (Map.Entry<String, String> source : sources.entrySet()) {
+        String runtimeSource = runtimeSources.get(source.getKey());
+        if (runtimeSource != null && !runtimeSource.equals(source.getValue())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The number of the given source topics the runtime already consumes.
+   */
+  public synchronized int getSharedSourceCount(Map<String, String> sources) {
+    int sharedSources = 0;
+    for (String topic : sources.keySet()) {
+      for (Map<String, String> runtimeSources : querySources.values()) {
+        if (runtimeSources.containsKey(topic)) {
+          sharedSources++;
+          break;
+        }
+      }
+    }
+    return sharedSources;
+  }
+
+  public synchronized int getQueryCount() {
+    return queryTopologies.size();
+  }
+
+  public synchronized void register(long queryId, Map<String, String> sources,
+                                    QueryTopology queryTopology) {
+    if (queryTopologies.containsKey(queryId)) {
+      throw new KsqlException(String.format("Query %d is already registered in %s.",
+                                            queryId, applicationId));
+    }
+    queryTopologies.put(queryId, queryTopology);
+    querySources.put(queryId, new HashMap<>(sources));
+  }
+
+  public synchronized void start(long queryId) {
+    if (!queryTopologies.containsKey(queryId)) {
+      throw new KsqlException(String.format("Query %d is not registered in %s.",
+                                            queryId, applicationId));
+    }
+    if (runningQueries.contains(queryId)) {
+      return;
+    }
+    if (startsDeferred) {
+      runningQueries.add(queryId);
+      return;
+    }
+    Set<Long> queryIds = new LinkedHashSet<>(runningQueries);
+    queryIds.add(queryId);
+    try {
+      replace(queryIds);
+    } catch (RuntimeException e) {
+      // Keep the other queries running without the one that could not be added.
+      restore(e);
+      throw new KsqlException(String.format("Could not start query %d in %s.",
+                                            queryId, applicationId), e);
+    }
+    runningQueries.add(queryId);
+  }
+
+  /**
+   * Removes the query from the runtime; the other queries are restarted without it.
+   */
+  public synchronized void stop(long queryId) {
+    queryTopologies.remove(queryId);
+    querySources.remove(queryId);
+    if (runningQueries.remove(queryId) && !startsDeferred) {
+      try {
+        replace(runningQueries);
+      } catch (RuntimeException e) {
+        // The stopped query must not keep running in the instance it was part of.
+        closeKafkaStreams();
+        throw new KsqlException(String.format("Could not restart the queries of %s without "
+                                              + "query %d.", applicationId, queryId), e);
+      }
+    }
+  }
+
+  /**
+   * Makes {@link #start(long)} only mark queries as running, until {@link #startDeferred()}.
+   */
+  public synchronized void deferStarts() {
+    startsDeferred = true;
+  }
+
+  /**
+   * Starts the runtime once with all the queries started since {@link #deferStarts()}. If they
+   * can not run together, they are started one at a time and the ones that fail stay stopped.
+   */
+  public synchronized void startDeferred() {
+    if (!startsDeferred) {
+      return;
+    }
+    startsDeferred = false;
+    Set<Long> queryIds = new LinkedHashSet<>(runningQueries);
+    try {
+      replace(queryIds);
+      return;
+    } catch (RuntimeException e) {
+      log.error(String.format("Could not start queries %s of %s together.",
+                              queryIds, applicationId), e);
+    }
+    closeKafkaStreams();
+    runningQueries.clear();
+    for (Long queryId : queryIds) {
+      try {
+        start(queryId);
+      } catch (KsqlException e) {
+        log.error(e.getMessage(), e);
+      }
+    }
+  }
+
+  public synchronized KafkaStreams getKafkaStreams() {
+    return kafkaStreams;
+  }
+
+  public synchronized void close() {
+    closed = true;
+    closeKafkaStreams();
+  }
+
+  /**
+   * Replaces the running instance with one running the given queries. The new instance is
+   * built first, so if a topology is invalid the running instance is left untouched.
+   */
+  private void replace(Set<Long> queryIds) {
+    KafkaStreams newKafkaStreams = closed || queryIds.isEmpty() ? null : build(queryIds);
+    // Waits for the stream threads to release the state directory before the new instance
+    // tries to lock it.
+    closeKafkaStreams();
+    if (newKafkaStreams == null) {
+      return;
+    }
+    log.info("Starting {} with queries {}", applicationId, queryIds);
+    try {
+      newKafkaStreams.start();
+    } catch (RuntimeException e) {
+      try {
+        newKafkaStreams.close();
+      } catch (RuntimeException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw e;
+    }
+    kafkaStreams = newKafkaStreams;
+  }
+
+  /**
+   * Restarts the running queries after a failed replace closed their instance.
+   */
+  private void restore(RuntimeException failure) {
+    if (kafkaStreams != null || closed || runningQueries.isEmpty()) {
+      return;
+    }
+    try {
+      replace(runningQueries);
+    } catch (RuntimeException e) {
+      failure.addSuppressed(e);
+      log.error(String.format("Could not restart queries %s of %s.",
+                              runningQueries, applicationId), e);
+    }
+  }
+
+  private KafkaStreams build(Set<Long> queryIds) {
+    KStreamBuilder builder = new KStreamBuilder();
+    SourceStreams sourceStreams = new SourceStreams();
+    for (Long queryId : queryIds) {
+      try {
+        queryTopologies.get(queryId).build(builder, sourceStreams);
+      } catch (Exception e) {
+        throw new KsqlException(String.format("Could not build query %d in %s.",
+                                              queryId, applicationId), e);
+      }
+    }
+    return new KafkaStreams(builder, new StreamsConfig(streamsProperties));
+  }
+
+  private void closeKafkaStreams() {
+    if (kafkaStreams != null) {
+      kafkaStreams.close();
+      kafkaStreams = null;
+    }
+  }
+}
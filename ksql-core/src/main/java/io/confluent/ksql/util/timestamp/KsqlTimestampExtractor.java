@@ -17,44 +17,55 @@
 package io.confluent.ksql.util.timestamp;
 
 import io.confluent.ksql.physical.GenericRow;
-import io.confluent.ksql.util.KsqlConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.common.Configurable;
 import org.apache.kafka.streams.processor.TimestampExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-
-public class KsqlTimestampExtractor implements TimestampExtractor, Configurable {
+/**
+ * Reads the event time of the records of one source from its timestamp column. Kafka Streams
+ * runs the extractor on the deserialized record, so the column is read straight from the row.
+ * Each source gets its own extractor, so the sources of a join, or of the queries sharing a
+ * runtime, can use different timestamp columns.
+ */
+public class KsqlTimestampExtractor implements TimestampExtractor {
 
   private static final Logger log = LoggerFactory.getLogger(KsqlTimestampExtractor.class);
 
-  int timestampColumnindex = -1;
+  private final int timestampColumnIndex;
+  private final StringToTimestampParser timestampParser;
 
-  @Override
-  public void configure(Map<String, ?> map) {
-    if (map.containsKey(KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX)) {
-      timestampColumnindex = (Integer) map.get(KsqlConfig.KSQL_TIMESTAMP_COLUMN_INDEX);
-    }
+  public KsqlTimestampExtractor(int timestampColumnIndex) {
+    this(timestampColumnIndex, null);
+  }
+
+  /**
+   * String timestamp columns are parsed with the given parser, which may be null for LONG
+   * columns.
+   */
+  public KsqlTimestampExtractor(int timestampColumnIndex,
+                                StringToTimestampParser timestampParser) {
+    this.timestampColumnIndex = timestampColumnIndex;
+    this.timestampParser = timestampParser;
   }
 
   @Override
-  public long extract(ConsumerRecord<Object, Object> consumerRecord, long l) {
-    if (timestampColumnindex < 0) {
-      return 0;
-    } else {
-      try {
-        if (consumerRecord.value() instanceof GenericRow) {
-          GenericRow genericRow = (GenericRow) consumerRecord.value();
-          if (genericRow.getColumns().get(timestampColumnindex) instanceof Long) {
-            return (long) genericRow.getColumns().get(timestampColumnindex);
-          }
-        }
-      } catch (Exception e) {
-        log.error("Exception in extracting timestamp for row: " + consumerRecord.value(), e);
+  public long extract(ConsumerRecord<Object, Object> consumerRecord, long previousTimestamp) {
+    if (!(consumerRecord.value() instanceof GenericRow)) {
+      // Tombstones and rows dropped by the deserializer keep the timestamp of the record.
+      return consumerRecord.timestamp();
+    }
+    Object timestamp =
+        ((GenericRow) consumerRecord.value()).getColumns().get(timestampColumnIndex);
+    try {
+      if (timestamp instanceof Long) {
+        return (Long) timestamp;
+      } else if (timestamp instanceof String && timestampParser != null) {
+        return timestampParser.parse((String) timestamp);
       }
+    } catch (Exception e) {
+      log.error("Exception in extracting timestamp for row: " + consumerRecord.value(), e);
     }
-    return 0;
+    return consumerRecord.timestamp();
   }
 }
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util.timestamp;
+
+import io.confluent.ksql.util.KsqlException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
+/**
+ * Parses string timestamps with a {@link DateTimeFormatter} pattern into epoch milliseconds. The
+ * pattern is compiled once; the formatter is immutable, so one parser is shared by all the
+ * stream threads. Timestamps without a zone or offset are read in the local time zone, and
+ * timestamps without a time of day at midnight.
+ */
+public class StringToTimestampParser {
+
+  private final String pattern;
+  private final DateTimeFormatter formatter;
+
+  public StringToTimestampParser(String pattern) {
+    this.pattern = pattern;
+    try {
+      this.formatter = DateTimeFormatter.ofPattern(pattern);
+    } catch (IllegalArgumentException e) {
+      throw new KsqlException("Invalid timestamp format: " + pattern, e);
+    }
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  public long parse(String text) {
+    TemporalAccessor parsed = formatter.parse(text);
+    if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+      return parsed.getLong(ChronoField.INSTANT_SECONDS) * 1000
+             + parsed.getLong(ChronoField.MILLI_OF_SECOND);
+    }
+    LocalDate date = parsed.query(TemporalQueries.localDate());
+    if (date == null) {
+      throw new KsqlException("Timestamp has no date: " + text);
+    }
+    LocalTime time = parsed.query(TemporalQueries.localTime());
+    ZoneId zone = parsed.query(TemporalQueries.zone());
+    return LocalDateTime.of(date, time == null ? LocalTime.MIDNIGHT : time)
+        .atZone(zone == null ? ZoneId.systemDefault() : zone)
+        .toInstant()
+        .toEpochMilli();
+  }
+}
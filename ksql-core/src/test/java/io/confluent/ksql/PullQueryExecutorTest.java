@@ -0,0 +1,273 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql;
+
+import io.confluent.ksql.metastore.DataSource;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.tree.ComparisonExpression;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.LogicalBinaryExpression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.QualifiedName;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.Query;
+import io.confluent.ksql.parser.tree.StringLiteral;
+import io.confluent.ksql.planner.plan.KsqlBareOutputNode;
+import io.confluent.ksql.planner.plan.OutputNode;
+import io.confluent.ksql.planner.plan.PlanNodeId;
+import io.confluent.ksql.structured.TableMaterialization;
+import io.confluent.ksql.util.FakeKafkaTopicClient;
+import io.confluent.ksql.util.KsqlConfig;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.KsqlTestUtil;
+import io.confluent.ksql.util.PersistentQueryMetadata;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.KStreamBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+public class PullQueryExecutorTest {
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+
+  private final Map<Long, PersistentQueryMetadata> persistentQueries = new HashMap<>();
+  private KsqlEngine ksqlEngine;
+
+  @Before
+  public void init() {
+    ksqlEngine = new KsqlEngine(new KsqlConfig(Collections.emptyMap()),
+                                new FakeKafkaTopicClient()) {
+      @Override
+      public Map<Long, PersistentQueryMetadata> getPersistentQueries() {
+        return persistentQueries;
+      }
+    };
+    ksqlEngine.getMetaStore().putAll(KsqlTestUtil.getNewMetaStore());
+  }
+
+  private Query buildQuery(String queryStr) {
+    MetaStore metaStore = ksqlEngine.getMetaStore();
+    return (Query) KSQL_PARSER.buildAst(queryStr, metaStore).get(0);
+  }
+
+  private void addTableQuery(String tableName, TableMaterialization materialization) {
+    addTableQuery(tableName, materialization, null);
+  }
+
+  private void addTableQuery(String tableName, TableMaterialization materialization,
+                             KafkaStreams kafkaStreams) {
+    Query query = buildQuery("SELECT * FROM " + tableName + ";");
+    OutputNode plan = (OutputNode) ksqlEngine.getQueryEngine()
+        .buildQueryLogicalPlan(query, ksqlEngine.getMetaStore().clone());
+    OutputNode outputNode = new KsqlBareOutputNode(
+        new PlanNodeId(tableName), plan.getSource(), plan.getSchema(), Optional.empty());
+    persistentQueries.put(1L, new PersistentQueryMetadata(
+        "CREATE TABLE " + tableName + " AS SELECT * FROM " + tableName + ";",
+        kafkaStreams, outputNode, "", 1L, DataSource.DataSourceType.KTABLE,
+        materialization));
+  }
+
+  private static Expression column(String name) {
+    return new QualifiedNameReference(QualifiedName.of(name));
+  }
+
+  private static Expression compare(ComparisonExpression.Type type, Expression left,
+                                    Expression right) {
+    return new ComparisonExpression(type, left, right);
+  }
+
+  private static Expression and(Expression left, Expression right) {
+    return new LogicalBinaryExpression(LogicalBinaryExpression.Type.AND, left, right);
+  }
+
+  private static Expression key(ComparisonExpression.Type type, String key) {
+    return compare(type, column("ROWKEY"), new StringLiteral(key));
+  }
+
+  private static Expression time(ComparisonExpression.Type type, long time) {
+    return compare(type, column("ROWTIME"), new LongLiteral(Long.toString(time)));
+  }
+
+  @Test
+  public void testKeyIsExtractedWithTheLiteralOnEitherSide() throws Exception {
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertNull(keyBounds.extract(key(ComparisonExpression.Type.EQUAL, "a")));
+    Assert.assertEquals("a", keyBounds.getKey());
+
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertNull(keyBounds.extract(
+        compare(ComparisonExpression.Type.LESS_THAN, new StringLiteral("b"), column("ROWKEY"))));
+    Assert.assertNull(keyBounds.getKey());
+    Assert.assertFalse(keyBounds.matches("b", null));
+    Assert.assertTrue(keyBounds.matches("c", null));
+  }
+
+  @Test
+  public void testKeyBoundsAreInclusiveOrExclusive() throws Exception {
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertNull(keyBounds.extract(
+        and(key(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, "b"),
+            key(ComparisonExpression.Type.LESS_THAN, "d"))));
+
+    Assert.assertNull(keyBounds.getKey());
+    Assert.assertFalse(keyBounds.isEmpty());
+    Assert.assertFalse(keyBounds.matches("a", null));
+    Assert.assertTrue(keyBounds.matches("b", null));
+    Assert.assertTrue(keyBounds.matches("c", null));
+    Assert.assertFalse(keyBounds.matches("d", null));
+  }
+
+  @Test
+  public void testInclusiveBoundsOnTheSameKeyLookUpTheKey() throws Exception {
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(key(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, "a"),
+                          key(ComparisonExpression.Type.LESS_THAN_OR_EQUAL, "a")));
+    Assert.assertEquals("a", keyBounds.getKey());
+
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(key(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, "a"),
+                          key(ComparisonExpression.Type.LESS_THAN, "a")));
+    Assert.assertNull(keyBounds.getKey());
+  }
+
+  @Test
+  public void testContradictoryBoundsAreEmpty() throws Exception {
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(key(ComparisonExpression.Type.GREATER_THAN, "d"),
+                          key(ComparisonExpression.Type.LESS_THAN, "b")));
+    Assert.assertTrue(keyBounds.isEmpty());
+
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(key(ComparisonExpression.Type.EQUAL, "a"),
+                          key(ComparisonExpression.Type.GREATER_THAN, "a")));
+    Assert.assertTrue(keyBounds.isEmpty());
+
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(time(ComparisonExpression.Type.GREATER_THAN, 10),
+                          time(ComparisonExpression.Type.LESS_THAN, 11)));
+    Assert.assertTrue(keyBounds.isEmpty());
+  }
+
+  @Test
+  public void testTimeBoundsExcludeTheirEdges() throws Exception {
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertFalse(keyBounds.hasTimeBounds());
+    Assert.assertNull(keyBounds.extract(
+        and(time(ComparisonExpression.Type.GREATER_THAN, 10),
+            time(ComparisonExpression.Type.LESS_THAN, 20))));
+
+    Assert.assertTrue(keyBounds.hasTimeBounds());
+    Assert.assertFalse(keyBounds.isEmpty());
+    Assert.assertFalse(keyBounds.matches("k", 10L));
+    Assert.assertTrue(keyBounds.matches("k", 11L));
+    Assert.assertTrue(keyBounds.matches("k", 19L));
+    Assert.assertFalse(keyBounds.matches("k", 20L));
+
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    keyBounds.extract(and(time(ComparisonExpression.Type.GREATER_THAN_OR_EQUAL, 10),
+                          time(ComparisonExpression.Type.LESS_THAN_OR_EQUAL, 20)));
+    Assert.assertTrue(keyBounds.matches("k", 10L));
+    Assert.assertTrue(keyBounds.matches("k", 20L));
+    Assert.assertFalse(keyBounds.matches("k", 21L));
+  }
+
+  @Test
+  public void testOtherConjunctsAreLeft() throws Exception {
+    Expression residual =
+        compare(ComparisonExpression.Type.EQUAL, column("COL1"), new StringLiteral("x"));
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertSame(residual,
+                      keyBounds.extract(and(key(ComparisonExpression.Type.EQUAL, "a"), residual)));
+    Assert.assertEquals("a", keyBounds.getKey());
+
+    Expression keyWithNumber =
+        compare(ComparisonExpression.Type.EQUAL, column("ROWKEY"), new LongLiteral("1"));
+    keyBounds = new PullQueryExecutor.KeyBounds();
+    Assert.assertSame(keyWithNumber, keyBounds.extract(keyWithNumber));
+    Assert.assertNull(keyBounds.getKey());
+  }
+
+  @Test
+  public void testDisjunctionsAreLeft() throws Exception {
+    Expression predicate = new LogicalBinaryExpression(
+        LogicalBinaryExpression.Type.OR,
+        key(ComparisonExpression.Type.EQUAL, "a"),
+        key(ComparisonExpression.Type.EQUAL, "b"));
+    PullQueryExecutor.KeyBounds keyBounds = new PullQueryExecutor.KeyBounds();
+
+    Assert.assertSame(predicate, keyBounds.extract(predicate));
+    Assert.assertNull(keyBounds.getKey());
+    Assert.assertTrue(keyBounds.matches("c", null));
+  }
+
+  @Test
+  public void testTableWithoutRunningQueryIsRejected() throws Exception {
+    PullQueryExecutor executor = new PullQueryExecutor(ksqlEngine);
+    try {
+      executor.execute(buildQuery("SELECT col1 FROM test2 WHERE ROWKEY = 'a';"));
+      Assert.fail();
+    } catch (KsqlException e) {
+      Assert.assertTrue(e.getMessage().startsWith(
+          "Table TEST2 is not kept in the state of a running query"));
+    }
+  }
+
+  @Test
+  public void testTimeBoundsOnTableThatIsNotWindowedAreRejected() throws Exception {
+    addTableQuery("TEST2", new TableMaterialization(
+        "TEST2", TableMaterialization.StoreType.KEY_VALUE));
+    PullQueryExecutor executor = new PullQueryExecutor(ksqlEngine);
+    try {
+      executor.execute(buildQuery("SELECT col1 FROM test2 WHERE ROWTIME > 10;"));
+      Assert.fail();
+    } catch (KsqlException e) {
+      Assert.assertEquals(
+          "Table TEST2 is not windowed; its rows can not be looked up by ROWTIME.",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void testStoresOfStreamsThatAreNotRunningAreRetryable() throws Exception {
+    Map<String, Object> streamsProperties = new HashMap<>();
+    streamsProperties.put(StreamsConfig.APPLICATION_ID_CONFIG, "pull_query_test");
+    streamsProperties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    // Created but not started, as while a shared runtime is being rebuilt.
+    KafkaStreams kafkaStreams =
+        new KafkaStreams(new KStreamBuilder(), new StreamsConfig(streamsProperties));
+    try {
+      addTableQuery("TEST2", new TableMaterialization(
+          "TEST2", TableMaterialization.StoreType.KEY_VALUE), kafkaStreams);
+      new PullQueryExecutor(ksqlEngine)
+          .execute(buildQuery("SELECT col1 FROM test2 WHERE ROWKEY = 'a';"));
+      Assert.fail();
+    } catch (KsqlException e) {
+      Assert.assertTrue(e.getMessage().endsWith("Please retry."));
+    } finally {
+      kafkaStreams.close();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.analyzer.Analysis;
+import io.confluent.ksql.analyzer.AnalysisContext;
+import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.KsqlTestUtil;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class ColumnarPredicateCompilerTest {
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+  private MetaStore metaStore;
+  private Schema schema;
+
+  @Before
+  public void init() {
+    metaStore = KsqlTestUtil.getNewMetaStore();
+    schema = SchemaBuilder.struct()
+        .field("TEST1.COL0", SchemaBuilder.INT64_SCHEMA)
+        .field("TEST1.COL1", SchemaBuilder.STRING_SCHEMA)
+        .field("TEST1.COL2", SchemaBuilder.STRING_SCHEMA)
+        .field("TEST1.COL3", SchemaBuilder.FLOAT64_SCHEMA);
+  }
+
+  private Expression analyzeWhere(String queryStr) {
+    List<Statement> statements = KSQL_PARSER.buildAst(queryStr, metaStore);
+    Analysis analysis = new Analysis();
+    Analyzer analyzer = new Analyzer(analysis, metaStore);
+    analyzer.process(statements.get(0), new AnalysisContext(null, null));
+    return analysis.getWhereExpression();
+  }
+
+  private int[] select(ColumnarPredicate predicate, List<GenericRow> rows) {
+    predicate.reset(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      predicate.load(i, rows.get(i));
+    }
+    int[] selection = new int[rows.size()];
+    int selected = predicate.select(rows.size(), selection);
+    return Arrays.copyOf(selection, selected);
+  }
+
+  @Test
+  public void testNumericAndStringFilter() throws Exception {
+    Optional<ColumnarPredicate> predicate = ColumnarPredicateCompiler.compile(
+        analyzeWhere("SELECT col0 FROM test1 WHERE col3 * 2 > 5.0 AND col2 = 'on' "
+                     + "OR NOT col0 < 100;"),
+        schema);
+    Assert.assertTrue(predicate.isPresent());
+
+    List<GenericRow> rows = Arrays.asList(
+        new GenericRow(Arrays.<Object>asList(1L, "a", "on", 3.0)),
+        new GenericRow(Arrays.<Object>asList(2L, "b", "off", 3.0)),
+        new GenericRow(Arrays.<Object>asList(3L, "c", "on", 1.0)),
+        new GenericRow(Arrays.<Object>asList(300L, "d", "off", 1.0)),
+        new GenericRow(Arrays.<Object>asList(4L, "e", null, 3.0)));
+    Assert.assertArrayEquals(new int[]{0, 3}, select(predicate.get(), rows));
+    Assert.assertTrue(predicate.get().isNull(4));
+  }
+
+  @Test
+  public void testUnsupportedFilter() throws Exception {
+    Assert.assertFalse(ColumnarPredicateCompiler.compile(
+        analyzeWhere("SELECT col0 FROM test1 WHERE LEN(col2) > 2;"), schema).isPresent());
+    Assert.assertFalse(ColumnarPredicateCompiler.compile(
+        analyzeWhere("SELECT col0 FROM test1 WHERE col1 < col2;"), schema).isPresent());
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.util.KsqlException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LikeMatcherTest {
+
+  private static boolean like(String value, String pattern) {
+    return LikeMatcher.compile(pattern, null).matches(value);
+  }
+
+  @Test
+  public void testPercentPatterns() throws Exception {
+    Assert.assertTrue(like("santa", "santa"));
+    Assert.assertFalse(like("santas", "santa"));
+    Assert.assertTrue(like("santa claus", "santa%"));
+    Assert.assertTrue(like("mr santa", "%santa"));
+    Assert.assertTrue(like("a santa b", "%santa%"));
+    Assert.assertTrue(like("anything", "%"));
+    Assert.assertTrue(like("https://shop.example.com/product/42",
+                           "https://%.example.com/product/%"));
+    Assert.assertFalse(like("https://example.org/product/42",
+                            "https://%.example.com/product/%"));
+    Assert.assertTrue(like("abcabc", "a%c%c"));
+    // The end segment may not overlap the start segment.
+    Assert.assertFalse(like("aba", "ab%ba"));
+    Assert.assertTrue(like("abba", "ab%ba"));
+  }
+
+  @Test
+  public void testUnderscorePatterns() throws Exception {
+    Assert.assertTrue(like("cat", "c_t"));
+    Assert.assertFalse(like("cart", "c_t"));
+    Assert.assertTrue(like("/user/17/profile", "/user/__/%"));
+    Assert.assertFalse(like("/user/7/profile", "/user/__/%"));
+    Assert.assertTrue(like("aXbYc", "a%b_c"));
+    Assert.assertTrue(like("abbbc", "%b_c"));
+    Assert.assertFalse(like("abc", "%b__"));
+  }
+
+  @Test
+  public void testEscape() throws Exception {
+    Assert.assertTrue(LikeMatcher.compile("100!%", '!').matches("100%"));
+    Assert.assertFalse(LikeMatcher.compile("100!%", '!').matches("1000"));
+    Assert.assertTrue(LikeMatcher.compile("a!_%", '!').matches("a_b"));
+    Assert.assertFalse(LikeMatcher.compile("a!_%", '!').matches("ab"));
+  }
+
+  @Test(expected = KsqlException.class)
+  public void testInvalidEscape() throws Exception {
+    LikeMatcher.compile("abc!", '!');
+  }
+
+  @Test
+  public void testMatchersAreSharedWithinAnExpression() throws Exception {
+    CodegenConstants constants = new CodegenConstants();
+    String matcher = constants.addLikeMatcher("%.example.com/%", null);
+    Assert.assertEquals(matcher, constants.addLikeMatcher("%.example.com/%", null));
+    Assert.assertFalse(matcher.equals(constants.addLikeMatcher("%.example.com/%", '\\')));
+    Assert.assertEquals(2, constants.size());
+    Assert.assertEquals(LikeMatcher.class, constants.getType(0));
+    Assert.assertEquals(matcher, constants.getParameterName(0));
+    Assert.assertTrue(((LikeMatcher) constants.getValue(0)).matches("http://www.example.com/"));
+  }
+}
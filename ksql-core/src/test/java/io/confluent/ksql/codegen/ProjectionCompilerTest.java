@@ -0,0 +1,268 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.codegen;
+
+import io.confluent.ksql.analyzer.Analysis;
+import io.confluent.ksql.analyzer.AnalysisContext;
+import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.function.KsqlFunctions;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.util.KsqlException;
+import io.confluent.ksql.util.KsqlTestUtil;
+import io.confluent.ksql.util.Pair;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ProjectionCompilerTest {
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+  private MetaStore metaStore;
+  private Schema schema;
+
+  @Before
+  public void init() {
+    metaStore = KsqlTestUtil.getNewMetaStore();
+    schema = SchemaBuilder.struct()
+        .field("TEST1.COL0", SchemaBuilder.INT64_SCHEMA)
+        .field("TEST1.COL1", SchemaBuilder.STRING_SCHEMA)
+        .field("TEST1.COL2", SchemaBuilder.STRING_SCHEMA)
+        .field("TEST1.COL3", SchemaBuilder.FLOAT64_SCHEMA);
+  }
+
+  private Analysis analyze(String queryStr) {
+    List<Statement> statements = KSQL_PARSER.buildAst(queryStr, metaStore);
+    Analysis analysis = new Analysis();
+    Analyzer analyzer = new Analyzer(analysis, metaStore);
+    analyzer.process(statements.get(0), new AnalysisContext(null, null));
+    return analysis;
+  }
+
+  private List<Pair<String, Expression>> analyzeSelect(String queryStr) {
+    Analysis analysis = analyze(queryStr);
+    List<Pair<String, Expression>> expressionPairList = new ArrayList<>();
+    for (int i = 0; i < analysis.getSelectExpressions().size(); i++) {
+      expressionPairList.add(new Pair<>(analysis.getSelectExpressionAlias().get(i),
+                                        analysis.getSelectExpressions().get(i)));
+    }
+    return expressionPairList;
+  }
+
+  @Test
+  public void testProjectExpressions() throws Exception {
+    String selectQuery = "SELECT col0, LEN(UCASE(col2)), col3*3+5, col0*25 FROM test1;";
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(analyzeSelect(selectQuery));
+
+    Assert.assertTrue(rowProjection.getResultSchema().fields().size() == 4);
+    Assert.assertTrue(rowProjection.getResultSchema().fields().get(1).schema()
+                      == Schema.INT32_SCHEMA);
+
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "hello", 2.0)));
+    Assert.assertTrue(result.getColumns().size() == 4);
+    Assert.assertTrue(((Long) result.getColumns().get(0)) == 10L);
+    Assert.assertTrue(((Integer) result.getColumns().get(1)) == 5);
+    Assert.assertTrue(((Double) result.getColumns().get(2)) == 11.0);
+    Assert.assertTrue(((Long) result.getColumns().get(3)) == 250L);
+  }
+
+  @Test
+  public void testFailedColumnIsNull() throws Exception {
+    String selectQuery = "SELECT col0, LEN(col2) FROM test1;";
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(analyzeSelect(selectQuery));
+
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", null, 2.0)));
+    Assert.assertTrue(((Long) result.getColumns().get(0)) == 10L);
+    Assert.assertNull(result.getColumns().get(1));
+  }
+
+  @Test
+  public void testColumnReferencesAndLiteralsAreNotCompiled() throws Exception {
+    String selectQuery = "SELECT col3, col0, 'constant', 42 FROM test1;";
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(analyzeSelect(selectQuery));
+    Assert.assertTrue(rowProjection instanceof CopyRowProjection);
+
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "hello", 2.0)));
+    Assert.assertTrue(result.getColumns().size() == 4);
+    Assert.assertTrue(((Double) result.getColumns().get(0)) == 2.0);
+    Assert.assertTrue(((Long) result.getColumns().get(1)) == 10L);
+    Assert.assertTrue(result.getColumns().get(2).equals("constant"));
+    Assert.assertTrue(((Long) result.getColumns().get(3)) == 42L);
+  }
+
+  @Test
+  public void testFilterAndCommonSubexpressions() throws Exception {
+    String selectQuery = "SELECT LEN(UCASE(col2)), UCASE(col2) FROM test1 "
+                         + "WHERE UCASE(col2) = 'HELLO' AND col0 > 2 * 5;";
+    Expression filter = analyze(selectQuery).getWhereExpression();
+    List<Pair<String, Expression>> expressionPairList = analyzeSelect(selectQuery);
+
+    SubexpressionEliminator eliminator = new SubexpressionEliminator(
+        filter, Arrays.asList(expressionPairList.get(0).getRight(),
+                              expressionPairList.get(1).getRight()));
+    Assert.assertEquals(1, eliminator.getSubexpressions().size());
+    Assert.assertTrue(eliminator.getSubexpressions().get(0).isEvaluatedByFilter());
+
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(filter, expressionPairList);
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(20L, "one", "hello", 2.0)));
+    Assert.assertTrue(((Integer) result.getColumns().get(0)) == 5);
+    Assert.assertEquals("HELLO", result.getColumns().get(1));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(20L, "one", "bye", 2.0))));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(5L, "one", "hello", 2.0))));
+  }
+
+  @Test
+  public void testConditionalSubexpressionIsNotShared() throws Exception {
+    String selectQuery = "SELECT LEN(col2) FROM test1 WHERE col0 > 5 OR LEN(col2) > 3;";
+    Expression filter = analyze(selectQuery).getWhereExpression();
+    List<Pair<String, Expression>> expressionPairList = analyzeSelect(selectQuery);
+
+    SubexpressionEliminator eliminator = new SubexpressionEliminator(
+        filter, Arrays.asList(expressionPairList.get(0).getRight()));
+    Assert.assertTrue(eliminator.getSubexpressions().isEmpty());
+
+    RowProjection rowProjection =
+        new ProjectionCompiler(schema).compile(filter, expressionPairList);
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "hi", 2.0)));
+    Assert.assertTrue(((Integer) result.getColumns().get(0)) == 2);
+  }
+
+  @Test
+  public void testTypedUdfCalls() throws Exception {
+    Assert.assertTrue(KsqlFunctions.getFunction("SUBSTRING")
+                          .getTypedEvaluateMethod(Arrays.<Class>asList(String.class, Long.class))
+                          .isPresent());
+    Assert.assertFalse(KsqlFunctions.getFunction("LEN")
+                           .getTypedEvaluateMethod(Arrays.<Class>asList(Long.class))
+                           .isPresent());
+
+    String selectQuery = "SELECT ABS(col3), ROUND(col3), SUBSTRING(col2, 1, 3), "
+                         + "CONCAT(col1, col2), LEN(col2) FROM test1 WHERE LEN(col2) IS NOT NULL;";
+    RowProjection rowProjection = new ProjectionCompiler(schema).compile(
+        analyze(selectQuery).getWhereExpression(), analyzeSelect(selectQuery));
+
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "hello", -2.6)));
+    Assert.assertTrue(((Double) result.getColumns().get(0)) == 2.6);
+    Assert.assertTrue(((Long) result.getColumns().get(1)) == -3L);
+    Assert.assertEquals("el", result.getColumns().get(2));
+    Assert.assertEquals("onehello", result.getColumns().get(3));
+    Assert.assertTrue(((Integer) result.getColumns().get(4)) == 5);
+  }
+
+  @Test
+  public void testLikeAndRegexpFilters() throws Exception {
+    String selectQuery = "SELECT REGEXP_EXTRACT(col2, '/p/([0-9]+)', 1) FROM test1 "
+                         + "WHERE col2 LIKE '%/p/_%' AND col2 RLIKE '\\d$';";
+    RowProjection rowProjection = new ProjectionCompiler(schema).compile(
+        analyze(selectQuery).getWhereExpression(), analyzeSelect(selectQuery));
+
+    GenericRow result = rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "http://a.com/p/42", 2.0)));
+    Assert.assertEquals("42", result.getColumns().get(0));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "http://a.com/p/", 2.0))));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(10L, "one", "http://a.com/p/42/x", 2.0))));
+  }
+
+  @Test
+  public void testInvalidRegexpLiteralFailsCompilation() throws Exception {
+    String[] selectQueries = {
+        "SELECT col0 FROM test1 WHERE col2 RLIKE '(a';",
+        "SELECT REGEXP_EXTRACT(col2, '[a') FROM test1;"
+    };
+    for (String selectQuery : selectQueries) {
+      try {
+        new ProjectionCompiler(schema).compile(
+            analyze(selectQuery).getWhereExpression(), analyzeSelect(selectQuery));
+        Assert.fail("Expected compilation to fail: " + selectQuery);
+      } catch (KsqlException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid regular expression"));
+      }
+    }
+  }
+
+  @Test
+  public void testPatternsShareGeneratedCode() throws Exception {
+    String selectQueryA = "SELECT col0 FROM test1 WHERE col2 LIKE 'a%';";
+    String selectQueryB = "SELECT col0 FROM test1 WHERE col2 LIKE 'b%';";
+    RowProjection rowProjectionA = new ProjectionCompiler(schema).compile(
+        analyze(selectQueryA).getWhereExpression(), analyzeSelect(selectQueryA));
+    RowProjection rowProjectionB = new ProjectionCompiler(schema).compile(
+        analyze(selectQueryB).getWhereExpression(), analyzeSelect(selectQueryB));
+
+    Assert.assertSame(rowProjectionA.getClass(), rowProjectionB.getClass());
+    GenericRow row = new GenericRow(Arrays.<Object>asList(10L, "one", "apple", 2.0));
+    Assert.assertNotNull(rowProjectionA.project(row));
+    Assert.assertNull(rowProjectionB.project(row));
+  }
+
+  @Test
+  public void testValueSetsShareGeneratedCode() throws Exception {
+    String selectQueryA = "SELECT col0 FROM test1 WHERE col0 IN (1, 2) AND col1 IN ('one');";
+    String selectQueryB = "SELECT col0 FROM test1 WHERE col0 IN (3, 4) AND col1 IN ('one');";
+    RowProjection rowProjectionA = new ProjectionCompiler(schema).compile(
+        analyze(selectQueryA).getWhereExpression(), analyzeSelect(selectQueryA));
+    RowProjection rowProjectionB = new ProjectionCompiler(schema).compile(
+        analyze(selectQueryB).getWhereExpression(), analyzeSelect(selectQueryB));
+
+    Assert.assertSame(rowProjectionA.getClass(), rowProjectionB.getClass());
+    GenericRow row = new GenericRow(Arrays.<Object>asList(2L, "one", "a", 2.0));
+    Assert.assertNotNull(rowProjectionA.project(row));
+    Assert.assertNull(rowProjectionB.project(row));
+  }
+
+  @Test
+  public void testInAndBetweenFilters() throws Exception {
+    String selectQuery = "SELECT col0 FROM test1 WHERE col0 IN (1, 2.0, 3.5, 7) "
+                         + "AND col1 IN ('one', 'two') AND col3 BETWEEN 1 AND col0 * 2.0;";
+    RowProjection rowProjection = new ProjectionCompiler(schema).compile(
+        analyze(selectQuery).getWhereExpression(), analyzeSelect(selectQuery));
+
+    Assert.assertNotNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(2L, "one", "a", 4.0))));
+    Assert.assertNotNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(7L, "two", "a", 1.0))));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(3L, "one", "a", 2.0))));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(1L, "three", "a", 1.0))));
+    Assert.assertNull(rowProjection.project(
+        new GenericRow(Arrays.<Object>asList(1L, "one", "a", 2.5))));
+  }
+}
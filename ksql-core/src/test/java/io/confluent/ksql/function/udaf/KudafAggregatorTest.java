@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.function.udaf;
+
+import io.confluent.ksql.function.KsqlAggregateFunction;
+import io.confluent.ksql.function.udaf.count.CountKudaf;
+import io.confluent.ksql.function.udaf.max.DoubleMaxKudaf;
+import io.confluent.ksql.function.udaf.sum.LongSumKudaf;
+import io.confluent.ksql.physical.GenericRow;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class KudafAggregatorTest {
+
+  private KudafAggregator aggregator;
+  private KudafInitializer initializer;
+
+  @Before
+  public void before() {
+    // Value row: KEY, UNITS, PRICE. Aggregate row: KEY, COUNT(KEY), SUM(UNITS), MAX(PRICE).
+    Map<Integer, Integer> aggValToValColumnMap = new HashMap<>();
+    aggValToValColumnMap.put(0, 0);
+    Map<Integer, KsqlAggregateFunction> aggValToAggFunctionMap = new HashMap<>();
+    aggValToAggFunctionMap.put(1, new CountKudaf(0));
+    aggValToAggFunctionMap.put(2, new LongSumKudaf(1));
+    aggValToAggFunctionMap.put(3, new DoubleMaxKudaf(2));
+
+    aggregator = new KudafAggregator(aggValToAggFunctionMap, aggValToValColumnMap);
+    initializer = new KudafInitializer(Arrays.asList(null, 0L, 0L, Double.MIN_VALUE));
+  }
+
+  @Test
+  public void shouldAggregateRows() {
+    GenericRow aggRow = initializer.apply();
+    aggRow = aggregator.apply("k", new GenericRow(Arrays.<Object>asList("k", 10L, 2.5)), aggRow);
+    aggRow = aggregator.apply("k", new GenericRow(Arrays.<Object>asList("k", 5L, 7.5)), aggRow);
+    aggRow = aggregator.apply("k", new GenericRow(Arrays.<Object>asList("k", null, 1.0)), aggRow);
+
+    Assert.assertEquals("k", aggRow.getColumns().get(0));
+    Assert.assertEquals(3L, aggRow.getColumns().get(1));
+    Assert.assertEquals(15L, aggRow.getColumns().get(2));
+    Assert.assertEquals(7.5, aggRow.getColumns().get(3));
+  }
+
+  @Test
+  public void shouldMergeSessionAggregates() {
+    GenericRow aggRowOne = aggregator.apply(
+        "k", new GenericRow(Arrays.<Object>asList("k", 10L, 2.5)), initializer.apply());
+    GenericRow aggRowTwo = aggregator.apply(
+        "k", new GenericRow(Arrays.<Object>asList("k", 5L, 7.5)), initializer.apply());
+
+    GenericRow merged = aggregator.getMerger().apply("k", aggRowOne, aggRowTwo);
+
+    Assert.assertEquals(Arrays.<Object>asList("k", 2L, 15L, 7.5), merged.getColumns());
+  }
+}
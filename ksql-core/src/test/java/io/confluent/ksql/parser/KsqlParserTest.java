@@ -256,6 +256,34 @@ public class KsqlParserTest {
     Assert.assertTrue("testLeftJoinWithFilter fails", querySpecification.getWhere().get().toString().equalsIgnoreCase("(T2.COL2 = 'test')"));
   }
 
+  @Test
+  public void testWindowedJoin() throws Exception {
+    String
+        queryStr =
+        "SELECT t1.col1, t2.col1 FROM test1 t1 FULL OUTER JOIN test1 t2 WITHIN 10 SECONDS ON "
+        + "t1.col1 = t2.col1;";
+    Statement statement = KSQL_PARSER.buildAst(queryStr, metaStore).get(0);
+    Assert.assertTrue("testWindowedJoin fails", statement instanceof Query);
+    QuerySpecification querySpecification =
+        (QuerySpecification) ((Query) statement).getQueryBody();
+    Join join = (Join) querySpecification.getFrom().get();
+    Assert.assertEquals(Join.Type.FULL, join.getType());
+    Assert.assertTrue("testWindowedJoin fails", join.getWithin().isPresent());
+    Assert.assertEquals(10000L, join.getWithin().get().getSizeInMillis());
+    Assert.assertTrue("testWindowedJoin fails",
+                      SqlFormatter.formatSql(statement).contains("WITHIN 10 SECOND"));
+  }
+
+  @Test
+  public void testWithinIsNotReserved() throws Exception {
+    String queryStr = "SELECT col1 AS within FROM test1;";
+    Statement statement = KSQL_PARSER.buildAst(queryStr, metaStore).get(0);
+    QuerySpecification querySpecification =
+        (QuerySpecification) ((Query) statement).getQueryBody();
+    SingleColumn column = (SingleColumn) querySpecification.getSelect().getSelectItems().get(0);
+    Assert.assertEquals("WITHIN", column.getAlias().get());
+  }
+
   @Test
   public void testSelectAll() throws Exception {
     String queryStr = "SELECT * FROM test1 t1;";
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.physical;
+
+import io.confluent.ksql.analyzer.AggregateAnalysis;
+import io.confluent.ksql.analyzer.AggregateAnalyzer;
+import io.confluent.ksql.analyzer.Analysis;
+import io.confluent.ksql.analyzer.AnalysisContext;
+import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.metastore.KsqlStream;
+import io.confluent.ksql.metastore.KsqlTopic;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.rewrite.AggregateExpressionRewriter;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.ExpressionTreeRewriter;
+import io.confluent.ksql.parser.tree.QualifiedName;
+import io.confluent.ksql.parser.tree.QualifiedNameReference;
+import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.planner.LogicalPlanner;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.PlanNodeId;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
+import io.confluent.ksql.serde.ColumnPushdown;
+import io.confluent.ksql.serde.json.KsqlJsonTopicSerDe;
+import io.confluent.ksql.util.KsqlTestUtil;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+public class ColumnPushdownAnalyzerTest {
+
+  // Value columns of EVENTS, in schema order.
+  private static final int EVENTTIME = 0;
+  private static final int ID = 1;
+  private static final int NAME = 2;
+  private static final int AMOUNT = 3;
+  private static final int PRICE = 4;
+  private static final int TAGS = 5;
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+
+  private MetaStore metaStore;
+
+  @Before
+  public void init() {
+    metaStore = KsqlTestUtil.getNewMetaStore();
+
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct()
+        .field("EVENTTIME", SchemaBuilder.INT64_SCHEMA)
+        .field("ID", SchemaBuilder.INT64_SCHEMA)
+        .field("NAME", SchemaBuilder.STRING_SCHEMA)
+        .field("AMOUNT", SchemaBuilder.INT32_SCHEMA)
+        .field("PRICE", SchemaBuilder.FLOAT64_SCHEMA)
+        .field("TAGS", SchemaBuilder.STRING_SCHEMA);
+    KsqlTopic ksqlTopic = new KsqlTopic("EVENTS", "events", new KsqlJsonTopicSerDe(null));
+    KsqlStream ksqlStream = new KsqlStream("EVENTS", schemaBuilder, schemaBuilder.field("ID"),
+                                           schemaBuilder.field("EVENTTIME"), ksqlTopic);
+    metaStore.putTopic(ksqlTopic);
+    metaStore.putSource(ksqlStream);
+  }
+
+  private PlanNode buildLogicalPlan(String queryStr) {
+    List<Statement> statements = KSQL_PARSER.buildAst(queryStr, metaStore);
+    Analysis analysis = new Analysis();
+    Analyzer analyzer = new Analyzer(analysis, metaStore);
+    analyzer.process(statements.get(0), new AnalysisContext(null, null));
+
+    AggregateAnalysis aggregateAnalysis = new AggregateAnalysis();
+    AggregateAnalyzer aggregateAnalyzer =
+        new AggregateAnalyzer(aggregateAnalysis, metaStore, analysis);
+    AggregateExpressionRewriter aggregateExpressionRewriter = new AggregateExpressionRewriter();
+    for (Expression expression: analysis.getSelectExpressions()) {
+      aggregateAnalyzer.process(expression, new AnalysisContext(null, null));
+      if (!aggregateAnalyzer.isHasAggregateFunction()) {
+        aggregateAnalysis.getNonAggResultColumns().add(expression);
+      }
+      aggregateAnalysis.getFinalSelectExpressions().add(
+          ExpressionTreeRewriter.rewriteWith(aggregateExpressionRewriter, expression));
+      aggregateAnalyzer.setHasAggregateFunction(false);
+    }
+    return new LogicalPlanner(analysis, aggregateAnalysis).buildPlan();
+  }
+
+  private ColumnPushdown analyze(String queryStr) {
+    Optional<ColumnPushdown> pushdown = ColumnPushdownAnalyzer.analyze(buildLogicalPlan(queryStr));
+    Assert.assertTrue(pushdown.isPresent());
+    return pushdown.get();
+  }
+
+  @Test
+  public void testFilterAndProjectionColumnsAreRequired() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT name FROM events WHERE amount > 2;");
+
+    Assert.assertEquals(6, pushdown.getColumnCount());
+    Assert.assertTrue(pushdown.isRequired(NAME));
+    Assert.assertTrue(pushdown.isRequired(AMOUNT));
+    Assert.assertFalse(pushdown.isRequired(PRICE));
+    Assert.assertFalse(pushdown.isRequired(TAGS));
+  }
+
+  @Test
+  public void testKeyAndTimestampColumnsAreAlwaysRequired() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT name FROM events;");
+
+    Assert.assertTrue(pushdown.isRequired(ID));
+    Assert.assertTrue(pushdown.isRequired(EVENTTIME));
+    Assert.assertTrue(pushdown.isRequired(NAME));
+    Assert.assertFalse(pushdown.isRequired(AMOUNT));
+    Assert.assertFalse(pushdown.hasPredicates());
+  }
+
+  @Test
+  public void testAggregationColumnsAreRequired() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT name, SUM(price) FROM events GROUP BY name;");
+
+    Assert.assertTrue(pushdown.isRequired(NAME));
+    Assert.assertTrue(pushdown.isRequired(PRICE));
+    Assert.assertTrue(pushdown.isRequired(ID));
+    Assert.assertTrue(pushdown.isRequired(EVENTTIME));
+    Assert.assertFalse(pushdown.isRequired(AMOUNT));
+    Assert.assertFalse(pushdown.isRequired(TAGS));
+  }
+
+  @Test
+  public void testNothingIsPushedDownForTables() throws Exception {
+    PlanNode plan = buildLogicalPlan("SELECT col1 FROM test2;");
+
+    Assert.assertFalse(ColumnPushdownAnalyzer.analyze(plan).isPresent());
+  }
+
+  @Test
+  public void testNothingIsPushedDownForJoins() throws Exception {
+    PlanNode plan = buildLogicalPlan(
+        "SELECT t1.col1, t2.col1 FROM test1 t1 LEFT JOIN test2 t2 ON t1.col1 = t2.col1;");
+
+    Assert.assertFalse(ColumnPushdownAnalyzer.analyze(plan).isPresent());
+  }
+
+  @Test
+  public void testNothingIsPushedDownForUnresolvedColumns() throws Exception {
+    PlanNode plan = buildLogicalPlan("SELECT name FROM events;");
+    while (!(plan instanceof StructuredDataSourceNode)) {
+      plan = plan.getSources().get(0);
+    }
+    Schema schema = SchemaBuilder.struct().field("MISSING", Schema.STRING_SCHEMA).build();
+    PlanNode projectNode = new ProjectNode(
+        new PlanNodeId("Project"), plan, schema,
+        Collections.singletonList(new QualifiedNameReference(QualifiedName.of("MISSING"))));
+
+    Assert.assertFalse(ColumnPushdownAnalyzer.analyze(projectNode).isPresent());
+  }
+
+  @Test
+  public void testIntColumnIsComparedWithDoubleLiteral() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT name FROM events WHERE amount > 2.5;");
+
+    Assert.assertTrue(pushdown.hasPredicates());
+    Assert.assertTrue(pushdown.accept(AMOUNT, 3));
+    Assert.assertFalse(pushdown.accept(AMOUNT, 2));
+  }
+
+  @Test
+  public void testStringColumnIsOnlyComparedForEquality() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT amount FROM events WHERE name < 'm';");
+
+    Assert.assertTrue(pushdown.isRequired(NAME));
+    Assert.assertFalse(pushdown.hasPredicates());
+    Assert.assertTrue(pushdown.accept(NAME, "z"));
+
+    pushdown = analyze("SELECT amount FROM events WHERE name = 'm';");
+    Assert.assertTrue(pushdown.accept(NAME, "m"));
+    Assert.assertFalse(pushdown.accept(NAME, "z"));
+  }
+
+  @Test
+  public void testLiteralOnTheLeftFlipsTheComparison() throws Exception {
+    ColumnPushdown pushdown = analyze("SELECT name FROM events WHERE 10 < price;");
+
+    Assert.assertTrue(pushdown.accept(PRICE, 11.0));
+    Assert.assertFalse(pushdown.accept(PRICE, 9.0));
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.physical;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class GenericRowTest {
+
+  @Test
+  public void shouldPrependImplicitColumnsToSourceColumns() {
+    ColumnArray columns = GenericRow.newSourceColumns(2);
+    columns.add("a");
+    columns.add(1L);
+    columns.add(0, "key");
+    columns.add(0, 100L);
+    columns.add(0, "extra");
+
+    Assert.assertEquals(Arrays.asList("extra", 100L, "key", "a", 1L), columns);
+    Assert.assertEquals("key", columns.remove(2));
+    Assert.assertEquals("extra", columns.remove(0));
+    Assert.assertEquals(Arrays.asList(100L, "a", 1L), columns);
+  }
+
+  @Test
+  public void shouldShareTheWrappedArray() {
+    Object[] values = new Object[]{"a", 1L};
+    GenericRow row = new GenericRow(values);
+    row.getColumns().set(1, 2L);
+
+    Assert.assertEquals(2L, values[1]);
+    row.getColumns().add("b");
+    Assert.assertEquals(3, row.getColumns().size());
+  }
+
+  @Test
+  public void shouldCompareIntegralColumnsByValue() {
+    List<Object> columns = Arrays.asList("a", 1, new Object[]{"x"});
+    GenericRow row = new GenericRow(columns);
+    GenericRow other = new GenericRow(new Object[]{"a", 1L, new Object[]{"x"}});
+
+    Assert.assertEquals(row, other);
+    Assert.assertEquals(row.hashCode(), other.hashCode());
+    Assert.assertNotEquals(row, new GenericRow(new Object[]{"a", 2L, new Object[]{"x"}}));
+  }
+}
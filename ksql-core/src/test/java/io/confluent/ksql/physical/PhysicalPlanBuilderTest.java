@@ -16,6 +16,7 @@
 
 package io.confluent.ksql.physical;
 
+import io.confluent.ksql.KsqlEngine;
 import io.confluent.ksql.analyzer.AggregateAnalysis;
 import io.confluent.ksql.analyzer.AggregateAnalyzer;
 import io.confluent.ksql.analyzer.Analysis;
@@ -33,14 +34,22 @@ import io.confluent.ksql.structured.SchemaKStream;
 import io.confluent.ksql.structured.SchemaKTable;
 import io.confluent.ksql.util.FakeKafkaTopicClient;
 import io.confluent.ksql.util.KsqlConfig;
+import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.KsqlTestUtil;
+import io.confluent.ksql.util.Pair;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartitionInfo;
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.streams.kstream.JoinWindows;
 import org.apache.kafka.streams.kstream.KStreamBuilder;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +60,8 @@ public class PhysicalPlanBuilderTest {
     KsqlParser ksqlParser;
     PhysicalPlanBuilder physicalPlanBuilder;
     MetaStore metaStore;
+    Map<String, Integer> partitionCounts = new HashMap<>();
+    PartitionedTopicClient topicClient;
 
     @Before
     public void before() {
@@ -63,7 +74,9 @@ public class PhysicalPlanBuilderTest {
         configMap.put("commit.interval.ms", 0);
         configMap.put("cache.max.bytes.buffering", 0);
         configMap.put("auto.offset.reset", "earliest");
-        physicalPlanBuilder = new PhysicalPlanBuilder(kStreamBuilder, new KsqlConfig(configMap), new FakeKafkaTopicClient());
+        topicClient = new PartitionedTopicClient(partitionCounts);
+        physicalPlanBuilder = new PhysicalPlanBuilder(kStreamBuilder, new KsqlConfig(configMap),
+                                                      topicClient);
     }
 
     private SchemaKStream buildPhysicalPlan(String queryStr) throws Exception {
@@ -184,9 +197,166 @@ public class PhysicalPlanBuilderTest {
                                       + ", KSQL_COL_2 : INT64].");
         Assert.assertEquals(lines[1], "\t\t > [ AGGREGATE ] Schema: [TEST1.COL0 : INT64 , TEST1.COL3 : FLOAT64 , KSQL_AGG_VARIABLE_0 : FLOAT64 , KSQL_AGG_VARIABLE_1 : INT64].");
         Assert.assertEquals(lines[2], "\t\t\t\t > [ PROJECT ] Schema: [TEST1.COL0 : INT64 , TEST1.COL3 : FLOAT64].");
-        Assert.assertEquals(lines[3], "\t\t\t\t\t\t > [ REKEY ] Schema: [TEST1.COL0 : INT64 , TEST1.COL1 : STRING , TEST1.COL2 : STRING , TEST1.COL3 : FLOAT64 , TEST1.COL4 : ARRAY , TEST1.COL5 : MAP].");
-        Assert.assertEquals(lines[4], "\t\t\t\t\t\t\t\t > [ FILTER ] Schema: [TEST1.COL0 : INT64 , TEST1.COL1 : STRING , TEST1.COL2 : STRING , TEST1.COL3 : FLOAT64 , TEST1.COL4 : ARRAY , TEST1.COL5 : MAP].");
-        Assert.assertEquals(lines[5], "\t\t\t\t\t\t\t\t\t\t > [ SOURCE ] Schema: [TEST1.COL0 : INT64 , TEST1.COL1 : STRING , TEST1.COL2 : STRING , TEST1.COL3 : FLOAT64 , TEST1.COL4 : ARRAY , TEST1.COL5 : MAP].");
+        // TEST1 is keyed by COL0 already, so grouping by it needs no REKEY.
+        Assert.assertEquals(lines[3], "\t\t\t\t\t\t > [ FILTER ] Schema: [TEST1.COL0 : INT64 , TEST1.COL1 : STRING , TEST1.COL2 : STRING , TEST1.COL3 : FLOAT64 , TEST1.COL4 : ARRAY , TEST1.COL5 : MAP].");
+        Assert.assertEquals(lines[4], "\t\t\t\t\t\t\t\t > [ SOURCE ] Schema: [TEST1.COL0 : INT64 , TEST1.COL1 : STRING , TEST1.COL2 : STRING , TEST1.COL3 : FLOAT64 , TEST1.COL4 : ARRAY , TEST1.COL5 : MAP].");
+    }
+
+    @Test
+    public void testGroupByNonKeyColumnIsRekeyed() throws Exception {
+        String queryString = "SELECT col1, count(col3) FROM test1 GROUP BY col1;";
+        SchemaKStream schemaKStream = buildPhysicalPlan(queryString);
+        String[] lines = schemaKStream.getExecutionPlan("").split("\n");
+        Assert.assertTrue(lines[3].contains("[ REKEY ]"));
+    }
+
+    @Test
+    public void testJoinStateNamesAreGenerated() throws Exception {
+        buildPhysicalPlan("SELECT col1, count(col3) FROM test1 GROUP BY col1;");
+        Assert.assertFalse(physicalPlanBuilder.hasGeneratedStateNames());
+
+        before();
+        buildPhysicalPlan("SELECT t1.col1, t2.col2 FROM test1 t1 LEFT JOIN test2 t2 "
+                          + "ON t1.col1 = t2.col1;");
+        Assert.assertTrue(physicalPlanBuilder.hasGeneratedStateNames());
+
+        before();
+        buildPhysicalPlan("SELECT t1.col1, o.orderunits FROM test1 t1 JOIN orders o "
+                          + "WITHIN 10 SECONDS ON t1.col1 = o.itemid;");
+        Assert.assertTrue(physicalPlanBuilder.hasGeneratedStateNames());
+    }
+
+    @Test
+    public void testRightJoinIsRejected() throws Exception {
+        try {
+            buildPhysicalPlan("SELECT t1.col1, t2.col2 FROM test1 t1 RIGHT JOIN test2 t2 "
+                              + "ON t1.col1 = t2.col1;");
+            Assert.fail();
+        } catch (KsqlException e) {
+            Assert.assertEquals("Join type is not supportd yet: RIGHT", e.getMessage());
+        }
+
+        before();
+        try {
+            buildPhysicalPlan("SELECT t1.col1, o.orderunits FROM test1 t1 RIGHT JOIN orders o "
+                              + "WITHIN 10 SECONDS ON t1.col1 = o.itemid;");
+            Assert.fail();
+        } catch (KsqlException e) {
+            Assert.assertEquals("Join type is not supportd yet: RIGHT", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testJoinWindowsAreRetainedForTwiceTheWindow() throws Exception {
+        JoinWindows joinWindows = physicalPlanBuilder.getJoinWindows(10000L);
+        Assert.assertEquals(10000L, joinWindows.beforeMs);
+        Assert.assertEquals(10000L, joinWindows.afterMs);
+        Assert.assertEquals(KsqlConfig.KSQL_JOIN_WINDOW_RETENTION_MS_DEFAULT,
+                            joinWindows.maintainMs());
+
+        long windowMs = KsqlConfig.KSQL_JOIN_WINDOW_RETENTION_MS_DEFAULT;
+        Assert.assertEquals(2 * windowMs,
+                            physicalPlanBuilder.getJoinWindows(windowMs).maintainMs());
+    }
+
+    @Test
+    public void testStreamsWithDifferentPartitionCountsAreRepartitioned() throws Exception {
+        String queryString = "SELECT t1.col1, o.orderunits FROM test1 t1 JOIN orders o "
+                             + "WITHIN 10 SECONDS ON t1.col0 = o.ordertime;";
+        partitionCounts.put("test1", 4);
+        partitionCounts.put("orders_topic", 4);
+        String executionPlan = buildPhysicalPlan(queryString).getExecutionPlan("");
+        Assert.assertFalse(executionPlan.contains("[ REKEY ]"));
+        // Both topics are described with one request.
+        Assert.assertEquals(1, topicClient.describeRequests);
+
+        before();
+        partitionCounts.put("orders_topic", 2);
+        executionPlan = buildPhysicalPlan(queryString).getExecutionPlan("");
+        Assert.assertEquals(executionPlan.indexOf("[ REKEY ]"),
+                            executionPlan.lastIndexOf("[ REKEY ]"));
+        Assert.assertTrue(executionPlan.contains("[ REKEY ]"));
+    }
+
+    @Test
+    public void testStreamWithDifferentPartitionCountFromTableIsRepartitioned() throws Exception {
+        String queryString = "SELECT t1.col1, t2.col2 FROM test1 t1 JOIN test2 t2 "
+                             + "ON t1.col0 = t2.col0;";
+        partitionCounts.put("test1", 4);
+        partitionCounts.put("test2", 4);
+        buildPhysicalPlan(queryString);
+        Assert.assertFalse(physicalPlanBuilder.hasGeneratedStateNames());
+
+        before();
+        partitionCounts.put("test2", 2);
+        String executionPlan = buildPhysicalPlan(queryString).getExecutionPlan("");
+        Assert.assertTrue(executionPlan.contains("[ REKEY ]"));
+        Assert.assertTrue(physicalPlanBuilder.hasGeneratedStateNames());
+    }
+
+    private PlanNode buildLogicalPlan(String queryStr) {
+        KsqlEngine ksqlEngine = new KsqlEngine(new KsqlConfig(Collections.emptyMap()),
+                                               new FakeKafkaTopicClient());
+        ksqlEngine.getMetaStore().putAll(metaStore);
+        List<Pair<String, Statement>> statements =
+            ksqlEngine.parseQueries(queryStr, Collections.emptyMap(), ksqlEngine.getMetaStore());
+        return ksqlEngine.getQueryEngine()
+            .buildLogicalPlans(ksqlEngine.getMetaStore(), statements).get(0).getRight();
+    }
+
+    @Test
+    public void testStatelessStreamQueriesAreBatchable() throws Exception {
+        Assert.assertTrue(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE STREAM s1 AS SELECT col0, col3 * 2 FROM test1 WHERE col0 > 10;")));
+        Assert.assertTrue(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE STREAM s2 AS SELECT col0, col2 FROM test1;")));
+    }
+
+    @Test
+    public void testOtherQueriesAreNotBatchable() throws Exception {
+        // Written to the client rather than to a topic
+        Assert.assertFalse(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "SELECT col0 FROM test1 WHERE col0 > 10;")));
+        Assert.assertFalse(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE STREAM s1 AS SELECT col0, col1 FROM test1 PARTITION BY col1;")));
+        Assert.assertFalse(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE TABLE t1 AS SELECT col1, COUNT(col3) FROM test1 GROUP BY col1;")));
+        Assert.assertFalse(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE TABLE t2 AS SELECT col0, col1 FROM test2;")));
+        Assert.assertFalse(PhysicalPlanBuilder.isBatchable(buildLogicalPlan(
+            "CREATE STREAM s2 AS SELECT t1.col1, t2.col2 FROM test1 t1 LEFT JOIN test2 t2 "
+            + "ON t1.col1 = t2.col1;")));
+    }
+
+    /**
+     * Describes the topics with the partition counts of the test, and no others.
+     */
+    private static class PartitionedTopicClient extends FakeKafkaTopicClient {
+        private final Map<String, Integer> partitionCounts;
+        int describeRequests;
+
+        PartitionedTopicClient(Map<String, Integer> partitionCounts) {
+            this.partitionCounts = partitionCounts;
+        }
+
+        @Override
+        public Map<String, TopicDescription> describeTopics(Collection<String> topicNames) {
+            describeRequests++;
+            Map<String, TopicDescription> descriptions = new HashMap<>();
+            for (String topicName : topicNames) {
+                Integer partitionCount = partitionCounts.get(topicName);
+                if (partitionCount == null) {
+                    continue;
+                }
+                List<TopicPartitionInfo> partitions = new ArrayList<>();
+                for (int i = 0; i < partitionCount; i++) {
+                    partitions.add(new TopicPartitionInfo(i, null, Collections.emptyList(),
+                                                          Collections.emptyList()));
+                }
+                descriptions.put(topicName, new TopicDescription(topicName, false, partitions));
+            }
+            return descriptions;
+        }
     }
 
 }
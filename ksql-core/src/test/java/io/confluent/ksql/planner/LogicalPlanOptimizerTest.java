@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.planner;
+
+import io.confluent.ksql.analyzer.AggregateAnalysis;
+import io.confluent.ksql.analyzer.AggregateAnalyzer;
+import io.confluent.ksql.analyzer.Analysis;
+import io.confluent.ksql.analyzer.AnalysisContext;
+import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.tree.ArithmeticBinaryExpression;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.LongLiteral;
+import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.planner.plan.FilterNode;
+import io.confluent.ksql.planner.plan.JoinNode;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.planner.plan.StructuredDataSourceNode;
+import io.confluent.ksql.util.KsqlTestUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class LogicalPlanOptimizerTest {
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+
+  private MetaStore metaStore;
+
+  @Before
+  public void init() {
+    metaStore = KsqlTestUtil.getNewMetaStore();
+  }
+
+  private PlanNode buildOptimizedPlan(String queryStr) {
+    List<Statement> statements = KSQL_PARSER.buildAst(queryStr, metaStore);
+    Analysis analysis = new Analysis();
+    Analyzer analyzer = new Analyzer(analysis, metaStore);
+    analyzer.process(statements.get(0), new AnalysisContext(null, null));
+    AggregateAnalysis aggregateAnalysis = new AggregateAnalysis();
+    AggregateAnalyzer aggregateAnalyzer =
+        new AggregateAnalyzer(aggregateAnalysis, metaStore, analysis);
+    for (Expression expression: analysis.getSelectExpressions()) {
+      aggregateAnalyzer.process(expression, new AnalysisContext(null, null));
+    }
+    PlanNode logicalPlan = new LogicalPlanner(analysis, aggregateAnalysis).buildPlan();
+    return LogicalPlanOptimizer.optimize(logicalPlan);
+  }
+
+  @Test
+  public void testConstantFolding() throws Exception {
+    PlanNode logicalPlan = buildOptimizedPlan(
+        "SELECT col0, col0 * (2 + 3) FROM test1 WHERE col0 > 1000 * 60 AND 1 < 2;");
+
+    ProjectNode projectNode = (ProjectNode) logicalPlan.getSources().get(0);
+    Expression product = projectNode.getProjectExpressions().get(1);
+    Assert.assertTrue(product instanceof ArithmeticBinaryExpression);
+    Assert.assertEquals(new LongLiteral("5"), ((ArithmeticBinaryExpression) product).getRight());
+
+    FilterNode filterNode = (FilterNode) projectNode.getSources().get(0);
+    Assert.assertTrue(filterNode.getPredicate().toString().endsWith("> 60000)"));
+    Assert.assertTrue(filterNode.getSource() instanceof StructuredDataSourceNode);
+  }
+
+  @Test
+  public void testFilterPushdownAndPruningBelowJoin() throws Exception {
+    PlanNode logicalPlan = buildOptimizedPlan(
+        "SELECT t1.col1, t2.col1, t1.col3, t2.col2 FROM test1 t1 JOIN test2 t2 ON "
+        + "t1.col1 = t2.col1 WHERE t1.col0 > 100 AND t2.col3 = 10.8 AND t1.col2 = t2.col2;");
+
+    ProjectNode projectNode = (ProjectNode) logicalPlan.getSources().get(0);
+    Assert.assertEquals(4, projectNode.getSchema().fields().size());
+    FilterNode filterNode = (FilterNode) projectNode.getSource();
+    Assert.assertTrue(filterNode.getPredicate().toString()
+                          .equalsIgnoreCase("(T1.COL2 = T2.COL2)"));
+
+    JoinNode joinNode = (JoinNode) filterNode.getSource();
+    // The stream keeps its key COL0 and COL1 to COL3. The table keeps its key COL0, the join
+    // column COL1 and COL2; its COL3 is only read by the filter pushed down below the join.
+    Assert.assertEquals(7, joinNode.getSchema().fields().size());
+    Assert.assertNotNull(joinNode.getKeyField());
+
+    ProjectNode leftProject = (ProjectNode) joinNode.getLeft();
+    Assert.assertEquals(4, leftProject.getSchema().fields().size());
+    FilterNode leftFilter = (FilterNode) leftProject.getSource();
+    Assert.assertTrue(leftFilter.getPredicate().toString().equalsIgnoreCase("(COL0 > 100)"));
+    Assert.assertTrue(leftFilter.getSource() instanceof StructuredDataSourceNode);
+
+    ProjectNode rightProject = (ProjectNode) joinNode.getRight();
+    Assert.assertEquals(3, rightProject.getSchema().fields().size());
+    Assert.assertNull(rightProject.getSchema().field("COL3"));
+    FilterNode rightFilter = (FilterNode) rightProject.getSource();
+    Assert.assertTrue(rightFilter.getPredicate().toString().equalsIgnoreCase("(COL3 = 10.8)"));
+  }
+
+  @Test
+  public void testEqualityChainBecomesInList() throws Exception {
+    PlanNode logicalPlan = buildOptimizedPlan(
+        "SELECT col0 FROM test1 WHERE col1 = 'a' OR col0 = 1 OR 'b' = col1 OR col1 = 'c' "
+        + "OR col0 = 2;");
+
+    ProjectNode projectNode = (ProjectNode) logicalPlan.getSources().get(0);
+    FilterNode filterNode = (FilterNode) projectNode.getSource();
+    Assert.assertTrue(filterNode.getPredicate().toString().equalsIgnoreCase(
+        "(((COL1 IN ('a', 'b', 'c')) OR (COL0 = 1)) OR (COL0 = 2))"));
+  }
+}
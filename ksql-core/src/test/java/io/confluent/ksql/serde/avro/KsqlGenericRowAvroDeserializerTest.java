@@ -0,0 +1,155 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.serde.avro;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class KsqlGenericRowAvroDeserializerTest {
+
+  private static final String AVRO_SCHEMA = "{\"namespace\": \"kql\", \"name\": \"orders\", "
+      + "\"type\": \"record\", \"fields\": ["
+      + "{\"name\": \"ORDERTIME\", \"type\": \"long\"},"
+      + "{\"name\": \"ORDERID\", \"type\": \"int\"},"
+      + "{\"name\": \"ITEMID\", \"type\": \"string\"},"
+      + "{\"name\": \"ORDERUNITS\", \"type\": \"double\"},"
+      + "{\"name\": \"TAGS\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+      + "{\"name\": \"PRICES\", \"type\": {\"type\": \"map\", \"values\": \"double\"}}"
+      + "]}";
+
+  private Schema orderSchema;
+  private Map<String, Object> serdeProps;
+
+  @Before
+  public void before() {
+    orderSchema = SchemaBuilder.struct()
+        .field("ORDERTIME", SchemaBuilder.INT64_SCHEMA)
+        .field("ORDERID", SchemaBuilder.INT32_SCHEMA)
+        .field("ITEMID", SchemaBuilder.STRING_SCHEMA)
+        .field("ORDERUNITS", SchemaBuilder.FLOAT64_SCHEMA)
+        .field("TAGS", SchemaBuilder.array(SchemaBuilder.STRING_SCHEMA))
+        .field("PRICES",
+               SchemaBuilder.map(SchemaBuilder.STRING_SCHEMA, SchemaBuilder.FLOAT64_SCHEMA))
+        .build();
+    serdeProps = Collections.singletonMap(
+        KsqlGenericRowAvroSerializer.AVRO_SERDE_SCHEMA_CONFIG, AVRO_SCHEMA);
+  }
+
+  private GenericRow order(long orderTime, String itemId, String tag, double price) {
+    Map<String, Double> prices = new HashMap<>();
+    prices.put(itemId, price);
+    return new GenericRow(Arrays.<Object>asList(
+        orderTime, 1, itemId, 2.5, new String[]{tag, "all"}, prices));
+  }
+
+  private byte[] serialize(GenericRow row) {
+    KsqlGenericRowAvroSerializer serializer = new KsqlGenericRowAvroSerializer(orderSchema);
+    serializer.configure(serdeProps, false);
+    return serializer.serialize("", row);
+  }
+
+  private KsqlGenericRowAvroDeserializer deserializer(ColumnPushdown pushdown) {
+    KsqlGenericRowAvroDeserializer deserializer =
+        new KsqlGenericRowAvroDeserializer(orderSchema, pushdown);
+    deserializer.configure(serdeProps, false);
+    return deserializer;
+  }
+
+  private static void assertRowEquals(GenericRow expected, GenericRow actual) {
+    Assert.assertEquals(expected.getColumns().size(), actual.getColumns().size());
+    for (int i = 0; i < expected.getColumns().size(); i++) {
+      Object expectedColumn = expected.getColumns().get(i);
+      Object actualColumn = actual.getColumns().get(i);
+      if (expectedColumn instanceof Object[]) {
+        Assert.assertArrayEquals((Object[]) expectedColumn, (Object[]) actualColumn);
+      } else {
+        Assert.assertEquals(expectedColumn, actualColumn);
+      }
+    }
+  }
+
+  @Test
+  public void shouldDeserializeWithoutSchemaRegistryHeader() {
+    GenericRow row = order(1511897796092L, "item_1", "new", 10.25);
+    assertRowEquals(row, deserializer(null).deserialize("", serialize(row)));
+  }
+
+  @Test
+  public void shouldSkipSchemaRegistryHeader() {
+    GenericRow row = order(1511897796092L, "item_1", "new", 10.25);
+    byte[] payload = serialize(row);
+    byte[] framed = new byte[payload.length + 5];
+    framed[4] = 42;
+    System.arraycopy(payload, 0, framed, 5, payload.length);
+
+    assertRowEquals(row, deserializer(null).deserialize("", framed));
+  }
+
+  @Test
+  public void shouldNotShareValuesBetweenRecords() {
+    KsqlGenericRowAvroDeserializer deserializer = deserializer(null);
+    GenericRow first = order(1L, "item_1", "first", 1.0);
+    GenericRow second = order(2L, "item_22", "second", 2.0);
+
+    GenericRow firstResult = deserializer.deserialize("", serialize(first));
+    GenericRow secondResult = deserializer.deserialize("", serialize(second));
+
+    // The record, strings, arrays and maps are reused by the reader for the second message.
+    assertRowEquals(first, firstResult);
+    assertRowEquals(second, secondResult);
+  }
+
+  @Test
+  public void shouldLeaveColumnsThatAreNotRequiredNull() {
+    ColumnPushdown pushdown = new ColumnPushdown(
+        new boolean[]{true, false, true, false, false, true}, Collections.emptyList());
+    GenericRow row = order(1511897796092L, "item_1", "new", 10.25);
+
+    GenericRow result = deserializer(pushdown).deserialize("", serialize(row));
+
+    Assert.assertEquals(1511897796092L, result.getColumns().get(0));
+    Assert.assertNull(result.getColumns().get(1));
+    Assert.assertEquals("item_1", result.getColumns().get(2));
+    Assert.assertNull(result.getColumns().get(3));
+    Assert.assertNull(result.getColumns().get(4));
+    Assert.assertEquals(row.getColumns().get(5), result.getColumns().get(5));
+  }
+
+  @Test
+  public void shouldDropRowsFailingPushedDownPredicates() {
+    ColumnPushdown pushdown = new ColumnPushdown(
+        new boolean[6],
+        Collections.singletonList(
+            new ColumnPushdown.ColumnPredicate(0, ColumnPushdown.Comparison.GREATER_THAN, 5L)));
+    KsqlGenericRowAvroDeserializer deserializer = deserializer(pushdown);
+
+    Assert.assertNull(deserializer.deserialize("", serialize(order(5L, "a", "b", 1.0))));
+    Assert.assertEquals(6L, deserializer.deserialize("", serialize(order(6L, "a", "b", 1.0)))
+        .getColumns().get(0));
+  }
+}
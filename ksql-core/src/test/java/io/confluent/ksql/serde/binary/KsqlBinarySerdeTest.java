@@ -0,0 +1,129 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.serde.binary;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.json.KsqlJsonDeserializer;
+import io.confluent.ksql.util.KsqlException;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class KsqlBinarySerdeTest {
+
+  private Schema schema;
+
+  @Before
+  public void before() {
+    schema = SchemaBuilder.struct()
+        .field("ORDERTIME", SchemaBuilder.INT64_SCHEMA)
+        .field("ORDERID", SchemaBuilder.INT32_SCHEMA)
+        .field("ITEMID", SchemaBuilder.STRING_SCHEMA)
+        .field("ORDERUNITS", SchemaBuilder.FLOAT64_SCHEMA)
+        .field("SHIPPED", SchemaBuilder.BOOLEAN_SCHEMA)
+        .field("ARRAYCOL", SchemaBuilder.array(SchemaBuilder.FLOAT64_SCHEMA))
+        .field("MAPCOL", SchemaBuilder.map(SchemaBuilder.STRING_SCHEMA,
+                                           SchemaBuilder.FLOAT64_SCHEMA))
+        .build();
+  }
+
+  private GenericRow roundTrip(GenericRow row) {
+    byte[] bytes = new KsqlBinarySerializer(schema).serialize("", row);
+    return new KsqlBinaryDeserializer(schema).deserialize("", bytes);
+  }
+
+  @Test
+  public void shouldRoundTripAllTypes() {
+    Map<String, Double> map = new HashMap<>();
+    map.put("key1", 10.0);
+    map.put("key2", null);
+    GenericRow row = new GenericRow(Arrays.<Object>asList(
+        1511897796092L, -1, "Item_\u00e91", 10.25, true, new Double[]{1.0, null, 3.0}, map));
+
+    GenericRow result = roundTrip(row);
+
+    Assert.assertEquals(Arrays.asList(1511897796092L, -1, "Item_\u00e91", 10.25, true),
+                        result.getColumns().subList(0, 5));
+    Assert.assertArrayEquals(new Double[]{1.0, null, 3.0}, (Double[]) result.getColumns().get(5));
+    Assert.assertEquals(map, result.getColumns().get(6));
+  }
+
+  @Test
+  public void shouldRoundTripNulls() {
+    GenericRow row = new GenericRow(Arrays.asList(null, null, null, null, null, null, null));
+    Assert.assertEquals(row.getColumns(), roundTrip(row).getColumns());
+    Assert.assertNull(new KsqlBinarySerializer(schema).serialize("", null));
+    Assert.assertNull(new KsqlBinaryDeserializer(schema).deserialize("", null));
+  }
+
+  @Test
+  public void shouldWriteArraysGivenAsLists() {
+    GenericRow row = new GenericRow(Arrays.<Object>asList(
+        1L, 2, "a", 1.0, false, Arrays.asList(1.5, 2.5), new HashMap<>()));
+
+    Object array = roundTrip(row).getColumns().get(5);
+
+    Assert.assertArrayEquals(new Double[]{1.5, 2.5}, (Double[]) array);
+  }
+
+  @Test
+  public void shouldGrowTheBufferForLargeRows() {
+    char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    String longString = new String(chars);
+    GenericRow large = new GenericRow(Arrays.<Object>asList(
+        1L, 2, longString, 1.0, false, new Double[300], new HashMap<>()));
+
+    GenericRow result = roundTrip(large);
+    Assert.assertEquals(longString, result.getColumns().get(2));
+    Assert.assertEquals(300, ((Double[]) result.getColumns().get(5)).length);
+
+    // The grown buffer is reused for the rows that follow.
+    GenericRow small = new GenericRow(Arrays.<Object>asList(
+        3L, 4, "b", 2.0, true, new Double[]{1.0}, new HashMap<>()));
+    Assert.assertEquals("b", roundTrip(small).getColumns().get(2));
+  }
+
+  @Test
+  public void shouldReadRowsInTheLegacyFormat() {
+    KsqlBinaryDeserializer deserializer =
+        new KsqlBinaryDeserializer(schema, new KsqlJsonDeserializer(schema));
+    String json = "{\"ordertime\": 1, \"orderid\": 2, \"itemid\": \"a\", \"orderunits\": 1.5}";
+
+    GenericRow legacyRow = deserializer.deserialize("", json.getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(Arrays.asList(1L, 2, "a", 1.5),
+                        legacyRow.getColumns().subList(0, 4));
+
+    GenericRow row = new GenericRow(Arrays.<Object>asList(
+        1L, 2, "a", 1.0, false, new Double[0], new HashMap<>()));
+    byte[] bytes = new KsqlBinarySerializer(schema).serialize("", row);
+    Assert.assertEquals("a", deserializer.deserialize("", bytes).getColumns().get(2));
+  }
+
+  @Test(expected = KsqlException.class)
+  public void shouldFailOnRowsWithoutBinaryHeader() {
+    new KsqlBinaryDeserializer(schema).deserialize("", "{}".getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.serde.delimited;
+
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.ColumnPushdown;
+import io.confluent.ksql.util.KsqlException;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class KsqlDelimitedDeserializerTest {
+
+  private Schema orderSchema;
+
+  @Before
+  public void before() {
+    orderSchema = SchemaBuilder.struct()
+        .field("ORDERTIME", SchemaBuilder.INT64_SCHEMA)
+        .field("ORDERID", SchemaBuilder.INT32_SCHEMA)
+        .field("ITEMID", SchemaBuilder.STRING_SCHEMA)
+        .field("ORDERUNITS", SchemaBuilder.FLOAT64_SCHEMA)
+        .field("SHIPPED", SchemaBuilder.BOOLEAN_SCHEMA)
+        .build();
+  }
+
+  @Test
+  public void shouldDeserializeDelimitedCorrectly() {
+    String line = "1511897796092,-1,\"Item, \"\"1\"\"\",10.25,TRUE\n";
+
+    KsqlDelimitedDeserializer deserializer = new KsqlDelimitedDeserializer(orderSchema);
+    GenericRow row = deserializer.deserialize("", line.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertTrue(row.getColumns().size() == 5);
+    Assert.assertTrue((Long) row.getColumns().get(0) == 1511897796092L);
+    Assert.assertTrue((Integer) row.getColumns().get(1) == -1);
+    Assert.assertTrue(row.getColumns().get(2).equals("Item, \"1\""));
+    Assert.assertTrue((Double) row.getColumns().get(3) == 10.25);
+    Assert.assertTrue((Boolean) row.getColumns().get(4));
+  }
+
+  @Test
+  public void shouldRoundTripWithCustomDelimiter() {
+    GenericRow row = new GenericRow(Arrays.<Object>asList(1L, 2, "a|b", 0.1, false));
+
+    KsqlDelimitedSerializer serializer = new KsqlDelimitedSerializer('|');
+    byte[] bytes = serializer.serialize("", row);
+    Assert.assertEquals("1|2|\"a|b\"|0.1|false", new String(bytes, StandardCharsets.UTF_8));
+
+    KsqlDelimitedDeserializer deserializer = new KsqlDelimitedDeserializer(orderSchema, '|');
+    Assert.assertEquals(row.getColumns(), deserializer.deserialize("", bytes).getColumns());
+  }
+
+  @Test
+  public void shouldRoundTripNullColumns() {
+    KsqlDelimitedSerializer serializer = new KsqlDelimitedSerializer();
+    KsqlDelimitedDeserializer deserializer = new KsqlDelimitedDeserializer(orderSchema);
+    for (int i = 0; i < orderSchema.fields().size(); i++) {
+      List<Object> columns = new ArrayList<>(Arrays.<Object>asList(1L, 2, "item", 0.5, true));
+      columns.set(i, null);
+      GenericRow row = new GenericRow(columns);
+      Assert.assertEquals(columns, deserializer.deserialize("", serializer.serialize("", row))
+          .getColumns());
+    }
+
+    GenericRow nullRow = new GenericRow(Arrays.asList(null, null, null, null, null));
+    byte[] bytes = serializer.serialize("", nullRow);
+    Assert.assertEquals(",,,,", new String(bytes, StandardCharsets.UTF_8));
+    Assert.assertEquals(nullRow.getColumns(), deserializer.deserialize("", bytes).getColumns());
+  }
+
+  @Test
+  public void shouldKeepEmptyStringsApartFromNull() {
+    KsqlDelimitedSerializer serializer = new KsqlDelimitedSerializer();
+    GenericRow row = new GenericRow(Arrays.<Object>asList(1L, 2, "", 0.5, true));
+    byte[] bytes = serializer.serialize("", row);
+    Assert.assertEquals("1,2,\"\",0.5,true", new String(bytes, StandardCharsets.UTF_8));
+    Assert.assertEquals(row.getColumns(),
+                        new KsqlDelimitedDeserializer(orderSchema).deserialize("", bytes)
+                            .getColumns());
+  }
+
+  @Test
+  public void shouldRoundTripRowOfOneNullColumn() {
+    KsqlDelimitedSerializer serializer = new KsqlDelimitedSerializer();
+    for (Schema columnSchema : Arrays.asList(Schema.INT32_SCHEMA, Schema.INT64_SCHEMA,
+                                             Schema.FLOAT64_SCHEMA, Schema.BOOLEAN_SCHEMA,
+                                             Schema.STRING_SCHEMA)) {
+      Schema schema = SchemaBuilder.struct().field("COL0", columnSchema).build();
+      byte[] bytes = serializer.serialize("", new GenericRow(Collections.singletonList(null)));
+      Assert.assertEquals(0, bytes.length);
+      Assert.assertEquals(Collections.singletonList(null),
+                          new KsqlDelimitedDeserializer(schema).deserialize("", bytes)
+                              .getColumns());
+    }
+  }
+
+  @Test(expected = KsqlException.class)
+  public void shouldFailOnMissingFields() {
+    new KsqlDelimitedDeserializer(orderSchema)
+        .deserialize("", "1,2,item".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void shouldOnlyDecodeRequiredColumns() {
+    ColumnPushdown pushdown = new ColumnPushdown(
+        new boolean[]{false, true, false, true, false}, Collections.emptyList());
+    KsqlDelimitedDeserializer deserializer =
+        new KsqlDelimitedDeserializer(orderSchema, ',', pushdown);
+    String line = "1511897796092,7,\"Item, \"\"1\"\"\",10.25,TRUE";
+    GenericRow row = deserializer.deserialize("", line.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertEquals(Arrays.<Object>asList(null, 7, null, 10.25, null), row.getColumns());
+  }
+
+  @Test
+  public void shouldDropRowsFailingPushedDownPredicates() {
+    ColumnPushdown pushdown = new ColumnPushdown(
+        new boolean[]{false, false, true, false, false},
+        Arrays.asList(
+            new ColumnPushdown.ColumnPredicate(1, ColumnPushdown.Comparison.GREATER_THAN, 5L),
+            new ColumnPushdown.ColumnPredicate(2, ColumnPushdown.Comparison.EQUAL, "item")));
+    KsqlDelimitedDeserializer deserializer =
+        new KsqlDelimitedDeserializer(orderSchema, ',', pushdown);
+
+    Assert.assertNull(deserializer.deserialize("", "1,5,item,1.0,true".getBytes()));
+    Assert.assertNull(deserializer.deserialize("", "1,6,other,1.0,true".getBytes()));
+    Assert.assertEquals(Arrays.<Object>asList(null, 6, "item", null, null),
+                        deserializer.deserialize("", "1,6,item,1.0,true".getBytes()).getColumns());
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.serde.json;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class KsqlJsonDeserializerTest {
+
+  private Schema orderSchema;
+
+  @Before
+  public void before() {
+    orderSchema = SchemaBuilder.struct()
+        .field("ORDERTIME", SchemaBuilder.INT64_SCHEMA)
+        .field("ORDERID", SchemaBuilder.INT64_SCHEMA)
+        .field("ITEMID", SchemaBuilder.STRING_SCHEMA)
+        .field("ORDERUNITS", SchemaBuilder.FLOAT64_SCHEMA)
+        .field("ARRAYCOL", SchemaBuilder.array(SchemaBuilder.FLOAT64_SCHEMA))
+        .field("MAPCOL", SchemaBuilder.map(SchemaBuilder.STRING_SCHEMA,
+                                           SchemaBuilder.FLOAT64_SCHEMA))
+        .build();
+  }
+
+  @Test
+  public void shouldDeserializeJsonCorrectly() {
+    String json = "{\"ordertime\": 1511897796092, \"@orderid\": 1, \"itemid\": \"Item_1\", "
+                  + "\"orderunits\": 10.0, \"arraycol\": [10.0, 20.0], "
+                  + "\"mapcol\": {\"key1\": 10.0}, "
+                  + "\"unused\": {\"nested\": [1, 2, {\"deeper\": true}]}, \"OrderId\": 4}";
+
+    KsqlJsonDeserializer deserializer = new KsqlJsonDeserializer(orderSchema);
+    GenericRow row = deserializer.deserialize("", json.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertTrue(row.getColumns().size() == 6);
+    Assert.assertTrue((Long) row.getColumns().get(0) == 1511897796092L);
+    Assert.assertTrue((Long) row.getColumns().get(1) == 4L);
+    Assert.assertTrue(row.getColumns().get(2).equals("Item_1"));
+    Assert.assertTrue((Double) row.getColumns().get(3) == 10.0);
+    Assert.assertTrue(((Double[]) row.getColumns().get(4)).length == 2);
+    Assert.assertTrue(((Map) row.getColumns().get(5)).get("key1").equals(10.0));
+  }
+
+  @Test
+  public void shouldLeaveMissingFieldsNull() {
+    String json = "{\"ordertime\": \"1511897796092\", \"itemid\": 12}";
+
+    KsqlJsonDeserializer deserializer = new KsqlJsonDeserializer(orderSchema);
+    GenericRow row = deserializer.deserialize("", json.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertTrue((Long) row.getColumns().get(0) == 1511897796092L);
+    Assert.assertNull(row.getColumns().get(1));
+    Assert.assertTrue(row.getColumns().get(2).equals("12"));
+    Assert.assertNull(row.getColumns().get(3));
+  }
+}
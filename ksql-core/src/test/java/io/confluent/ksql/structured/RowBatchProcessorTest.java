@@ -0,0 +1,169 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.structured;
+
+import io.confluent.ksql.analyzer.AggregateAnalysis;
+import io.confluent.ksql.analyzer.AggregateAnalyzer;
+import io.confluent.ksql.analyzer.Analysis;
+import io.confluent.ksql.analyzer.AnalysisContext;
+import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.codegen.ColumnarPredicate;
+import io.confluent.ksql.codegen.ColumnarPredicateCompiler;
+import io.confluent.ksql.codegen.ProjectionCompiler;
+import io.confluent.ksql.metastore.MetaStore;
+import io.confluent.ksql.parser.KsqlParser;
+import io.confluent.ksql.parser.tree.Expression;
+import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.planner.LogicalPlanner;
+import io.confluent.ksql.planner.plan.FilterNode;
+import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.ProjectNode;
+import io.confluent.ksql.util.KsqlTestUtil;
+import io.confluent.ksql.util.SchemaUtil;
+import org.apache.kafka.connect.data.Schema;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public class RowBatchProcessorTest {
+
+  private static final KsqlParser KSQL_PARSER = new KsqlParser();
+
+  private MetaStore metaStore;
+  private RowBatch batch;
+
+  @Before
+  public void init() {
+    metaStore = KsqlTestUtil.getNewMetaStore();
+    batch = new RowBatch(4);
+  }
+
+  private PlanNode buildLogicalPlan(String queryStr) {
+    List<Statement> statements = KSQL_PARSER.buildAst(queryStr, metaStore);
+    Analysis analysis = new Analysis();
+    Analyzer analyzer = new Analyzer(analysis, metaStore);
+    analyzer.process(statements.get(0), new AnalysisContext(null, null));
+    AggregateAnalysis aggregateAnalysis = new AggregateAnalysis();
+    AggregateAnalyzer aggregateAnalyzer =
+        new AggregateAnalyzer(aggregateAnalysis, metaStore, analysis);
+    for (Expression expression: analysis.getSelectExpressions()) {
+      aggregateAnalyzer.process(expression, new AnalysisContext(null, null));
+    }
+    return new LogicalPlanner(analysis, aggregateAnalysis).buildPlan();
+  }
+
+  /**
+   * Builds the processor the way a batched query does, with the WHERE clause either compiled to
+   * a columnar filter or fused into the projection.
+   */
+  private RowBatchProcessor buildProcessor(String queryStr, boolean columnar) throws Exception {
+    PlanNode logicalPlan = buildLogicalPlan(queryStr);
+    ProjectNode projectNode = (ProjectNode) logicalPlan.getSources().get(0);
+    FilterNode filterNode = (FilterNode) projectNode.getSource();
+    Schema schema = filterNode.getSource().getSchema();
+    Set<Integer> rowkeyIndexes = SchemaUtil.getRowTimeRowKeyIndexes(logicalPlan.getSchema());
+    if (!columnar) {
+      return new RowBatchProcessor(
+          null,
+          new ProjectionCompiler(schema).compile(filterNode.getPredicate(),
+                                                 projectNode.getProjectNameExpressionPairList()),
+          rowkeyIndexes);
+    }
+    Optional<ColumnarPredicate> columnarPredicate =
+        ColumnarPredicateCompiler.compile(filterNode.getPredicate(), schema);
+    Assert.assertTrue(columnarPredicate.isPresent());
+    return new RowBatchProcessor(
+        new SqlPredicate(filterNode.getPredicate(), schema, false),
+        columnarPredicate.get(),
+        new ProjectionCompiler(schema).compile(projectNode.getProjectNameExpressionPairList()),
+        rowkeyIndexes);
+  }
+
+  private void add(String key, Long col0, String col2, Double col3) {
+    batch.add(key, 0L, new GenericRow(
+        Arrays.<Object>asList(0L, key, col0, "c1", col2, col3, null, null)));
+  }
+
+  private void assertBatch(List<String> keys, List<List<Object>> rows) {
+    Assert.assertEquals(keys.size(), batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      Assert.assertEquals(keys.get(i), batch.getKey(i));
+      Assert.assertEquals(rows.get(i), batch.getRow(i).getColumns());
+    }
+  }
+
+  @Test
+  public void testColumnarFilter() throws Exception {
+    RowBatchProcessor processor = buildProcessor(
+        "SELECT col0, col3 FROM test1 WHERE col3 > 2.0 AND col2 = 'on';", true);
+    add("a", 1L, "on", 3.0);
+    add("b", 2L, "off", 3.0);
+    add("c", 3L, "on", 1.0);
+    add("d", 4L, null, 3.0);
+    add("e", 5L, "on", 4.0);
+
+    processor.process(batch);
+
+    assertBatch(Arrays.asList("a", "e"),
+                Arrays.asList(Arrays.<Object>asList(1L, 3.0), Arrays.<Object>asList(5L, 4.0)));
+  }
+
+  @Test
+  public void testColumnarFilterFallsBackToRows() throws Exception {
+    // The columnar loop fails on the division by zero of the second row.
+    RowBatchProcessor processor = buildProcessor(
+        "SELECT col0 FROM test1 WHERE col0 / (col0 - 2) > 0;", true);
+    add("a", 1L, "on", 1.0);
+    add("b", 2L, "on", 2.0);
+    add("c", 3L, "on", 3.0);
+    add("d", 4L, "on", 4.0);
+
+    processor.process(batch);
+
+    assertBatch(Arrays.asList("c", "d"),
+                Arrays.asList(Arrays.<Object>asList(3L), Arrays.<Object>asList(4L)));
+
+    batch.clear();
+    add("e", 5L, "on", 5.0);
+    add("f", 1L, "on", 1.0);
+    processor.process(batch);
+    assertBatch(Arrays.asList("e"), Arrays.asList(Arrays.<Object>asList(5L)));
+  }
+
+  @Test
+  public void testFilterFusedIntoProjection() throws Exception {
+    RowBatchProcessor processor = buildProcessor(
+        "SELECT col0, col3 * 2 FROM test1 WHERE col3 > 2.0 AND col2 = 'on';", false);
+    add("a", 1L, "on", 3.0);
+    add("b", 2L, "off", 3.0);
+    add("c", 3L, "on", 1.0);
+    add("d", 4L, null, 3.0);
+    add("e", 5L, "on", 4.0);
+
+    processor.process(batch);
+
+    assertBatch(Arrays.asList("a", "e"),
+                Arrays.asList(Arrays.<Object>asList(1L, 6.0), Arrays.<Object>asList(5L, 8.0)));
+  }
+}
@@ -27,6 +27,7 @@ import io.confluent.ksql.parser.KsqlParser;
 import io.confluent.ksql.parser.rewrite.SqlFormatterQueryRewrite;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.planner.LogicalPlanner;
 import io.confluent.ksql.planner.plan.FilterNode;
 import io.confluent.ksql.planner.plan.PlanNode;
@@ -35,6 +36,7 @@ import io.confluent.ksql.util.KsqlTestUtil;
 import io.confluent.ksql.util.SerDeUtil;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KStreamBuilder;
 import org.junit.Assert;
@@ -42,6 +44,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class SchemaKStreamTest {
@@ -190,4 +193,27 @@ public class SchemaKStreamTest {
 
   }
 
+  @Test
+  public void testRowJoinerNullExtendsMissingSide() throws Exception {
+    Schema leftSchema = SchemaBuilder.struct()
+        .field("L0", Schema.INT64_SCHEMA)
+        .field("L1", Schema.STRING_SCHEMA)
+        .build();
+    Schema rightSchema = SchemaBuilder.struct()
+        .field("R0", Schema.INT64_SCHEMA)
+        .field("R1", Schema.FLOAT64_SCHEMA)
+        .field("R2", Schema.STRING_SCHEMA)
+        .build();
+    SchemaKStream.RowJoiner rowJoiner = new SchemaKStream.RowJoiner(leftSchema, rightSchema);
+    GenericRow leftRow = new GenericRow(Arrays.asList(1L, "left"));
+    GenericRow rightRow = new GenericRow(Arrays.asList(2L, 2.5, "right"));
+
+    Assert.assertEquals(Arrays.asList(1L, "left", 2L, 2.5, "right"),
+                        rowJoiner.apply(leftRow, rightRow).getColumns());
+    Assert.assertEquals(Arrays.asList(1L, "left", null, null, null),
+                        rowJoiner.apply(leftRow, null).getColumns());
+    Assert.assertEquals(Arrays.asList(null, null, 2L, 2.5, "right"),
+                        rowJoiner.apply(null, rightRow).getColumns());
+  }
+
 }
@@ -21,15 +21,18 @@ import io.confluent.ksql.analyzer.AggregateAnalyzer;
 import io.confluent.ksql.analyzer.Analysis;
 import io.confluent.ksql.analyzer.AnalysisContext;
 import io.confluent.ksql.analyzer.Analyzer;
+import io.confluent.ksql.codegen.ProjectionCompiler;
 import io.confluent.ksql.metastore.KsqlStream;
 import io.confluent.ksql.metastore.MetaStore;
 import io.confluent.ksql.parser.KsqlParser;
 import io.confluent.ksql.parser.rewrite.SqlFormatterQueryRewrite;
 import io.confluent.ksql.parser.tree.Expression;
 import io.confluent.ksql.parser.tree.Statement;
+import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.planner.LogicalPlanner;
 import io.confluent.ksql.planner.plan.FilterNode;
 import io.confluent.ksql.planner.plan.PlanNode;
+import io.confluent.ksql.planner.plan.ProjectNode;
 import io.confluent.ksql.util.KsqlTestUtil;
 import io.confluent.ksql.util.SerDeUtil;
 import org.apache.kafka.common.serialization.Serdes;
@@ -40,6 +43,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class SqlPredicateTest {
@@ -130,4 +135,32 @@ public class SqlPredicateTest {
 
   }
 
+  @Test
+  public void testBatchFilterAndProject() throws Exception {
+    String selectQuery = "SELECT col0, col2 FROM test1 WHERE col0 > 100;";
+    PlanNode logicalPlan = buildLogicalPlan(selectQuery);
+    ProjectNode projectNode = (ProjectNode) logicalPlan.getSources().get(0);
+    FilterNode filterNode = (FilterNode) projectNode.getSources().get(0);
+    SqlPredicate predicate = new SqlPredicate(filterNode.getPredicate(),
+                                              filterNode.getSource().getSchema(), false);
+    RowBatchProcessor processor = new RowBatchProcessor(
+        predicate,
+        new ProjectionCompiler(projectNode.getSource().getSchema())
+            .compile(projectNode.getProjectNameExpressionPairList()),
+        Collections.emptySet());
+
+    RowBatch batch = new RowBatch(1);
+    for (long col0 = 99; col0 <= 102; col0++) {
+      batch.add("key" + col0, col0, new GenericRow(Arrays.asList(
+          col0, "key" + col0, col0, "foo", "bar" + col0, 1.0, null, null)));
+    }
+    processor.process(batch);
+
+    Assert.assertEquals(2, batch.size());
+    Assert.assertEquals("key101", batch.getKey(0));
+    Assert.assertEquals(102L, batch.getTimestamp(1));
+    Assert.assertEquals(new GenericRow(Arrays.asList(101L, "bar101")), batch.getRow(0));
+    Assert.assertEquals(new GenericRow(Arrays.asList(102L, "bar102")), batch.getRow(1));
+  }
+
 }
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.structured;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.streams.kstream.Predicate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class TableMaterializationTest {
+
+  private final TableMaterialization materialization =
+      new TableMaterialization("AGG_STORE", TableMaterialization.StoreType.WINDOW)
+          .filter((Predicate<String, GenericRow>) (key, row) -> (Long) row.getColumns().get(1) > 1)
+          .map(row -> new GenericRow(new Object[]{row.getColumns().get(0)}));
+
+  @Test
+  public void shouldApplyTheStepsOfTheQueryToStoredRows() {
+    GenericRow tableRow = materialization.toTableRow(new GenericRow(new Object[]{"a", 2L}));
+
+    Assert.assertEquals(Arrays.asList("a"), tableRow.getColumns());
+  }
+
+  @Test
+  public void shouldSkipStoredRowsTheTableDoesNotHave() {
+    Assert.assertNull(materialization.toTableRow(new GenericRow(new Object[]{"a", 1L})));
+  }
+
+  @Test
+  public void shouldKeepTheStepsInAnotherStore() {
+    TableMaterialization renamed = materialization.withStoreName("KSQL_Agg_Query_1");
+
+    Assert.assertEquals("KSQL_Agg_Query_1", renamed.getStoreName());
+    Assert.assertTrue(renamed.isWindowed());
+    Assert.assertNull(renamed.toTableRow(new GenericRow(new Object[]{"a", 1L})));
+  }
+}
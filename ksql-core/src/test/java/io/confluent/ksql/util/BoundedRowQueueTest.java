@@ -0,0 +1,115 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.streams.KeyValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedRowQueueTest {
+
+  private static KeyValue<String, GenericRow> row(int i) {
+    return new KeyValue<>(Integer.toString(i), new GenericRow(Collections.singletonList(i)));
+  }
+
+  @Test
+  public void shouldDropOldestRowsWhenFull() throws Exception {
+    BoundedRowQueue queue =
+        new BoundedRowQueue(3, BoundedRowQueue.OverflowPolicy.DROP_OLDEST, Optional.empty());
+    for (int i = 0; i < 5; i++) {
+      Assert.assertTrue(queue.offer(row(i)));
+    }
+
+    List<KeyValue<String, GenericRow>> rows = new ArrayList<>();
+    Assert.assertEquals(3, queue.drainTo(rows, 10, 0, TimeUnit.MILLISECONDS));
+    Assert.assertEquals("2", rows.get(0).key);
+    Assert.assertEquals("4", rows.get(2).key);
+    Assert.assertEquals(2, queue.getDroppedRows());
+    Assert.assertFalse(queue.isComplete());
+  }
+
+  @Test
+  public void shouldCompleteAfterLimitRowsAreDrained() throws Exception {
+    BoundedRowQueue queue =
+        new BoundedRowQueue(10, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.of(2));
+    Assert.assertTrue(queue.offer(row(0)));
+    Assert.assertTrue(queue.offer(row(1)));
+    Assert.assertTrue(queue.isLimitReached());
+    Assert.assertFalse(queue.offer(row(2)));
+    Assert.assertFalse(queue.isComplete());
+
+    List<KeyValue<String, GenericRow>> rows = new ArrayList<>();
+    Assert.assertEquals(1, queue.drainTo(rows, 1, 0, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(1, queue.drainTo(rows, 1, 0, TimeUnit.MILLISECONDS));
+    Assert.assertTrue(queue.isComplete());
+  }
+
+  @Test
+  public void shouldNotCountDiscardedRowsTowardLimit() throws Exception {
+    for (BoundedRowQueue.OverflowPolicy overflowPolicy
+        : Arrays.asList(BoundedRowQueue.OverflowPolicy.DROP_OLDEST,
+                        BoundedRowQueue.OverflowPolicy.SAMPLE)) {
+      BoundedRowQueue queue = new BoundedRowQueue(10, overflowPolicy, Optional.of(100));
+      List<KeyValue<String, GenericRow>> rows = new ArrayList<>();
+      int offered = 0;
+      // The reader falls behind: it drains 5 rows for every 20 produced.
+      while (!queue.isLimitReached()) {
+        Assert.assertTrue(offered < 10000);
+        queue.offer(row(offered++));
+        if (offered % 20 == 0) {
+          queue.drainTo(rows, 5, 0, TimeUnit.MILLISECONDS);
+        }
+      }
+      Assert.assertTrue(queue.getDroppedRows() > 0);
+      Assert.assertFalse(queue.offer(row(offered)));
+      while (!queue.isComplete()) {
+        queue.drainTo(rows, 5, 0, TimeUnit.MILLISECONDS);
+      }
+      Assert.assertEquals(100, rows.size());
+    }
+  }
+
+  @Test
+  public void shouldReleaseBlockedProducerOnClose() throws Exception {
+    BoundedRowQueue queue =
+        new BoundedRowQueue(1, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.empty());
+    queue.offer(row(0));
+
+    final boolean[] offered = {true};
+    Thread producer = new Thread(() -> {
+      try {
+        offered[0] = queue.offer(row(1));
+      } catch (InterruptedException e) {
+        // Not expected
+      }
+    });
+    producer.start();
+    queue.close();
+    producer.join(5000);
+
+    Assert.assertFalse(producer.isAlive());
+    Assert.assertFalse(offered[0]);
+  }
+}
@@ -192,4 +192,18 @@ public class ExpressionUtilTest {
 
     }
 
+    @Test
+    public void testCompiledEvaluatorIsReused() throws Exception {
+        String simpleQuery = "SELECT col0+col3, col2 FROM test1 WHERE col0 > 100;";
+        Analysis analysis = analyzeQuery(simpleQuery);
+
+        ExpressionMetadata first = expressionUtil.getExpressionEvaluator(
+            analysis.getSelectExpressions().get(0), schema);
+        ExpressionMetadata second = expressionUtil.getExpressionEvaluator(
+            analyzeQuery(simpleQuery).getSelectExpressions().get(0), schema);
+        Assert.assertSame(first.getExpressionEvaluator(), second.getExpressionEvaluator());
+        Object result = second.getExpressionEvaluator().evaluate(new Object[]{10.0, 5l});
+        Assert.assertTrue(((Double)result) == 15.0);
+    }
+
 }
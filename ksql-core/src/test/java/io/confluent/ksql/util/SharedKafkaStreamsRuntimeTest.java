@@ -0,0 +1,152 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.util;
+
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedKafkaStreamsRuntimeTest {
+
+  private final Map<String, Object> properties =
+      Collections.singletonMap(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+
+  private Map<String, String> sources(String... topicAndSourceNames) {
+    Map<String, String> sources = new HashMap<>();
+    for (int i = 0; i < topicAndSourceNames.length; i += 2) {
+      sources.put(topicAndSourceNames[i], topicAndSourceNames[i + 1]);
+    }
+    return sources;
+  }
+
+  @Test
+  public void shouldShareSourceTopicsReadThroughTheSameSource() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    runtime.register(1, sources("orders", "ORDERS", "users", "USERS"), (builder, streams) -> { });
+
+    assertTrue(runtime.canAccept(properties, sources("users", "USERS")));
+    assertEquals(1, runtime.getSharedSourceCount(sources("users", "USERS", "clicks", "CLICKS")));
+    assertTrue(runtime.canAccept(properties, sources("pageviews", "PAGEVIEWS")));
+    assertEquals(1, runtime.getQueryCount());
+  }
+
+  @Test
+  public void shouldNotAcceptTopicReadThroughAnotherSource() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    runtime.register(1, sources("users", "USERS"), (builder, streams) -> { });
+
+    assertFalse(runtime.canAccept(properties, sources("users", "USERS_TABLE")));
+  }
+
+  @Test
+  public void shouldNotAcceptQueriesWithDifferentProperties() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    Map<String, Object> otherProperties = new HashMap<>(properties);
+    otherProperties.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 8);
+
+    assertFalse(runtime.canAccept(otherProperties, sources("pageviews", "PAGEVIEWS")));
+  }
+
+  @Test
+  public void shouldReleaseSourceTopicsOfStoppedQuery() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    runtime.register(1, sources("orders", "ORDERS"), (builder, streams) -> { });
+
+    runtime.stop(1);
+
+    assertTrue(runtime.canAccept(properties, sources("orders", "ORDERS_TABLE")));
+    assertEquals(0, runtime.getQueryCount());
+    assertNull(runtime.getKafkaStreams());
+  }
+
+  @Test
+  public void shouldNotAcceptQueriesOnceClosed() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+
+    runtime.close();
+
+    assertFalse(runtime.canAccept(properties, sources("orders", "ORDERS")));
+  }
+
+  @Test(expected = KsqlException.class)
+  public void shouldRejectStartOfUnregisteredQuery() {
+    new SharedKafkaStreamsRuntime("shared_0", properties).start(7);
+  }
+
+  @Test
+  public void shouldLeaveQueryThatFailsToStartOutOfTheRuntime() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    AtomicInteger builds = new AtomicInteger();
+    runtime.register(1, sources("orders", "ORDERS"), (builder, streams) -> {
+      builds.incrementAndGet();
+      throw new IllegalStateException("invalid topology");
+    });
+    runtime.register(2, sources("users", "USERS"), (builder, streams) -> {
+      throw new IllegalStateException("invalid topology");
+    });
+
+    try {
+      runtime.start(1);
+      fail();
+    } catch (KsqlException e) {
+      assertEquals("Could not start query 1 in shared_0.", e.getMessage());
+    }
+    try {
+      runtime.start(2);
+      fail();
+    } catch (KsqlException e) {
+      assertEquals("Could not start query 2 in shared_0.", e.getMessage());
+    }
+
+    assertEquals(1, builds.get());
+    assertNull(runtime.getKafkaStreams());
+  }
+
+  @Test
+  public void shouldStartDeferredQueriesOnce() {
+    SharedKafkaStreamsRuntime runtime = new SharedKafkaStreamsRuntime("shared_0", properties);
+    AtomicInteger builds = new AtomicInteger();
+    for (long queryId = 1; queryId <= 3; queryId++) {
+      runtime.register(queryId, sources("orders", "ORDERS"), (builder, streams) -> {
+        builds.incrementAndGet();
+        throw new IllegalStateException("invalid topology");
+      });
+    }
+
+    runtime.deferStarts();
+    runtime.start(1);
+    runtime.start(2);
+    runtime.start(3);
+    runtime.stop(2);
+    assertEquals(0, builds.get());
+
+    // The queries can not run together, so each is tried on its own and left stopped.
+    runtime.startDeferred();
+    assertEquals(1 + 2, builds.get());
+    assertNull(runtime.getKafkaStreams());
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+
+package io.confluent.ksql.util.timestamp;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class KsqlTimestampExtractorTest {
+
+  private ConsumerRecord<Object, Object> record(Object... columns) {
+    return record(new GenericRow(Arrays.asList(columns)));
+  }
+
+  private ConsumerRecord<Object, Object> record(GenericRow value) {
+    return new ConsumerRecord<>("topic", 0, 0, 42L, TimestampType.CREATE_TIME, 0, 0, 0, "key",
+                                value);
+  }
+
+  @Test
+  public void shouldExtractLongTimestampColumn() {
+    KsqlTimestampExtractor extractor = new KsqlTimestampExtractor(1);
+
+    assertEquals(1511897796092L, extractor.extract(record("a", 1511897796092L), 0));
+  }
+
+  @Test
+  public void shouldParseStringTimestampColumn() {
+    KsqlTimestampExtractor extractor = new KsqlTimestampExtractor(
+        0, new StringToTimestampParser("yyyy-MM-dd HH:mm:ss"));
+
+    long expected = LocalDateTime.of(2017, 11, 28, 19, 36, 36)
+        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    assertEquals(expected, extractor.extract(record("2017-11-28 19:36:36"), 0));
+  }
+
+  @Test
+  public void shouldParseTimestampsWithOffset() {
+    StringToTimestampParser parser = new StringToTimestampParser("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    assertEquals(1511897796092L, parser.parse("2017-11-28T19:36:36.092Z"));
+  }
+
+  @Test
+  public void shouldFallBackToRecordTimestamp() {
+    KsqlTimestampExtractor extractor = new KsqlTimestampExtractor(0);
+
+    assertEquals(42L, extractor.extract(record((GenericRow) null), 0));
+    assertEquals(42L, extractor.extract(record((Object) null), 0));
+  }
+}
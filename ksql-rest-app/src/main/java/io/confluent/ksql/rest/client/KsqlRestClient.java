@@ -17,6 +17,7 @@
 package io.confluent.ksql.rest.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.ksql.physical.GenericRow;
 import io.confluent.ksql.rest.entity.CommandStatus;
 import io.confluent.ksql.rest.entity.CommandStatuses;
 import io.confluent.ksql.rest.entity.ErrorMessage;
@@ -25,7 +26,11 @@ import io.confluent.ksql.rest.entity.KsqlRequest;
 import io.confluent.ksql.rest.entity.SchemaMapper;
 import io.confluent.ksql.rest.entity.ServerInfo;
 import io.confluent.ksql.rest.entity.StreamedRow;
+import io.confluent.ksql.rest.entity.StreamedRowFormat;
+import io.confluent.ksql.rest.entity.StreamedRowFrames;
+import io.confluent.ksql.serde.binary.KsqlBinaryDeserializer;
 import io.confluent.rest.validation.JacksonMessageBodyProvider;
+import org.apache.kafka.connect.data.Schema;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -33,8 +38,12 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -108,10 +117,18 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
   }
 
   public RestResponse<QueryStream> makeQueryRequest(String ksql) {
+    return makeQueryRequest(ksql, StreamedRowFormat.JSON);
+  }
+
+  /**
+   * Streams the rows of a query in the given format; the returned stream decodes them back into
+   * {@link StreamedRow}s, so the format only changes what goes over the wire.
+   */
+  public RestResponse<QueryStream> makeQueryRequest(String ksql, StreamedRowFormat format) {
     KsqlRequest jsonRequest = new KsqlRequest(ksql, localProperties);
-    Response response = makePostRequest("query", jsonRequest);
+    Response response = makePostRequest("query", jsonRequest, format.getMediaType());
     if (response.getStatus() == Response.Status.OK.getStatusCode()) {
-      return RestResponse.successful(new QueryStream(response));
+      return RestResponse.successful(new QueryStream(response, format));
     } else {
       return RestResponse.erroneous(response.readEntity(ErrorMessage.class));
     }
@@ -137,9 +154,13 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
   }
 
   private Response makePostRequest(String path, Object jsonEntity) {
+    return makePostRequest(path, jsonEntity, MediaType.APPLICATION_JSON);
+  }
+
+  private Response makePostRequest(String path, Object jsonEntity, String acceptedType) {
     return client.target(serverAddress)
         .path(path)
-        .request(MediaType.APPLICATION_JSON_TYPE)
+        .request(acceptedType, MediaType.APPLICATION_JSON)
         .post(Entity.json(jsonEntity));
   }
 
@@ -151,17 +172,35 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
 
   public static class QueryStream implements Closeable, AutoCloseable, Iterator<StreamedRow> {
     private final Response response;
+    private final StreamedRowFormat format;
     private final ObjectMapper objectMapper;
     private final Scanner responseScanner;
+    private final DataInputStream frameInput;
+    private final Deque<StreamedRow> decodedRows;
 
     private StreamedRow bufferedRow;
+    private Schema schema;
+    private KsqlBinaryDeserializer rowDeserializer;
     private boolean closed;
 
     public QueryStream(Response response) {
+      this(response, StreamedRowFormat.JSON);
+    }
+
+    public QueryStream(Response response, StreamedRowFormat format) {
       this.response = response;
+      this.format = format;
 
       this.objectMapper = new ObjectMapper();
-      this.responseScanner = new Scanner((InputStream) response.getEntity());
+      InputStream responseStream = (InputStream) response.getEntity();
+      if (format == StreamedRowFormat.JSON) {
+        this.responseScanner = new Scanner(responseStream);
+        this.frameInput = null;
+      } else {
+        this.responseScanner = null;
+        this.frameInput = new DataInputStream(responseStream);
+      }
+      this.decodedRows = new ArrayDeque<>();
 
       this.bufferedRow = null;
       this.closed = false;
@@ -177,6 +216,15 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
         return true;
       }
 
+      if (format != StreamedRowFormat.JSON) {
+        try {
+          bufferedRow = readFramedRow();
+        } catch (IOException exception) {
+          throw new RuntimeException(exception);
+        }
+        return bufferedRow != null;
+      }
+
       while (responseScanner.hasNextLine()) {
         String responseLine = responseScanner.nextLine().trim();
         if (!responseLine.isEmpty()) {
@@ -194,6 +242,45 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
       return false;
     }
 
+    private StreamedRow readFramedRow() throws IOException {
+      while (decodedRows.isEmpty()) {
+        int frameType = frameInput.read();
+        if (frameType < 0) {
+          return null;
+        }
+        byte[] payload;
+        try {
+          payload = new byte[frameInput.readInt()];
+          frameInput.readFully(payload);
+        } catch (EOFException exception) {
+          // The server closed the stream in the middle of a frame
+          return null;
+        }
+        switch (frameType) {
+          case StreamedRowFrames.HEADER_FRAME:
+            schema = StreamedRowFrames.decodeSchema(payload);
+            rowDeserializer = new KsqlBinaryDeserializer(schema);
+            break;
+          case StreamedRowFrames.ROW_FRAME:
+            decodedRows.add(new StreamedRow(rowDeserializer.deserialize(null, payload)));
+            break;
+          case StreamedRowFrames.BATCH_FRAME:
+            for (GenericRow row : StreamedRowFrames.decodeBatch(schema, payload)) {
+              decodedRows.add(new StreamedRow(row));
+            }
+            break;
+          case StreamedRowFrames.ERROR_FRAME:
+            decodedRows.add(new StreamedRow(null, StreamedRowFrames.decodeError(payload)));
+            break;
+          case StreamedRowFrames.KEEP_ALIVE_FRAME:
+            break;
+          default:
+            throw new IOException("Unexpected frame type: " + frameType);
+        }
+      }
+      return decodedRows.poll();
+    }
+
     @Override
     public StreamedRow next() {
       if (closed) {
@@ -216,7 +303,9 @@ public class KsqlRestClient implements Closeable, AutoCloseable {
       }
 
       closed = true;
-      responseScanner.close();
+      if (responseScanner != null) {
+        responseScanner.close();
+      }
       response.close();
     }
   }
@@ -34,7 +34,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
     @JsonSubTypes.Type(value = TablesList.class, name = "tables"),
     @JsonSubTypes.Type(value = KsqlTopicsList.class, name = "ksql_topics"),
     @JsonSubTypes.Type(value = KafkaTopicsList.class, name = "kafka_topics"),
-    @JsonSubTypes.Type(value = ExecutionPlan.class, name = "executionPlan")
+    @JsonSubTypes.Type(value = ExecutionPlan.class, name = "executionPlan"),
+    @JsonSubTypes.Type(value = TableRows.class, name = "rows")
 })
 public abstract class KsqlEntity {
   private final String statementText;
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.rest.entity;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * The encodings the /query endpoint can stream its rows in, negotiated through the Accept header.
+ * JSON stays the default; the binary formats are described in {@link StreamedRowFrames}.
+ */
+public enum StreamedRowFormat {
+  JSON(MediaType.APPLICATION_JSON),
+  BINARY(StreamedRowFormat.BINARY_MEDIA_TYPE),
+  COLUMNAR(StreamedRowFormat.COLUMNAR_MEDIA_TYPE);
+
+  public static final String BINARY_MEDIA_TYPE = "application/vnd.ksql.rows+binary";
+  public static final String COLUMNAR_MEDIA_TYPE = "application/vnd.ksql.columns+binary";
+
+  private final String mediaType;
+
+  StreamedRowFormat(String mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  /**
+   * Returns the first format the Accept header lists, or JSON if it names none of them.
+   */
+  public static StreamedRowFormat fromAcceptHeader(String acceptHeader) {
+    if (acceptHeader == null) {
+      return JSON;
+    }
+    for (String acceptedType : acceptHeader.split(",")) {
+      int parametersStart = acceptedType.indexOf(';');
+      if (parametersStart >= 0) {
+        acceptedType = acceptedType.substring(0, parametersStart);
+      }
+      acceptedType = acceptedType.trim();
+      for (StreamedRowFormat format : values()) {
+        if (format.mediaType.equalsIgnoreCase(acceptedType)) {
+          return format;
+        }
+      }
+    }
+    return JSON;
+  }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.rest.entity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.serde.binary.KsqlBinaryDeserializer;
+import io.confluent.ksql.serde.binary.KsqlBinarySerializer;
+import io.confluent.ksql.util.KsqlException;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Framing shared by the binary /query formats. Every frame is a type byte, the length of its
+ * payload as a four byte integer, then the payload. A stream starts with a single header frame
+ * carrying the schema of the rows; the BINARY format then sends one row frame per row, encoded
+ * with {@link KsqlBinarySerializer}, and the COLUMNAR format one batch frame per group of rows,
+ * laid out column by column. Errors are sent as a frame holding the JSON of an
+ * {@link ErrorMessage}, and keep-alive frames have no payload.
+ */
+public final class StreamedRowFrames {
+
+  public static final byte HEADER_FRAME = 'H';
+  public static final byte ROW_FRAME = 'R';
+  public static final byte BATCH_FRAME = 'B';
+  public static final byte ERROR_FRAME = 'E';
+  public static final byte KEEP_ALIVE_FRAME = 'K';
+
+  private static final byte[] NO_PAYLOAD = new byte[0];
+
+  private StreamedRowFrames() {
+  }
+
+  public static void writeFrame(OutputStream out, byte frameType, byte[] payload, int length)
+      throws IOException {
+    out.write(frameType);
+    out.write(length >>> 24);
+    out.write(length >>> 16);
+    out.write(length >>> 8);
+    out.write(length);
+    out.write(payload, 0, length);
+  }
+
+  public static void writeFrame(OutputStream out, byte frameType, byte[] payload)
+      throws IOException {
+    writeFrame(out, frameType, payload, payload.length);
+  }
+
+  public static void writeKeepAliveFrame(OutputStream out) throws IOException {
+    writeFrame(out, KEEP_ALIVE_FRAME, NO_PAYLOAD);
+  }
+
+  public static void writeErrorFrame(OutputStream out, ErrorMessage errorMessage)
+      throws IOException {
+    writeFrame(out, ERROR_FRAME, new ObjectMapper().writeValueAsBytes(errorMessage));
+  }
+
+  public static ErrorMessage decodeError(byte[] payload) throws IOException {
+    return new ObjectMapper().readValue(payload, ErrorMessage.class);
+  }
+
+  public static byte[] encodeSchema(Schema schema) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(schema.fields().size());
+    for (Field field : schema.fields()) {
+      out.writeUTF(field.name());
+      writeType(out, field.schema());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public static Schema decodeSchema(byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
+    int fieldCount = in.readInt();
+    for (int i = 0; i < fieldCount; i++) {
+      String name = in.readUTF();
+      schemaBuilder.field(name, readType(in));
+    }
+    return schemaBuilder.build();
+  }
+
+  private static void writeType(DataOutputStream out, Schema schema) throws IOException {
+    out.writeUTF(schema.type().name());
+    if (schema.type() == Schema.Type.ARRAY || schema.type() == Schema.Type.MAP) {
+      // Map keys are always strings.
+      writeType(out, schema.valueSchema());
+    }
+  }
+
+  private static Schema readType(DataInputStream in) throws IOException {
+    String typeName = in.readUTF();
+    switch (Schema.Type.valueOf(typeName)) {
+      case BOOLEAN:
+        return Schema.OPTIONAL_BOOLEAN_SCHEMA;
+      case INT32:
+        return Schema.OPTIONAL_INT32_SCHEMA;
+      case INT64:
+        return Schema.OPTIONAL_INT64_SCHEMA;
+      case FLOAT64:
+        return Schema.OPTIONAL_FLOAT64_SCHEMA;
+      case STRING:
+        return Schema.OPTIONAL_STRING_SCHEMA;
+      case ARRAY:
+        return SchemaBuilder.array(readType(in)).optional().build();
+      case MAP:
+        return SchemaBuilder.map(Schema.OPTIONAL_STRING_SCHEMA, readType(in)).optional().build();
+      default:
+        throw new KsqlException("Type is not supported: " + typeName);
+    }
+  }
+
+  /**
+   * Encodes rows column by column: for each column a bitmap of the rows where it is not null,
+   * followed by its non-null values. Primitive values are fixed width, strings are length
+   * prefixed, and arrays and maps are length prefixed {@link KsqlBinarySerializer} values.
+   */
+  public static byte[] encodeBatch(Schema schema, List<GenericRow> rows) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    int rowCount = rows.size();
+    out.writeInt(rowCount);
+    byte[] presence = new byte[(rowCount + 7) / 8];
+    for (int column = 0; column < schema.fields().size(); column++) {
+      Schema columnSchema = schema.fields().get(column).schema();
+      Arrays.fill(presence, (byte) 0);
+      for (int i = 0; i < rowCount; i++) {
+        if (rows.get(i).getColumns().get(column) != null) {
+          presence[i >>> 3] |= 1 << (i & 7);
+        }
+      }
+      out.write(presence);
+
+      KsqlBinarySerializer complexSerializer = null;
+      if (isComplex(columnSchema)) {
+        complexSerializer = new KsqlBinarySerializer(singleColumnSchema(columnSchema));
+      }
+      for (int i = 0; i < rowCount; i++) {
+        Object value = rows.get(i).getColumns().get(column);
+        if (value == null) {
+          continue;
+        }
+        switch (columnSchema.type()) {
+          case BOOLEAN:
+            out.writeBoolean((Boolean) value);
+            break;
+          case INT32:
+            out.writeInt(((Number) value).intValue());
+            break;
+          case INT64:
+            out.writeLong(((Number) value).longValue());
+            break;
+          case FLOAT64:
+            out.writeDouble(((Number) value).doubleValue());
+            break;
+          case STRING:
+            byte[] stringBytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(stringBytes.length);
+            out.write(stringBytes);
+            break;
+          case ARRAY:
+          case MAP:
+            byte[] valueBytes = complexSerializer.serialize(
+                null, new GenericRow(Collections.singletonList(value)));
+            out.writeInt(valueBytes.length);
+            out.write(valueBytes);
+            break;
+          default:
+            throw new KsqlException("Type is not supported: " + columnSchema.type());
+        }
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public static List<GenericRow> decodeBatch(Schema schema, byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    int rowCount = in.readInt();
+    int columnCount = schema.fields().size();
+    Object[][] values = new Object[rowCount][columnCount];
+    byte[] presence = new byte[(rowCount + 7) / 8];
+    for (int column = 0; column < columnCount; column++) {
+      Schema columnSchema = schema.fields().get(column).schema();
+      in.readFully(presence);
+
+      KsqlBinaryDeserializer complexDeserializer = null;
+      if (isComplex(columnSchema)) {
+        complexDeserializer = new KsqlBinaryDeserializer(singleColumnSchema(columnSchema));
+      }
+      for (int i = 0; i < rowCount; i++) {
+        if ((presence[i >>> 3] & (1 << (i & 7))) == 0) {
+          continue;
+        }
+        switch (columnSchema.type()) {
+          case BOOLEAN:
+            values[i][column] = in.readBoolean();
+            break;
+          case INT32:
+            values[i][column] = in.readInt();
+            break;
+          case INT64:
+            values[i][column] = in.readLong();
+            break;
+          case FLOAT64:
+            values[i][column] = in.readDouble();
+            break;
+          case STRING:
+            byte[] stringBytes = new byte[in.readInt()];
+            in.readFully(stringBytes);
+            values[i][column] = new String(stringBytes, StandardCharsets.UTF_8);
+            break;
+          case ARRAY:
+          case MAP:
+            byte[] valueBytes = new byte[in.readInt()];
+            in.readFully(valueBytes);
+            values[i][column] =
+                complexDeserializer.deserialize(null, valueBytes).getColumns().get(0);
+            break;
+          default:
+            throw new KsqlException("Type is not supported: " + columnSchema.type());
+        }
+      }
+    }
+
+    List<GenericRow> rows = new ArrayList<>(rowCount);
+    for (Object[] rowValues : values) {
+      rows.add(new GenericRow(new ArrayList<>(Arrays.asList(rowValues))));
+    }
+    return rows;
+  }
+
+  private static boolean isComplex(Schema schema) {
+    return schema.type() == Schema.Type.ARRAY || schema.type() == Schema.Type.MAP;
+  }
+
+  private static Schema singleColumnSchema(Schema columnSchema) {
+    return SchemaBuilder.struct().field("VALUE", columnSchema).build();
+  }
+}
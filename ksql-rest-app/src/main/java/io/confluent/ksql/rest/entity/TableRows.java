@@ -0,0 +1,82 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.rest.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * The rows of a query answered from the state of a table.
+ */
+@JsonTypeName("rows")
+public class TableRows extends KsqlEntity {
+  private final List<String> columnNames;
+  private final List<GenericRow> rows;
+
+  @JsonCreator
+  public TableRows(
+      @JsonProperty("statementText") String statementText,
+      @JsonProperty("columnNames")   List<String> columnNames,
+      @JsonProperty("rows")          List<GenericRow> rows
+  ) {
+    super(statementText);
+    this.columnNames = columnNames;
+    this.rows = rows;
+  }
+
+  public TableRows(String statementText, Schema schema, List<GenericRow> rows) {
+    this(
+        statementText,
+        schema.fields().stream().map(Field::name).collect(Collectors.toList()),
+        rows
+    );
+  }
+
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public List<GenericRow> getRows() {
+    return rows;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof TableRows)) {
+      return false;
+    }
+    TableRows that = (TableRows) o;
+    return Objects.equals(getColumnNames(), that.getColumnNames())
+        && Objects.equals(getRows(), that.getRows());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(getColumnNames(), getRows());
+  }
+}
@@ -87,17 +87,23 @@ public class StatementExecutor {
   }
 
   public void handleStatements(List<Pair<CommandId, Command>> priorCommands) throws Exception {
-    for (Pair<CommandId, Command> commandIdCommandPair: priorCommands) {
-      log.info("Executing prior statement: '{}'", commandIdCommandPair.getRight());
-      try {
-        handleStatementWithTerminatedQueries(
-            commandIdCommandPair.getRight(),
-            commandIdCommandPair.getLeft(),
-            Collections.emptyMap()
-        );
-      } catch (Exception exception) {
-        log.warn("Failed to execute statement due to exception", exception);
+    // Start each shared runtime once with all its queries rather than rebuilding it per query.
+    ksqlEngine.getQueryEngine().deferSharedRuntimeStarts();
+    try {
+      for (Pair<CommandId, Command> commandIdCommandPair: priorCommands) {
+        log.info("Executing prior statement: '{}'", commandIdCommandPair.getRight());
+        try {
+          handleStatementWithTerminatedQueries(
+              commandIdCommandPair.getRight(),
+              commandIdCommandPair.getLeft(),
+              Collections.emptyMap()
+          );
+        } catch (Exception exception) {
+          log.warn("Failed to execute statement due to exception", exception);
+        }
       }
+    } finally {
+      ksqlEngine.getQueryEngine().startDeferredSharedRuntimes();
     }
   }
 
@@ -288,7 +294,7 @@ public class StatementExecutor {
         for (QueryMetadata queryMetadata : queryMetadataList) {
           if (queryMetadata instanceof PersistentQueryMetadata) {
             PersistentQueryMetadata persistentQueryMetadata = (PersistentQueryMetadata) queryMetadata;
-            persistentQueryMetadata.getKafkaStreams().start();
+            persistentQueryMetadata.start();
           }
         }
       } else {
@@ -348,7 +354,7 @@ public class StatementExecutor {
         ksqlEngine.terminateQuery(queryId, false);
         return false;
       } else {
-        persistentQueryMetadata.getKafkaStreams().start();
+        persistentQueryMetadata.start();
         return true;
       }
 
@@ -17,6 +17,7 @@
 package io.confluent.ksql.rest.server.resources;
 
 import io.confluent.ksql.KsqlEngine;
+import io.confluent.ksql.PullQueryExecutor;
 import io.confluent.ksql.ddl.commands.CreateStreamCommand;
 import io.confluent.ksql.ddl.commands.CreateTableCommand;
 import io.confluent.ksql.ddl.commands.DDLCommandExec;
@@ -64,6 +65,7 @@ import io.confluent.ksql.rest.entity.PropertiesList;
 import io.confluent.ksql.rest.entity.Queries;
 import io.confluent.ksql.rest.entity.SourceDescription;
 import io.confluent.ksql.rest.entity.StreamsList;
+import io.confluent.ksql.rest.entity.TableRows;
 import io.confluent.ksql.rest.entity.TablesList;
 import io.confluent.ksql.rest.entity.TopicDescription;
 import io.confluent.ksql.rest.entity.KsqlTopicsList;
@@ -201,6 +203,8 @@ public class KsqlResource {
       return getStatementExecutionPlan(explain, statementText);
     } else if (statement instanceof RunScript) {
       return distributeStatement(statementText, statement, streamsProperties);
+    } else if (statement instanceof Query) {
+      return queryTable(statementText, (Query) statement);
     }else if (statement instanceof RegisterTopic
             || statement instanceof CreateStream
             || statement instanceof CreateTable
@@ -250,6 +254,13 @@ public class KsqlResource {
     return new CommandStatusEntity(statementText, commandId, commandStatus);
   }
 
+  // Reads the rows from the state of the query writing the table, on this machine only; streaming
+  // queries go through /query.
+  private TableRows queryTable(String statementText, Query query) throws Exception {
+    PullQueryExecutor.Result result = ksqlEngine.executePullQuery(query);
+    return new TableRows(statementText, result.getSchema(), result.getRows());
+  }
+
   private KafkaTopicsList listTopics(String statementText) {
     KafkaTopicClient client = ksqlEngine.getKafkaTopicClient();
     return KafkaTopicsList.build(statementText, getKsqlTopics(),
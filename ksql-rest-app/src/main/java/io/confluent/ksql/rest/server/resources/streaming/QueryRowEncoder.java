@@ -0,0 +1,161 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.rest.server.resources.streaming;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.confluent.ksql.physical.GenericRow;
+import io.confluent.ksql.rest.entity.ErrorMessage;
+import io.confluent.ksql.rest.entity.StreamedRow;
+import io.confluent.ksql.rest.entity.StreamedRowFormat;
+import io.confluent.ksql.rest.entity.StreamedRowFrames;
+import io.confluent.ksql.serde.binary.KsqlBinarySerializer;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.streams.KeyValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the rows, keep-alives and errors of a streamed query in one of the
+ * {@link StreamedRowFormat}s.
+ */
+abstract class QueryRowEncoder {
+
+  static QueryRowEncoder create(StreamedRowFormat format, Schema schema) {
+    switch (format) {
+      case BINARY:
+        return new BinaryRowEncoder(schema);
+      case COLUMNAR:
+        return new ColumnarRowEncoder(schema);
+      default:
+        return new JsonRowEncoder();
+    }
+  }
+
+  void writeHeader(OutputStream out) throws IOException {
+  }
+
+  abstract void writeRows(OutputStream out, List<KeyValue<String, GenericRow>> rows)
+      throws IOException;
+
+  abstract void writeKeepAlive(OutputStream out) throws IOException;
+
+  abstract void writeError(OutputStream out, Throwable exception) throws IOException;
+
+  private static class JsonRowEncoder extends QueryRowEncoder {
+    private static final byte[] NEWLINE = "\n".getBytes();
+
+    private final ObjectWriter rowWriter = new ObjectMapper()
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .writerFor(StreamedRow.class);
+
+    @Override
+    void writeRows(OutputStream out, List<KeyValue<String, GenericRow>> rows) throws IOException {
+      for (KeyValue<String, GenericRow> row : rows) {
+        rowWriter.writeValue(out, new StreamedRow(row.value));
+        out.write(NEWLINE);
+      }
+    }
+
+    @Override
+    void writeKeepAlive(OutputStream out) throws IOException {
+      out.write(NEWLINE);
+    }
+
+    @Override
+    void writeError(OutputStream out, Throwable exception) throws IOException {
+      out.write(NEWLINE);
+      rowWriter.writeValue(out, new StreamedRow(exception));
+      out.write(NEWLINE);
+    }
+  }
+
+  private abstract static class FramedRowEncoder extends QueryRowEncoder {
+    final Schema schema;
+
+    FramedRowEncoder(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    void writeHeader(OutputStream out) throws IOException {
+      StreamedRowFrames.writeFrame(
+          out,
+          StreamedRowFrames.HEADER_FRAME,
+          StreamedRowFrames.encodeSchema(schema)
+      );
+    }
+
+    @Override
+    void writeKeepAlive(OutputStream out) throws IOException {
+      StreamedRowFrames.writeKeepAliveFrame(out);
+    }
+
+    @Override
+    void writeError(OutputStream out, Throwable exception) throws IOException {
+      StreamedRowFrames.writeErrorFrame(out, new ErrorMessage(exception));
+    }
+  }
+
+  private static class BinaryRowEncoder extends FramedRowEncoder {
+    private final KsqlBinarySerializer rowSerializer;
+
+    BinaryRowEncoder(Schema schema) {
+      super(schema);
+      this.rowSerializer = new KsqlBinarySerializer(schema);
+    }
+
+    @Override
+    void writeRows(OutputStream out, List<KeyValue<String, GenericRow>> rows) throws IOException {
+      for (KeyValue<String, GenericRow> row : rows) {
+        StreamedRowFrames.writeFrame(
+            out,
+            StreamedRowFrames.ROW_FRAME,
+            rowSerializer.serialize(null, row.value)
+        );
+      }
+    }
+  }
+
+  private static class ColumnarRowEncoder extends FramedRowEncoder {
+    private final List<GenericRow> batch = new ArrayList<>();
+
+    ColumnarRowEncoder(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    void writeRows(OutputStream out, List<KeyValue<String, GenericRow>> rows) throws IOException {
+      if (rows.isEmpty()) {
+        return;
+      }
+      for (KeyValue<String, GenericRow> row : rows) {
+        batch.add(row.value);
+      }
+      StreamedRowFrames.writeFrame(
+          out,
+          StreamedRowFrames.BATCH_FRAME,
+          StreamedRowFrames.encodeBatch(schema, batch)
+      );
+      batch.clear();
+    }
+  }
+}
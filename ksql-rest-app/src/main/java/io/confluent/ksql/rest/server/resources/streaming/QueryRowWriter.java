@@ -16,45 +16,67 @@
 
 package io.confluent.ksql.rest.server.resources.streaming;
 
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.confluent.ksql.physical.GenericRow;
-import io.confluent.ksql.rest.entity.StreamedRow;
+import io.confluent.ksql.util.BoundedRowQueue;
 import org.apache.kafka.streams.KeyValue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.SynchronousQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Drains rows from the query's queue in batches and encodes them into a reusable buffer, which is
+ * written and flushed to the client once it holds enough bytes or has waited long enough.
+ */
 class QueryRowWriter implements Runnable {
+  private static final int MAX_BATCH_ROWS = 500;
+  private static final int FLUSH_BUFFER_BYTES = 64 * 1024;
+  private static final long FLUSH_INTERVAL_MS = 100;
+
   private final OutputStream output;
   private final AtomicReference<Throwable> streamsException;
-  private final SynchronousQueue<KeyValue<String, GenericRow>> rowQueue;
+  private final BoundedRowQueue rowQueue;
   private final AtomicBoolean rowsWritten;
-  private final ObjectMapper objectMapper;
+  private final QueryRowEncoder rowEncoder;
+  private final ByteArrayOutputStream buffer;
+  private long lastFlushTime;
 
   QueryRowWriter(
       OutputStream output,
       AtomicReference<Throwable> streamsException,
-      SynchronousQueue<KeyValue<String, GenericRow>> rowQueue,
-      AtomicBoolean rowsWritten
+      BoundedRowQueue rowQueue,
+      AtomicBoolean rowsWritten,
+      QueryRowEncoder rowEncoder
   ) {
     this.output = output;
     this.streamsException = streamsException;
     this.rowQueue = rowQueue;
     this.rowsWritten = rowsWritten;
-
-    this.objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    this.rowEncoder = rowEncoder;
+    this.buffer = new ByteArrayOutputStream(FLUSH_BUFFER_BYTES);
   }
 
   @Override
   public void run() {
     try {
-      while (true) {
-        write(rowQueue.take().value);
+      List<KeyValue<String, GenericRow>> rows = new ArrayList<>(MAX_BATCH_ROWS);
+      lastFlushTime = System.currentTimeMillis();
+      // Ends once the query has reached its LIMIT and every row has been written.
+      while (!rowQueue.isComplete()) {
+        rowQueue.drainTo(rows, MAX_BATCH_ROWS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        rowEncoder.writeRows(buffer, rows);
+        rows.clear();
+        if (buffer.size() >= FLUSH_BUFFER_BYTES
+            || System.currentTimeMillis() - lastFlushTime >= FLUSH_INTERVAL_MS) {
+          flush();
+        }
       }
+      flush();
     } catch (InterruptedException exception) {
       // Interrupt is used to end the thread
     } catch (Exception exception) {
@@ -65,12 +87,16 @@ class QueryRowWriter implements Runnable {
     }
   }
 
-  private void write(GenericRow row) throws IOException {
+  private void flush() throws IOException {
+    lastFlushTime = System.currentTimeMillis();
+    if (buffer.size() == 0) {
+      return;
+    }
     synchronized (output) {
-      objectMapper.writeValue(output, new StreamedRow(row));
-      output.write("\n".getBytes());
+      buffer.writeTo(output);
       output.flush();
       rowsWritten.set(true);
     }
+    buffer.reset();
   }
 }
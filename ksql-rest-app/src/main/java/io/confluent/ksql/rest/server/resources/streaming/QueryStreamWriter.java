@@ -16,9 +16,8 @@
 
 package io.confluent.ksql.rest.server.resources.streaming;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.confluent.ksql.KsqlEngine;
-import io.confluent.ksql.rest.entity.StreamedRow;
+import io.confluent.ksql.rest.entity.StreamedRowFormat;
 import io.confluent.ksql.util.KsqlException;
 import io.confluent.ksql.util.QueryMetadata;
 import io.confluent.ksql.util.QueuedQueryMetadata;
@@ -40,13 +39,15 @@ class QueryStreamWriter implements StreamingOutput {
 
   private final QueuedQueryMetadata queryMetadata;
   private final long disconnectCheckInterval;
+  private final StreamedRowFormat format;
   private final AtomicReference<Throwable> streamsException;
 
   QueryStreamWriter(
       KsqlEngine ksqlEngine,
       long disconnectCheckInterval,
       String queryString,
-      Map<String, Object> overriddenProperties
+      Map<String, Object> overriddenProperties,
+      StreamedRowFormat format
   )
       throws Exception {
     QueryMetadata queryMetadata =
@@ -59,6 +60,7 @@ class QueryStreamWriter implements StreamingOutput {
     }
 
     this.disconnectCheckInterval = disconnectCheckInterval;
+    this.format = format;
     this.queryMetadata = ((QueuedQueryMetadata) queryMetadata);
 
     this.streamsException = new AtomicReference<>(null);
@@ -70,27 +72,41 @@ class QueryStreamWriter implements StreamingOutput {
   @Override
   public void write(OutputStream out) throws IOException {
     try {
+      QueryRowEncoder rowEncoder = QueryRowEncoder.create(
+          format,
+          format == StreamedRowFormat.JSON ? null : queryMetadata.getOutputNode().getSchema()
+      );
+      synchronized (out) {
+        rowEncoder.writeHeader(out);
+        out.flush();
+      }
+
       AtomicBoolean rowsWritten = new AtomicBoolean(false);
       QueryRowWriter queryRowWriter = new QueryRowWriter(
           out,
           streamsException,
           queryMetadata.getRowQueue(),
-          rowsWritten
+          rowsWritten,
+          rowEncoder
       );
       Thread rowWriterThread = new Thread(queryRowWriter);
       rowWriterThread.start();
       try {
         while (true) {
-          Thread.sleep(disconnectCheckInterval);
+          rowWriterThread.join(disconnectCheckInterval);
           Throwable exception = streamsException.get();
           if (exception != null) {
             throw exception;
           }
+          if (!rowWriterThread.isAlive()) {
+            // The query reached its LIMIT and all its rows have been written.
+            break;
+          }
           // If no new rows have been written, the user may have terminated the connection without
-          // us knowing. Check by trying to write a single newline.
+          // us knowing. Check by trying to write a keep-alive.
           if (!rowsWritten.getAndSet(false)) {
             synchronized (out) {
-              out.write("\n".getBytes());
+              rowEncoder.writeKeepAlive(out);
               out.flush();
             }
           }
@@ -104,13 +120,11 @@ class QueryStreamWriter implements StreamingOutput {
       } catch (Throwable exception) {
         log.error("Exception occurred while writing to connection stream: ", exception);
         synchronized (out) {
-          out.write("\n".getBytes());
           if (exception.getCause() instanceof KsqlException) {
-            new ObjectMapper().writeValue(out, new StreamedRow(exception.getCause()));
+            rowEncoder.writeError(out, exception.getCause());
           } else {
-            new ObjectMapper().writeValue(out, new StreamedRow(exception));
+            rowEncoder.writeError(out, exception);
           }
-          out.write("\n".getBytes());
           out.flush();
         }
       }
@@ -128,6 +142,8 @@ class QueryStreamWriter implements StreamingOutput {
       }
 
     } finally {
+      // Releases stream threads blocked on a full queue so the streams instance can close.
+      queryMetadata.getRowQueue().close();
       queryMetadata.getKafkaStreams().close(100L, TimeUnit.MILLISECONDS);
       queryMetadata.getKafkaStreams().cleanUp();
     }
@@ -23,14 +23,17 @@ import io.confluent.ksql.parser.tree.PrintTopic;
 import io.confluent.ksql.parser.tree.Query;
 import io.confluent.ksql.parser.tree.Statement;
 import io.confluent.ksql.rest.entity.KsqlRequest;
+import io.confluent.ksql.rest.entity.StreamedRowFormat;
 import io.confluent.ksql.rest.server.StatementParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Collections;
@@ -39,7 +42,11 @@ import java.util.Objects;
 import java.util.Optional;
 
 @Path("/query")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({
+    MediaType.APPLICATION_JSON,
+    StreamedRowFormat.BINARY_MEDIA_TYPE,
+    StreamedRowFormat.COLUMNAR_MEDIA_TYPE
+})
 public class StreamedQueryResource {
   private static final Logger log = LoggerFactory.getLogger(StreamedQueryResource.class);
 
@@ -59,16 +66,32 @@ public class StreamedQueryResource {
 
   @POST
   @Consumes(MediaType.APPLICATION_JSON)
+  public Response streamQuery(
+      @HeaderParam(HttpHeaders.ACCEPT) String acceptHeader,
+      KsqlRequest request
+  ) throws Exception {
+    return streamQuery(request, StreamedRowFormat.fromAcceptHeader(acceptHeader));
+  }
+
   public Response streamQuery(KsqlRequest request) throws Exception {
+    return streamQuery(request, StreamedRowFormat.JSON);
+  }
+
+  private Response streamQuery(KsqlRequest request, StreamedRowFormat format) throws Exception {
     String ksql = Objects.requireNonNull(request.getKsql(), "\"ksql\" field must be given");
     Map<String, Object> clientLocalProperties =
         Optional.ofNullable(request.getStreamsProperties()).orElse(Collections.emptyMap());
     Statement statement = statementParser.parseSingleStatement(ksql);
     if (statement instanceof Query) {
-      QueryStreamWriter queryStreamWriter =
-          new QueryStreamWriter(ksqlEngine, disconnectCheckInterval, ksql, clientLocalProperties);
-      log.info("Streaming query '{}'", ksql);
-      return Response.ok().entity(queryStreamWriter).build();
+      QueryStreamWriter queryStreamWriter = new QueryStreamWriter(
+          ksqlEngine,
+          disconnectCheckInterval,
+          ksql,
+          clientLocalProperties,
+          format
+      );
+      log.info("Streaming query '{}' as {}", ksql, format);
+      return Response.ok().type(format.getMediaType()).entity(queryStreamWriter).build();
     } else if (statement instanceof PrintTopic) {
       PrintTopic printTopic = (PrintTopic) statement;
       String topicName = printTopic.getTopic().toString();
@@ -89,7 +112,7 @@ public class StreamedQueryResource {
           printTopic.getFromBeginning()
       );
       log.info("Printing topic '{}'", topicName);
-      return Response.ok().entity(topicStreamWriter).build();
+      return Response.ok().type(MediaType.APPLICATION_JSON).entity(topicStreamWriter).build();
     } else {
       throw new Exception(String.format(
           "Statement type `%s' not supported for this resource",
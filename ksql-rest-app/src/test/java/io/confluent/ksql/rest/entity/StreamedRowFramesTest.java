@@ -0,0 +1,76 @@
+/**
+ * Copyright 2017 Confluent Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package io.confluent.ksql.rest.entity;
+
+import io.confluent.ksql.physical.GenericRow;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StreamedRowFramesTest {
+
+  private final Schema schema = SchemaBuilder.struct()
+      .field("ID", Schema.INT64_SCHEMA)
+      .field("NAME", Schema.STRING_SCHEMA)
+      .field("PRICE", Schema.FLOAT64_SCHEMA)
+      .field("TAGS", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+      .build();
+
+  @Test
+  public void shouldRoundTripSchema() throws Exception {
+    Schema decoded = StreamedRowFrames.decodeSchema(StreamedRowFrames.encodeSchema(schema));
+
+    assertEquals(4, decoded.fields().size());
+    assertEquals("NAME", decoded.fields().get(1).name());
+    assertEquals(Schema.Type.FLOAT64, decoded.fields().get(2).schema().type());
+    assertEquals(Schema.Type.STRING, decoded.fields().get(3).schema().valueSchema().type());
+  }
+
+  @Test
+  public void shouldRoundTripColumnarBatchWithNulls() throws Exception {
+    List<GenericRow> rows = new ArrayList<>();
+    rows.add(new GenericRow(Arrays.asList(1L, "apple", 1.5, new Object[]{"red", "green"})));
+    rows.add(new GenericRow(Arrays.asList(2L, null, null, null)));
+    rows.add(new GenericRow(Arrays.asList(null, "pear", 0.25, new Object[]{})));
+
+    List<GenericRow> decoded =
+        StreamedRowFrames.decodeBatch(schema, StreamedRowFrames.encodeBatch(schema, rows));
+
+    assertEquals(3, decoded.size());
+    for (int i = 0; i < rows.size(); i++) {
+      List<Object> expected = rows.get(i).getColumns();
+      List<Object> actual = decoded.get(i).getColumns();
+      assertEquals(expected.subList(0, 3), actual.subList(0, 3));
+      assertArrayEquals((Object[]) expected.get(3), (Object[]) actual.get(3));
+    }
+  }
+
+  @Test
+  public void shouldEncodeEmptyBatch() throws Exception {
+    byte[] payload = StreamedRowFrames.encodeBatch(schema, Collections.emptyList());
+
+    assertEquals(0, StreamedRowFrames.decodeBatch(schema, payload).size());
+  }
+}
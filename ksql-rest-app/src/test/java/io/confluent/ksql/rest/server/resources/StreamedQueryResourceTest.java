@@ -26,6 +26,7 @@ import io.confluent.ksql.rest.entity.KsqlRequest;
 import io.confluent.ksql.rest.entity.StreamedRow;
 import io.confluent.ksql.rest.server.StatementParser;
 import io.confluent.ksql.rest.server.resources.streaming.StreamedQueryResource;
+import io.confluent.ksql.util.BoundedRowQueue;
 import io.confluent.ksql.util.QueuedQueryMetadata;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.streams.KafkaStreams;
@@ -34,15 +35,20 @@ import org.junit.Test;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Scanner;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -53,6 +59,8 @@ import static org.easymock.EasyMock.mock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class StreamedQueryResourceTest {
 
@@ -64,7 +72,8 @@ public class StreamedQueryResourceTest {
 
     final String queryString = "SELECT * FROM test_stream;";
 
-    final SynchronousQueue<KeyValue<String, GenericRow>> rowQueue = new SynchronousQueue<>();
+    final BoundedRowQueue rowQueue =
+        new BoundedRowQueue(1, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.empty());
 
     final LinkedList<GenericRow> writtenRows = new LinkedList<>();
 
@@ -78,7 +87,9 @@ public class StreamedQueryResourceTest {
             synchronized (writtenRows) {
               writtenRows.add(value);
             }
-            rowQueue.put(new KeyValue<>(key, value));
+            if (!rowQueue.offer(new KeyValue<>(key, value))) {
+              break;
+            }
           }
         } catch (InterruptedException exception) {
           // This should happen during the test, so it's fine
@@ -175,6 +186,187 @@ public class StreamedQueryResourceTest {
     }
   }
 
+  @Test
+  public void testRowsAreFlushedOnceTheBufferIsFull() throws Throwable {
+    // Rows of about 250 bytes, so a batch of 500 rows fills the 64KB buffer.
+    char[] chars = new char[200];
+    Arrays.fill(chars, 'x');
+    String value = new String(chars);
+    BoundedRowQueue rowQueue =
+        new BoundedRowQueue(2000, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.of(1000));
+    for (int i = 0; i < 1000; i++) {
+      rowQueue.offer(new KeyValue<>(Integer.toString(i),
+                                    new GenericRow(Collections.singletonList(value))));
+    }
+
+    RecordingOutputStream output = new RecordingOutputStream();
+    streamQuery(rowQueue, 60000).write(output);
+
+    List<List<String>> flushedRows = output.getFlushedRows();
+    assertEquals(2, flushedRows.size());
+    assertEquals(500, flushedRows.get(0).size());
+    assertEquals(500, flushedRows.get(1).size());
+    assertTrue(output.getFlushedBytes().get(0) >= 64 * 1024);
+  }
+
+  @Test
+  public void testRowsAreFlushedAfterTheFlushInterval() throws Throwable {
+    BoundedRowQueue rowQueue =
+        new BoundedRowQueue(10, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.empty());
+    for (int i = 0; i < 3; i++) {
+      rowQueue.offer(new KeyValue<>(Integer.toString(i),
+                                    new GenericRow(Collections.singletonList(i))));
+    }
+
+    // Keep-alives are written on the request thread while the row writer waits for rows.
+    RecordingOutputStream output = new RecordingOutputStream();
+    StreamingOutput responseStream = streamQuery(rowQueue, 10);
+    AtomicReference<Throwable> writeException = new AtomicReference<>(null);
+    Thread queryWriterThread = new Thread(() -> {
+      try {
+        responseStream.write(output);
+      } catch (Throwable exception) {
+        writeException.set(exception);
+      }
+    }, "Query Writer");
+    queryWriterThread.start();
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (output.getFlushedRows().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    // The three small rows do not fill the buffer, so they are written together by the timer.
+    List<List<String>> flushedRows = output.getFlushedRows();
+    assertEquals(1, flushedRows.size());
+    assertEquals(3, flushedRows.get(0).size());
+    ObjectMapper objectMapper = new ObjectMapper();
+    for (int i = 0; i < 3; i++) {
+      assertEquals(new GenericRow(Collections.singletonList(i)),
+                   objectMapper.readValue(flushedRows.get(0).get(i), StreamedRow.class).getRow());
+    }
+    assertTrue(output.getKeepAliveCount() > 0);
+
+    rowQueue.close();
+    queryWriterThread.join();
+    if (writeException.get() != null) {
+      throw writeException.get();
+    }
+  }
+
+  @Test
+  public void testRowsAreFlushedWhenTheQueryCompletes() throws Throwable {
+    BoundedRowQueue rowQueue =
+        new BoundedRowQueue(10, BoundedRowQueue.OverflowPolicy.BLOCK, Optional.of(3));
+    for (int i = 0; i < 3; i++) {
+      rowQueue.offer(new KeyValue<>(Integer.toString(i),
+                                    new GenericRow(Collections.singletonList(i))));
+    }
+
+    RecordingOutputStream output = new RecordingOutputStream();
+    streamQuery(rowQueue, 60000).write(output);
+
+    // The rows are still buffered when the LIMIT ends the query and are flushed before the
+    // response ends.
+    List<List<String>> flushedRows = output.getFlushedRows();
+    assertEquals(1, flushedRows.size());
+    assertEquals(3, flushedRows.get(0).size());
+    assertFalse(output.hasUnflushedBytes());
+  }
+
+  private static StreamingOutput streamQuery(BoundedRowQueue rowQueue,
+                                             long disconnectCheckInterval) throws Exception {
+    final String queryString = "SELECT * FROM test_stream;";
+
+    final KafkaStreams mockKafkaStreams = mock(KafkaStreams.class);
+    mockKafkaStreams.start();
+    expectLastCall();
+    mockKafkaStreams.setUncaughtExceptionHandler(anyObject(Thread.UncaughtExceptionHandler.class));
+    expectLastCall();
+    expect(mockKafkaStreams.close(100L, TimeUnit.MILLISECONDS)).andReturn(true);
+    mockKafkaStreams.cleanUp();
+    expectLastCall();
+
+    final OutputNode mockOutputNode = mock(OutputNode.class);
+    expect(mockOutputNode.getSchema())
+        .andReturn(SchemaBuilder.struct().field("f1", SchemaBuilder.INT32_SCHEMA)).anyTimes();
+
+    final QueuedQueryMetadata queuedQueryMetadata =
+        new QueuedQueryMetadata(queryString, mockKafkaStreams, mockOutputNode, "",
+                                rowQueue, DataSource.DataSourceType.KSTREAM);
+
+    final Map<String, Object> requestStreamsProperties = Collections.emptyMap();
+
+    KsqlEngine mockKsqlEngine = mock(KsqlEngine.class);
+    expect(mockKsqlEngine.buildMultipleQueries(true, queryString, requestStreamsProperties))
+        .andReturn(Collections.singletonList(queuedQueryMetadata));
+
+    StatementParser mockStatementParser = mock(StatementParser.class);
+    expect(mockStatementParser.parseSingleStatement(queryString)).andReturn(mock(Query.class));
+
+    replay(mockKsqlEngine, mockStatementParser, mockKafkaStreams, mockOutputNode);
+
+    StreamedQueryResource testResource =
+        new StreamedQueryResource(mockKsqlEngine, mockStatementParser, disconnectCheckInterval);
+    Response response =
+        testResource.streamQuery(new KsqlRequest(queryString, requestStreamsProperties));
+    return (StreamingOutput) response.getEntity();
+  }
+
+  // Records what is written between two flushes, to tell how the rows were batched.
+  private static class RecordingOutputStream extends OutputStream {
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final List<List<String>> flushedRows = new ArrayList<>();
+    private final List<Integer> flushedBytes = new ArrayList<>();
+    private int keepAliveCount;
+
+    @Override
+    public synchronized void write(int b) {
+      pending.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      pending.write(b, off, len);
+    }
+
+    @Override
+    public synchronized void flush() {
+      if (pending.size() == 0) {
+        return;
+      }
+      List<String> rows = new ArrayList<>();
+      for (String line : pending.toString().split("\n")) {
+        if (!line.trim().isEmpty()) {
+          rows.add(line);
+        }
+      }
+      if (rows.isEmpty()) {
+        keepAliveCount++;
+      } else {
+        flushedRows.add(rows);
+        flushedBytes.add(pending.size());
+      }
+      pending.reset();
+    }
+
+    synchronized List<List<String>> getFlushedRows() {
+      return new ArrayList<>(flushedRows);
+    }
+
+    synchronized List<Integer> getFlushedBytes() {
+      return new ArrayList<>(flushedBytes);
+    }
+
+    synchronized int getKeepAliveCount() {
+      return keepAliveCount;
+    }
+
+    synchronized boolean hasUnflushedBytes() {
+      return pending.size() > 0;
+    }
+  }
+
   // Have to mimic the behavior of the OutputStream that's usually passed to the QueryStreamWriter class's write()
   // method, which is to throw an EOFException if any write attempts are made after the connection has terminated
   private static class EOFPipedOutputStream extends PipedOutputStream {